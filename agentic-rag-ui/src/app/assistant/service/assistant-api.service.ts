@@ -14,7 +14,7 @@ import {
 import { Observable, Subject } from 'rxjs';
 import { map, filter, tap } from 'rxjs/operators';
 import { environment } from '../../../../environements/environement';
-import { UploadResponse, UploadStatusResponse } from '../store/assistant.models';
+import { IngestionProgressEvent, UploadResponse, UploadStatusResponse } from '../store/assistant.models';
 
 /**
  * ✅ NOUVEAU : Interface pour la progression d'upload
@@ -168,6 +168,61 @@ export class AssistantApiService {
     );
   }
 
+  /**
+   * ✅ NOUVEAU : Progression d'ingestion en temps réel (SSE, remplace le polling)
+   * Émet chaque événement "progress", puis l'événement "done" et complète.
+   */
+  streamUploadProgress(jobId: string): Observable<IngestionProgressEvent> {
+    return new Observable<IngestionProgressEvent>(observer => {
+      const url = `${this.API_URL}/upload/progress/${encodeURIComponent(jobId)}`;
+
+      console.log('📡 [ApiService] Connexion SSE progression:', jobId);
+
+      const eventSource = new EventSource(url);
+
+      const parse = (event: MessageEvent): IngestionProgressEvent | null => {
+        try {
+          return JSON.parse(event.data) as IngestionProgressEvent;
+        } catch (error) {
+          console.error('❌ [ApiService] Erreur parsing progression:', error);
+          return null;
+        }
+      };
+
+      // ✅ Event "progress" : pages, images, segments, ETA
+      eventSource.addEventListener('progress', (event: MessageEvent) => {
+        const progress = parse(event);
+        if (progress) {
+          observer.next(progress);
+        }
+      });
+
+      // ✅ Event "done" : état terminal (completed / failed)
+      eventSource.addEventListener('done', (event: MessageEvent) => {
+        const progress = parse(event);
+        if (progress) {
+          observer.next(progress);
+        }
+        console.log('✅ [ApiService] Progression terminée:', jobId);
+        eventSource.close();
+        observer.complete();
+      });
+
+      // ✅ Erreur de connexion
+      eventSource.onerror = (error) => {
+        console.error('❌ [ApiService] Erreur connexion SSE progression:', error);
+        observer.error(new Error('Erreur de connexion au serveur'));
+        eventSource.close();
+      };
+
+      // ✅ Cleanup à la désinscription
+      return () => {
+        console.log('🔌 [ApiService] Fermeture SSE progression:', jobId);
+        eventSource.close();
+      };
+    });
+  }
+
   /**
    * ✅ NOUVEAU : Lister tous les uploads
    */
@@ -123,6 +123,8 @@ export const uploadFileSuccess = createAction(
         uploadedAt: string;
         fingerprint: string;
         fileSize: number;
+        batchId?: string;
+        indexed?: boolean;
       };
     };
   }>()
@@ -141,6 +143,8 @@ export const uploadFileDuplicate = createAction(
       uploadedAt: string;
       fingerprint: string;
       fileSize: number;
+      batchId?: string;
+      indexed?: boolean;
     };
     existingJobId: string;
   }>()
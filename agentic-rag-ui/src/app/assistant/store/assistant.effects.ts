@@ -10,7 +10,7 @@ import {
 } from '@angular/common/http';
 import { Actions, createEffect, ofType } from '@ngrx/effects';
 import { Store } from '@ngrx/store';
-import { of, concat, interval, EMPTY } from 'rxjs';
+import { of, concat, EMPTY } from 'rxjs';
 import { 
   catchError, 
   endWith, 
@@ -37,9 +37,9 @@ import {
 } from './assistant.selectors';
 import { 
   generateFileId,
+  IngestionProgressEvent,
   UploadResponse
 } from './assistant.models';
-import { LIMITS } from './assistant.state';
 
 @Injectable()
 export class AssistantEffects {
@@ -275,66 +275,49 @@ export class AssistantEffects {
   );
 
   /**
-   * ✅ Polling du statut avec progression temps réel
+   * ✅ Suivi du statut en temps réel (SSE) - plus de polling
+   * Chaque événement serveur est traduit en pollUploadStatusSuccess (reducer inchangé)
    */
-pollUploadStatus$ = createEffect(() =>
-  this.actions$.pipe(
-    ofType(AssistantActions.startPollingAfterUpload),
-    mergeMap(({ fileId, jobId }) => {
-      console.log('🔄 [Effects] Polling statut pour job:', jobId);
-
-      return interval(LIMITS.POLLING_INTERVAL).pipe(
-        switchMap(() => 
-          this.apiService.getUploadStatus(jobId).pipe(
-            tap(status => {
-              console.log('📊 [Effects] Statut polling:', status);
-              
-              if (status.progress !== undefined) {
-                this.store.dispatch(AssistantActions.updateFileProgress({
-                  fileId,
-                  progress: status.progress
-                }));
-              }
-            }),
-            map(status => 
-              AssistantActions.pollUploadStatusSuccess({
-                fileId,
-                jobId: status.jobId,
-                status: status.status,
-                progress: status.progress,
-                message: status.message
-              })
-            ),
-            catchError(error => {
-              console.error('❌ [Effects] Erreur polling:', error);
-              return of(AssistantActions.pollUploadStatusFailure({
-                fileId,
-                jobId,
-                error: this.getErrorMessage(error)
-              }));
+  pollUploadStatus$ = createEffect(() =>
+    this.actions$.pipe(
+      ofType(AssistantActions.startPollingAfterUpload),
+      mergeMap(({ fileId, jobId }) => {
+        console.log('📡 [Effects] Suivi SSE pour job:', jobId);
+
+        return this.apiService.streamUploadProgress(jobId).pipe(
+          tap(event => {
+            this.store.dispatch(AssistantActions.updateFileProgress({
+              fileId,
+              progress: event.progress
+            }));
+          }),
+          map(event =>
+            AssistantActions.pollUploadStatusSuccess({
+              fileId,
+              jobId: event.jobId,
+              status: event.status,
+              progress: event.progress,
+              message: this.describeChanges(event.message || this.describeProgress(event), event)
             })
-          )
-        ),
-        // ✅ Arrêter UNIQUEMENT sur completed/failed/error
-        takeUntil(
-          this.actions$.pipe(
-            ofType(
-              AssistantActions.pollUploadStatusSuccess,
-              AssistantActions.pollUploadStatusFailure
-            ),
-            filter(action => 
-              'jobId' in action && action.jobId === jobId &&
-              (
-                ('status' in action && (action.status === 'completed' || action.status === 'failed')) ||
-                action.type === AssistantActions.pollUploadStatusFailure.type
-              )
+          ),
+          catchError(error => {
+            console.error('❌ [Effects] Erreur suivi SSE:', error);
+            return of(AssistantActions.pollUploadStatusFailure({
+              fileId,
+              jobId,
+              error: this.getErrorMessage(error)
+            }));
+          }),
+          takeUntil(
+            this.actions$.pipe(
+              ofType(AssistantActions.stopPollingUploadStatus),
+              filter(action => action.jobId === jobId)
             )
           )
-        )
-      );
-    })
-  )
-);
+        );
+      })
+    )
+  );
 
   /**
    * ✅ NOUVEAU : Notification traitement terminé
@@ -684,6 +667,34 @@ pollUploadStatus$ = createEffect(() =>
     return `${prefix}_${Date.now()}_${Math.random().toString(36).substring(2, 9)}`;
   }
   
+  private describeProgress(event: IngestionProgressEvent): string {
+    const parts: string[] = [];
+    if (event.pagesTotal > 0) {
+      parts.push(`${event.pagesParsed}/${event.pagesTotal} pages`);
+    }
+    if (event.imagesAnalysed > 0) {
+      parts.push(`${event.imagesAnalysed} images`);
+    }
+    if (event.segmentsEmbedded > 0) {
+      parts.push(`${event.segmentsEmbedded} segments`);
+    }
+    if (event.etaSeconds != null) {
+      parts.push(`~${event.etaSeconds}s restantes`);
+    }
+    return parts.length > 0
+      ? `Traitement en cours (${event.progress}%) - ${parts.join(', ')}`
+      : `Traitement en cours (${event.progress}%)...`;
+  }
+  
+  private describeChanges(message: string, event: IngestionProgressEvent): string {
+    const c = event.changes;
+    if (!c || !c.previousVersion) {
+      return message;
+    }
+    return `${message} - mise à jour: texte +${c.textAdded} =${c.textKept} -${c.textRemoved}, ` +
+      `images +${c.imageAdded} =${c.imageKept} -${c.imageRemoved}`;
+  }
+  
   private getErrorMessage(error: any): string {
     if (typeof error === 'string') return error;
     if (error?.error?.message) return error.error.message;
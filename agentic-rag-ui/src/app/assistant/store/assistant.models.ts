@@ -98,6 +98,42 @@ export interface UploadStatusResponse {
   completedAt?: string;          // ISO 8601 format
 }
 
+/**
+ * ✅ NOUVEAU : Événement de progression d'ingestion (SSE /upload/progress/{jobId})
+ */
+export interface IngestionProgressEvent {
+  jobId: string;
+  status: 'pending' | 'processing' | 'completed' | 'failed';
+  stage: 'queued' | 'parsing' | 'images' | 'indexing' | 'finalizing' | 'done';
+  progress: number;
+  pagesParsed: number;
+  pagesTotal: number;
+  imagesAnalysed: number;
+  segmentsEmbedded: number;
+  bytesProcessed: number;
+  bytesTotal: number;
+  etaSeconds?: number | null;
+  message?: string;
+  changes?: ReingestionDiff | null;
+  timestamp: string;             // ISO 8601 format
+  terminal?: boolean;
+}
+
+/**
+ * ✅ NOUVEAU : Différentiel d'une ré-ingestion (segments ajoutés / conservés / supprimés)
+ */
+export interface ReingestionDiff {
+  document: string;
+  batchId: string;
+  textAdded: number;
+  textKept: number;
+  textRemoved: number;
+  imageAdded: number;
+  imageKept: number;
+  imageRemoved: number;
+  previousVersion: boolean;
+}
+
 /**
  * ✅ NOUVEAU : Liste des uploads
  */
@@ -0,0 +1,33 @@
+#!/usr/bin/env bash
+# ============================================================================
+# Benchmarks JMH - construction, exécution, comparaison à la baseline
+#
+#   benchmarks/run.sh                      # tous les benchmarks, comparés à baseline/baseline.json
+#   benchmarks/run.sh Chunking -p copies=8 # options JMH transmises telles quelles
+#   benchmarks/run.sh --update-baseline    # remplace la baseline par ce run (machine de référence)
+#
+# Variable BENCH_THRESHOLD : seuil de régression en % (10 par défaut)
+# ============================================================================
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+BENCH="$ROOT/benchmarks"
+RESULT="$BENCH/target/jmh-result.json"
+
+UPDATE=false
+if [[ "${1:-}" == "--update-baseline" ]]; then
+  UPDATE=true
+  shift
+fi
+
+mvn -B -q -f "$ROOT/pom.xml" -pl benchmarks -am package -DskipTests
+
+java -jar "$BENCH/target/benchmarks.jar" -rf json -rff "$RESULT" "$@"
+
+if $UPDATE; then
+  cp "$RESULT" "$BENCH/baseline/baseline.json"
+  echo "Baseline mise à jour: $BENCH/baseline/baseline.json ($(git -C "$ROOT" rev-parse --short HEAD 2>/dev/null || echo '?'))"
+else
+  java -cp "$BENCH/target/benchmarks.jar" com.exemple.transactionservice.benchmark.BaselineComparator \
+    "$BENCH/baseline/baseline.json" "$RESULT" "${BENCH_THRESHOLD:-10}"
+fi
@@ -0,0 +1,110 @@
+// ============================================================================
+// BENCHMARK - BaselineComparator.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ✅ Comparaison d'un résultat JMH (-rf json) avec la baseline versionnée
+ *
+ * Usage : java -cp target/benchmarks.jar com.exemple.transactionservice.benchmark.BaselineComparator \
+ *             baseline/baseline.json target/jmh-result.json [seuil%]
+ *
+ * Clé de comparaison : benchmark + paramètres. Une régression est signalée si l'écart dépasse le seuil
+ * (10 % par défaut) ET les marges d'erreur JMH des deux mesures ; code retour 1 dans ce cas.
+ * Benchmarks absents de la baseline : affichés « nouveau », jamais en échec.
+ */
+public final class BaselineComparator {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+
+    private record Score(String mode, double value, double error, String unit) {}
+
+    private BaselineComparator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparator <baseline.json> <resultat.json> [seuil%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        Map<String, Score> baseline = read(Path.of(args[0]));
+        Map<String, Score> current = read(Path.of(args[1]));
+
+        int regressions = 0;
+        System.out.printf(Locale.ROOT, "%-90s %14s %14s %9s  %s%n", "Benchmark", "Baseline", "Actuel", "Écart", "");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null || !before.unit().equals(now.unit())) {
+                System.out.printf(Locale.ROOT, "%-90s %14s %14s %9s  nouveau%n",
+                        entry.getKey(), "-", format(now), "-");
+                continue;
+            }
+
+            double deltaPercent = (now.value() - before.value()) / before.value() * 100.0;
+            // Débit : plus haut = mieux ; temps (avgt, sample, ss) : plus bas = mieux
+            double worsePercent = "thrpt".equals(now.mode()) ? -deltaPercent : deltaPercent;
+            boolean beyondError = Math.abs(now.value() - before.value()) > now.error() + before.error();
+
+            String verdict = "";
+            if (worsePercent > threshold && beyondError) {
+                verdict = "RÉGRESSION";
+                regressions++;
+            } else if (worsePercent < -threshold && beyondError) {
+                verdict = "amélioration";
+            }
+            System.out.printf(Locale.ROOT, "%-90s %14s %14s %+8.1f%%  %s%n",
+                    entry.getKey(), format(before), format(now), deltaPercent, verdict);
+        }
+
+        System.out.printf(Locale.ROOT, "%n%d benchmark(s), %d régression(s) au-delà de %.1f %%%n",
+                current.size(), regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> read(Path path) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        JsonNode root = new ObjectMapper().readTree(Files.readAllBytes(path));
+        for (JsonNode run : root) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+            JsonNode params = run.path("params");
+            if (params.isObject()) {
+                Map<String, String> sorted = new TreeMap<>();
+                for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> param = it.next();
+                    sorted.put(param.getKey(), param.getValue().asText());
+                }
+                key.append(sorted);
+            }
+
+            JsonNode metric = run.path("primaryMetric");
+            double error = metric.path("scoreError").asDouble(0);
+            scores.put(key.toString(), new Score(
+                    run.path("mode").asText(),
+                    metric.path("score").asDouble(),
+                    Double.isNaN(error) ? 0 : error,
+                    metric.path("scoreUnit").asText()));
+        }
+        return scores;
+    }
+
+    private static String format(Score score) {
+        return String.format(Locale.ROOT, "%.3f %s", score.value(), score.unit());
+    }
+}
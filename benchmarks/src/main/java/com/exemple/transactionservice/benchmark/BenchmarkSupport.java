@@ -0,0 +1,111 @@
+// ============================================================================
+// BENCHMARK - BenchmarkSupport.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.benchmark;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ✅ Outils communs aux benchmarks (hors contexte Spring)
+ *
+ * - Fixtures lues depuis le classpath (src/main/resources/fixtures)
+ * - Segments de référence avec les métadonnées posées par l'ingestion PDF
+ * - Champs @Value d'un service renseignés avec leurs valeurs par défaut,
+ *   surchargeables par -Dcle=valeur (ex. -jvmArgsAppend -Ddocument.chunking.default.max-tokens=800)
+ */
+public final class BenchmarkSupport {
+
+    private static final StandardEnvironment ENVIRONMENT = new StandardEnvironment();
+
+    private BenchmarkSupport() {
+    }
+
+    public static byte[] fixture(String name) {
+        try (InputStream in = BenchmarkSupport.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Fixture introuvable: " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static String fixtureText(String name) {
+        return new String(fixture(name), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Paragraphes du rapport de référence avec métadonnées d'une page PDF ingérée
+     */
+    public static List<TextSegment> segments(int count) {
+        String[] paragraphs = Arrays.stream(fixtureText("rapport-annuel.txt").split("\\n\\s*\\n"))
+                .map(String::strip)
+                .filter(p -> p.length() > 40)
+                .toArray(String[]::new);
+
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int page = i % 5 + 1;
+            Map<String, Object> meta = new HashMap<>();
+            meta.put("source", "rapport-annuel.pdf");
+            meta.put("filename", "rapport-annuel.pdf");
+            meta.put("type", "pdf_page_" + page);
+            meta.put("page", page);
+            meta.put("totalPages", 5);
+            meta.put("batchId", "bench-batch-0001");
+            meta.put("uploadDate", 1_735_689_600_000L);
+            meta.put("chunkIndex", i);
+            segments.add(TextSegment.from(paragraphs[i % paragraphs.length], Metadata.from(meta)));
+        }
+        return segments;
+    }
+
+    /**
+     * Renseigne les champs @Value("${cle:defaut}") comme le ferait Spring
+     */
+    public static <T> T withDefaults(T bean) {
+        return withDefaults(bean, Map.of());
+    }
+
+    /**
+     * Idem, avec des valeurs imposées par clé (paramètre JMH, dépendance externe désactivée)
+     */
+    public static <T> T withDefaults(T bean, Map<String, ?> overrides) {
+        for (Class<?> type = bean.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                Value value = field.getAnnotation(Value.class);
+                if (value == null || !value.value().startsWith("${")) continue;
+
+                String placeholder = value.value();
+                String key = placeholder.substring(2, placeholder.replace('}', ':').indexOf(':', 2));
+                String resolved = overrides.containsKey(key)
+                        ? String.valueOf(overrides.get(key))
+                        : ENVIRONMENT.resolveRequiredPlaceholders(placeholder);
+                Object converted = DefaultConversionService.getSharedInstance().convert(resolved, field.getType());
+                try {
+                    field.setAccessible(true);
+                    field.set(bean, converted);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Champ non modifiable: " + field, e);
+                }
+            }
+        }
+        return bean;
+    }
+}
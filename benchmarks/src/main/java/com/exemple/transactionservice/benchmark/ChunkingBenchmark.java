@@ -0,0 +1,63 @@
+// ============================================================================
+// BENCHMARK - ChunkingBenchmark.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.benchmark;
+
+import com.exemple.transactionservice.service.TextChunker;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Découpage en tokens cl100k (TextChunker) du rapport de référence
+ *
+ * copies : nombre de répétitions du rapport (environ 1 200 tokens par copie)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkingBenchmark {
+
+    @Param({"1", "8"})
+    public int copies;
+
+    @Param({"txt", "pdf"})
+    public String type;
+
+    private TextChunker chunker;
+    private String text;
+
+    @Setup
+    public void setup() {
+        chunker = BenchmarkSupport.withDefaults(new TextChunker(new SimpleMeterRegistry()));
+        chunker.init();
+        text = BenchmarkSupport.fixtureText("rapport-annuel.txt").repeat(copies);
+    }
+
+    @Benchmark
+    public List<TextSegment> split() {
+        return chunker.split(text, new Metadata(), type);
+    }
+
+    @Benchmark
+    public int countTokens() {
+        return chunker.countTokens(text);
+    }
+}
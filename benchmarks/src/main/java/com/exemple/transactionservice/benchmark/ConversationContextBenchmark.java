@@ -0,0 +1,77 @@
+// ============================================================================
+// BENCHMARK - ConversationContextBenchmark.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.benchmark;
+
+import com.exemple.transactionservice.service.ConversationalAssistant.ConversationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ ConversationContext.smartTrim après ajout d'un échange (chemin de updateConversationContext)
+ *
+ * smartTrim modifie le contexte : chaque invocation repart d'une copie de l'historique.
+ * copyOnly mesure la copie seule, à soustraire de smartTrim.
+ * Bornes = valeurs par défaut (assistant.context.max-exchanges=5, max-tokens=4000).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversationContextBenchmark {
+
+    private static final int MAX_EXCHANGES = 5;
+    private static final int MAX_TOKENS = 4000;
+
+    // Historique relu depuis Redis avant trim (6 = cas courant, 50 = contexte jamais tronqué)
+    @Param({"6", "50"})
+    public int exchanges;
+
+    private Deque<ConversationContext.Exchange> history;
+
+    @Setup
+    public void setup() {
+        List<String> paragraphs = BenchmarkSupport.segments(12).stream().map(s -> s.text()).toList();
+        history = new ArrayDeque<>(exchanges);
+        Instant now = Instant.parse("2025-01-15T10:30:00Z");
+        for (int i = 0; i < exchanges; i++) {
+            history.add(new ConversationContext.Exchange(
+                    "Question " + (i + 1) + " sur le rapport annuel ?",
+                    paragraphs.get(i % paragraphs.size()) + " " + paragraphs.get((i + 3) % paragraphs.size()),
+                    now.plusSeconds(i * 30L)));
+        }
+    }
+
+    @Benchmark
+    public ConversationContext smartTrim() {
+        ConversationContext context = new ConversationContext();
+        context.setExchanges(new LinkedList<>(history));
+        context.smartTrim(MAX_EXCHANGES, MAX_TOKENS);
+        return context;
+    }
+
+    @Benchmark
+    public ConversationContext copyOnly() {
+        ConversationContext context = new ConversationContext();
+        context.setExchanges(new LinkedList<>(history));
+        return context;
+    }
+}
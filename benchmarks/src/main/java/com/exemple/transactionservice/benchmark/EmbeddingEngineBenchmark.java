@@ -0,0 +1,139 @@
+// ============================================================================
+// BENCHMARK - EmbeddingEngineBenchmark.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.benchmark;
+
+import com.exemple.transactionservice.config.EmbeddingEngine;
+import com.exemple.transactionservice.service.MiniLmEmbeddingModel;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ✅ Moteurs d'embedding comparés : MiniLM ONNX local vs OpenAI
+ *
+ * - ingest : débit d'indexation en segments/s (lots de rag.embedding-batch-size = 100 segments)
+ * - query : latence d'embedding d'une question (distribution, p50/p99 dans le rapport JMH)
+ * - underIngestion : latence d'une question pendant une ingestion continue sur le même modèle
+ *
+ * Par défaut seul minilm est mesuré (aucun appel réseau). OpenAI :
+ *   OPENAI_API_KEY=sk-... benchmarks/run.sh EmbeddingEngine -p engine=minilm,openai
+ * (OPENAI_BASE_URL pour un point d'accès compatible ; pool MiniLM : -jvmArgsAppend -Dembedding.minilm.threads=4)
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class EmbeddingEngineBenchmark {
+
+    private static final int INGEST_BATCH = 100;
+
+    private static final String[] QUESTIONS = {
+            "Quel est le chiffre d'affaires consolidé de l'exercice ?",
+            "Résume les perspectives pour l'année prochaine.",
+            "Quelle est l'évolution de l'effectif par site ?",
+            "Compare la marge opérationnelle avec l'année précédente."
+    };
+
+    @Param({EmbeddingEngine.MINILM})
+    public String engine;
+
+    private EmbeddingModel model;
+    private List<TextSegment> batch;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setup() {
+        model = switch (engine) {
+            case EmbeddingEngine.MINILM -> new MiniLmEmbeddingModel(
+                    Integer.getInteger("embedding.minilm.threads",
+                            Math.max(1, Runtime.getRuntime().availableProcessors() - 1)),
+                    Integer.getInteger("embedding.minilm.batch-size", 16),
+                    new SimpleMeterRegistry());
+            case EmbeddingEngine.OPENAI -> openAi();
+            default -> throw new IllegalArgumentException("Moteur inconnu: " + engine);
+        };
+        batch = BenchmarkSupport.segments(INGEST_BATCH);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (model instanceof MiniLmEmbeddingModel miniLm) {
+            miniLm.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(INGEST_BATCH)
+    public List<Embedding> ingest() {
+        return model.embedAll(batch).content();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Embedding query() {
+        return model.embed(question()).content();
+    }
+
+    @Benchmark
+    @Group("underIngestion")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Embedding> underIngestionBatch() {
+        return model.embedAll(batch).content();
+    }
+
+    @Benchmark
+    @Group("underIngestion")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Embedding underIngestionQuery() {
+        return model.embed(question()).content();
+    }
+
+    private String question() {
+        return QUESTIONS[Math.floorMod(next.getAndIncrement(), QUESTIONS.length)];
+    }
+
+    private static EmbeddingModel openAi() {
+        String apiKey = System.getenv("OPENAI_API_KEY");
+        if (apiKey == null || apiKey.isBlank()) {
+            throw new IllegalStateException("OPENAI_API_KEY absent : moteur openai non mesurable (-p engine=minilm)");
+        }
+        String baseUrl = System.getenv().getOrDefault("OPENAI_BASE_URL", "https://api.openai.com/v1");
+        return OpenAiEmbeddingModel.builder()
+                .baseUrl(baseUrl)
+                .apiKey(apiKey)
+                .modelName(System.getProperty("openai.embedding.model", "text-embedding-3-small"))
+                .timeout(Duration.ofSeconds(60))
+                .maxRetries(3)
+                .build();
+    }
+}
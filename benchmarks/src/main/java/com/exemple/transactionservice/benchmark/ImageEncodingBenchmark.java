@@ -0,0 +1,73 @@
+// ============================================================================
+// BENCHMARK - ImageEncodingBenchmark.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.benchmark;
+
+import com.exemple.transactionservice.service.VisionImagePreparer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Encodage des images : PNG (ImageIO) et JPEG préparé pour Vision (VisionImagePreparer)
+ *
+ * - page : page 2 du PDF de référence rendue à 150 DPI (chemin « page scannée »)
+ * - chart : image PNG 1200x800 (graphique extrait d'un document)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageEncodingBenchmark {
+
+    @Param({"page", "chart"})
+    public String source;
+
+    private BufferedImage image;
+    private VisionImagePreparer preparer;
+
+    @Setup
+    public void setup() throws IOException {
+        if ("page".equals(source)) {
+            try (PDDocument document = Loader.loadPDF(BenchmarkSupport.fixture("rapport-annuel.pdf"))) {
+                image = new PDFRenderer(document).renderImageWithDPI(1, 150);
+            }
+        } else {
+            image = ImageIO.read(new ByteArrayInputStream(BenchmarkSupport.fixture("graphique-segments.png")));
+        }
+        preparer = BenchmarkSupport.withDefaults(new VisionImagePreparer(new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public byte[] encodePng() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public VisionImagePreparer.PreparedImage prepareJpeg() throws IOException {
+        return preparer.prepare(image);
+    }
+}
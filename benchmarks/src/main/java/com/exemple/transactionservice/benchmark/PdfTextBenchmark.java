@@ -0,0 +1,71 @@
+// ============================================================================
+// BENCHMARK - PdfTextBenchmark.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.benchmark;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Extraction du texte d'une page PDF (PDFTextStripper), comme dans l'ingestion PDF
+ *
+ * - reusedStripper : un stripper par document, setStartPage/setEndPage par page (chemin actuel)
+ * - newStripper : un stripper par page (référence)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfTextBenchmark {
+
+    // Page 2 : texte + histogramme vectoriel
+    @Param({"1", "2"})
+    public int page;
+
+    private PDDocument document;
+    private PDFTextStripper stripper;
+
+    @Setup
+    public void setup() throws IOException {
+        document = Loader.loadPDF(BenchmarkSupport.fixture("rapport-annuel.pdf"));
+        stripper = new PDFTextStripper();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    @Benchmark
+    public String reusedStripper() throws IOException {
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        return stripper.getText(document);
+    }
+
+    @Benchmark
+    public String newStripper() throws IOException {
+        PDFTextStripper perPage = new PDFTextStripper();
+        perPage.setStartPage(page);
+        perPage.setEndPage(page);
+        return perPage.getText(document);
+    }
+}
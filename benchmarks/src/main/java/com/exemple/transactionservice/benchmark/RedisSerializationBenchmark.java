@@ -0,0 +1,88 @@
+// ============================================================================
+// BENCHMARK - RedisSerializationBenchmark.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.benchmark;
+
+import com.exemple.transactionservice.config.RedisConfig;
+import com.exemple.transactionservice.dto.CacheableSearchResult;
+import com.exemple.transactionservice.service.ConversationalAssistant.ConversationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Sérialiseur Jackson des valeurs Redis (ObjectMapper de RedisConfig, typage par défaut activé)
+ *
+ * - context : ConversationContext relu puis réécrit à chaque message de chat
+ * - searchResult : CacheableSearchResult du cache multimodal-rag-search
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisSerializationBenchmark {
+
+    @Param({"context", "searchResult"})
+    public String payload;
+
+    private GenericJackson2JsonRedisSerializer serializer;
+    private Object value;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        serializer = new GenericJackson2JsonRedisSerializer(new RedisConfig().redisObjectMapper());
+        value = "context".equals(payload) ? context() : searchResult();
+        bytes = serializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+
+    private static ConversationContext context() {
+        List<String> paragraphs = BenchmarkSupport.segments(10).stream().map(s -> s.text()).toList();
+        ConversationContext context = new ConversationContext();
+        for (int i = 0; i < 5; i++) {
+            context.addExchange("Question " + (i + 1) + " : que dit le rapport sur ce point ?",
+                    paragraphs.get(i) + "\n\n" + paragraphs.get(i + 5));
+        }
+        return context;
+    }
+
+    private static CacheableSearchResult searchResult() {
+        List<CacheableSearchResult.SearchResultItem> text = new ArrayList<>();
+        BenchmarkSupport.segments(10).forEach(s -> text.add(CacheableSearchResult.fromTextSegment(s, 0.82)));
+        List<CacheableSearchResult.SearchResultItem> images = new ArrayList<>();
+        BenchmarkSupport.segments(3).forEach(s -> images.add(CacheableSearchResult.fromTextSegment(s, 0.76)));
+
+        CacheableSearchResult result = new CacheableSearchResult();
+        result.setTextResults(text);
+        result.setImageResults(images);
+        result.calculateMetrics(35, 21);
+        result.setTimestamp(1_735_689_600_000L);
+        result.setTotalDurationMs(58);
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+// ============================================================================
+// BENCHMARK - SearchResultBenchmark.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.benchmark;
+
+import com.exemple.transactionservice.dto.CacheableSearchResult;
+import com.exemple.transactionservice.dto.CacheableSearchResult.SearchResultItem;
+import dev.langchain4j.data.segment.TextSegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Conversions TextSegment <-> SearchResultItem du cache de recherche
+ *
+ * - fromTextSegment : résultats PgVector -> DTO mis en cache (à chaque recherche non cachée)
+ * - getTextResultsAsSegments : DTO -> TextSegment pour RAGTools (à chaque recherche, cachée ou non)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchResultBenchmark {
+
+    @Param({"10", "50"})
+    public int results;
+
+    private List<TextSegment> segments;
+    private CacheableSearchResult cached;
+
+    @Setup
+    public void setup() {
+        segments = BenchmarkSupport.segments(results);
+
+        List<SearchResultItem> items = new ArrayList<>(results);
+        for (int i = 0; i < results; i++) {
+            items.add(CacheableSearchResult.fromTextSegment(segments.get(i), 0.95 - i * 0.005));
+        }
+        cached = new CacheableSearchResult();
+        cached.setTextResults(items);
+        cached.setImageResults(List.of());
+    }
+
+    @Benchmark
+    public List<SearchResultItem> fromTextSegment() {
+        List<SearchResultItem> items = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            items.add(CacheableSearchResult.fromTextSegment(segments.get(i), 0.95 - i * 0.005));
+        }
+        return items;
+    }
+
+    @Benchmark
+    public List<TextSegment> getTextResultsAsSegments() {
+        return cached.getTextResultsAsSegments();
+    }
+}
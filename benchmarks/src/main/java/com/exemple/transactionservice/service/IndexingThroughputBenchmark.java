@@ -0,0 +1,189 @@
+// ============================================================================
+// BENCHMARK - IndexingThroughputBenchmark.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.benchmark.BenchmarkSupport;
+import com.exemple.transactionservice.config.EmbeddingEngine;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ✅ Débit d'indexation texte (segments/s) de MultimodalIngestionService.embedAndStoreInBatches
+ *
+ * - batchSize=1 : un appel embedAll et un INSERT par segment (comportement avant le batching)
+ * - batchSize=100 : tranches de rag.embedding-batch-size (valeur par défaut)
+ *
+ * Modèle et store sont des stubs à latence fixe : roundTripMs par appel API / INSERT,
+ * perSegmentMicros par segment dans un appel (tokenisation, calcul, lignes insérées).
+ * Checkpoints et quasi-doublons désactivés (base de données) ; les autres collaborateurs,
+ * hors du chemin mesuré, sont null.
+ * Même package que le service pour accéder à la méthode package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class IndexingThroughputBenchmark {
+
+    // Environ un PDF de 100 pages (deux segments par page)
+    private static final int SEGMENTS = 200;
+    private static final String BATCH_ID = "bench-batch-0001";
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    @Param({"20"})
+    public int embedRoundTripMs;
+
+    @Param({"2"})
+    public int storeRoundTripMs;
+
+    @Param({"100"})
+    public int perSegmentMicros;
+
+    private MultimodalIngestionService service;
+    private List<TextSegment> segments;
+
+    @Setup
+    public void setup() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmbeddingModel model = new StubEmbeddingModel(embedRoundTripMs, perSegmentMicros);
+        EmbeddingStore<TextSegment> store = new StubEmbeddingStore(storeRoundTripMs, perSegmentMicros / 10);
+
+        IngestionCheckpointStore checkpoints = BenchmarkSupport.withDefaults(new IngestionCheckpointStore(null),
+                Map.of("document.checkpoint.enabled", false));
+        NearDuplicateChunkIndex nearDuplicates = BenchmarkSupport.withDefaults(new NearDuplicateChunkIndex(null, registry,
+                        new EmbeddingEngine(EmbeddingEngine.OPENAI, 8, "text_embeddings", "image_embeddings")),
+                Map.of("document.near-duplicates.enabled", false));
+
+        service = BenchmarkSupport.withDefaults(new MultimodalIngestionService(
+                        store, store, model,
+                        null, null, null, null, null, null, null,
+                        checkpoints,
+                        new IngestionProgressService(null),
+                        BenchmarkSupport.withDefaults(new ImageStorageService(null)),
+                        null, null, null, null, null, null,
+                        new IncrementalReingestionService(null, null, registry, nearDuplicates),
+                        nearDuplicates,
+                        new IngestionMetrics(registry)),
+                Map.of("rag.embedding-batch-size", batchSize));
+    }
+
+    /**
+     * Segments neufs à chaque appel : contentHash et documentKey sont posés par la méthode mesurée
+     */
+    @Setup(Level.Invocation)
+    public void freshSegments() {
+        segments = BenchmarkSupport.segments(SEGMENTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    public int embedAndStoreInBatches() {
+        return service.embedAndStoreInBatches(segments, IngestionCheckpointStore.EmbeddingKind.TEXT, BATCH_ID);
+    }
+
+    // ========================================================================
+    // STUBS À LATENCE FIXE
+    // ========================================================================
+
+    private static void pause(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    private static final class StubEmbeddingModel implements EmbeddingModel {
+        private final long roundTripNanos;
+        private final long perSegmentNanos;
+
+        StubEmbeddingModel(int roundTripMs, int perSegmentMicros) {
+            this.roundTripNanos = TimeUnit.MILLISECONDS.toNanos(roundTripMs);
+            this.perSegmentNanos = TimeUnit.MICROSECONDS.toNanos(perSegmentMicros);
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            pause(roundTripNanos + perSegmentNanos * textSegments.size());
+            List<Embedding> embeddings = new ArrayList<>(textSegments.size());
+            for (TextSegment segment : textSegments) {
+                float[] vector = new float[8];
+                vector[Math.floorMod(segment.text().hashCode(), vector.length)] = 1f;
+                embeddings.add(Embedding.from(vector));
+            }
+            return Response.from(embeddings);
+        }
+    }
+
+    private static final class StubEmbeddingStore implements EmbeddingStore<TextSegment> {
+        private final long roundTripNanos;
+        private final long perRowNanos;
+
+        StubEmbeddingStore(int roundTripMs, int perRowMicros) {
+            this.roundTripNanos = TimeUnit.MILLISECONDS.toNanos(roundTripMs);
+            this.perRowNanos = TimeUnit.MICROSECONDS.toNanos(perRowMicros);
+        }
+
+        @Override
+        public String add(Embedding embedding) {
+            return add(embedding, null);
+        }
+
+        @Override
+        public void add(String id, Embedding embedding) {
+            pause(roundTripNanos + perRowNanos);
+        }
+
+        @Override
+        public String add(Embedding embedding, TextSegment segment) {
+            String id = UUID.randomUUID().toString();
+            add(id, embedding);
+            return id;
+        }
+
+        @Override
+        public List<String> addAll(List<Embedding> embeddings) {
+            return addAll(embeddings, null);
+        }
+
+        @Override
+        public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+            pause(roundTripNanos + perRowNanos * embeddings.size());
+            List<String> ids = new ArrayList<>(embeddings.size());
+            for (int i = 0; i < embeddings.size(); i++) {
+                ids.add(UUID.randomUUID().toString());
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+// ============================================================================
+// BENCHMARK - RagResultBenchmark.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.benchmark.BenchmarkSupport;
+import com.exemple.transactionservice.config.EmbeddingEngine;
+import com.exemple.transactionservice.config.LocalProviderConfig;
+import com.exemple.transactionservice.config.RAGConfig;
+import com.exemple.transactionservice.dto.CacheableSearchResult;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Post-traitement d'une recherche RAG (MultimodalRAGService)
+ *
+ * - convertAndBuildResult : filtrage par score, conversion et métriques (visibilité package)
+ * - buildCacheKey : clé de cache calculée à chaque appel de search() (SpEL @Cacheable)
+ *
+ * Même package que le service pour accéder aux méthodes package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RagResultBenchmark {
+
+    @Param({"10", "50"})
+    public int matches;
+
+    private MultimodalRAGService ragService;
+    private MultimodalRAGService.SearchResults searchResults;
+    private String query;
+
+    @Setup
+    public void setup() {
+        EmbeddingModel embeddingModel = new LocalProviderConfig.HashingEmbeddingModel(384, 0);
+        ragService = new MultimodalRAGService(
+                new InMemoryEmbeddingStore<>(), new InMemoryEmbeddingStore<>(), embeddingModel,
+                new EmbeddingEngine(EmbeddingEngine.OPENAI, 384, "text_embeddings", "image_embeddings"),
+                new RAGConfig());
+
+        // Scores répartis de part et d'autre du seuil par défaut (0.7)
+        List<TextSegment> segments = BenchmarkSupport.segments(matches);
+        List<EmbeddingMatch<TextSegment>> text = new ArrayList<>(matches);
+        List<EmbeddingMatch<TextSegment>> images = new ArrayList<>(matches / 5);
+        for (int i = 0; i < segments.size(); i++) {
+            TextSegment segment = segments.get(i);
+            Embedding embedding = embeddingModel.embed(segment).content();
+            String embeddingId = UUID.nameUUIDFromBytes(segment.text().getBytes(StandardCharsets.UTF_8)).toString();
+            EmbeddingMatch<TextSegment> match =
+                    new EmbeddingMatch<>(0.95 - i * (0.4 / matches), embeddingId, embedding, segment);
+            if (i % 5 == 4) {
+                images.add(match);
+            } else {
+                text.add(match);
+            }
+        }
+        searchResults = new MultimodalRAGService.SearchResults(text, images, 12, 9);
+        query = "  Quel est le   chiffre d'affaires du segment Services numériques en 2024 ?  ";
+    }
+
+    @TearDown
+    public void tearDown() {
+        ragService.shutdown();
+    }
+
+    @Benchmark
+    public CacheableSearchResult convertAndBuildResult() {
+        return ragService.convertAndBuildResult(searchResults, Instant.now());
+    }
+
+    @Benchmark
+    public String buildCacheKey() {
+        return MultimodalRAGService.buildCacheKey(query, 10, "user-42", 0.7, "v3-bench");
+    }
+}
@@ -0,0 +1,75 @@
+// ============================================================================
+// BENCHMARK - SanitizeMetadataBenchmark.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ MultimodalIngestionService.sanitizeMetadata, appelé pour chaque chunk et chaque image
+ *
+ * Métadonnées typiques d'un chunk PDF (types simples) et d'une image extraite
+ * (booléens, dates, liste convertie en chaîne). Même package que le service (méthode package-private).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SanitizeMetadataBenchmark {
+
+    private Map<String, Object> chunkMetadata;
+    private Map<String, Object> imageMetadata;
+
+    @Setup
+    public void setup() {
+        chunkMetadata = new HashMap<>();
+        chunkMetadata.put("page", 3);
+        chunkMetadata.put("totalPages", 5);
+        chunkMetadata.put("source", "rapport-annuel.pdf");
+        chunkMetadata.put("type", "pdf_page_3");
+        chunkMetadata.put("batchId", "bench-batch-0001");
+        chunkMetadata.put("uploadDate", 1_735_689_600_000L);
+        chunkMetadata.put("chunkIndex", 12);
+        chunkMetadata.put("contentHash", "9f2c4e1a7b3d5f60");
+
+        imageMetadata = new HashMap<>(chunkMetadata);
+        imageMetadata.put("imageId", UUID.fromString("3f1c9d2e-5b7a-4c1e-9a3b-2d4e6f8a0b1c"));
+        imageMetadata.put("isRenderedPage", Boolean.TRUE);
+        imageMetadata.put("width", 1240);
+        imageMetadata.put("height", 1754);
+        imageMetadata.put("scale", 1.5f);
+        imageMetadata.put("extractedAt", LocalDateTime.of(2025, 1, 15, 10, 30));
+        imageMetadata.put("modifiedAt", new Date(1_735_689_600_000L));
+        imageMetadata.put("labels", List.of("graphique", "tableau"));
+        imageMetadata.put("sizeKb", (short) 412);
+    }
+
+    @Benchmark
+    public Map<String, Object> chunk() {
+        return MultimodalIngestionService.sanitizeMetadata(chunkMetadata);
+    }
+
+    @Benchmark
+    public Map<String, Object> image() {
+        return MultimodalIngestionService.sanitizeMetadata(imageMetadata);
+    }
+}
@@ -0,0 +1,23 @@
+#!/usr/bin/env bash
+# ============================================================================
+# Test de charge - construction de l'application et du harness, puis exécution
+#
+#   loadtest/run.sh                                   # valeurs par défaut (20 utilisateurs, 60 s)
+#   loadtest/run.sh --users=100 --chat-ratio=0.9      # options transmises au LoadTestRunner
+#   loadtest/run.sh --app-url=http://localhost:8090   # instance déjà démarrée (pointée sur le stub)
+#
+# Prérequis : PostgreSQL (pgvector) et Redis locaux (docker compose up -d)
+# ============================================================================
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+cd "$ROOT"
+
+mvn -B -q -f "$ROOT/pom.xml" -pl transaction-service,loadtest -am package -DskipTests
+
+ARGS=("$@")
+if [[ " $* " != *" --upload-file="* ]] && [[ -f "$ROOT/benchmarks/src/main/resources/fixtures/rapport-annuel.pdf" ]]; then
+  ARGS+=("--upload-file=$ROOT/benchmarks/src/main/resources/fixtures/rapport-annuel.pdf")
+fi
+
+java -jar "$ROOT/loadtest/target/loadtest.jar" "${ARGS[@]}"
@@ -0,0 +1,105 @@
+// ============================================================================
+// LOADTEST - AppMetricsSampler.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Échantillonnage périodique de la JVM de l'application via /actuator/metrics
+ *
+ * Heap utilisée, threads vivants (plateforme), CPU du process et connexions Hikari actives :
+ * moyenne et maximum sur la fenêtre de mesure.
+ */
+final class AppMetricsSampler implements AutoCloseable {
+
+    private static final Map<String, String> METRICS = Map.of(
+            "heapUsedMb", "jvm.memory.used?tag=area:heap",
+            "threadsLive", "jvm.threads.live",
+            "processCpu", "process.cpu.usage",
+            "hikariActive", "hikaricp.connections.active"
+    );
+
+    private final String appUrl;
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, double[]> stats = new LinkedHashMap<>(); // {somme, max, n}
+    private ScheduledExecutorService scheduler;
+
+    AppMetricsSampler(String appUrl, HttpClient client) {
+        this.appUrl = appUrl;
+        this.client = client;
+    }
+
+    void start(long periodMs) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loadtest-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, 0, Math.max(100, periodMs), TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void reset() {
+        stats.clear();
+    }
+
+    synchronized Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        stats.forEach((name, s) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("avg", Math.round(s[0] / s[2] * 100.0) / 100.0);
+            values.put("max", Math.round(s[1] * 100.0) / 100.0);
+            values.put("samples", (long) s[2]);
+            summary.put(name, values);
+        });
+        return summary;
+    }
+
+    private void sample() {
+        METRICS.forEach((name, path) -> {
+            try {
+                HttpResponse<String> response = client.send(
+                        HttpRequest.newBuilder(URI.create(appUrl + "/actuator/metrics/" + path))
+                                .timeout(Duration.ofSeconds(2))
+                                .GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) return;
+
+                JsonNode measurements = mapper.readTree(response.body()).path("measurements");
+                double value = measurements.path(0).path("value").asDouble();
+                if ("heapUsedMb".equals(name)) value = value / (1024 * 1024);
+                if ("processCpu".equals(name)) value = value * 100;
+                add(name, value);
+            } catch (Exception e) {
+                // Métrique absente (ex. pas de Hikari) ou application saturée : échantillon ignoré
+            }
+        });
+    }
+
+    private synchronized void add(String name, double value) {
+        double[] s = stats.computeIfAbsent(name, k -> new double[3]);
+        s[0] += value;
+        s[1] = Math.max(s[1], value);
+        s[2]++;
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
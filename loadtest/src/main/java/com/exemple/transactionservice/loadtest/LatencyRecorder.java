@@ -0,0 +1,70 @@
+// ============================================================================
+// LOADTEST - LatencyRecorder.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ✅ Latences brutes (ms) d'une opération, percentiles exacts en fin de run
+ *
+ * Une mesure par opération : quelques centaines de milliers de valeurs au plus sur un run,
+ * un tableau trié suffit (pas d'histogramme approximé).
+ */
+final class LatencyRecorder {
+
+    private final String name;
+    private final LongAdder errors = new LongAdder();
+    private long[] values = new long[1024];
+    private int size;
+
+    LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long millis) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = millis;
+    }
+
+    void error() {
+        errors.increment();
+    }
+
+    synchronized void reset() {
+        size = 0;
+        errors.reset();
+    }
+
+    synchronized Map<String, Object> summary(double durationSeconds) {
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("name", name);
+        summary.put("count", size);
+        summary.put("errors", errors.sum());
+        summary.put("throughputPerSecond", round(size / Math.max(durationSeconds, 0.001)));
+        summary.put("p50Ms", percentile(sorted, 50));
+        summary.put("p90Ms", percentile(sorted, 90));
+        summary.put("p99Ms", percentile(sorted, 99));
+        summary.put("maxMs", size == 0 ? 0 : sorted[size - 1]);
+        summary.put("meanMs", size == 0 ? 0 : round(Arrays.stream(sorted).average().orElse(0)));
+        return summary;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
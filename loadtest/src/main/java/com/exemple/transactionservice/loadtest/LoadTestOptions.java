@@ -0,0 +1,90 @@
+// ============================================================================
+// LOADTEST - LoadTestOptions.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ✅ Options en ligne de commande (--cle=valeur), avec valeurs par défaut
+ *
+ * Les clés inconnues sont refusées : une faute de frappe ne doit pas fausser un dimensionnement.
+ */
+final class LoadTestOptions {
+
+    static final Map<String, String> DEFAULTS = new HashMap<>(Map.ofEntries(
+            // Application
+            Map.entry("app-url", ""),                  // vide = démarrer app-jar
+            Map.entry("app-jar", "transaction-service/target/transaction-service-0.0.1-SNAPSHOT-exec.jar"),
+            Map.entry("app-port", "18090"),
+            Map.entry("app-jvm-opts", "-Xmx1g"),
+            Map.entry("app-args", ""),
+            Map.entry("startup-timeout-s", "180"),
+
+            // Stub OpenAI
+            Map.entry("stub-port", "18099"),
+            Map.entry("stub-dimension", "1536"),
+            Map.entry("stub-embedding-latency-ms", "60"),
+            Map.entry("stub-chat-latency-ms", "400"),
+            Map.entry("stub-tokens-per-second", "60"),
+            Map.entry("stub-answer-words", "120"),
+            Map.entry("stub-vision-latency-ms", "1500"),
+            Map.entry("stub-whisper-latency-ms", "800"),
+            Map.entry("stub-jitter-ms", "100"),
+
+            // Charge
+            Map.entry("users", "20"),
+            Map.entry("chat-ratio", "0.8"),
+            Map.entry("warmup-s", "15"),
+            Map.entry("duration-s", "60"),
+            Map.entry("think-ms", "500"),
+            Map.entry("upload-file", ""),               // vide = document texte intégré
+            Map.entry("upload-wait", "true"),           // attendre la fin de l'ingestion
+            Map.entry("poll-ms", "500"),
+            Map.entry("sample-ms", "1000"),
+            Map.entry("report", "loadtest/target/loadtest-report.json")
+    ));
+
+    private final Map<String, String> values = new HashMap<>(DEFAULTS);
+
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Option attendue sous la forme --cle=valeur: " + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            if (!DEFAULTS.containsKey(key)) {
+                throw new IllegalArgumentException("Option inconnue: --" + key);
+            }
+            options.values.put(key, arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    String get(String key) {
+        return values.get(key);
+    }
+
+    int getInt(String key) {
+        return Integer.parseInt(values.get(key));
+    }
+
+    long getLong(String key) {
+        return Long.parseLong(values.get(key));
+    }
+
+    double getDouble(String key) {
+        return Double.parseDouble(values.get(key));
+    }
+
+    boolean getBoolean(String key) {
+        return Boolean.parseBoolean(values.get(key));
+    }
+
+    Map<String, String> asMap() {
+        return new TreeMap<>(values);
+    }
+}
@@ -0,0 +1,393 @@
+// ============================================================================
+// LOADTEST - LoadTestRunner.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * ✅ Test de charge de bout en bout : stub OpenAI local + application + charge mixte chat/upload
+ *
+ * 1. Démarre OpenAiStubServer (embeddings, chat SSE, Vision, Whisper ; latence et gigue configurables)
+ * 2. Démarre le jar de l'application pointé sur le stub (--openai.base-url), ou utilise --app-url
+ * 3. N utilisateurs virtuels en boucle fermée : chat SSE (/chat/stream) ou upload (+ attente d'ingestion)
+ * 4. Rapport : débit, time-to-first-token, p50/p90/p99, heap / threads / CPU de l'application (Actuator)
+ *
+ * PostgreSQL et Redis doivent tourner localement (docker compose up) : aucun accès réseau externe.
+ * Usage : java -jar loadtest/target/loadtest.jar --users=50 --duration-s=120 --chat-ratio=0.9
+ */
+public final class LoadTestRunner {
+
+    private static final String[] QUESTIONS = {
+            "Quel est le chiffre d'affaires consolidé de l'exercice ?",
+            "Résume les perspectives pour 2025.",
+            "Quelle est l'évolution de l'effectif par site ?",
+            "Que dit le rapport sur les émissions de gaz à effet de serre ?",
+            "Compare la marge opérationnelle avec l'année précédente.",
+            "Quels investissements ont été réalisés en recherche et développement ?"
+    };
+
+    private final LoadTestOptions options;
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final LatencyRecorder chatTtft = new LatencyRecorder("chat.ttft");
+    private final LatencyRecorder chatTotal = new LatencyRecorder("chat.total");
+    private final LatencyRecorder uploadAccept = new LatencyRecorder("upload.accept");
+    private final LatencyRecorder uploadIngest = new LatencyRecorder("upload.ingest");
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final AtomicInteger maxOpenStreams = new AtomicInteger();
+
+    private final byte[] uploadTemplate;
+    private final String uploadExtension;
+    private String appUrl;
+    private volatile boolean running = true;
+
+    private LoadTestRunner(LoadTestOptions options) throws IOException {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        String file = options.get("upload-file");
+        if (file.isBlank()) {
+            this.uploadTemplate = builtInDocument();
+            this.uploadExtension = "txt";
+        } else {
+            this.uploadTemplate = Files.readAllBytes(Path.of(file));
+            this.uploadExtension = file.substring(file.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        new LoadTestRunner(options).run();
+    }
+
+    // ========================================================================
+    // ORCHESTRATION
+    // ========================================================================
+
+    private void run() throws Exception {
+        Path report = Path.of(options.get("report"));
+        Files.createDirectories(report.toAbsolutePath().getParent());
+
+        Process app = null;
+        try (OpenAiStubServer stub = new OpenAiStubServer(OpenAiStubServer.Config.from(options))) {
+            stub.start();
+
+            appUrl = options.get("app-url");
+            if (appUrl.isBlank()) {
+                appUrl = "http://127.0.0.1:" + options.getInt("app-port");
+                app = startApp(stub.baseUrl(), report.toAbsolutePath().getParent().resolve("loadtest-app.log"));
+            }
+            waitForHealth(app);
+
+            try (AppMetricsSampler sampler = new AppMetricsSampler(appUrl, client)) {
+                sampler.start(options.getLong("sample-ms"));
+
+                ExecutorService users = Executors.newVirtualThreadPerTaskExecutor();
+                for (int i = 0; i < options.getInt("users"); i++) {
+                    int user = i;
+                    users.submit(() -> userLoop(user));
+                }
+
+                long warmup = options.getLong("warmup-s");
+                System.out.printf("🔥 Échauffement %d s (%d utilisateurs)...%n", warmup, options.getInt("users"));
+                TimeUnit.SECONDS.sleep(warmup);
+                Stream.of(chatTtft, chatTotal, uploadAccept, uploadIngest).forEach(LatencyRecorder::reset);
+                maxOpenStreams.set(openStreams.get());
+                sampler.reset();
+
+                long duration = options.getLong("duration-s");
+                System.out.printf("📈 Mesure %d s...%n", duration);
+                Instant start = Instant.now();
+                TimeUnit.SECONDS.sleep(duration);
+                double seconds = Duration.between(start, Instant.now()).toMillis() / 1000.0;
+
+                Map<String, Object> result = report(seconds, sampler.summary(), stub.requestCounts());
+                running = false;
+                users.shutdownNow();
+
+                print(result);
+                mapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(report.toFile(), result);
+                System.out.printf("📝 Rapport JSON: %s%n", report.toAbsolutePath());
+            }
+        } finally {
+            stopApp(app);
+        }
+    }
+
+    private Process startApp(String stubUrl, Path log) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(split(options.get("app-jvm-opts")));
+        command.add("-jar");
+        command.add(options.get("app-jar"));
+        command.add("--server.port=" + options.getInt("app-port"));
+        command.add("--openai.base-url=" + stubUrl);
+        command.add("--openai.api.key=sk-loadtest-stub");
+        command.add("--pgvector.dimension=" + options.getInt("stub-dimension"));
+        command.addAll(split(options.get("app-args")));
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        System.out.printf("🚀 Application démarrée (pid %d), logs: %s%n", process.pid(), log);
+        return process;
+    }
+
+    private void waitForHealth(Process app) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getLong("startup-timeout-s"));
+        while (System.nanoTime() < deadline) {
+            if (app != null && !app.isAlive()) {
+                throw new IllegalStateException("L'application s'est arrêtée au démarrage (code " + app.exitValue() + ")");
+            }
+            try {
+                HttpResponse<Void> response = client.send(
+                        HttpRequest.newBuilder(URI.create(appUrl + "/actuator/health"))
+                                .timeout(Duration.ofSeconds(2)).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    System.out.printf("✅ Application prête: %s%n", appUrl);
+                    return;
+                }
+            } catch (IOException e) {
+                // Pas encore à l'écoute
+            }
+            TimeUnit.SECONDS.sleep(1);
+        }
+        throw new IllegalStateException("Application non prête après " + options.get("startup-timeout-s")
+                + " s (PostgreSQL et Redis démarrés ?)");
+    }
+
+    private static void stopApp(Process app) throws InterruptedException {
+        if (app == null) return;
+        app.destroy();
+        if (!app.waitFor(20, TimeUnit.SECONDS)) {
+            app.destroyForcibly();
+        }
+    }
+
+    // ========================================================================
+    // UTILISATEURS VIRTUELS
+    // ========================================================================
+
+    private void userLoop(int user) {
+        double chatRatio = options.getDouble("chat-ratio");
+        long thinkMs = options.getLong("think-ms");
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                if (ThreadLocalRandom.current().nextDouble() < chatRatio) {
+                    chat(user);
+                } else {
+                    upload(user);
+                }
+                if (thinkMs > 0) {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(thinkMs / 2, thinkMs * 3 / 2 + 1));
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                if (running) System.err.printf("⚠️ Utilisateur %d: %s%n", user, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Session SSE : TTFT = premier événement "chunk", total = fin du flux
+     */
+    private void chat(int user) throws Exception {
+        String question = QUESTIONS[ThreadLocalRandom.current().nextInt(QUESTIONS.length)];
+        URI uri = URI.create(appUrl + "/api/assistant/chat/stream?userId=lt-user-" + user
+                + "&message=" + URLEncoder.encode(question, StandardCharsets.UTF_8));
+
+        long start = System.nanoTime();
+        openStreams.incrementAndGet();
+        maxOpenStreams.accumulateAndGet(openStreams.get(), Math::max);
+        try {
+            HttpResponse<Stream<String>> response = client.send(
+                    HttpRequest.newBuilder(uri).header("Accept", "text/event-stream").GET().build(),
+                    HttpResponse.BodyHandlers.ofLines());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                chatTotal.error();
+                return;
+            }
+
+            boolean firstChunk = true;
+            boolean failed = false;
+            String event = "";
+            try (Stream<String> lines = response.body()) {
+                for (String line : (Iterable<String>) lines::iterator) {
+                    if (line.startsWith("event:")) {
+                        event = line.substring(6).trim();
+                        failed |= "error".equals(event);
+                    } else if (line.startsWith("data:") && "chunk".equals(event) && firstChunk) {
+                        chatTtft.record(elapsedMs(start));
+                        firstChunk = false;
+                    }
+                }
+            }
+            if (failed || firstChunk) {
+                chatTotal.error();
+            } else {
+                chatTotal.record(elapsedMs(start));
+            }
+        } finally {
+            openStreams.decrementAndGet();
+        }
+    }
+
+    /**
+     * Upload d'un document unique (empreinte différente à chaque fois), puis attente de l'ingestion
+     */
+    private void upload(int user) throws Exception {
+        String marker = UUID.randomUUID().toString();
+        byte[] content = withMarker(uploadTemplate, marker);
+        String boundary = "----loadtest" + marker.replace("-", "");
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 512);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"userId\"\r\n\r\n"
+                + (100_000 + user) + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"loadtest-" + marker + "." + uploadExtension + "\"\r\n"
+                + "Content-Type: " + ("pdf".equals(uploadExtension) ? "application/pdf" : "text/plain") + "\r\n\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create(appUrl + "/api/assistant/upload"))
+                        .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            uploadAccept.error();
+            return;
+        }
+        uploadAccept.record(elapsedMs(start));
+
+        if (!options.getBoolean("upload-wait")) return;
+        String jobId = mapper.readTree(response.body()).path("jobId").asText();
+        long pollMs = options.getLong("poll-ms");
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
+        while (running && System.nanoTime() < deadline) {
+            Thread.sleep(pollMs);
+            HttpResponse<String> status = client.send(
+                    HttpRequest.newBuilder(URI.create(appUrl + "/api/assistant/upload/status/" + jobId)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (status.statusCode() != 200) continue;
+            String state = mapper.readTree(status.body()).path("status").asText().toLowerCase(Locale.ROOT);
+            if (state.equals("completed")) {
+                uploadIngest.record(elapsedMs(start));
+                return;
+            }
+            if (state.equals("failed")) {
+                uploadIngest.error();
+                return;
+            }
+        }
+    }
+
+    // ========================================================================
+    // RAPPORT
+    // ========================================================================
+
+    private Map<String, Object> report(double seconds, Map<String, Object> app, Map<String, Long> stub) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("finishedAt", Instant.now().toString());
+        result.put("durationSeconds", seconds);
+        result.put("options", options.asMap());
+        result.put("chatTtft", chatTtft.summary(seconds));
+        result.put("chatTotal", chatTotal.summary(seconds));
+        result.put("maxOpenChatStreams", maxOpenStreams.get());
+        result.put("uploadAccept", uploadAccept.summary(seconds));
+        result.put("uploadIngest", uploadIngest.summary(seconds));
+        result.put("app", app);
+        result.put("stubRequests", stub);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void print(Map<String, Object> result) {
+        System.out.println();
+        System.out.printf("%-15s %8s %7s %9s %9s %9s %9s %9s%n",
+                "Opération", "n", "erreurs", "débit/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (String key : List.of("chatTtft", "chatTotal", "uploadAccept", "uploadIngest")) {
+            Map<String, Object> s = (Map<String, Object>) result.get(key);
+            System.out.printf("%-15s %8s %7s %9s %9s %9s %9s %9s%n", s.get("name"), s.get("count"), s.get("errors"),
+                    s.get("throughputPerSecond"), s.get("p50Ms"), s.get("p90Ms"), s.get("p99Ms"), s.get("maxMs"));
+        }
+        System.out.printf("%nFlux chat ouverts simultanément (max): %s%n", result.get("maxOpenChatStreams"));
+        System.out.printf("Application (avg / max): %s%n", result.get("app"));
+        System.out.printf("Requêtes reçues par le stub: %s%n", result.get("stubRequests"));
+    }
+
+    // ========================================================================
+    // UTILITAIRES
+    // ========================================================================
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static List<String> split(String value) {
+        return value.isBlank() ? List.of() : Arrays.asList(value.trim().split("\\s+"));
+    }
+
+    /**
+     * Marqueur unique en fin de fichier : commentaire pour un PDF (après %%EOF), ligne de texte sinon
+     */
+    private static byte[] withMarker(byte[] template, String marker) {
+        byte[] suffix = ("\n% loadtest " + marker + "\n").getBytes(StandardCharsets.UTF_8);
+        byte[] content = Arrays.copyOf(template, template.length + suffix.length);
+        System.arraycopy(suffix, 0, content, template.length, suffix.length);
+        return content;
+    }
+
+    private static byte[] builtInDocument() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= 12; i++) {
+            sb.append("Section ").append(i).append(" - ").append(QUESTIONS[i % QUESTIONS.length]).append("\n\n");
+            sb.append("Le chiffre d'affaires consolidé atteint 184,6 millions d'euros, en progression de 12,4 %. ")
+              .append("La marge opérationnelle courante s'établit à 9,8 %. Les investissements s'élèvent à ")
+              .append("14,1 millions d'euros, dont 6,8 millions consacrés à la recherche et au développement. ")
+              .append("L'effectif atteint 1 412 collaborateurs répartis sur quatre sites.\n\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,324 @@
+// ============================================================================
+// LOADTEST - OpenAiStubServer.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ✅ Stub HTTP compatible OpenAI (sans réseau externe)
+ *
+ * - POST /v1/embeddings : vecteurs déterministes (hachage des mots), dimension configurable
+ * - POST /v1/chat/completions : réponse canned ; "stream": true => SSE token par token au débit configuré ;
+ *   message contenant une image (image_url) => description Vision après la latence Vision
+ * - POST /v1/audio/transcriptions : transcription canned (Whisper)
+ *
+ * Latence = base + gigue uniforme [0, jitter] ; un thread virtuel par requête (les pauses ne coûtent rien).
+ */
+final class OpenAiStubServer implements AutoCloseable {
+
+    record Config(int port, int dimension, long embeddingLatencyMs, long chatLatencyMs, double tokensPerSecond,
+                  int answerWords, long visionLatencyMs, long whisperLatencyMs, long jitterMs) {
+
+        static Config from(LoadTestOptions options) {
+            return new Config(
+                    options.getInt("stub-port"),
+                    options.getInt("stub-dimension"),
+                    options.getLong("stub-embedding-latency-ms"),
+                    options.getLong("stub-chat-latency-ms"),
+                    options.getDouble("stub-tokens-per-second"),
+                    options.getInt("stub-answer-words"),
+                    options.getLong("stub-vision-latency-ms"),
+                    options.getLong("stub-whisper-latency-ms"),
+                    options.getLong("stub-jitter-ms"));
+        }
+    }
+
+    private static final String[] WORDS = {
+            "Selon", "le", "rapport,", "le", "chiffre", "d'affaires", "progresse", "de", "12,4", "%", "grâce",
+            "aux", "services", "numériques", "et", "à", "l'intégration", "de", "la", "filiale.", "La", "marge",
+            "opérationnelle", "atteint", "9,8", "%", "et", "le", "carnet", "de", "commandes", "reste", "solide."
+    };
+
+    private final Config config;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final HttpServer server;
+
+    OpenAiStubServer(Config config) throws IOException {
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", config.port()), 1024);
+        server.setExecutor(executor);
+        server.createContext("/v1/embeddings", exchange -> handle(exchange, "embeddings", this::embeddings));
+        server.createContext("/v1/chat/completions", exchange -> handle(exchange, "chat", this::chat));
+        server.createContext("/v1/audio/transcriptions", exchange -> handle(exchange, "whisper", this::transcription));
+    }
+
+    void start() {
+        server.start();
+        System.out.printf("🧪 Stub OpenAI sur http://127.0.0.1:%d/v1 (dimension %d, %s tokens/s, gigue %d ms)%n",
+                config.port(), config.dimension(), config.tokensPerSecond(), config.jitterMs());
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + config.port() + "/v1";
+    }
+
+    /**
+     * Requêtes reçues par type (embeddings, chat, chat_stream, vision, whisper, error)
+     */
+    Map<String, Long> requestCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        requests.forEach((k, v) -> counts.put(k, v.sum()));
+        return counts;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ========================================================================
+    // ENDPOINTS
+    // ========================================================================
+
+    private interface Handler {
+        void handle(HttpExchange exchange, byte[] body) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, String name, Handler handler) throws IOException {
+        try {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            handler.handle(exchange, body);
+        } catch (Exception e) {
+            count("error");
+            System.err.printf("⚠️ Stub %s: %s%n", name, e.getMessage());
+            try {
+                exchange.sendResponseHeaders(500, -1);
+            } catch (IOException ignored) {
+                // En-têtes déjà envoyés (flux SSE interrompu)
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void embeddings(HttpExchange exchange, byte[] body) throws Exception {
+        count("embeddings");
+        JsonNode request = mapper.readTree(body);
+        JsonNode input = request.path("input");
+        int dimension = request.path("dimensions").asInt(config.dimension());
+
+        pause(config.embeddingLatencyMs());
+
+        ObjectNode response = mapper.createObjectNode();
+        response.put("object", "list");
+        ArrayNode data = response.putArray("data");
+        int tokens = 0;
+        int index = 0;
+        for (JsonNode text : input.isArray() ? input : mapper.createArrayNode().add(input)) {
+            ObjectNode item = data.addObject();
+            item.put("object", "embedding");
+            item.put("index", index++);
+            ArrayNode vector = item.putArray("embedding");
+            for (float v : embed(text.asText(), dimension)) {
+                vector.add(v);
+            }
+            tokens += Math.max(1, text.asText().length() / 4);
+        }
+        response.put("model", request.path("model").asText("text-embedding-3-small"));
+        ObjectNode usage = response.putObject("usage");
+        usage.put("prompt_tokens", tokens);
+        usage.put("total_tokens", tokens);
+
+        sendJson(exchange, response);
+    }
+
+    private void chat(HttpExchange exchange, byte[] body) throws Exception {
+        JsonNode request = mapper.readTree(body);
+        boolean vision = containsImage(request.path("messages"));
+        boolean stream = request.path("stream").asBoolean(false);
+        String model = request.path("model").asText("gpt-4o");
+        String answer = vision
+                ? "Description simulée : une page de rapport avec un histogramme à quatre barres et un tableau."
+                : answer(lastUserText(request.path("messages")));
+
+        if (!stream) {
+            count(vision ? "vision" : "chat");
+            pause(vision ? config.visionLatencyMs() : config.chatLatencyMs());
+            ObjectNode response = completion(model, "chat.completion");
+            ObjectNode choice = response.putArray("choices").addObject();
+            choice.put("index", 0);
+            ObjectNode message = choice.putObject("message");
+            message.put("role", "assistant");
+            message.put("content", answer);
+            choice.put("finish_reason", "stop");
+            usage(response, answer);
+            sendJson(exchange, response);
+            return;
+        }
+
+        count("chat_stream");
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        long intervalNanos = config.tokensPerSecond() > 0 ? (long) (1_000_000_000L / config.tokensPerSecond()) : 0;
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            pause(config.chatLatencyMs());
+            String[] tokens = answer.split(" ");
+            for (int i = 0; i < tokens.length; i++) {
+                ObjectNode chunk = completion(model, "chat.completion.chunk");
+                ObjectNode choice = chunk.putArray("choices").addObject();
+                choice.put("index", 0);
+                ObjectNode delta = choice.putObject("delta");
+                if (i == 0) delta.put("role", "assistant");
+                delta.put("content", i == 0 ? tokens[i] : " " + tokens[i]);
+                choice.putNull("finish_reason");
+                sse(out, chunk);
+                if (intervalNanos > 0 && i < tokens.length - 1) {
+                    Thread.sleep(intervalNanos / 1_000_000, (int) (intervalNanos % 1_000_000));
+                }
+            }
+
+            ObjectNode last = completion(model, "chat.completion.chunk");
+            ObjectNode choice = last.putArray("choices").addObject();
+            choice.put("index", 0);
+            choice.putObject("delta");
+            choice.put("finish_reason", "stop");
+            usage(last, answer);
+            sse(out, last);
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    private void transcription(HttpExchange exchange, byte[] body) throws Exception {
+        count("whisper");
+        pause(config.whisperLatencyMs());
+        ObjectNode response = mapper.createObjectNode();
+        response.put("text", "Quels documents parlent du budget annuel ?");
+        sendJson(exchange, response);
+    }
+
+    // ========================================================================
+    // UTILITAIRES
+    // ========================================================================
+
+    private ObjectNode completion(String model, String object) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("id", "chatcmpl-" + UUID.randomUUID());
+        node.put("object", object);
+        node.put("created", System.currentTimeMillis() / 1000);
+        node.put("model", model);
+        return node;
+    }
+
+    private static void usage(ObjectNode node, String answer) {
+        int completion = answer.split(" ").length;
+        ObjectNode usage = node.putObject("usage");
+        usage.put("prompt_tokens", 500);
+        usage.put("completion_tokens", completion);
+        usage.put("total_tokens", 500 + completion);
+    }
+
+    private void sse(OutputStream out, JsonNode chunk) throws IOException {
+        out.write(("data: " + mapper.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void sendJson(HttpExchange exchange, JsonNode response) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String answer(String question) {
+        StringBuilder sb = new StringBuilder();
+        int seed = Math.floorMod(question.hashCode(), WORDS.length);
+        for (int i = 0; i < config.answerWords(); i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[(seed + i) % WORDS.length]);
+        }
+        return sb.toString();
+    }
+
+    private static boolean containsImage(JsonNode messages) {
+        for (JsonNode message : messages) {
+            for (JsonNode part : message.path("content")) {
+                if ("image_url".equals(part.path("type").asText())) return true;
+            }
+        }
+        return false;
+    }
+
+    private static String lastUserText(JsonNode messages) {
+        String text = "";
+        for (JsonNode message : messages) {
+            if ("user".equals(message.path("role").asText())) {
+                JsonNode content = message.path("content");
+                text = content.isTextual() ? content.asText() : content.toString();
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Hachage signé des mots (même principe que le profil 'local'), normalisé L2
+     */
+    private static float[] embed(String text, int dimension) {
+        float[] vector = new float[dimension];
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            long h = word.hashCode() * 0x9E3779B97F4A7C15L;
+            vector[(int) Math.floorMod(h, (long) dimension)] += (h >>> 63) == 0 ? 1f : -1f;
+        }
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        if (norm == 0) {
+            vector[0] = 1f;
+            return vector;
+        }
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < dimension; i++) vector[i] = (float) (vector[i] / norm);
+        return vector;
+    }
+
+    private void pause(long baseMs) throws InterruptedException {
+        long jitter = config.jitterMs() > 0 ? ThreadLocalRandom.current().nextLong(config.jitterMs() + 1) : 0;
+        long millis = Math.max(0, baseMs) + jitter;
+        if (millis > 0) Thread.sleep(millis);
+    }
+
+    private void count(String name) {
+        requests.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+}
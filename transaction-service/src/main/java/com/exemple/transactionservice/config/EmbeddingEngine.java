@@ -0,0 +1,56 @@
+// ============================================================================
+// CONFIGURATION - EmbeddingEngine.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.config;
+
+/**
+ * ✅ Moteur d'embedding actif et ses tables PgVector
+ *
+ * Chaque moteur a sa dimension et ses propres tables (text_embeddings / image_embeddings pour
+ * OpenAI, suffixées pour MiniLM) : les deux index coexistent dans la même base et l'on bascule
+ * par embedding.engine sans purge ni ré-ingestion du moteur précédent.
+ *
+ * Les noms de tables sont concaténés dans le SQL des services (suppression, ré-ingestion,
+ * quasi-doublons) : ils sont validés à la construction.
+ */
+public record EmbeddingEngine(String name, int dimension, String textTable, String imageTable) {
+
+    public static final String OPENAI = "openai";
+    public static final String MINILM = "minilm";
+
+    private static final String TABLE_NAME_PATTERN = "[a-z_][a-z0-9_]{0,62}";
+
+    public EmbeddingEngine {
+        if (!OPENAI.equals(name) && !MINILM.equals(name)) {
+            throw new IllegalStateException(
+                    "❌ Moteur d'embedding inconnu: '" + name + "' (valeurs: " + OPENAI + ", " + MINILM + ")");
+        }
+        if (dimension <= 0) {
+            throw new IllegalStateException("❌ Dimension d'embedding invalide pour '" + name + "': " + dimension);
+        }
+        for (String table : new String[]{textTable, imageTable}) {
+            if (table == null || !table.matches(TABLE_NAME_PATTERN)) {
+                throw new IllegalStateException("❌ Nom de table PgVector invalide pour '" + name + "': " + table);
+            }
+        }
+        if (textTable.equals(imageTable)) {
+            throw new IllegalStateException("❌ Tables texte et image identiques pour '" + name + "': " + textTable);
+        }
+    }
+
+    /**
+     * Nom propre au moteur pour les tables et clés dérivées des embeddings (signatures MinHash,
+     * liens de quasi-doublons, fingerprints d'upload) : inchangé pour openai (données existantes),
+     * suffixé par le nom du moteur sinon
+     */
+    public String qualify(String base) {
+        return OPENAI.equals(name) ? base : base + "_" + name;
+    }
+
+    /**
+     * Modèle exécuté dans la JVM (aucun appel réseau par chunk ni par requête)
+     */
+    public boolean isLocal() {
+        return MINILM.equals(name);
+    }
+}
@@ -0,0 +1,85 @@
+// ============================================================================
+// CONFIGURATION - EmbeddingEngineConfig.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.config;
+
+import com.exemple.transactionservice.service.MiniLmEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * ✅ Sélection du moteur d'embedding (embedding.engine)
+ *
+ * - openai : OpenAiEmbeddingModel (PgVectorConfig), ou modèle par hachage du profil 'local'
+ * - minilm : all-MiniLM-L6-v2 en ONNX dans la JVM (384 dimensions), pool dédié et micro-lots
+ *
+ * Dimension et tables PgVector sont portées par le moteur (embedding.openai.*, embedding.minilm.*).
+ */
+@Slf4j
+@Configuration
+public class EmbeddingEngineConfig {
+
+    @Value("${embedding.engine:openai}")
+    private String engine;
+
+    @Value("${embedding.openai.dimension:${pgvector.dimension:1536}}")
+    private int openAiDimension;
+
+    @Value("${embedding.openai.text-table:text_embeddings}")
+    private String openAiTextTable;
+
+    @Value("${embedding.openai.image-table:image_embeddings}")
+    private String openAiImageTable;
+
+    @Value("${embedding.minilm.text-table:text_embeddings_minilm}")
+    private String miniLmTextTable;
+
+    @Value("${embedding.minilm.image-table:image_embeddings_minilm}")
+    private String miniLmImageTable;
+
+    @Value("${embedding.minilm.threads:0}")
+    private int miniLmThreads;
+
+    @Value("${embedding.minilm.batch-size:16}")
+    private int miniLmBatchSize;
+
+    // ========================================================================
+    // BEAN 1 : MOTEUR ACTIF
+    // ========================================================================
+
+    @Bean
+    public EmbeddingEngine embeddingEngine() {
+        EmbeddingEngine selected = EmbeddingEngine.MINILM.equals(engine)
+                ? new EmbeddingEngine(EmbeddingEngine.MINILM, MiniLmEmbeddingModel.DIMENSION, miniLmTextTable, miniLmImageTable)
+                : new EmbeddingEngine(engine, openAiDimension, openAiTextTable, openAiImageTable);
+
+        log.info("🧭 Moteur d'embedding: {} - dimension: {}, tables: {} / {}",
+                selected.name(), selected.dimension(), selected.textTable(), selected.imageTable());
+        return selected;
+    }
+
+    // ========================================================================
+    // BEAN 2 : EMBEDDING MODEL (MiniLM ONNX)
+    // ========================================================================
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "embedding.engine", havingValue = EmbeddingEngine.MINILM)
+    public EmbeddingModel embeddingModel(MeterRegistry meterRegistry) {
+        // 0 = un thread par cœur moins un, laissé aux threads HTTP et d'ingestion
+        int threads = miniLmThreads > 0
+                ? miniLmThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+        log.info("🧠 Création du bean EmbeddingModel (MiniLM ONNX)");
+        log.info("   - Dimension: {}", MiniLmEmbeddingModel.DIMENSION);
+        log.info("   - Threads: {}", threads);
+        log.info("   - Micro-lots: {}", miniLmBatchSize);
+
+        return new MiniLmEmbeddingModel(threads, miniLmBatchSize, meterRegistry);
+    }
+}
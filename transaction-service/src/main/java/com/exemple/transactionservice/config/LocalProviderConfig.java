@@ -0,0 +1,426 @@
+// ============================================================================
+// CONFIGURATION - LocalProviderConfig.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.config;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.ImageContent;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * ✅ Profil 'local' : fournisseurs déterministes hors ligne (aucun appel OpenAI)
+ *
+ * - EmbeddingModel par hachage (mots + bigrammes -> dimension du moteur openai, normalisé L2) :
+ *   deux textes qui partagent des mots restent proches, même texte = même vecteur
+ *   (embedding.engine=minilm : le vrai modèle ONNX local est utilisé, voir EmbeddingEngineConfig)
+ * - ChatLanguageModel : réponse canned, description Vision canned si le message contient une image
+ * - StreamingChatLanguageModel : débit (tokens/s) et latence du premier token configurables
+ * - EmbeddingStore en mémoire si local.embedding-store=memory (PgVector sinon)
+ *
+ * Usage : --spring.profiles.active=local (voir application-local.yml).
+ * Les fonctions SQL (suppression, ré-ingestion incrémentale, quasi-doublons, file de jobs)
+ * restent adossées à PostgreSQL.
+ */
+@Slf4j
+@Configuration
+@Profile("local")
+public class LocalProviderConfig {
+
+    @Value("${local.embedding.latency-ms:0}")
+    private long embeddingLatencyMs;
+
+    @Value("${local.chat.tokens-per-second:40}")
+    private double tokensPerSecond;
+
+    @Value("${local.chat.first-token-latency-ms:300}")
+    private long firstTokenLatencyMs;
+
+    @Value("${local.chat.answer-words:60}")
+    private int answerWords;
+
+    @Value("${local.chat.stream-threads:2}")
+    private int streamThreads;
+
+    @Value("${local.vision.latency-ms:0}")
+    private long visionLatencyMs;
+
+    // ========================================================================
+    // BEAN 1 : EMBEDDING MODEL (hachage déterministe)
+    // ========================================================================
+
+    @Bean
+    @ConditionalOnProperty(name = "embedding.engine", havingValue = EmbeddingEngine.OPENAI, matchIfMissing = true)
+    public EmbeddingModel embeddingModel(EmbeddingEngine engine) {
+        log.info("🧠 [Local] EmbeddingModel déterministe - dimension: {}, latence: {}ms",
+                engine.dimension(), embeddingLatencyMs);
+        return new HashingEmbeddingModel(engine.dimension(), embeddingLatencyMs);
+    }
+
+    // ========================================================================
+    // BEAN 2 : CHAT MODEL + VISION (réponses canned)
+    // ========================================================================
+
+    @Bean
+    public ChatLanguageModel chatModel() {
+        log.info("🤖 [Local] ChatLanguageModel canned - latence Vision: {}ms", visionLatencyMs);
+        return new CannedChatModel(answerWords, visionLatencyMs);
+    }
+
+    // ========================================================================
+    // BEAN 3 : STREAMING CHAT MODEL (débit simulé)
+    // ========================================================================
+
+    @Bean
+    public StreamingChatLanguageModel streamingChatModel() {
+        log.info("🌊 [Local] StreamingChatLanguageModel - {} tokens/s, premier token à {}ms",
+                tokensPerSecond, firstTokenLatencyMs);
+        return new PacedStreamingChatModel(answerWords, tokensPerSecond, firstTokenLatencyMs, streamThreads);
+    }
+
+    // ========================================================================
+    // BEANS 4-5 : EMBEDDING STORES EN MÉMOIRE (local.embedding-store=memory)
+    // ========================================================================
+
+    @Bean(name = "textEmbeddingStore")
+    @ConditionalOnProperty(name = "local.embedding-store", havingValue = "memory")
+    public EmbeddingStore<TextSegment> textEmbeddingStore() {
+        log.info("📚 [Local] textEmbeddingStore en mémoire (non persistant)");
+        return new InMemoryEmbeddingStore<>();
+    }
+
+    @Bean(name = "imageEmbeddingStore")
+    @ConditionalOnProperty(name = "local.embedding-store", havingValue = "memory")
+    public EmbeddingStore<TextSegment> imageEmbeddingStore() {
+        log.info("🖼️ [Local] imageEmbeddingStore en mémoire (non persistant)");
+        return new InMemoryEmbeddingStore<>();
+    }
+
+    // ========================================================================
+    // IMPLÉMENTATIONS
+    // ========================================================================
+
+    /**
+     * ✅ Embedding par hachage signé (feature hashing) des mots et bigrammes, normalisé L2
+     */
+    public static class HashingEmbeddingModel implements EmbeddingModel {
+
+        private final int dimension;
+        private final long latencyMs;
+
+        public HashingEmbeddingModel(int dimension, long latencyMs) {
+            if (dimension <= 0) {
+                throw new IllegalArgumentException("Dimension d'embedding invalide: " + dimension);
+            }
+            this.dimension = dimension;
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+            pause(latencyMs);
+            List<Embedding> embeddings = new ArrayList<>(segments.size());
+            for (TextSegment segment : segments) {
+                embeddings.add(Embedding.from(vectorOf(segment.text())));
+            }
+            return Response.from(embeddings);
+        }
+
+        @Override
+        public int dimension() {
+            return dimension;
+        }
+
+        float[] vectorOf(String text) {
+            float[] vector = new float[dimension];
+            String[] words = words(text);
+            for (int i = 0; i < words.length; i++) {
+                add(vector, hash(words[i]), 1.0f);
+                if (i > 0) {
+                    add(vector, hash(words[i - 1] + ' ' + words[i]), 0.5f);
+                }
+            }
+            if (words.length == 0) {
+                add(vector, hash(text == null ? "" : text), 1.0f);
+            }
+
+            double norm = 0;
+            for (float v : vector) norm += v * v;
+            norm = Math.sqrt(norm);
+            if (norm > 0) {
+                for (int i = 0; i < vector.length; i++) vector[i] = (float) (vector[i] / norm);
+            }
+            return vector;
+        }
+
+        private void add(float[] vector, long hash, float weight) {
+            int index = (int) Math.floorMod(hash, (long) dimension);
+            // Bit de poids fort indépendant de l'index : signe pseudo-aléatoire
+            vector[index] += (hash >>> 63) == 0 ? weight : -weight;
+        }
+    }
+
+    /**
+     * ✅ Chat canned : description Vision si une image est jointe, sinon réponse qui cite la question
+     */
+    public static class CannedChatModel implements ChatLanguageModel {
+
+        private final int answerWords;
+        private final long visionLatencyMs;
+
+        public CannedChatModel(int answerWords, long visionLatencyMs) {
+            this.answerWords = answerWords;
+            this.visionLatencyMs = visionLatencyMs;
+        }
+
+        @Override
+        public ChatResponse doChat(ChatRequest request) {
+            return ChatResponse.builder()
+                    .aiMessage(AiMessage.from(respond(request.messages())))
+                    .build();
+        }
+
+        /**
+         * Méthode abstraite (dépréciée, à retirer) de l'API 1.0.0-beta1 : simple renvoi vers doChat
+         */
+        @Override
+        @Deprecated
+        @SuppressWarnings("removal")
+        public Response<AiMessage> generate(List<ChatMessage> messages) {
+            return Response.from(doChat(ChatRequest.builder().messages(messages).build()).aiMessage());
+        }
+
+        private String respond(List<ChatMessage> messages) {
+            ImageContent image = lastImage(messages);
+            if (image != null) {
+                pause(visionLatencyMs);
+                return describe(image);
+            }
+            return answer(lastUserText(messages), answerWords);
+        }
+
+        private static String describe(ImageContent image) {
+            String data = image.image().base64Data();
+            String mime = image.image().mimeType();
+            long fingerprint = hash(data == null ? String.valueOf(image.image().url()) : data);
+            return String.format(Locale.ROOT,
+                    "Description locale simulée d'une image %s (%d caractères base64, empreinte %016x). " +
+                    "L'image contient un document avec du texte, un graphique et un tableau de valeurs.",
+                    mime == null ? "inconnue" : mime,
+                    data == null ? 0 : data.length(),
+                    fingerprint);
+        }
+    }
+
+    /**
+     * ✅ Streaming simulé : un token par mot, au rythme configuré, sur un ordonnanceur partagé
+     * (aucun thread bloqué par flux, adapté aux tests de charge)
+     */
+    public static class PacedStreamingChatModel implements StreamingChatLanguageModel, AutoCloseable {
+
+        private final int answerWords;
+        private final long tokenIntervalNanos;
+        private final long firstTokenLatencyMs;
+        private final ScheduledExecutorService scheduler;
+
+        public PacedStreamingChatModel(int answerWords, double tokensPerSecond,
+                                       long firstTokenLatencyMs, int threads) {
+            this.answerWords = answerWords;
+            this.tokenIntervalNanos = tokensPerSecond > 0 ? (long) (1_000_000_000L / tokensPerSecond) : 0;
+            this.firstTokenLatencyMs = Math.max(0, firstTokenLatencyMs);
+
+            AtomicInteger idx = new AtomicInteger(0);
+            this.scheduler = Executors.newScheduledThreadPool(Math.max(1, threads), r -> {
+                Thread t = new Thread(r);
+                t.setName("local-llm-stream-" + idx.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        @Override
+        public void doChat(ChatRequest request, StreamingChatResponseHandler handler) {
+            String text = answer(lastUserText(request.messages()), answerWords);
+            emit(tokens(text).iterator(), TimeUnit.MILLISECONDS.toNanos(firstTokenLatencyMs),
+                    handler::onPartialResponse,
+                    () -> handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from(text)).build()),
+                    handler::onError);
+        }
+
+        /**
+         * Méthode abstraite (dépréciée, à retirer) de l'API 1.0.0-beta1 : simple renvoi vers doChat
+         */
+        @Override
+        @Deprecated
+        @SuppressWarnings("removal")
+        public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+            doChat(ChatRequest.builder().messages(messages).build(), new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    handler.onNext(partialResponse);
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse response) {
+                    handler.onComplete(Response.from(response.aiMessage()));
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    handler.onError(error);
+                }
+            });
+        }
+
+        private void emit(Iterator<String> tokens, long delayNanos,
+                          Consumer<String> onToken,
+                          Runnable onComplete,
+                          Consumer<Throwable> onError) {
+            scheduler.schedule(() -> {
+                try {
+                    if (!tokens.hasNext()) {
+                        onComplete.run();
+                        return;
+                    }
+                    onToken.accept(tokens.next());
+                    emit(tokens, tokenIntervalNanos, onToken, onComplete, onError);
+                } catch (Exception e) {
+                    onError.accept(e);
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void close() {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // ========================================================================
+    // UTILITAIRES
+    // ========================================================================
+
+    /**
+     * Réponse déterministe : reprend la question puis complète jusqu'à answerWords mots
+     */
+    static String answer(String question, int answerWords) {
+        String subject = question == null ? "" : question.strip().replaceAll("\\s+", " ");
+        if (subject.length() > 120) {
+            subject = subject.substring(0, 120) + "...";
+        }
+        StringBuilder sb = new StringBuilder("Réponse locale simulée à : « ").append(subject).append(" ».");
+        int seed = (int) (hash(subject) & 0x7fffffff);
+        int words = sb.toString().split(" ").length;
+        for (int i = 0; words < answerWords; i++, words++) {
+            sb.append(' ').append(FILLER[(seed + i) % FILLER.length]);
+        }
+        return sb.toString();
+    }
+
+    private static final String[] FILLER = {
+            "le", "document", "indique", "que", "les", "résultats", "sont", "présentés", "dans", "la",
+            "section", "suivante", "avec", "un", "résumé", "des", "points", "clés", "et", "leurs", "sources."
+    };
+
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        String[] words = text.split(" ");
+        for (int i = 0; i < words.length; i++) {
+            tokens.add(i == 0 ? words[i] : " " + words[i]);
+        }
+        return tokens;
+    }
+
+    static String lastUserText(List<ChatMessage> messages) {
+        if (messages == null) return "";
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage user) {
+                StringBuilder sb = new StringBuilder();
+                for (Content content : user.contents()) {
+                    if (content instanceof TextContent text) {
+                        sb.append(text.text()).append(' ');
+                    }
+                }
+                return sb.toString();
+            }
+        }
+        return "";
+    }
+
+    static ImageContent lastImage(List<ChatMessage> messages) {
+        if (messages == null) return null;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage user) {
+                for (Content content : user.contents()) {
+                    if (content instanceof ImageContent image) {
+                        return image;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    static String[] words(String text) {
+        if (text == null || text.isBlank()) return new String[0];
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(w -> !w.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * FNV-1a 64 bits puis mélange final (splitmix64) : bits de poids fort bien répartis
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -14,11 +14,14 @@ import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
 
 import jakarta.annotation.PostConstruct;
 import java.sql.Connection;
@@ -64,6 +67,10 @@ public class PgVectorConfig {
     
     @Value("${openai.api.key}")
     private String openAiKey;
+
+    // Point d'accès compatible OpenAI (stub local des tests de charge, proxy d'entreprise)
+    @Value("${openai.base-url:https://api.openai.com/v1}")
+    private String openAiBaseUrl;
     
     @Value("${openai.embedding.model:text-embedding-3-small}")
     private String embeddingModelName;
@@ -89,6 +96,12 @@ public class PgVectorConfig {
     @Value("${openai.log.responses:false}")
     private boolean logResponses;
 
+    private final Environment environment;
+
+    public PgVectorConfig(Environment environment) {
+        this.environment = environment;
+    }
+
     // ========================================================================
     // VALIDATION POST-CONSTRUCTION
     // ========================================================================
@@ -97,8 +110,12 @@ public class PgVectorConfig {
     public void validateConfiguration() {
         log.info("🔧 Validation de la configuration PgVector et OpenAI...");
         
-        // Validation OpenAI
-        validateOpenAiConfiguration();
+        // Validation OpenAI (fournisseurs factices du profil 'local' : LocalProviderConfig)
+        if (environment.acceptsProfiles(Profiles.of("local"))) {
+            log.info("🧪 Profil 'local' : modèles OpenAI remplacés par des implémentations déterministes");
+        } else {
+            validateOpenAiConfiguration();
+        }
         
         // Validation PgVector
         validatePgVectorConfiguration();
@@ -124,6 +141,7 @@ public class PgVectorConfig {
         // Masquage de la clé dans les logs
         String maskedKey = maskApiKey(openAiKey);
         log.info("✅ OpenAI API Key configurée: {}", maskedKey);
+        log.info("   - Base URL: {}", openAiBaseUrl);
         log.info("   - Embedding Model: {}", embeddingModelName);
         log.info("   - Chat Model: {}", chatModelName);
         log.info("   - Dimension: {}", embeddingDimension);
@@ -198,8 +216,11 @@ public class PgVectorConfig {
     /**
      * Modèle d'embedding OpenAI avec configuration avancée
      * Dimensions: text-embedding-3-small = 1536, text-embedding-3-large = 3072
+     * (embedding.engine=minilm : modèle ONNX local d'EmbeddingEngineConfig)
      */
     @Bean
+    @Profile("!local")
+    @ConditionalOnProperty(name = "embedding.engine", havingValue = EmbeddingEngine.OPENAI, matchIfMissing = true)
     public EmbeddingModel embeddingModel() {
         log.info("🧠 Création du bean EmbeddingModel");
         log.info("   - Model: {}", embeddingModelName);
@@ -208,6 +229,7 @@ public class PgVectorConfig {
         log.info("   - Max Retries: {}", maxRetries);
         
         return OpenAiEmbeddingModel.builder()
+                .baseUrl(openAiBaseUrl)
                 .apiKey(openAiKey)
                 .modelName(embeddingModelName)
                 .timeout(Duration.ofSeconds(timeoutSeconds))
@@ -223,13 +245,16 @@ public class PgVectorConfig {
     
     /**
      * Store d'embeddings pour les documents texte
+     * (local.embedding-store=memory : store en mémoire de LocalProviderConfig)
      */
     @Bean(name = "textEmbeddingStore")
-    public EmbeddingStore<TextSegment> textEmbeddingStore() {
+    @ConditionalOnProperty(name = "local.embedding-store", havingValue = "pgvector", matchIfMissing = true)
+    public EmbeddingStore<TextSegment> textEmbeddingStore(EmbeddingEngine engine) {
         log.info("📚 Création du bean textEmbeddingStore (PgVector)");
         
         return createPgVectorStore(
-            "text_embeddings",
+            engine.textTable(),
+            engine.dimension(),
             "Store pour les documents texte (PDF, DOCX, TXT, etc.)"
         );
     }
@@ -242,22 +267,25 @@ public class PgVectorConfig {
      * Store d'embeddings pour les descriptions d'images générées par Vision AI
      */
     @Bean(name = "imageEmbeddingStore")
-    public EmbeddingStore<TextSegment> imageEmbeddingStore() {
+    @ConditionalOnProperty(name = "local.embedding-store", havingValue = "pgvector", matchIfMissing = true)
+    public EmbeddingStore<TextSegment> imageEmbeddingStore(EmbeddingEngine engine) {
         log.info("🖼️ Création du bean imageEmbeddingStore (PgVector)");
         
         return createPgVectorStore(
-            "image_embeddings",
+            engine.imageTable(),
+            engine.dimension(),
             "Store pour les descriptions d'images Vision AI"
         );
     }
     
     /**
      * Méthode utilitaire pour créer un PgVectorEmbeddingStore configuré
+     * (table et dimension du moteur d'embedding actif, voir EmbeddingEngine)
      */
-    private EmbeddingStore<TextSegment> createPgVectorStore(String tableName, String description) {
+    private EmbeddingStore<TextSegment> createPgVectorStore(String tableName, int dimension, String description) {
         log.info("   - Table: {}", tableName);
         log.info("   - Description: {}", description);
-        log.info("   - Dimension: {}", embeddingDimension);
+        log.info("   - Dimension: {}", dimension);
         
         try {
             // Option alternative : utiliser directement return sans variable intermédiaire
@@ -268,7 +296,7 @@ public class PgVectorConfig {
                     .user(user)
                     .password(password)
                     .table(tableName)
-                    .dimension(embeddingDimension)
+                    .dimension(dimension)
                     .createTable(true)
                     .dropTableFirst(false)
                     .build();
@@ -292,6 +320,7 @@ public class PgVectorConfig {
      * Modèle de chat classique pour Vision AI et génération de réponses
      */
     @Bean
+    @Profile("!local")
     public ChatLanguageModel chatModel() {
         log.info("🤖 Création du bean ChatLanguageModel");
         log.info("   - Model: {}", chatModelName);
@@ -301,6 +330,7 @@ public class PgVectorConfig {
         log.info("   - Max Retries: {}", maxRetries);
         
         return OpenAiChatModel.builder()
+                .baseUrl(openAiBaseUrl)
                 .apiKey(openAiKey)
                 .modelName(chatModelName)
                 .temperature(temperature)
@@ -320,6 +350,7 @@ public class PgVectorConfig {
      * Modèle de chat en streaming pour les réponses en temps réel (SSE)
      */
     @Bean
+    @Profile("!local")
     public StreamingChatLanguageModel streamingChatModel() {
         log.info("🌊 Création du bean StreamingChatLanguageModel");
         log.info("   - Model: {}", chatModelName);
@@ -328,6 +359,7 @@ public class PgVectorConfig {
         log.info("   - Timeout: {}s", timeoutSeconds);
         
         return OpenAiStreamingChatModel.builder()
+                .baseUrl(openAiBaseUrl)
                 .apiKey(openAiKey)
                 .modelName(chatModelName)
                 .temperature(temperature)
@@ -346,7 +378,7 @@ public class PgVectorConfig {
      * Health check pour PgVector et OpenAI
      */
     @Bean
-    public HealthIndicator pgVectorHealthIndicator() {
+    public HealthIndicator pgVectorHealthIndicator(EmbeddingEngine engine) {
         return () -> {
             try {
                 // Test de connexion PgVector
@@ -362,7 +394,8 @@ public class PgVectorConfig {
                             .withDetail("pgvector.database", database)
                             .withDetail("pgvector.status", "connected")
                             .withDetail("openai.configured", openAiKey != null)
-                            .withDetail("embedding.dimension", embeddingDimension)
+                            .withDetail("embedding.engine", engine.name())
+                            .withDetail("embedding.dimension", engine.dimension())
                             .build();
                     } else {
                         return Health.down()
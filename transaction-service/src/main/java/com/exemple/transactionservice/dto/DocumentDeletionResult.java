@@ -0,0 +1,35 @@
+// ============================================================================
+// DTO - DocumentDeletionResult.java
+// ============================================================================
+package com.exemple.transactionservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Résultat d'une suppression d'embeddings par filtre de métadonnées")
+public class DocumentDeletionResult {
+
+    @Schema(description = "Lignes supprimées de text_embeddings")
+    private long textDeleted;
+
+    @Schema(description = "Lignes supprimées de image_embeddings")
+    private long imageDeleted;
+
+    @Schema(description = "Fichiers images supprimés du disque")
+    private int filesDeleted;
+
+    @Schema(description = "Batchs entièrement supprimés (images disque et checkpoints nettoyés)")
+    private List<String> batches;
+
+    @Schema(description = "Durée de la suppression (ms)")
+    private long durationMs;
+}
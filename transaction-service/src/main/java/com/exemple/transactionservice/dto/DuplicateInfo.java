@@ -14,4 +14,6 @@ public class DuplicateInfo {
     private LocalDateTime uploadedAt;
     private String fingerprint;
     private Long fileSize;
+    private String batchId;     // Batch du document indexé (contenu déjà disponible pour la recherche)
+    private boolean indexed;    // false : ingestion encore en cours
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+// ============================================================================
+// DTO - IngestionProgressEvent.java
+// ============================================================================
+package com.exemple.transactionservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Événement de progression d'une ingestion (SSE)")
+public class IngestionProgressEvent {
+
+    @Schema(description = "ID du job d'upload")
+    private String jobId;
+
+    @Schema(description = "Statut: pending, processing, completed, failed")
+    private String status;
+
+    @Schema(description = "Étape courante: queued, parsing, images, indexing, finalizing, done")
+    private String stage;
+
+    @Schema(description = "Progression globale (0-100)")
+    private int progress;
+
+    @Schema(description = "Pages analysées")
+    private int pagesParsed;
+
+    @Schema(description = "Nombre total de pages (0 si non paginé)")
+    private int pagesTotal;
+
+    @Schema(description = "Images décrites par Vision")
+    private int imagesAnalysed;
+
+    @Schema(description = "Segments embeddés et indexés")
+    private int segmentsEmbedded;
+
+    @Schema(description = "Octets traités (prorata des pages, ou octets lus pour un CSV)")
+    private long bytesProcessed;
+
+    @Schema(description = "Taille du fichier")
+    private long bytesTotal;
+
+    @Schema(description = "Temps restant estimé (secondes), null si inconnu")
+    private Long etaSeconds;
+
+    @Schema(description = "Message lisible")
+    private String message;
+
+    @Schema(description = "Ré-ingestion d'un document existant : segments ajoutés / conservés / supprimés")
+    private ReingestionDiff changes;
+
+    @Schema(description = "Timestamp")
+    private Instant timestamp;
+
+    public boolean isTerminal() {
+        return "completed".equals(status) || "failed".equals(status);
+    }
+}
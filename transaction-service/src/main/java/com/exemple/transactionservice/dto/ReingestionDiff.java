@@ -0,0 +1,45 @@
+// ============================================================================
+// DTO - ReingestionDiff.java
+// ============================================================================
+package com.exemple.transactionservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Différentiel d'une ré-ingestion : segments ajoutés, conservés (embedding réutilisé) et supprimés")
+public class ReingestionDiff {
+
+    @Schema(description = "Document (nom du fichier d'origine)")
+    private String document;
+
+    @Schema(description = "Batch de la nouvelle version")
+    private String batchId;
+
+    @Schema(description = "Segments texte nouveaux ou modifiés (embeddés)")
+    private int textAdded;
+
+    @Schema(description = "Segments texte inchangés (embedding existant conservé)")
+    private int textKept;
+
+    @Schema(description = "Segments texte de l'ancienne version supprimés")
+    private long textRemoved;
+
+    @Schema(description = "Images nouvelles ou modifiées (Vision + embedding)")
+    private int imageAdded;
+
+    @Schema(description = "Images inchangées (ni Vision ni embedding)")
+    private int imageKept;
+
+    @Schema(description = "Images de l'ancienne version supprimées")
+    private long imageRemoved;
+
+    @Schema(description = "Une version précédente du document existait")
+    private boolean previousVersion;
+}
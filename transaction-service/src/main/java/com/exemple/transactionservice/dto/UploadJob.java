@@ -8,18 +8,23 @@ public class UploadJob {
     private final String jobId;
     private final String filename;
     private final long fileSize;
+    private Long userId;
+    private String fingerprint;
+    private String batchId;
     private UploadStatus status = UploadStatus.PENDING;
     private int progress = 0;
+    private int attempts = 0;
     private String errorMessage;
-    private final Instant createdAt = Instant.now();
+    private Instant createdAt = Instant.now();
+    private Instant startedAt;
     private Instant completedAt;
-    
+
     public UploadJob(String jobId, String filename, long fileSize) {
         this.jobId = jobId;
         this.filename = filename;
         this.fileSize = fileSize;
     }
-    
+
     public String getMessage() {
         return switch (status) {
             case PENDING -> "Upload en attente...";
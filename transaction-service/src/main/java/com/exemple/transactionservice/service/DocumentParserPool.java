@@ -0,0 +1,400 @@
+// ============================================================================
+// SERVICE - DocumentParserPool.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * ✅ Pool de parsing partagé (PDFBox, POI, Tika, ImageIO) pour tous les formats d'ingestion
+ *
+ * - Threads et file d'attente bornés : un document pathologique occupe au plus un thread,
+ *   et le pool entier ne peut jamais dépasser document.parser.threads
+ * - Timeout par format ; à l'expiration : interruption + drapeau d'annulation vérifié
+ *   par les boucles de parsing (Cancellation.check())
+ * - Un résultat AutoCloseable produit après abandon est fermé (pas de PDDocument orphelin) ;
+ *   ParseTimeoutException.taskExit() signale la sortie de la tâche abandonnée (fermeture différée
+ *   des ressources qu'elle utilise encore)
+ * - stream() : le parseur produit dans une file bornée, l'appelant consomme (embedding)
+ *   en parallèle ; le timeout s'applique alors à l'absence de progression du parseur
+ *
+ * Métriques : document.parse.duration{format,outcome}, document.parser.queue.depth,
+ * document.parser.active, document.parser.stuck (tâches annulées encore en cours).
+ */
+@Slf4j
+@Service
+public class DocumentParserPool {
+
+    public enum Format { PDF, PDF_PAGE, DOCX, XLSX, OFFICE, TIKA, TEXT, CSV, IMAGE }
+
+    @Value("${document.parser.threads:4}")
+    private int threads;
+
+    @Value("${document.parser.queue-capacity:32}")
+    private int queueCapacity;
+
+    // Attente max d'un thread libre avant de refuser le document
+    @Value("${document.parser.queue-timeout-ms:30000}")
+    private long queueTimeoutMs;
+
+    // Éléments produits d'avance par stream() (borne mémoire)
+    @Value("${document.parser.stream-buffer:64}")
+    private int streamBuffer;
+
+    @Value("${document.parser.timeout-ms.pdf:60000}")
+    private long pdfTimeoutMs;
+
+    @Value("${document.parser.timeout-ms.pdf-page:30000}")
+    private long pdfPageTimeoutMs;
+
+    @Value("${document.parser.timeout-ms.docx:10000}")
+    private long docxTimeoutMs;
+
+    @Value("${document.parser.timeout-ms.xlsx:60000}")
+    private long xlsxTimeoutMs;
+
+    @Value("${document.parser.timeout-ms.office:60000}")
+    private long officeTimeoutMs;
+
+    @Value("${document.parser.timeout-ms.tika:60000}")
+    private long tikaTimeoutMs;
+
+    @Value("${document.parser.timeout-ms.text:10000}")
+    private long textTimeoutMs;
+
+    @Value("${document.parser.timeout-ms.image:10000}")
+    private long imageTimeoutMs;
+
+    private static final Object END_OF_STREAM = new Object();
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger stuck = new AtomicInteger();
+
+    private ThreadPoolExecutor executor;
+
+    public DocumentParserPool(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger idx = new AtomicInteger(0);
+        ThreadFactory tf = r -> {
+            Thread t = new Thread(r);
+            t.setName("ingest-parse-" + idx.incrementAndGet());
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler((thread, ex) ->
+                    log.error("❌ [Parser] Uncaught exception in {}", thread.getName(), ex)
+            );
+            return t;
+        };
+
+        int size = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), tf, new ThreadPoolExecutor.AbortPolicy());
+
+        meterRegistry.gauge("document.parser.queue.depth", executor, e -> e.getQueue().size());
+        meterRegistry.gauge("document.parser.active", executor, ThreadPoolExecutor::getActiveCount);
+        meterRegistry.gauge("document.parser.stuck", stuck);
+
+        log.info("✅ [Parser] Pool initialisé - {} threads, file {}, timeouts pdf={}ms docx={}ms xlsx={}ms",
+                size, queueCapacity, pdfTimeoutMs, docxTimeoutMs, xlsxTimeoutMs);
+    }
+
+    public long timeoutMs(Format format) {
+        return switch (format) {
+            case PDF -> pdfTimeoutMs;
+            case PDF_PAGE -> pdfPageTimeoutMs;
+            case DOCX -> docxTimeoutMs;
+            case XLSX, CSV -> xlsxTimeoutMs;
+            case OFFICE -> officeTimeoutMs;
+            case TIKA -> tikaTimeoutMs;
+            case TEXT -> textTimeoutMs;
+            case IMAGE -> imageTimeoutMs;
+        };
+    }
+
+    // ========================================================================
+    // ANNULATION COOPÉRATIVE
+    // ========================================================================
+
+    /**
+     * Drapeau d'annulation d'une tâche ; check() à appeler dans les boucles longues
+     * (les parseurs ne réagissent pas tous à l'interruption du thread)
+     */
+    public static final class Cancellation {
+        private volatile boolean cancelled;
+        // Tranché une seule fois : fin normale de la tâche OU abandon par l'appelant
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        public boolean isCancelled() {
+            return cancelled || Thread.currentThread().isInterrupted();
+        }
+
+        public void check() {
+            if (isCancelled()) {
+                throw new CancellationException("Parsing annulé");
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+        }
+
+        private boolean settle() {
+            return settled.compareAndSet(false, true);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ParseTask<T> {
+        T run(Cancellation cancellation) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface StreamTask<T, R> {
+        R run(Cancellation cancellation, Consumer<T> emit) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Sink<T> {
+        void accept(T item) throws Exception;
+    }
+
+    /**
+     * Timeout de parsing : le document est abandonné (ses ressources ne doivent plus être utilisées
+     * par l'appelant, et ne sont fermées qu'à la sortie de la tâche : taskExit())
+     */
+    public static class ParseTimeoutException extends IOException {
+        private final transient CompletableFuture<Void> taskExit;
+
+        public ParseTimeoutException(String message) {
+            this(message, CompletableFuture.completedFuture(null));
+        }
+
+        public ParseTimeoutException(String message, CompletableFuture<Void> taskExit) {
+            super(message);
+            this.taskExit = taskExit;
+        }
+
+        /**
+         * Complété quand la tâche abandonnée a rendu son thread (immédiatement si elle n'a jamais démarré)
+         */
+        public CompletableFuture<Void> taskExit() {
+            return taskExit;
+        }
+    }
+
+    // ========================================================================
+    // EXÉCUTION
+    // ========================================================================
+
+    /**
+     * ✅ Exécute un parsing sur le pool et attend son résultat (timeout du format)
+     */
+    public <T> T parse(Format format, String filename, ParseTask<T> task) throws IOException {
+        Cancellation cancellation = new Cancellation();
+        Tracked<T> tracked = submit(format, filename, cancellation, () -> task.run(cancellation));
+
+        long timeoutMs = timeoutMs(format);
+        try {
+            awaitStart(tracked, format, filename);
+            return tracked.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(tracked, cancellation);
+            log.error("❌ [Parser] Timeout {}: filename={} timeoutMs={}", format, filename, timeoutMs);
+            throw new ParseTimeoutException("Timeout parsing " + format + " (" + timeoutMs + "ms): " + filename,
+                    tracked.exited);
+        } catch (ExecutionException e) {
+            throw unwrap(format, filename, e);
+        } catch (InterruptedException e) {
+            abandon(tracked, cancellation);
+            Thread.currentThread().interrupt();
+            throw new IOException("Parsing interrompu: " + filename, e);
+        }
+    }
+
+    /**
+     * ✅ Parsing en flux : le producteur tourne sur le pool, le consommateur sur le thread appelant
+     *
+     * Le producteur bloque quand la file est pleine (consommateur lent) ; le timeout du format
+     * borne le délai entre deux éléments, pas la durée totale du document.
+     *
+     * @return valeur retournée par le producteur
+     */
+    @SuppressWarnings("unchecked")
+    public <T, R> R stream(Format format, String filename, StreamTask<T, R> producer, Sink<T> consumer) throws IOException {
+        Cancellation cancellation = new Cancellation();
+        BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(Math.max(1, streamBuffer));
+
+        Consumer<T> emit = item -> {
+            try {
+                while (!buffer.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    cancellation.check();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Parsing interrompu");
+            }
+        };
+
+        Tracked<R> tracked = submit(format, filename, cancellation, () -> {
+            try {
+                return producer.run(cancellation, emit);
+            } finally {
+                // Fin de flux signalée même en cas d'échec (le consommateur lit ensuite l'exception)
+                while (!cancellation.isCancelled() && !buffer.offer(END_OF_STREAM, 100, TimeUnit.MILLISECONDS)) {
+                    // consommateur encore occupé
+                }
+            }
+        });
+
+        long timeoutMs = timeoutMs(format);
+        boolean completed = false;
+        try {
+            awaitStart(tracked, format, filename);
+            while (true) {
+                Object item = buffer.poll(timeoutMs, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    log.error("❌ [Parser] Timeout {} (aucune progression): filename={} timeoutMs={}",
+                            format, filename, timeoutMs);
+                    throw new ParseTimeoutException("Timeout parsing " + format + " (" + timeoutMs
+                            + "ms sans progression): " + filename, tracked.exited);
+                }
+                if (item == END_OF_STREAM) break;
+                consumer.accept((T) item);
+            }
+            R result = tracked.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            completed = true;
+            return result;
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (TimeoutException e) {
+            throw new ParseTimeoutException("Timeout fin de parsing " + format + ": " + filename, tracked.exited);
+        } catch (ExecutionException e) {
+            throw unwrap(format, filename, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Parsing interrompu: " + filename, e);
+        } catch (Exception e) {
+            throw new IOException("Erreur consommation " + format + ": " + filename + ": " + e.getMessage(), e);
+        } finally {
+            if (!completed) {
+                abandon(tracked, cancellation);
+            }
+        }
+    }
+
+    // ========================================================================
+    // INTERNE
+    // ========================================================================
+
+    private record Tracked<T>(Future<T> future, CountDownLatch started, CompletableFuture<Void> exited) {}
+
+    private <T> Tracked<T> submit(Format format, String filename, Cancellation cancellation, Callable<T> body)
+            throws IOException {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> exited = new CompletableFuture<>();
+
+        Callable<T> wrapped = () -> {
+            started.countDown();
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "error";
+            T result = null;
+            try {
+                // Abandonnée au moment du démarrage : sortie déjà signalée, ne plus toucher aux ressources
+                if (cancellation.cancelled) {
+                    throw new CancellationException("Parsing annulé avant démarrage");
+                }
+                result = body.call();
+                outcome = "success";
+                return result;
+            } catch (CancellationException e) {
+                outcome = "cancelled";
+                throw e;
+            } finally {
+                if (!cancellation.settle()) {
+                    // Abandonnée par l'appelant : la tâche rend seulement maintenant son thread
+                    stuck.decrementAndGet();
+                }
+                if (cancellation.cancelled) {
+                    if (!"cancelled".equals(outcome)) outcome = "timeout";
+                    closeQuietly(result);
+                }
+                sample.stop(meterRegistry.timer("document.parse.duration",
+                        "format", format.name().toLowerCase(), "outcome", outcome));
+                exited.complete(null);
+            }
+        };
+
+        try {
+            return new Tracked<>(executor.submit(wrapped), started, exited);
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("document.parser.rejected", "format", format.name().toLowerCase()).increment();
+            log.warn("⚠️ [Parser] Pool saturé ({} en file), {} refusé: {}",
+                    executor.getQueue().size(), format, filename);
+            throw new IOException("Pool de parsing saturé, réessayer plus tard: " + filename, e);
+        }
+    }
+
+    private void awaitStart(Tracked<?> tracked, Format format, String filename)
+            throws InterruptedException, IOException {
+        if (!tracked.started.await(Math.max(1, queueTimeoutMs), TimeUnit.MILLISECONDS)) {
+            if (tracked.future.cancel(false)) {
+                tracked.exited.complete(null);
+                meterRegistry.counter("document.parser.rejected", "format", format.name().toLowerCase()).increment();
+                throw new IOException("Aucun thread de parsing libre après " + queueTimeoutMs + "ms: " + filename);
+            }
+        }
+    }
+
+    private void abandon(Tracked<?> tracked, Cancellation cancellation) {
+        cancellation.cancel();
+        if (tracked.started.getCount() == 0 && cancellation.settle()) {
+            // Tâche encore en cours : décomptée par elle-même dans son finally
+            stuck.incrementAndGet();
+        }
+        tracked.future.cancel(true);
+        if (tracked.started.getCount() > 0) {
+            // Jamais démarrée (ou démarre en voyant le drapeau) : plus rien n'utilise ses ressources
+            tracked.exited.complete(null);
+        }
+    }
+
+    private IOException unwrap(Format format, String filename, ExecutionException e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof IOException io) {
+            return io;
+        }
+        return new IOException("Erreur parsing " + format + ": " + filename + ": " + cause.getMessage(), cause);
+    }
+
+    private void closeQuietly(Object result) {
+        if (result instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.debug("[Parser] Fermeture résultat abandonné: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+// ============================================================================
+// SERVICE - EmbeddingDeletionService.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.config.EmbeddingEngine;
+import com.exemple.transactionservice.dto.DocumentDeletionResult;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * ✅ Suppression d'embeddings par filtre de métadonnées (batchId, document source, date d'upload)
+ *
+ * - Aucun ID en mémoire : chaque ligne porte batchId / source / uploadDate dans sa colonne metadata
+ * - DELETE par lots (LIMIT) : transactions courtes, pas de verrou long sur les grosses tables
+ *   (table texte : promotion des quasi-doublons et suppression atomiques par lot, pause hors transaction)
+ * - Index d'expression sur les clés filtrées (créés au démarrage)
+ * - Un batch dont il ne reste aucune ligne perd aussi ses images disque, son checkpoint
+ *   et son fingerprint d'upload
+ * - Segments quasi-doublons (text_chunk_links) supprimés avec leur document ; ceux rattachés
+ *   à un canonique supprimé sont d'abord promus en lignes text_embeddings
+ * - Tables du moteur d'embedding actif (EmbeddingEngine) : l'index de l'autre moteur n'est pas touché
+ *
+ * Utilisé par le rollback d'ingestion et par l'API de suppression de documents.
+ */
+@Slf4j
+@Service
+public class EmbeddingDeletionService {
+
+    // Expressions partagées par les prédicats et les index (doivent être identiques)
+    static final String BATCH_EXPR = "(metadata->>'batchId')";
+    static final String DOCUMENT_EXPR =
+            "(COALESCE(metadata->>'filename', metadata->>'originalFilename', metadata->>'source'))";
+    static final String UPLOAD_DATE_EXPR = "((metadata->>'uploadDate')::bigint)";
+    // Identité d'un document pour la ré-ingestion (utilisateur + nom d'upload d'origine)
+    static final String DOCUMENT_KEY_EXPR = "(metadata->>'" + IncrementalReingestionService.DOCUMENT_KEY + "')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ImageStorageService imageStorage;
+    private final IngestionCheckpointStore checkpoints;
+    private final MultimodalRAGService ragService;
+    private final NearDuplicateChunkIndex nearDuplicates;
+    private final UploadFingerprintIndex uploadFingerprints;
+    private final TransactionTemplate transactionTemplate;
+    private final String textTable;
+    private final String imageTable;
+
+    @Value("${document.deletion.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${document.deletion.pause-ms:0}")
+    private long pauseMs;
+
+    public EmbeddingDeletionService(JdbcTemplate jdbcTemplate,
+                                    ImageStorageService imageStorage,
+                                    IngestionCheckpointStore checkpoints,
+                                    MultimodalRAGService ragService,
+                                    NearDuplicateChunkIndex nearDuplicates,
+                                    UploadFingerprintIndex uploadFingerprints,
+                                    PlatformTransactionManager transactionManager,
+                                    EmbeddingEngine engine) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.imageStorage = imageStorage;
+        this.checkpoints = checkpoints;
+        this.ragService = ragService;
+        this.nearDuplicates = nearDuplicates;
+        this.uploadFingerprints = uploadFingerprints;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.textTable = engine.textTable();
+        this.imageTable = engine.imageTable();
+    }
+
+    @PostConstruct
+    public void init() {
+        // Taille bornée une fois : même valeur pour le LIMIT et pour la condition d'arrêt des lots
+        chunkSize = Math.max(1, chunkSize);
+    }
+
+    public String textTable() {
+        return textTable;
+    }
+
+    public String imageTable() {
+        return imageTable;
+    }
+
+    /**
+     * Index créés une fois les stores PgVector initialisés (tables créées par leurs beans)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        for (String table : List.of(textTable, imageTable)) {
+            try {
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_meta_batch ON "
+                        + table + " (" + BATCH_EXPR + ")");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_meta_document ON "
+                        + table + " (" + DOCUMENT_EXPR + ")");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_meta_upload ON "
+                        + table + " (" + UPLOAD_DATE_EXPR + ")");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_meta_document_key ON "
+                        + table + " (" + DOCUMENT_KEY_EXPR + ")");
+            } catch (Exception e) {
+                log.warn("⚠️ [Deletion] Index non créés sur {}: {}", table, e.getMessage());
+            }
+        }
+        log.info("✅ [Deletion] Initialisé - lots de {} lignes", chunkSize);
+    }
+
+    // ========================================================================
+    // FILTRE
+    // ========================================================================
+
+    /**
+     * Critères combinés en ET ; au moins un critère est obligatoire
+     *
+     * @param batchId batch d'ingestion
+     * @param source  nom du fichier d'origine (filename / originalFilename / source)
+     * @param from    uploadDate >= from (inclus)
+     * @param to      uploadDate < to (exclu)
+     */
+    public record Filter(String batchId, String source, Instant from, Instant to) {
+
+        public static Filter batch(String batchId) {
+            return new Filter(batchId, null, null, null);
+        }
+
+        public boolean isEmpty() {
+            return isBlank(batchId) && isBlank(source) && from == null && to == null;
+        }
+
+        private static boolean isBlank(String s) {
+            return s == null || s.isBlank();
+        }
+    }
+
+    record Predicate(String sql, Object[] args) {}
+
+    Predicate toPredicate(Filter filter) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+
+        if (filter.batchId() != null && !filter.batchId().isBlank()) {
+            conditions.add(BATCH_EXPR + " = ?");
+            args.add(filter.batchId());
+        }
+        if (filter.source() != null && !filter.source().isBlank()) {
+            conditions.add(DOCUMENT_EXPR + " = ?");
+            args.add(filter.source());
+        }
+        if (filter.from() != null) {
+            conditions.add(UPLOAD_DATE_EXPR + " >= ?");
+            args.add(filter.from().toEpochMilli());
+        }
+        if (filter.to() != null) {
+            conditions.add(UPLOAD_DATE_EXPR + " < ?");
+            args.add(filter.to().toEpochMilli());
+        }
+        return new Predicate(String.join(" AND ", conditions), args.toArray());
+    }
+
+    // ========================================================================
+    // SUPPRESSION
+    // ========================================================================
+
+    /**
+     * ✅ Rollback complet d'un batch (embeddings, images disque, checkpoint)
+     */
+    public DocumentDeletionResult deleteBatch(String batchId) {
+        return delete(Filter.batch(batchId));
+    }
+
+    /**
+     * ✅ Supprime les versions précédentes d'un document (toutes ses lignes hors du batch conservé)
+     *
+     * @param documentKey identité du document (IncrementalReingestionService.documentKey), pas le nom seul :
+     *                    un fichier homonyme d'un autre utilisateur n'est jamais touché
+     */
+    public DocumentDeletionResult deleteSuperseded(String documentKey, String keepBatchId) {
+        if (documentKey == null || documentKey.isBlank() || keepBatchId == null || keepBatchId.isBlank()) {
+            throw new IllegalArgumentException("document et batchId conservé requis");
+        }
+        return delete(new Filter(null, documentKey, null, null),
+                new Predicate(DOCUMENT_KEY_EXPR + " = ? AND " + BATCH_EXPR + " IS DISTINCT FROM ?",
+                        new Object[]{documentKey, keepBatchId}));
+    }
+
+    /**
+     * ✅ Supprime toutes les lignes correspondant au filtre dans les deux stores
+     */
+    public DocumentDeletionResult delete(Filter filter) {
+        if (filter == null || filter.isEmpty()) {
+            throw new IllegalArgumentException("Au moins un critère est requis (batchId, source, from, to)");
+        }
+        return delete(filter, toPredicate(filter));
+    }
+
+    private DocumentDeletionResult delete(Filter filter, Predicate predicate) {
+        Instant start = Instant.now();
+
+        // Batchs touchés (quelques valeurs distinctes, pas les IDs des lignes)
+        Set<String> batches = new LinkedHashSet<>();
+        if (filter.batchId() != null && !filter.batchId().isBlank()) {
+            batches.add(filter.batchId());
+        } else {
+            batches.addAll(distinctBatches(textTable, predicate));
+            batches.addAll(distinctBatches(imageTable, predicate));
+        }
+
+        // Quasi-doublons des documents supprimés : liens retirés avant les lots (jamais promus)
+        long textDeleted = nearDuplicates.deleteLinks(predicate.sql(), predicate.args());
+        textDeleted += deleteTextInChunks(predicate);
+        long imageDeleted = deleteInChunks(imageTable, predicate);
+
+        // Images disque + checkpoint : seulement pour les batchs désormais vides
+        int filesDeleted = 0;
+        List<String> emptiedBatches = new ArrayList<>();
+        for (String batchId : batches) {
+            if (batchHasRows(batchId)) {
+                continue;
+            }
+            filesDeleted += imageStorage.deleteBatch(batchId);
+            checkpoints.clear(batchId);
+            emptiedBatches.add(batchId);
+        }
+        // Document supprimé : un nouvel upload du même fichier ne doit plus être vu comme doublon
+        uploadFingerprints.forgetBatches(emptiedBatches);
+
+        if (textDeleted + imageDeleted > 0) {
+            ragService.invalidateCacheAfterIngestion();
+        }
+
+        long durationMs = Duration.between(start, Instant.now()).toMillis();
+        log.info("🗑️ [Deletion] {} - {} text, {} image embeddings, {} fichiers, {} batch(s) en {}ms",
+                filter, textDeleted, imageDeleted, filesDeleted, emptiedBatches.size(), durationMs);
+
+        return DocumentDeletionResult.builder()
+                .textDeleted(textDeleted)
+                .imageDeleted(imageDeleted)
+                .filesDeleted(filesDeleted)
+                .batches(emptiedBatches)
+                .durationMs(durationMs)
+                .build();
+    }
+
+    /**
+     * DELETE ... WHERE embedding_id IN (SELECT ... LIMIT n) répété jusqu'à épuisement
+     */
+    private long deleteInChunks(String table, Predicate predicate) {
+        String sql = "DELETE FROM " + table + " WHERE embedding_id IN ("
+                + "SELECT embedding_id FROM " + table + " WHERE " + predicate.sql() + " LIMIT ?)";
+
+        Object[] args = Arrays.copyOf(predicate.args(), predicate.args().length + 1);
+        args[args.length - 1] = chunkSize;
+
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, args);
+            total += deleted;
+        } while (deleted >= chunkSize && pause(deleted));
+
+        if (total > 0) {
+            log.debug("🗑️ [Deletion] {} lignes supprimées de {}", total, table);
+        }
+        return total;
+    }
+
+    /**
+     * Table texte : une transaction par lot (ids verrouillés, liens dont ils sont le canonique promus,
+     * puis lignes supprimées). Un échec annule le lot en cours ; les lots précédents restent cohérents
+     */
+    private long deleteTextInChunks(Predicate predicate) {
+        String select = "SELECT embedding_id::text FROM " + textTable + " WHERE " + predicate.sql()
+                + " LIMIT ? FOR UPDATE";
+
+        Object[] args = Arrays.copyOf(predicate.args(), predicate.args().length + 1);
+        args[args.length - 1] = chunkSize;
+
+        long total = 0;
+        int deleted;
+        do {
+            Integer chunk = transactionTemplate.execute(status -> {
+                List<String> ids = jdbcTemplate.queryForList(select, String.class, args);
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                String idArray = "{" + String.join(",", ids) + "}";
+                nearDuplicates.beforeCanonicalDelete("embedding_id = ANY(?::uuid[])", new Object[]{idArray});
+                return jdbcTemplate.update("DELETE FROM " + textTable + " WHERE embedding_id = ANY(?::uuid[])",
+                        idArray);
+            });
+            deleted = chunk != null ? chunk : 0;
+            total += deleted;
+        } while (deleted >= chunkSize && pause(deleted));
+
+        if (total > 0) {
+            log.debug("🗑️ [Deletion] {} lignes supprimées de {}", total, textTable);
+        }
+        return total;
+    }
+
+    /**
+     * Pause entre deux lots (hors transaction) ; false si le thread est interrompu
+     */
+    private boolean pause(int deleted) {
+        if (deleted == 0 || pauseMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private List<String> distinctBatches(String table, Predicate predicate) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT " + BATCH_EXPR + " FROM " + table
+                        + " WHERE " + predicate.sql() + " AND " + BATCH_EXPR + " IS NOT NULL",
+                String.class, predicate.args());
+    }
+
+    private boolean batchHasRows(String batchId) {
+        for (String table : List.of(textTable, imageTable)) {
+            List<Integer> found = jdbcTemplate.queryForList(
+                    "SELECT 1 FROM " + table + " WHERE " + BATCH_EXPR + " = ? LIMIT 1", Integer.class, batchId);
+            if (!found.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,220 @@
+// ============================================================================
+// SERVICE - ImageDeduplicationIndex.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.util.PerceptualHash;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ✅ Déduplication perceptuelle des images d'un batch (avant Vision)
+ *
+ * Logos d'en-tête/pied de page, fonds de slides répétés, image intégrée + rendu de page :
+ * les images quasi identiques d'un même batch sont regroupées derrière une image canonique.
+ * Un seul appel Vision et une seule ligne image_embeddings par groupe, avec la liste des occurrences.
+ *
+ * Images transmises sans décodage (JPEG passthrough) : SHA-256 des octets compressés d'abord
+ * (même XObject réutilisé sur plusieurs pages), puis hash perceptuel calculé sur un décodage
+ * sous-échantillonné, pour rattacher le JPEG au rendu de la page ou à un logo recompressé.
+ */
+@Slf4j
+@Service
+public class ImageDeduplicationIndex {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${document.image-dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${document.image-dedup.hash-size:16}")
+    private int hashSize;
+
+    @Value("${document.image-dedup.max-distance:10}")
+    private int maxDistance;
+
+    @Value("${document.image-dedup.aspect-ratio-tolerance:0.05}")
+    private double aspectRatioTolerance;
+
+    private final Map<String, List<ImageGroup>> groupsByBatch = new ConcurrentHashMap<>();
+
+    public ImageDeduplicationIndex(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Enregistre une occurrence. Retourne le groupe et indique si l'image est canonique
+     * (=> Vision à appeler) ou un doublon rattaché à un groupe existant.
+     */
+    public Registration register(String batchId,
+                                 BufferedImage image,
+                                 String imageName,
+                                 Map<String, Object> metadata) {
+
+        List<ImageGroup> groups = groupsByBatch.computeIfAbsent(batchId, k -> new ArrayList<>());
+        PerceptualHash hash = enabled ? PerceptualHash.dHash(image, Math.max(8, hashSize)) : null;
+
+        synchronized (groups) {
+            ImageGroup similar = findSimilar(groups, hash);
+            if (similar != null) {
+                similar.addOccurrence(imageName, metadata);
+                meterRegistry.counter("image.dedup.collapsed").increment();
+                log.debug("♻️ [Dedup] {} rattachée à {} (batchId={})", imageName, similar.canonicalName, batchId);
+                return new Registration(similar, false);
+            }
+
+            ImageGroup group = new ImageGroup(hash, null, imageName, metadata, image.getWidth(), image.getHeight());
+            groups.add(group);
+            meterRegistry.counter("image.dedup.canonical").increment();
+            return new Registration(group, true);
+        }
+    }
+
+    /**
+     * Hash perceptuel d'une image encodée, sur un décodage sous-échantillonné
+     * (null si la déduplication est désactivée ou le format illisible)
+     */
+    public PerceptualHash hashEncoded(byte[] encoded) throws IOException {
+        return enabled ? PerceptualHash.dHash(encoded, Math.max(8, hashSize)) : null;
+    }
+
+    /**
+     * Variante sans décodage complet : octets identiques, sinon hash perceptuel (voir {@link #hashEncoded}).
+     * hash null => regroupement exact sur le SHA-256 seul.
+     */
+    public Registration registerEncoded(String batchId,
+                                        String contentHash,
+                                        PerceptualHash hash,
+                                        int width,
+                                        int height,
+                                        String imageName,
+                                        Map<String, Object> metadata) {
+
+        List<ImageGroup> groups = groupsByBatch.computeIfAbsent(batchId, k -> new ArrayList<>());
+
+        synchronized (groups) {
+            if (enabled) {
+                for (ImageGroup group : groups) {
+                    if (contentHash.equals(group.contentHash)) {
+                        group.addOccurrence(imageName, metadata);
+                        meterRegistry.counter("image.dedup.collapsed").increment();
+                        log.debug("♻️ [Dedup] {} rattachée à {} (octets identiques, batchId={})",
+                                imageName, group.canonicalName, batchId);
+                        return new Registration(group, false);
+                    }
+                }
+
+                ImageGroup similar = findSimilar(groups, hash);
+                if (similar != null) {
+                    similar.addOccurrence(imageName, metadata);
+                    meterRegistry.counter("image.dedup.collapsed").increment();
+                    log.debug("♻️ [Dedup] {} rattachée à {} (hash perceptuel, batchId={})",
+                            imageName, similar.canonicalName, batchId);
+                    return new Registration(similar, false);
+                }
+            }
+
+            ImageGroup group = new ImageGroup(hash, contentHash, imageName, metadata, width, height);
+            groups.add(group);
+            meterRegistry.counter("image.dedup.canonical").increment();
+            return new Registration(group, true);
+        }
+    }
+
+    /**
+     * Premier groupe de même forme à distance de Hamming <= maxDistance (appelant synchronisé sur groups)
+     */
+    private ImageGroup findSimilar(List<ImageGroup> groups, PerceptualHash hash) {
+        if (hash == null) {
+            return null;
+        }
+        for (ImageGroup group : groups) {
+            if (group.hash != null
+                    && group.hash.sameShape(hash, aspectRatioTolerance)
+                    && group.hash.distance(hash) <= maxDistance) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retire et retourne les groupes du batch (à indexer)
+     */
+    public List<ImageGroup> drain(String batchId) {
+        List<ImageGroup> groups = groupsByBatch.remove(batchId);
+        if (groups == null) {
+            return List.of();
+        }
+        synchronized (groups) {
+            return new ArrayList<>(groups);
+        }
+    }
+
+    public void discard(String batchId) {
+        groupsByBatch.remove(batchId);
+    }
+
+    public record Registration(ImageGroup group, boolean canonical) {}
+
+    /**
+     * ✅ Groupe d'images quasi identiques (une description Vision partagée)
+     */
+    public static final class ImageGroup {
+
+        private final PerceptualHash hash;
+        private final String contentHash;
+        private final String canonicalName;
+        private final Map<String, Object> canonicalMetadata;
+        private final int width;
+        private final int height;
+        private final List<Map<String, Object>> occurrences = new ArrayList<>();
+        private volatile String description;
+
+        private ImageGroup(PerceptualHash hash, String contentHash, String canonicalName,
+                           Map<String, Object> metadata, int width, int height) {
+            this.hash = hash;
+            this.contentHash = contentHash;
+            this.canonicalName = canonicalName;
+            this.canonicalMetadata = new HashMap<>(metadata);
+            this.width = width;
+            this.height = height;
+            addOccurrence(canonicalName, metadata);
+        }
+
+        private synchronized void addOccurrence(String imageName, Map<String, Object> metadata) {
+            Map<String, Object> occurrence = new HashMap<>();
+            occurrence.put("imageName", imageName);
+            copyIfPresent(metadata, occurrence, "page", "source", "sheetName", "paragraphIndex", "location", "savedPath");
+            occurrences.add(occurrence);
+        }
+
+        private static void copyIfPresent(Map<String, Object> from, Map<String, Object> to, String... keys) {
+            for (String key : keys) {
+                Object v = from.get(key);
+                if (v != null) to.put(key, v);
+            }
+        }
+
+        public synchronized List<Map<String, Object>> getOccurrences() {
+            return new ArrayList<>(occurrences);
+        }
+
+        public String getCanonicalName() { return canonicalName; }
+        public Map<String, Object> getCanonicalMetadata() { return canonicalMetadata; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        public String getDescription() { return description; }
+        public void setDescription(String description) { this.description = description; }
+    }
+}
@@ -0,0 +1,356 @@
+// ============================================================================
+// SERVICE - ImageStorageService.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * ✅ Stockage des images extraites : un répertoire par batch + catalogue PostgreSQL
+ *
+ * Arborescence : {storage-path}/{2 premiers caractères du batchId}/{batchId}/{image}.{ext}
+ * Catalogue    : image_catalog (image_path, batch_id, document_name) -> lookup par batch ou document
+ *
+ * La suppression d'un batch ne touche que ses propres fichiers (O(images du batch)),
+ * au lieu de lister tout le répertoire. migrateLegacyLayout() range les anciennes
+ * images stockées à plat dans cette arborescence.
+ */
+@Slf4j
+@Service
+public class ImageStorageService {
+
+    private static final String ORPHANS_DIR = "_orphans";
+    private static final Pattern LEGACY_BATCH_TOKEN = Pattern.compile("_batch([0-9a-fA-F]{8})");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${document.images.storage-path:D:/Formation-DATA-2024/extracted-images}")
+    private String storagePath;
+
+    @Value("${document.images.catalog-enabled:true}")
+    private boolean catalogEnabled;
+
+    private Path root;
+
+    public ImageStorageService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (storagePath == null || storagePath.isBlank()) {
+            log.warn("⚠️ [ImageStorage] storage-path non configuré, utilisation par défaut");
+            storagePath = "./extracted-images";
+        }
+        root = Paths.get(storagePath).toAbsolutePath().normalize();
+
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            log.error("❌ [ImageStorage] Erreur création répertoire: {}", root, e);
+            throw new RuntimeException("Impossible de créer le répertoire de stockage", e);
+        }
+
+        if (catalogEnabled) {
+            jdbcTemplate.execute("""
+                    CREATE TABLE IF NOT EXISTS image_catalog (
+                        image_path    TEXT PRIMARY KEY,
+                        batch_id      VARCHAR(64) NOT NULL,
+                        document_name TEXT,
+                        size_bytes    BIGINT NOT NULL DEFAULT 0,
+                        created_at    TIMESTAMPTZ NOT NULL DEFAULT now()
+                    )
+                    """);
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_image_catalog_batch ON image_catalog (batch_id)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_image_catalog_document ON image_catalog (document_name)");
+        }
+
+        log.info("✅ [ImageStorage] Initialisé - racine: {}, catalogue: {}", root, catalogEnabled);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    // ========================================================================
+    // ÉCRITURE
+    // ========================================================================
+
+    /**
+     * Écrit l'image dans le répertoire de son batch et l'inscrit au catalogue
+     *
+     * @return chemin absolu du fichier (métadonnée savedPath)
+     */
+    public String save(String batchId, String documentName, String imageName, String extension, byte[] bytes)
+            throws IOException {
+
+        Path directory = batchDirectory(batchId);
+        Files.createDirectories(directory);
+
+        Path outputPath = directory.resolve(imageName + "." + extension);
+        Files.write(outputPath, bytes);
+
+        String absolutePath = outputPath.toString();
+        catalog(absolutePath, batchId, documentName, bytes.length);
+        return absolutePath;
+    }
+
+    private void catalog(String imagePath, String batchId, String documentName, long sizeBytes) {
+        if (!catalogEnabled) return;
+        try {
+            // Reprise après checkpoint : même nom de fichier réécrit => upsert
+            jdbcTemplate.update("""
+                    INSERT INTO image_catalog (image_path, batch_id, document_name, size_bytes)
+                    VALUES (?, ?, ?, ?)
+                    ON CONFLICT (image_path) DO UPDATE
+                       SET batch_id = EXCLUDED.batch_id,
+                           document_name = EXCLUDED.document_name,
+                           size_bytes = EXCLUDED.size_bytes
+                    """, imagePath, batchId, documentName, sizeBytes);
+        } catch (Exception e) {
+            // Non bloquant : le répertoire du batch suffit à la suppression
+            log.warn("⚠️ [ImageStorage] Catalogue non mis à jour ({}): {}", imagePath, e.getMessage());
+        }
+    }
+
+    // ========================================================================
+    // LECTURE
+    // ========================================================================
+
+    public List<String> findByBatch(String batchId) {
+        return query("SELECT image_path FROM image_catalog WHERE batch_id = ?", batchId);
+    }
+
+    public List<String> findByDocument(String documentName) {
+        return query("SELECT image_path FROM image_catalog WHERE document_name = ?", documentName);
+    }
+
+    private List<String> query(String sql, String arg) {
+        if (!catalogEnabled) return List.of();
+        try {
+            return jdbcTemplate.queryForList(sql, String.class, arg);
+        } catch (Exception e) {
+            log.warn("⚠️ [ImageStorage] Lecture catalogue impossible: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    // ========================================================================
+    // SUPPRESSION
+    // ========================================================================
+
+    /**
+     * Supprime les images d'un batch : entrées du catalogue + répertoire du batch
+     *
+     * @return nombre de fichiers supprimés
+     */
+    public int deleteBatch(String batchId) {
+        int deleted = 0;
+
+        // 1. Fichiers catalogués (y compris ceux rangés ailleurs par la migration)
+        Set<Path> seen = new HashSet<>();
+        for (String imagePath : findByBatch(batchId)) {
+            Path path = Paths.get(imagePath);
+            seen.add(path);
+            if (deleteQuietly(path)) {
+                deleted++;
+            }
+        }
+
+        // 2. Répertoire du batch (fichiers écrits sans entrée catalogue)
+        Path directory = batchDirectory(batchId);
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.filter(Files::isRegularFile).toList()) {
+                    if (!seen.contains(file) && deleteQuietly(file)) {
+                        deleted++;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("⚠️ [ImageStorage] Lecture répertoire impossible {}: {}", directory, e.getMessage());
+            }
+            deleteQuietly(directory);
+        }
+
+        if (catalogEnabled) {
+            try {
+                jdbcTemplate.update("DELETE FROM image_catalog WHERE batch_id = ?", batchId);
+            } catch (Exception e) {
+                log.warn("⚠️ [ImageStorage] Nettoyage catalogue impossible (batchId={}): {}", batchId, e.getMessage());
+            }
+        }
+
+        if (deleted > 0) {
+            log.info("🗑️ [ImageStorage] {} images supprimées pour batch: {}", deleted, batchId);
+        } else {
+            log.debug("📁 [ImageStorage] Aucune image à supprimer pour batch: {}", batchId);
+        }
+        return deleted;
+    }
+
+    private boolean deleteQuietly(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (DirectoryNotEmptyException e) {
+            return false;
+        } catch (IOException e) {
+            log.warn("⚠️ [ImageStorage] Impossible de supprimer: {}", path);
+            return false;
+        }
+    }
+
+    // ========================================================================
+    // MIGRATION (ancien répertoire à plat)
+    // ========================================================================
+
+    /**
+     * Résultat d'une migration
+     */
+    public record MigrationReport(boolean dryRun, int scanned, int migrated, int orphans, int failed) {}
+
+    /**
+     * ✅ Range les images stockées à plat à la racine dans l'arborescence par batch
+     *
+     * - batchId retrouvé via la métadonnée savedPath de image_embeddings (chemin exact),
+     *   sinon via le préfixe "_batchXXXXXXXX" du nom s'il désigne un seul batch connu
+     * - savedPath des lignes image_embeddings mis à jour vers le nouveau chemin
+     * - images sans batch connu (reliquats d'anciens rollbacks) déplacées dans _orphans/
+     *
+     * Idempotent : seuls les fichiers encore à la racine sont traités.
+     * Lit toujours image_embeddings : la disposition à plat précède les tables par moteur
+     * d'embedding (EmbeddingEngine), seules les images du moteur openai historique y figurent.
+     */
+    public MigrationReport migrateLegacyLayout(boolean dryRun) {
+        log.info("🚚 [ImageStorage] Migration du répertoire à plat {} (dryRun={})", root, dryRun);
+
+        Map<String, LegacyImage> byPath = new HashMap<>();
+        Map<String, String> batchByShort = new HashMap<>();
+        loadKnownImages(byPath, batchByShort);
+
+        int scanned = 0, migrated = 0, orphans = 0, failed = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root, Files::isRegularFile)) {
+            for (Path file : files) {
+                scanned++;
+                String oldPath = file.toString();
+                LegacyImage known = byPath.get(oldPath);
+                String batchId = known != null ? known.batchId() : resolveByName(file, batchByShort);
+
+                Path target = batchId != null
+                        ? batchDirectory(batchId).resolve(file.getFileName())
+                        : root.resolve(ORPHANS_DIR).resolve(file.getFileName());
+
+                if (dryRun) {
+                    if (batchId != null) migrated++; else orphans++;
+                    continue;
+                }
+
+                try {
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+
+                    if (batchId != null) {
+                        catalog(target.toString(), batchId, null, Files.size(target));
+                        if (known != null) {
+                            updateSavedPath(known.embeddingId(), target.toString());
+                        }
+                        migrated++;
+                    } else {
+                        orphans++;
+                    }
+                } catch (Exception e) {
+                    failed++;
+                    log.warn("⚠️ [ImageStorage] Migration impossible {}: {}", file.getFileName(), e.getMessage());
+                }
+
+                if (scanned % 10_000 == 0) {
+                    log.info("🚚 [ImageStorage] {} fichiers traités...", scanned);
+                }
+            }
+        } catch (IOException e) {
+            log.error("❌ [ImageStorage] Lecture de la racine impossible: {}", root, e);
+        }
+
+        MigrationReport report = new MigrationReport(dryRun, scanned, migrated, orphans, failed);
+        log.info("✅ [ImageStorage] Migration terminée: {}", report);
+        return report;
+    }
+
+    private record LegacyImage(String embeddingId, String batchId) {}
+
+    /**
+     * Une seule lecture de image_embeddings (pas de requête par fichier)
+     */
+    private void loadKnownImages(Map<String, LegacyImage> byPath, Map<String, String> batchByShort) {
+        try {
+            jdbcTemplate.query("""
+                    SELECT embedding_id::text AS embedding_id,
+                           metadata->>'savedPath' AS saved_path,
+                           metadata->>'batchId' AS batch_id
+                      FROM image_embeddings
+                     WHERE metadata->>'batchId' IS NOT NULL
+                    """, rs -> {
+                String savedPath = rs.getString("saved_path");
+                String batchId = rs.getString("batch_id");
+                if (savedPath != null) {
+                    byPath.put(Paths.get(savedPath).toAbsolutePath().normalize().toString(),
+                            new LegacyImage(rs.getString("embedding_id"), batchId));
+                }
+                if (batchId.length() >= 8) {
+                    // Préfixe ambigu (plusieurs batchs) => pas de résolution par nom
+                    batchByShort.merge(batchId.substring(0, 8).toLowerCase(), batchId,
+                            (a, b) -> a.equals(b) ? a : "");
+                }
+            });
+        } catch (Exception e) {
+            log.warn("⚠️ [ImageStorage] Batchs connus illisibles, résolution par nom impossible: {}", e.getMessage());
+        }
+    }
+
+    private String resolveByName(Path file, Map<String, String> batchByShort) {
+        Matcher m = LEGACY_BATCH_TOKEN.matcher(file.getFileName().toString());
+        if (m.find()) {
+            String candidate = batchByShort.get(m.group(1).toLowerCase());
+            if (candidate != null && !candidate.isEmpty()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void updateSavedPath(String embeddingId, String newPath) {
+        try {
+            jdbcTemplate.update("""
+                    UPDATE image_embeddings
+                       SET metadata = jsonb_set(metadata::jsonb, '{savedPath}', to_jsonb(?::text))::json
+                     WHERE embedding_id = ?::uuid
+                    """, newPath, embeddingId);
+        } catch (Exception e) {
+            log.warn("⚠️ [ImageStorage] savedPath non mis à jour ({}): {}", embeddingId, e.getMessage());
+        }
+    }
+
+    // ========================================================================
+    // ARBORESCENCE
+    // ========================================================================
+
+    /**
+     * {racine}/{shard}/{batchId} ; shard = 2 premiers caractères (256 sous-répertoires pour un UUID)
+     */
+    private Path batchDirectory(String batchId) {
+        String safe = batchId.replaceAll("[^a-zA-Z0-9_-]", "_");
+        String shard = safe.length() >= 2 ? safe.substring(0, 2).toLowerCase() : "__";
+        return root.resolve(shard).resolve(safe);
+    }
+}
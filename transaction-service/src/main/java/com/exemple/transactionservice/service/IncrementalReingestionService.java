@@ -0,0 +1,305 @@
+// ============================================================================
+// SERVICE - IncrementalReingestionService.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.dto.DocumentDeletionResult;
+import com.exemple.transactionservice.dto.ReingestionDiff;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ✅ Ré-ingestion incrémentale par hash de contenu (segments texte et images)
+ *
+ * - Chaque ligne porte metadata.contentHash (SHA-256 du texte du segment / des octets de l'image)
+ * - Document identifié par metadata.documentKey (utilisateur + nom du fichier uploadé) : l'homonyme
+ *   d'un autre utilisateur n'est ni réutilisé ni supprimé
+ * - À l'ouverture d'un batch, les hashes des versions précédentes du document sont chargés :
+ *   un segment ou une image inchangé n'est ni ré-embeddé ni ré-analysé par Vision
+ * - Au succès (commit) : les lignes conservées sont rattachées au nouveau batch (métadonnées
+ *   de la nouvelle version), puis les lignes restantes des anciennes versions sont supprimées
+ * - En cas d'échec : rien n'a été modifié sur l'ancienne version (le rollback ne touche que le nouveau batch)
+ *
+ * Une reprise sur checkpoint n'ouvre pas de session (les décisions d'avant le crash sont perdues) :
+ * ingestion complète, versions précédentes conservées.
+ */
+@Slf4j
+@Service
+public class IncrementalReingestionService {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public static final String CONTENT_HASH = "contentHash";
+    public static final String DOCUMENT_KEY = "documentKey";
+
+    @Value("${document.incremental.enabled:true}")
+    private boolean enabled;
+
+    @Value("${document.incremental.update-batch-size:500}")
+    private int updateBatchSize;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingDeletionService embeddingDeletion;
+    private final MeterRegistry meterRegistry;
+    private final NearDuplicateChunkIndex nearDuplicates;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    public IncrementalReingestionService(JdbcTemplate jdbcTemplate,
+                                         EmbeddingDeletionService embeddingDeletion,
+                                         MeterRegistry meterRegistry,
+                                         NearDuplicateChunkIndex nearDuplicates) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingDeletion = embeddingDeletion;
+        this.meterRegistry = meterRegistry;
+        this.nearDuplicates = nearDuplicates;
+    }
+
+    public static String contentHash(String text) {
+        return VisionDescriptionStore.sha256Hex(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Identité d'un document : utilisateur et nom du fichier uploadé (les fichiers dérivés,
+     * ex. PDF de repli d'un XLSX, portent la clé du fichier d'origine)
+     */
+    public static String documentKey(Long userId, String originalFilename) {
+        return (userId != null ? userId : "anonymous") + ":" + originalFilename;
+    }
+
+    // ========================================================================
+    // SESSION (une par batch en cours)
+    // ========================================================================
+
+    private record KeptRow(String embeddingId, Map<String, Object> metadata) {}
+
+    private static final class Session {
+        private final String document;
+        private final long previousRows;
+        private final Map<IngestionCheckpointStore.EmbeddingKind, Map<String, Deque<String>>> previous =
+                new EnumMap<>(IngestionCheckpointStore.EmbeddingKind.class);
+        private final Map<IngestionCheckpointStore.EmbeddingKind, List<KeptRow>> kept =
+                new EnumMap<>(IngestionCheckpointStore.EmbeddingKind.class);
+        private final Map<IngestionCheckpointStore.EmbeddingKind, Integer> added =
+                new EnumMap<>(IngestionCheckpointStore.EmbeddingKind.class);
+
+        private Session(String document, long previousRows) {
+            this.document = document;
+            this.previousRows = previousRows;
+            for (IngestionCheckpointStore.EmbeddingKind kind : IngestionCheckpointStore.EmbeddingKind.values()) {
+                previous.put(kind, new HashMap<>());
+                kept.put(kind, new ArrayList<>());
+                added.put(kind, 0);
+            }
+        }
+
+        private synchronized boolean knows(IngestionCheckpointStore.EmbeddingKind kind, String hash) {
+            Deque<String> ids = previous.get(kind).get(hash);
+            return ids != null && !ids.isEmpty();
+        }
+
+        /**
+         * Consomme une ligne existante de même hash (un segment répété N fois réutilise N lignes)
+         */
+        private synchronized boolean keep(IngestionCheckpointStore.EmbeddingKind kind, String hash,
+                                          Map<String, Object> metadata) {
+            Deque<String> ids = previous.get(kind).get(hash);
+            if (ids == null || ids.isEmpty()) {
+                return false;
+            }
+            kept.get(kind).add(new KeptRow(ids.poll(), metadata));
+            return true;
+        }
+
+        private synchronized void added(IngestionCheckpointStore.EmbeddingKind kind, int count) {
+            added.merge(kind, count, Integer::sum);
+        }
+    }
+
+    /**
+     * ✅ Charge les hashes des versions précédentes du document (hors batch courant)
+     *
+     * @param document clé du document (documentKey)
+     */
+    public void open(String batchId, String document) {
+        if (!enabled || document == null || document.isBlank()) {
+            return;
+        }
+
+        long previousRows = 0;
+        Session session = null;
+        try {
+            for (IngestionCheckpointStore.EmbeddingKind kind : IngestionCheckpointStore.EmbeddingKind.values()) {
+                previousRows += countPrevious(table(kind), document, batchId);
+            }
+            // Version précédente faite uniquement de quasi-doublons : ses liens doivent aussi être remplacés
+            previousRows += nearDuplicates.countLinks(EmbeddingDeletionService.DOCUMENT_KEY_EXPR + " = ?"
+                    + " AND " + EmbeddingDeletionService.BATCH_EXPR + " IS DISTINCT FROM ?", document, batchId);
+            session = new Session(document, previousRows);
+            if (previousRows > 0) {
+                for (IngestionCheckpointStore.EmbeddingKind kind : IngestionCheckpointStore.EmbeddingKind.values()) {
+                    loadPrevious(table(kind), document, batchId, session.previous.get(kind));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ [Incremental] Versions précédentes non chargées ({}): {}", document, e.getMessage());
+            return;
+        }
+
+        sessions.put(batchId, session);
+        if (previousRows > 0) {
+            log.info("♻️ [Incremental] {} - version précédente: {} lignes, {} hashes texte, {} hashes image",
+                    document, previousRows,
+                    session.previous.get(IngestionCheckpointStore.EmbeddingKind.TEXT).size(),
+                    session.previous.get(IngestionCheckpointStore.EmbeddingKind.IMAGE).size());
+        }
+    }
+
+    /**
+     * Hash présent dans une version précédente (ex. image : Vision inutile)
+     */
+    public boolean knows(String batchId, IngestionCheckpointStore.EmbeddingKind kind, String hash) {
+        Session session = sessions.get(batchId);
+        return session != null && hash != null && session.knows(kind, hash);
+    }
+
+    /**
+     * ✅ Réutilise une ligne existante de même hash ; ses métadonnées seront remplacées au commit
+     *
+     * @return true si le segment n'a pas à être embeddé
+     */
+    public boolean keep(String batchId, IngestionCheckpointStore.EmbeddingKind kind, String hash,
+                        Map<String, Object> metadata) {
+        Session session = sessions.get(batchId);
+        return session != null && hash != null && session.keep(kind, hash, metadata);
+    }
+
+    public void recordAdded(String batchId, IngestionCheckpointStore.EmbeddingKind kind, int count) {
+        Session session = sessions.get(batchId);
+        if (session != null) {
+            session.added(kind, count);
+        }
+    }
+
+    public void discard(String batchId) {
+        sessions.remove(batchId);
+    }
+
+    // ========================================================================
+    // COMMIT
+    // ========================================================================
+
+    /**
+     * ✅ Nouvelle version validée : lignes conservées rattachées au batch, anciennes lignes supprimées
+     *
+     * @return différentiel, ou null si aucune session (désactivé, reprise sur checkpoint)
+     */
+    public ReingestionDiff commit(String batchId) {
+        Session session = sessions.remove(batchId);
+        if (session == null) {
+            return null;
+        }
+
+        List<KeptRow> keptText = session.kept.get(IngestionCheckpointStore.EmbeddingKind.TEXT);
+        List<KeptRow> keptImages = session.kept.get(IngestionCheckpointStore.EmbeddingKind.IMAGE);
+
+        reattach(embeddingDeletion.textTable(), keptText);
+        reattach(embeddingDeletion.imageTable(), keptImages);
+
+        long textRemoved = 0;
+        long imageRemoved = 0;
+        if (session.previousRows > 0) {
+            DocumentDeletionResult removed = embeddingDeletion.deleteSuperseded(session.document, batchId);
+            textRemoved = removed.getTextDeleted();
+            imageRemoved = removed.getImageDeleted();
+        }
+
+        ReingestionDiff diff = ReingestionDiff.builder()
+                .document(session.document)
+                .batchId(batchId)
+                .textAdded(session.added.get(IngestionCheckpointStore.EmbeddingKind.TEXT))
+                .textKept(keptText.size())
+                .textRemoved(textRemoved)
+                .imageAdded(session.added.get(IngestionCheckpointStore.EmbeddingKind.IMAGE))
+                .imageKept(keptImages.size())
+                .imageRemoved(imageRemoved)
+                .previousVersion(session.previousRows > 0)
+                .build();
+
+        meterRegistry.counter("ingestion.incremental.segments", "result", "kept")
+                .increment(keptText.size() + keptImages.size());
+        meterRegistry.counter("ingestion.incremental.segments", "result", "added")
+                .increment(diff.getTextAdded() + diff.getImageAdded());
+        meterRegistry.counter("ingestion.incremental.segments", "result", "removed")
+                .increment(textRemoved + imageRemoved);
+
+        if (diff.isPreviousVersion()) {
+            log.info("♻️ [Incremental] {} - texte +{} ={} -{}, images +{} ={} -{}",
+                    session.document, diff.getTextAdded(), diff.getTextKept(), textRemoved,
+                    diff.getImageAdded(), diff.getImageKept(), imageRemoved);
+        }
+        return diff;
+    }
+
+    /**
+     * Remplace les métadonnées des lignes conservées (batchId, uploadDate, page, savedPath...)
+     */
+    private void reattach(String table, List<KeptRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE " + table + " SET metadata = ?::json WHERE embedding_id = ?::uuid";
+        int size = Math.max(1, updateBatchSize);
+
+        for (int from = 0; from < rows.size(); from += size) {
+            List<Object[]> args = new ArrayList<>();
+            for (KeptRow row : rows.subList(from, Math.min(from + size, rows.size()))) {
+                try {
+                    args.add(new Object[]{JSON.writeValueAsString(row.metadata()), row.embeddingId()});
+                } catch (Exception e) {
+                    // Ligne non rattachée : supprimée avec l'ancienne version, le contenu reste couvert ailleurs
+                    log.warn("⚠️ [Incremental] Métadonnées non sérialisables ({}): {}", row.embeddingId(), e.getMessage());
+                }
+            }
+            jdbcTemplate.batchUpdate(sql, args);
+        }
+    }
+
+    // ========================================================================
+    // LECTURE DES VERSIONS PRÉCÉDENTES
+    // ========================================================================
+
+    private String table(IngestionCheckpointStore.EmbeddingKind kind) {
+        return kind == IngestionCheckpointStore.EmbeddingKind.TEXT
+                ? embeddingDeletion.textTable()
+                : embeddingDeletion.imageTable();
+    }
+
+    private long countPrevious(String table, String document, String batchId) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + table + " WHERE " + EmbeddingDeletionService.DOCUMENT_KEY_EXPR + " = ?"
+                        + " AND " + EmbeddingDeletionService.BATCH_EXPR + " IS DISTINCT FROM ?",
+                Long.class, document, batchId);
+        return count != null ? count : 0;
+    }
+
+    private void loadPrevious(String table, String document, String batchId, Map<String, Deque<String>> into) {
+        jdbcTemplate.query(
+                "SELECT embedding_id::text AS id, metadata->>'" + CONTENT_HASH + "' AS hash FROM " + table
+                        + " WHERE " + EmbeddingDeletionService.DOCUMENT_KEY_EXPR + " = ?"
+                        + " AND " + EmbeddingDeletionService.BATCH_EXPR + " IS DISTINCT FROM ?"
+                        + " AND metadata->>'" + CONTENT_HASH + "' IS NOT NULL",
+                rs -> {
+                    into.computeIfAbsent(rs.getString("hash"), k -> new ArrayDeque<>()).add(rs.getString("id"));
+                },
+                document, batchId);
+    }
+}
@@ -0,0 +1,181 @@
+// ============================================================================
+// SERVICE - IngestionCheckpointStore.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * ✅ Checkpoints d'ingestion par batch (PostgreSQL)
+ *
+ * - ingestion_checkpoint_ids : chaque ID d'embedding écrit est enregistré aussitôt (committed = false)
+ * - ingestion_checkpoints    : dernière unité terminée (page, ...) ; un checkpoint purge les IDs qu'il couvre
+ *   (le rollback complet supprime par filtre batchId, cf. EmbeddingDeletionService : seuls les IDs
+ *   postérieurs au dernier checkpoint restent en table)
+ *
+ * Reprise : les IDs non committés (travail postérieur au dernier checkpoint, ou crash)
+ * sont supprimés des stores, puis l'ingestion repart après la dernière unité terminée.
+ * Toutes les erreurs sont absorbées : le checkpointing ne doit jamais faire échouer une ingestion.
+ */
+@Slf4j
+@Service
+public class IngestionCheckpointStore {
+
+    public enum EmbeddingKind { TEXT, IMAGE }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${document.checkpoint.enabled:true}")
+    private boolean enabled;
+
+    @Value("${document.checkpoint.every-pages:10}")
+    private int everyPages;
+
+    public IngestionCheckpointStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("⏸️ [Checkpoint] Désactivé");
+            return;
+        }
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS ingestion_checkpoints (
+                    batch_id     VARCHAR(64) PRIMARY KEY,
+                    unit_kind    VARCHAR(16) NOT NULL,
+                    last_unit    INT NOT NULL,
+                    images_count INT NOT NULL DEFAULT 0,
+                    updated_at   TIMESTAMPTZ NOT NULL DEFAULT now()
+                )
+                """);
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS ingestion_checkpoint_ids (
+                    batch_id     VARCHAR(64) NOT NULL,
+                    kind         VARCHAR(8) NOT NULL,
+                    embedding_id VARCHAR(64) NOT NULL,
+                    committed    BOOLEAN NOT NULL DEFAULT false
+                )
+                """);
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_checkpoint_ids_batch ON ingestion_checkpoint_ids (batch_id, committed)");
+
+        log.info("✅ [Checkpoint] Initialisé - checkpoint toutes les {} pages", everyPages);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getEveryPages() {
+        return Math.max(1, everyPages);
+    }
+
+    /**
+     * Dernière unité terminée d'un batch
+     */
+    public record Checkpoint(String batchId, String unitKind, int lastUnit, int imagesCount) {}
+
+    public Optional<Checkpoint> load(String batchId) {
+        if (!enabled) return Optional.empty();
+        try {
+            return jdbcTemplate.query(
+                    "SELECT batch_id, unit_kind, last_unit, images_count FROM ingestion_checkpoints WHERE batch_id = ?",
+                    (rs, i) -> new Checkpoint(
+                            rs.getString("batch_id"),
+                            rs.getString("unit_kind"),
+                            rs.getInt("last_unit"),
+                            rs.getInt("images_count")),
+                    batchId).stream().findFirst();
+        } catch (Exception e) {
+            log.warn("⚠️ [Checkpoint] Lecture impossible (batchId={}): {}", batchId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Enregistre des IDs fraîchement écrits (non committés tant qu'aucun checkpoint ne les couvre)
+     */
+    public void recordIds(String batchId, EmbeddingKind kind, List<String> ids) {
+        if (!enabled || ids == null || ids.isEmpty()) return;
+        try {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO ingestion_checkpoint_ids (batch_id, kind, embedding_id) VALUES (?, ?, ?)",
+                    ids, ids.size(),
+                    (ps, id) -> {
+                        ps.setString(1, batchId);
+                        ps.setString(2, kind.name());
+                        ps.setString(3, id);
+                    });
+        } catch (Exception e) {
+            log.warn("⚠️ [Checkpoint] IDs non enregistrés (batchId={}): {}", batchId, e.getMessage());
+        }
+    }
+
+    /**
+     * Checkpoint : unités [0, lastUnit) terminées, tous les IDs écrits jusqu'ici deviennent définitifs
+     * (plus besoin de les garder : la table ne contient que le travail non checkpointé)
+     */
+    public void commit(String batchId, String unitKind, int lastUnit, int imagesCount) {
+        if (!enabled) return;
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO ingestion_checkpoints (batch_id, unit_kind, last_unit, images_count, updated_at)
+                    VALUES (?, ?, ?, ?, now())
+                    ON CONFLICT (batch_id) DO UPDATE
+                       SET unit_kind = EXCLUDED.unit_kind,
+                           last_unit = EXCLUDED.last_unit,
+                           images_count = EXCLUDED.images_count,
+                           updated_at = now()
+                    """, batchId, unitKind, lastUnit, imagesCount);
+            jdbcTemplate.update(
+                    "DELETE FROM ingestion_checkpoint_ids WHERE batch_id = ? AND committed = false",
+                    batchId);
+        } catch (Exception e) {
+            log.warn("⚠️ [Checkpoint] Checkpoint non enregistré (batchId={}): {}", batchId, e.getMessage());
+        }
+    }
+
+    public List<String> uncommittedIds(String batchId, EmbeddingKind kind) {
+        if (!enabled) return List.of();
+        try {
+            return jdbcTemplate.queryForList(
+                    "SELECT embedding_id FROM ingestion_checkpoint_ids WHERE batch_id = ? AND kind = ? AND committed = false",
+                    String.class, batchId, kind.name());
+        } catch (Exception e) {
+            log.warn("⚠️ [Checkpoint] Lecture IDs impossible (batchId={}): {}", batchId, e.getMessage());
+            return List.of();
+        }
+    }
+
+    public void deleteUncommitted(String batchId) {
+        if (!enabled) return;
+        try {
+            jdbcTemplate.update(
+                    "DELETE FROM ingestion_checkpoint_ids WHERE batch_id = ? AND committed = false", batchId);
+        } catch (Exception e) {
+            log.warn("⚠️ [Checkpoint] Nettoyage impossible (batchId={}): {}", batchId, e.getMessage());
+        }
+    }
+
+    /**
+     * Fin de batch (succès ou rollback complet) : plus rien à reprendre
+     */
+    public void clear(String batchId) {
+        if (!enabled) return;
+        try {
+            jdbcTemplate.update("DELETE FROM ingestion_checkpoint_ids WHERE batch_id = ?", batchId);
+            jdbcTemplate.update("DELETE FROM ingestion_checkpoints WHERE batch_id = ?", batchId);
+        } catch (Exception e) {
+            log.warn("⚠️ [Checkpoint] Suppression impossible (batchId={}): {}", batchId, e.getMessage());
+        }
+    }
+}
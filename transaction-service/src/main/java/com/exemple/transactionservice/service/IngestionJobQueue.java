@@ -0,0 +1,418 @@
+// ============================================================================
+// SERVICE - IngestionJobQueue.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.dto.UploadJob;
+import com.exemple.transactionservice.dto.UploadStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * ✅ File d'attente d'ingestion durable (PostgreSQL)
+ *
+ * - Table ingestion_jobs : statut, progression, contenu du fichier, verrou
+ * - Réservation par FOR UPDATE SKIP LOCKED (plusieurs workers / nœuds sans double traitement)
+ * - Timeout de visibilité : un job PROCESSING dont le verrou expire (crash, arrêt brutal)
+ *   redevient réservable, dans la limite de max-attempts
+ * - Le contenu (payload) est effacé dès que le job a réussi ; conservé en cas d'échec
+ *   pour permettre une relance qui reprend au dernier checkpoint
+ * - Contenu écrit en flux depuis le fichier de spool et relu par tranches (jamais entier en heap)
+ * - Limite d'uploads simultanés par utilisateur = jobs PENDING/PROCESSING en base (tous nœuds),
+ *   vérifiée sous verrou consultatif par utilisateur au moment de la mise en file ou de la relance
+ */
+@Slf4j
+@Service
+public class IngestionJobQueue {
+
+    private static final String JOB_COLUMNS =
+            "job_id, user_id, filename, original_filename, content_type, file_size, fingerprint, batch_id, " +
+            "status, progress, error_message, attempts, created_at, started_at, completed_at";
+
+    // Espace de noms des verrous consultatifs (pg_advisory_xact_lock(int, int))
+    private static final int USER_LOCK_NAMESPACE = 0x494A5155;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${assistant.upload.queue.visibility-timeout-seconds:300}")
+    private long visibilityTimeoutSeconds;
+
+    @Value("${assistant.upload.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    // Taille des tranches lues par readPayload (substring sur le bytea)
+    @Value("${assistant.upload.queue.payload-chunk-bytes:4194304}")
+    private int payloadChunkBytes;
+
+    public IngestionJobQueue(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS ingestion_jobs (
+                    job_id            VARCHAR(64) PRIMARY KEY,
+                    user_id           BIGINT,
+                    filename          VARCHAR(512) NOT NULL,
+                    original_filename VARCHAR(512),
+                    content_type      VARCHAR(255),
+                    file_size         BIGINT NOT NULL,
+                    fingerprint       VARCHAR(128),
+                    batch_id          VARCHAR(64) NOT NULL,
+                    payload           BYTEA,
+                    status            VARCHAR(16) NOT NULL,
+                    progress          INT NOT NULL DEFAULT 0,
+                    error_message     TEXT,
+                    attempts          INT NOT NULL DEFAULT 0,
+                    locked_by         VARCHAR(128),
+                    locked_until      TIMESTAMPTZ,
+                    created_at        TIMESTAMPTZ NOT NULL DEFAULT now(),
+                    started_at        TIMESTAMPTZ,
+                    completed_at      TIMESTAMPTZ
+                )
+                """);
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_ingestion_jobs_claim ON ingestion_jobs (status, created_at)");
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_ingestion_jobs_fingerprint ON ingestion_jobs (fingerprint)");
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_ingestion_jobs_user ON ingestion_jobs (user_id, created_at)");
+
+        log.info("✅ [JobQueue] Table ingestion_jobs prête - Visibilité: {}s, Tentatives max: {}",
+                visibilityTimeoutSeconds, maxAttempts);
+    }
+
+    // ========================================================================
+    // PRODUCTEUR
+    // ========================================================================
+
+    /**
+     * Met le job en file si l'utilisateur a moins de maxActive jobs PENDING/PROCESSING
+     *
+     * @return false si la limite est atteinte (rien n'est inséré)
+     */
+    public boolean enqueue(String jobId,
+                           Long userId,
+                           String filename,
+                           String originalFilename,
+                           String contentType,
+                           String fingerprint,
+                           String batchId,
+                           Path payload,
+                           long size,
+                           int maxActive) {
+
+        Boolean queued = transactionTemplate.execute(status -> {
+            lockUser(userId);
+            if (countActive(userId) >= maxActive) {
+                return false;
+            }
+            try (InputStream in = Files.newInputStream(payload)) {
+                jdbcTemplate.update("""
+                        INSERT INTO ingestion_jobs
+                            (job_id, user_id, filename, original_filename, content_type, file_size,
+                             fingerprint, batch_id, payload, status, progress, attempts, created_at)
+                        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, 0, now())
+                        """,
+                        ps -> {
+                            ps.setString(1, jobId);
+                            ps.setObject(2, userId);
+                            ps.setString(3, filename);
+                            ps.setString(4, originalFilename);
+                            ps.setString(5, contentType);
+                            ps.setLong(6, size);
+                            ps.setString(7, fingerprint);
+                            ps.setString(8, batchId);
+                            ps.setBinaryStream(9, in, size);
+                            ps.setString(10, UploadStatus.PENDING.name());
+                        });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Lecture du fichier de spool impossible: " + payload, e);
+            }
+            return true;
+        });
+
+        if (Boolean.TRUE.equals(queued)) {
+            log.debug("📥 [JobQueue] Job en file: {} ({})", jobId, filename);
+            return true;
+        }
+        log.debug("⏳ [JobQueue] Limite de jobs actifs atteinte pour user {} ({})", userId, filename);
+        return false;
+    }
+
+    /**
+     * Jobs en attente ou en cours de l'utilisateur (slots d'upload occupés)
+     */
+    public int countActive(Long userId) {
+        Integer count = jdbcTemplate.queryForObject("""
+                SELECT count(*) FROM ingestion_jobs
+                 WHERE user_id IS NOT DISTINCT FROM ? AND status IN ('PENDING', 'PROCESSING')
+                """, Integer.class, userParam(userId));
+        return count != null ? count : 0;
+    }
+
+    // Sérialise les admissions d'un même utilisateur jusqu'à la fin de la transaction
+    private void lockUser(Long userId) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, hashtext(?))",
+                rs -> null, USER_LOCK_NAMESPACE, String.valueOf(userId));
+    }
+
+    private static SqlParameterValue userParam(Long userId) {
+        return new SqlParameterValue(Types.BIGINT, userId);
+    }
+
+    // ========================================================================
+    // WORKERS
+    // ========================================================================
+
+    /**
+     * Réserve le plus ancien job disponible (PENDING, ou PROCESSING au verrou expiré)
+     */
+    public Optional<ClaimedJob> claimNext(String workerId) {
+        List<ClaimedJob> claimed = jdbcTemplate.query("""
+                UPDATE ingestion_jobs
+                   SET status = 'PROCESSING',
+                       attempts = attempts + 1,
+                       locked_by = ?,
+                       locked_until = now() + make_interval(secs => ?),
+                       started_at = COALESCE(started_at, now()),
+                       progress = GREATEST(progress, 10)
+                 WHERE job_id = (
+                        SELECT job_id FROM ingestion_jobs
+                         WHERE attempts < ?
+                           AND (status = 'PENDING'
+                                OR (status = 'PROCESSING' AND locked_until < now()))
+                         ORDER BY created_at
+                         FOR UPDATE SKIP LOCKED
+                         LIMIT 1)
+                RETURNING job_id, user_id, original_filename, content_type, batch_id, attempts,
+                          file_size, fingerprint, payload IS NOT NULL AS has_payload
+                """,
+                (rs, i) -> new ClaimedJob(
+                        rs.getString("job_id"),
+                        (Long) rs.getObject("user_id"),
+                        rs.getString("original_filename"),
+                        rs.getString("content_type"),
+                        rs.getString("batch_id"),
+                        rs.getInt("attempts"),
+                        rs.getLong("file_size"),
+                        rs.getString("fingerprint"),
+                        rs.getBoolean("has_payload")),
+                workerId, (double) visibilityTimeoutSeconds, maxAttempts);
+
+        return claimed.stream().findFirst();
+    }
+
+    /**
+     * ✅ Recopie le contenu d'un job vers un flux, par tranches de payload-chunk-bytes
+     *
+     * @return nombre d'octets écrits
+     */
+    public long readPayload(String jobId, OutputStream out) throws IOException {
+        int chunk = Math.max(64 * 1024, payloadChunkBytes);
+        long offset = 0;
+        while (true) {
+            // substring sur bytea : indices à partir de 1
+            List<byte[]> rows = jdbcTemplate.query(
+                    "SELECT substring(payload FROM ? FOR ?) AS part FROM ingestion_jobs WHERE job_id = ? AND payload IS NOT NULL",
+                    (rs, i) -> rs.getBytes("part"), offset + 1, chunk, jobId);
+            if (rows.isEmpty()) {
+                if (offset == 0) throw new IOException("Contenu du job absent: " + jobId);
+                return offset;
+            }
+            byte[] part = rows.get(0);
+            if (part == null || part.length == 0) {
+                return offset;
+            }
+            out.write(part);
+            offset += part.length;
+            if (part.length < chunk) {
+                return offset;
+            }
+        }
+    }
+
+    /**
+     * Prolonge le verrou d'un job en cours ; false si le job a été repris par un autre worker
+     */
+    public boolean heartbeat(String jobId, String workerId) {
+        return jdbcTemplate.update("""
+                UPDATE ingestion_jobs
+                   SET locked_until = now() + make_interval(secs => ?)
+                 WHERE job_id = ? AND locked_by = ? AND status = 'PROCESSING'
+                """, (double) visibilityTimeoutSeconds, jobId, workerId) == 1;
+    }
+
+    public void updateProgress(String jobId, int progress) {
+        jdbcTemplate.update(
+                "UPDATE ingestion_jobs SET progress = ? WHERE job_id = ? AND status = 'PROCESSING'",
+                progress, jobId);
+    }
+
+    public void complete(String jobId, String workerId) {
+        jdbcTemplate.update("""
+                UPDATE ingestion_jobs
+                   SET status = 'COMPLETED', progress = 100, payload = NULL, error_message = NULL,
+                       locked_by = NULL, locked_until = NULL, completed_at = now()
+                 WHERE job_id = ? AND locked_by = ?
+                """, jobId, workerId);
+    }
+
+    public void fail(String jobId, String workerId, String errorMessage) {
+        jdbcTemplate.update("""
+                UPDATE ingestion_jobs
+                   SET status = 'FAILED', progress = 0, error_message = ?,
+                       locked_by = NULL, locked_until = NULL, completed_at = now()
+                 WHERE job_id = ? AND locked_by = ?
+                """, truncate(errorMessage), jobId, workerId);
+    }
+
+    /**
+     * Relance d'un job échoué (même batchId => reprise au dernier checkpoint),
+     * soumise à la même limite de jobs actifs que la mise en file
+     */
+    public Requeue requeue(String jobId, Long userId, int maxActive) {
+        Requeue outcome = transactionTemplate.execute(status -> {
+            lockUser(userId);
+            if (countActive(userId) >= maxActive) {
+                return Requeue.LIMIT_REACHED;
+            }
+            int updated = jdbcTemplate.update("""
+                    UPDATE ingestion_jobs
+                       SET status = 'PENDING', progress = 0, attempts = 0, error_message = NULL,
+                           locked_by = NULL, locked_until = NULL, completed_at = NULL
+                     WHERE job_id = ? AND user_id IS NOT DISTINCT FROM ?
+                       AND status = 'FAILED' AND payload IS NOT NULL
+                    """, jobId, userParam(userId));
+            return updated == 1 ? Requeue.REQUEUED : Requeue.NOT_RETRYABLE;
+        });
+        return outcome != null ? outcome : Requeue.NOT_RETRYABLE;
+    }
+
+    /**
+     * Job annulé après rollback complet (plus de reprise possible)
+     */
+    public boolean markRolledBack(String jobId) {
+        return jdbcTemplate.update("""
+                UPDATE ingestion_jobs
+                   SET status = 'FAILED', progress = 0, payload = NULL,
+                       error_message = 'Annulé : rollback complet effectué',
+                       locked_by = NULL, locked_until = NULL, completed_at = now()
+                 WHERE job_id = ? AND status IN ('FAILED', 'COMPLETED', 'PENDING')
+                """, jobId) == 1;
+    }
+
+    /**
+     * Jobs abandonnés : verrou expiré et tentatives épuisées => FAILED
+     */
+    public int failExhausted() {
+        return jdbcTemplate.update("""
+                UPDATE ingestion_jobs
+                   SET status = 'FAILED', locked_by = NULL, locked_until = NULL,
+                       completed_at = now(),
+                       error_message = 'Abandonné après ' || attempts || ' tentative(s) interrompue(s)'
+                 WHERE status = 'PROCESSING' AND locked_until < now() AND attempts >= ?
+                """, maxAttempts);
+    }
+
+    /**
+     * Purge des jobs terminés plus anciens que la rétention
+     */
+    public int purgeFinished(Duration retention) {
+        return jdbcTemplate.update("""
+                DELETE FROM ingestion_jobs
+                 WHERE status IN ('COMPLETED', 'FAILED') AND completed_at < ?
+                """, Timestamp.from(Instant.now().minus(retention)));
+    }
+
+    // ========================================================================
+    // LECTURE (status / liste)
+    // ========================================================================
+
+    public Optional<UploadJob> find(String jobId) {
+        return jdbcTemplate.query(
+                "SELECT " + JOB_COLUMNS + " FROM ingestion_jobs WHERE job_id = ?",
+                UPLOAD_JOB_MAPPER, jobId).stream().findFirst();
+    }
+
+    public List<UploadJob> list(Long userId, int limit) {
+        if (userId == null) {
+            return jdbcTemplate.query(
+                    "SELECT " + JOB_COLUMNS + " FROM ingestion_jobs ORDER BY created_at DESC LIMIT ?",
+                    UPLOAD_JOB_MAPPER, limit);
+        }
+        return jdbcTemplate.query(
+                "SELECT " + JOB_COLUMNS + " FROM ingestion_jobs WHERE user_id = ? ORDER BY created_at DESC LIMIT ?",
+                UPLOAD_JOB_MAPPER, userId, limit);
+    }
+
+    public enum Requeue { REQUEUED, LIMIT_REACHED, NOT_RETRYABLE }
+
+    /**
+     * Job réservé par un worker (contenu relu ensuite par readPayload)
+     */
+    public record ClaimedJob(
+            String jobId,
+            Long userId,
+            String originalFilename,
+            String contentType,
+            String batchId,
+            int attempt,
+            long fileSize,
+            String fingerprint,
+            boolean hasPayload
+    ) {}
+
+    private static final RowMapper<UploadJob> UPLOAD_JOB_MAPPER = (ResultSet rs, int rowNum) -> {
+        UploadJob job = new UploadJob(
+                rs.getString("job_id"),
+                rs.getString("filename"),
+                rs.getLong("file_size"));
+        job.setUserId((Long) rs.getObject("user_id"));
+        job.setFingerprint(rs.getString("fingerprint"));
+        job.setBatchId(rs.getString("batch_id"));
+        job.setStatus(UploadStatus.valueOf(rs.getString("status")));
+        job.setProgress(rs.getInt("progress"));
+        job.setErrorMessage(rs.getString("error_message"));
+        job.setAttempts(rs.getInt("attempts"));
+        job.setCreatedAt(toInstant(rs, "created_at"));
+        job.setStartedAt(toInstant(rs, "started_at"));
+        job.setCompletedAt(toInstant(rs, "completed_at"));
+        return job;
+    };
+
+    private static Instant toInstant(ResultSet rs, String column) throws SQLException {
+        Timestamp ts = rs.getTimestamp(column);
+        return ts != null ? ts.toInstant() : null;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() <= 2000 ? message : message.substring(0, 2000);
+    }
+}
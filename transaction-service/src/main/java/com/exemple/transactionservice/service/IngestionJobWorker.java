@@ -0,0 +1,325 @@
+// ============================================================================
+// SERVICE - IngestionJobWorker.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.util.PersistentMultipartFile;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ✅ Workers d'ingestion (consommateurs de IngestionJobQueue)
+ *
+ * - Pool dédié et borné (remplace CompletableFuture.runAsync sur le ForkJoin commun)
+ * - Chaque worker réserve un job, prolonge son verrou (heartbeat) pendant l'ingestion,
+ *   puis le marque COMPLETED / FAILED
+ * - Un job interrompu par un crash est repris par n'importe quel nœud à l'expiration du verrou
+ */
+@Slf4j
+@Service
+public class IngestionJobWorker {
+
+    private final IngestionJobQueue jobQueue;
+    private final MultimodalIngestionService ingestionService;
+    private final IngestionProgressService progress;
+    private final UploadSpoolService uploadSpool;
+    private final UploadFingerprintIndex uploadFingerprints;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${assistant.upload.queue.workers:2}")
+    private int workers;
+
+    @Value("${assistant.upload.queue.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${assistant.upload.queue.visibility-timeout-seconds:300}")
+    private long visibilityTimeoutSeconds;
+
+    @Value("${assistant.upload.queue.retention-days:7}")
+    private long retentionDays;
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+    private final ConcurrentHashMap<String, String> runningJobs = new ConcurrentHashMap<>();
+
+    private ExecutorService workerExecutor;
+    private ScheduledExecutorService maintenanceExecutor;
+    private volatile boolean running;
+
+    public IngestionJobWorker(IngestionJobQueue jobQueue,
+                              MultimodalIngestionService ingestionService,
+                              IngestionProgressService progress,
+                              UploadSpoolService uploadSpool,
+                              UploadFingerprintIndex uploadFingerprints,
+                              MeterRegistry meterRegistry) {
+        this.jobQueue = jobQueue;
+        this.ingestionService = ingestionService;
+        this.progress = progress;
+        this.uploadSpool = uploadSpool;
+        this.uploadFingerprints = uploadFingerprints;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        int threads = Math.max(1, workers);
+        this.running = true;
+        this.workerExecutor = Executors.newFixedThreadPool(threads, namedFactory("ingest-job-"));
+        this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(namedFactory("ingest-job-maint-"));
+
+        for (int i = 1; i <= threads; i++) {
+            String workerId = nodeId + "#" + i;
+            workerExecutor.submit(() -> pollLoop(workerId));
+        }
+
+        // Heartbeat : prolonge les verrous bien avant leur expiration
+        long heartbeatSeconds = Math.max(1, visibilityTimeoutSeconds / 3);
+        maintenanceExecutor.scheduleWithFixedDelay(this::heartbeatRunningJobs,
+                heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+
+        // Jobs abandonnés + purge des jobs terminés
+        maintenanceExecutor.scheduleWithFixedDelay(this::sweep, 1, 10, TimeUnit.MINUTES);
+
+        log.info("✅ [JobWorker] Démarré - {} workers, poll: {}ms, nœud: {}", threads, pollIntervalMs, nodeId);
+    }
+
+    private ThreadFactory namedFactory(String prefix) {
+        AtomicInteger idx = new AtomicInteger(0);
+        return r -> {
+            Thread t = new Thread(r);
+            t.setName(prefix + idx.incrementAndGet());
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler((thread, ex) ->
+                    log.error("❌ [JobWorker] Uncaught exception in {}", thread.getName(), ex)
+            );
+            return t;
+        };
+    }
+
+    // ========================================================================
+    // BOUCLE WORKER
+    // ========================================================================
+
+    private void pollLoop(String workerId) {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                Optional<IngestionJobQueue.ClaimedJob> claimed = jobQueue.claimNext(workerId);
+                if (claimed.isEmpty()) {
+                    Thread.sleep(pollIntervalMs);
+                    continue;
+                }
+                process(claimed.get(), workerId);
+
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Base indisponible : on réessaie au prochain tour sans tuer le worker
+                log.warn("⚠️ [JobWorker] {} - Erreur file d'attente: {}", workerId, e.getMessage());
+                try {
+                    Thread.sleep(Math.max(pollIntervalMs, 5000));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } catch (Throwable t) {
+                // Erreur fatale remontée par process() après marquage FAILED : le worker survit
+                log.error("❌ [JobWorker] {} - Erreur fatale pendant un job", workerId, t);
+            }
+        }
+    }
+
+    private void process(IngestionJobQueue.ClaimedJob job, String workerId) {
+        Instant start = Instant.now();
+        String jobId = job.jobId();
+        String filename = job.originalFilename();
+        boolean success = false;
+        Path spooled = null;
+
+        runningJobs.put(jobId, workerId);
+        try {
+            if (job.attempt() > 1) {
+                log.warn("🔁 [{}] Reprise après interruption (tentative {}): {}", jobId, job.attempt(), filename);
+            } else {
+                log.info("🔄 [{}] Ingestion en cours: {}", jobId, filename);
+            }
+
+            if (!job.hasPayload()) {
+                throw new IllegalStateException("Contenu du fichier absent");
+            }
+
+            // Contenu relu par tranches vers un fichier local : l'ingestion lit depuis le disque
+            spooled = uploadSpool.restore(jobId);
+            PersistentMultipartFile file = new PersistentMultipartFile(spooled, filename, job.contentType());
+
+            progress.begin(jobId, job.batchId(), job.fileSize());
+            ingestionService.ingestFile(file, job.batchId(), job.userId());
+
+            // Ligne durable d'abord : un abonné SSE tardif lit l'état terminal en base
+            jobQueue.complete(jobId, workerId);
+            success = true;
+            markFingerprintIndexed(job);
+            progress.finish(jobId, true, "Upload terminé");
+
+            Duration duration = Duration.between(start, Instant.now());
+            log.info("✅ [{}] Upload terminé avec succès: {} en {}ms", jobId, filename, duration.toMillis());
+            recordUploadMetrics(filename, job.fileSize(), true, duration);
+
+        } catch (Exception e) {
+            log.error("❌ [{}] Erreur lors de l'ingestion: {}", jobId, filename, e);
+
+            // Échec applicatif (rollback ou retour au dernier checkpoint déjà faits par l'ingestion) :
+            // pas de nouvelle tentative automatique, relance explicite via /upload/{jobId}/retry
+            markFailed(job, workerId, e.getMessage(), start);
+
+        } catch (Error err) {
+            // StackOverflowError, OutOfMemoryError... : le job ne doit pas rester RUNNING jusqu'à
+            // l'expiration du verrou, puis l'erreur remonte à la boucle du worker
+            log.error("❌ [{}] Erreur fatale lors de l'ingestion: {}", jobId, filename, err);
+            markFailed(job, workerId, err.toString(), start);
+            throw err;
+
+        } finally {
+            uploadSpool.delete(spooled);
+            runningJobs.remove(jobId);
+            meterRegistry.counter("ingestion.jobs.finished", "success", String.valueOf(success)).increment();
+        }
+    }
+
+    /**
+     * Job en échec : statut FAILED en base, fingerprint libéré, progression terminée
+     */
+    private void markFailed(IngestionJobQueue.ClaimedJob job, String workerId, String message, Instant start) {
+        try {
+            jobQueue.fail(job.jobId(), workerId, message);
+        } catch (Exception e) {
+            log.warn("⚠️ [{}] Statut FAILED non enregistré (repris à l'expiration du verrou): {}",
+                    job.jobId(), e.getMessage());
+        }
+        releaseFingerprint(job);
+        progress.finish(job.jobId(), false, "Échec: " + message);
+        recordUploadMetrics(job.originalFilename(), job.fileSize(), false,
+                Duration.between(start, Instant.now()));
+    }
+
+    /**
+     * Job réussi : un upload identique est renvoyé vers le document indexé
+     */
+    private void markFingerprintIndexed(IngestionJobQueue.ClaimedJob job) {
+        try {
+            uploadFingerprints.markIndexed(job.fingerprint(), job.jobId());
+        } catch (Exception e) {
+            log.warn("⚠️ [{}] Fingerprint non mis à jour: {}", job.jobId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Job en échec : un nouvel upload du même fichier ne doit pas être renvoyé vers ce job
+     */
+    private void releaseFingerprint(IngestionJobQueue.ClaimedJob job) {
+        try {
+            uploadFingerprints.release(job.fingerprint(), job.jobId());
+        } catch (Exception e) {
+            log.warn("⚠️ [{}] Fingerprint non libéré: {}", job.jobId(), e.getMessage());
+        }
+    }
+
+    // ========================================================================
+    // MAINTENANCE
+    // ========================================================================
+
+    private void heartbeatRunningJobs() {
+        runningJobs.forEach((jobId, workerId) -> {
+            try {
+                if (!jobQueue.heartbeat(jobId, workerId)) {
+                    log.warn("⚠️ [{}] Verrou perdu (job repris ailleurs ou terminé)", jobId);
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ [{}] Heartbeat impossible: {}", jobId, e.getMessage());
+            } catch (Error err) {
+                // Une erreur non attrapée annulerait le heartbeat planifié de tous les jobs
+                log.error("❌ [{}] Heartbeat impossible", jobId, err);
+            }
+        });
+    }
+
+    private void sweep() {
+        try {
+            int abandoned = jobQueue.failExhausted();
+            int purged = jobQueue.purgeFinished(Duration.ofDays(retentionDays));
+            if (abandoned > 0 || purged > 0) {
+                log.info("🧹 [JobWorker] {} job(s) abandonné(s), {} job(s) purgé(s)", abandoned, purged);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ [JobWorker] Maintenance impossible: {}", e.getMessage());
+        } catch (Error err) {
+            // Une erreur non attrapée annulerait la maintenance planifiée
+            log.error("❌ [JobWorker] Maintenance impossible", err);
+        }
+    }
+
+    private void recordUploadMetrics(String filename, long sizeBytes, boolean success, Duration duration) {
+        try {
+            String extension = getFileExtension(filename);
+
+            meterRegistry.counter("uploads.total",
+                    "success", String.valueOf(success),
+                    "extension", extension
+            ).increment();
+
+            if (success) {
+                meterRegistry.counter("uploads.bytes.total",
+                        "extension", extension
+                ).increment(sizeBytes);
+            }
+
+            meterRegistry.summary("uploads.size.bytes",
+                    "extension", extension
+            ).record(sizeBytes);
+
+            if (success) {
+                meterRegistry.timer("uploads.duration",
+                        "extension", extension
+                ).record(duration);
+            }
+
+        } catch (Exception e) {
+            log.warn("⚠️ Erreur enregistrement métriques upload", e);
+        }
+    }
+
+    private String getFileExtension(String filename) {
+        if (filename == null) return "";
+        int lastDot = filename.lastIndexOf('.');
+        return lastDot == -1 ? "" : filename.substring(lastDot + 1).toLowerCase();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("🛑 [JobWorker] Arrêt des workers ({} job(s) en cours)...", runningJobs.size());
+        running = false;
+        maintenanceExecutor.shutdownNow();
+        workerExecutor.shutdown();
+
+        try {
+            // Les jobs non terminés seront repris à l'expiration de leur verrou
+            if (!workerExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                workerExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workerExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+// ============================================================================
+// SERVICE - IngestionMetrics.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Instrumentation par étape de l'ingestion (Micrometer + JFR)
+ *
+ * - Timer ingestion.stage.duration{stage, type, outcome} (histogramme exporté vers /actuator/prometheus)
+ * - Compteur ingestion.stage.items{stage, type} et résumé ingestion.stage.bytes{stage, type}
+ * - Timer ingestion.file.duration{type, outcome} pour le fichier complet
+ * - Un événement JFR IngestionStageEvent par étape
+ *
+ * Le type de fichier est associé au batchId au début de l'ingestion : les étapes exécutées sur
+ * d'autres threads (pool de parsing, pool Vision) sont taguées sans contexte de thread.
+ *
+ * Usage : try (Span span = metrics.start(Stage.EMBED, batchId)) { ...; span.items(n).ok(); }
+ * Un span fermé sans ok() est compté en outcome=error.
+ */
+@Slf4j
+@Service
+public class IngestionMetrics {
+
+    public enum Stage { DETECT, PARSE, RENDER, ENCODE, VISION, SPLIT, EMBED, STORE, ROLLBACK }
+
+    private static final String UNKNOWN_TYPE = "unknown";
+
+    @Value("${document.metrics.histogram:true}")
+    private boolean histogram;
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, String> fileTypes = new ConcurrentHashMap<>();
+
+    public IngestionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // ========================================================================
+    // CYCLE DE VIE D'UN BATCH
+    // ========================================================================
+
+    /**
+     * Type de fichier du batch (extension, puis type détecté) : tag des étapes suivantes
+     */
+    public void fileType(String batchId, String type) {
+        if (batchId != null && type != null && !type.isBlank()) {
+            fileTypes.put(batchId, type.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Fin d'ingestion du fichier : durée totale et taille, puis oubli du batch
+     */
+    public void fileFinished(String batchId, long sizeBytes, long durationNanos, boolean success) {
+        String type = fileTypes.getOrDefault(batchId, UNKNOWN_TYPE);
+        fileTypes.remove(batchId);
+
+        String outcome = success ? "success" : "error";
+        timer("ingestion.file.duration", "type", type, "outcome", outcome)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("ingestion.file.size")
+                .baseUnit("bytes")
+                .tags("type", type, "outcome", outcome)
+                .register(meterRegistry)
+                .record(sizeBytes);
+    }
+
+    // ========================================================================
+    // ÉTAPES
+    // ========================================================================
+
+    public Span start(Stage stage, String batchId) {
+        return new Span(stage, batchId, fileTypes.getOrDefault(batchId == null ? "" : batchId, UNKNOWN_TYPE));
+    }
+
+    /**
+     * ✅ Mesure d'une étape : timer + compteurs à la fermeture, événement JFR si activé
+     */
+    public final class Span implements AutoCloseable {
+        private final Stage stage;
+        private final String type;
+        private final long startNanos = System.nanoTime();
+        private final IngestionStageEvent event = new IngestionStageEvent();
+        private boolean ok;
+        private long items;
+        private long bytes;
+
+        private Span(Stage stage, String batchId, String type) {
+            this.stage = stage;
+            this.type = type;
+            if (event.isEnabled()) {
+                event.stage = stage.name().toLowerCase(Locale.ROOT);
+                event.fileType = type;
+                event.batchId = batchId;
+                event.begin();
+            }
+        }
+
+        public Span items(long count) {
+            this.items += count;
+            return this;
+        }
+
+        public Span bytes(long count) {
+            this.bytes += count;
+            return this;
+        }
+
+        public Span ok() {
+            this.ok = true;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            String stageTag = stage.name().toLowerCase(Locale.ROOT);
+            String outcome = ok ? "success" : "error";
+            try {
+                timer("ingestion.stage.duration", "stage", stageTag, "type", type, "outcome", outcome)
+                        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                if (items > 0) {
+                    meterRegistry.counter("ingestion.stage.items", "stage", stageTag, "type", type).increment(items);
+                }
+                if (bytes > 0) {
+                    DistributionSummary.builder("ingestion.stage.bytes")
+                            .baseUnit("bytes")
+                            .tags("stage", stageTag, "type", type)
+                            .register(meterRegistry)
+                            .record(bytes);
+                }
+            } catch (Exception e) {
+                log.debug("[Metrics] Étape {} non enregistrée: {}", stageTag, e.getMessage());
+            }
+
+            if (event.isEnabled()) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.outcome = outcome;
+                    event.items = items;
+                    event.bytes = bytes;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram(histogram)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,164 @@
+// ============================================================================
+// SERVICE - IngestionPipeline.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Pipeline d'ingestion à étages (parsing → Vision → embedding/store)
+ *
+ * - Le parsing/rendu reste sur le thread appelant (PDFBox/POI ne sont pas thread-safe)
+ * - Étage Vision : pool dédié (appels bloquants GPT-4o)
+ * - Étage indexation : pool dédié (embedAll + addAll)
+ * - Mémoire bornée : un sémaphore par exécution limite le nombre d'items en vol ;
+ *   le producteur bloque quand Vision est lent au lieu d'accumuler des BufferedImage
+ */
+@Slf4j
+@Service
+public class IngestionPipeline {
+
+    @Value("${document.pipeline.vision-workers:4}")
+    private int visionWorkers;
+
+    @Value("${document.pipeline.index-workers:2}")
+    private int indexWorkers;
+
+    @Value("${document.pipeline.max-in-flight:8}")
+    private int maxInFlight;
+
+    private ExecutorService visionExecutor;
+    private ExecutorService indexExecutor;
+
+    @PostConstruct
+    public void init() {
+        this.visionExecutor = createExecutor("ingest-vision-", Math.max(1, visionWorkers));
+        this.indexExecutor = createExecutor("ingest-index-", Math.max(1, indexWorkers));
+
+        log.info("✅ [Pipeline] Initialisé - Vision: {} workers, Index: {} workers, En vol max: {}",
+                visionWorkers, indexWorkers, maxInFlight);
+    }
+
+    private ExecutorService createExecutor(String prefix, int threads) {
+        AtomicInteger idx = new AtomicInteger(0);
+
+        ThreadFactory tf = r -> {
+            Thread t = new Thread(r);
+            t.setName(prefix + idx.incrementAndGet());
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler((thread, ex) ->
+                    log.error("❌ [Pipeline] Uncaught exception in {}", thread.getName(), ex)
+            );
+            return t;
+        };
+
+        return Executors.newFixedThreadPool(threads, tf);
+    }
+
+    /**
+     * Ouvre une exécution (un document) avec sa propre limite d'items en vol
+     */
+    public Run open(String batchId) {
+        return new Run(batchId, Math.max(1, maxInFlight));
+    }
+
+    /**
+     * ✅ Exécution du pipeline pour un document
+     * Non thread-safe côté producteur : submit* doit être appelé depuis un seul thread.
+     */
+    public final class Run {
+
+        private final String batchId;
+        private final Semaphore inFlight;
+        private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+        private final AtomicInteger failures = new AtomicInteger(0);
+
+        private Run(String batchId, int permits) {
+            this.batchId = batchId;
+            this.inFlight = new Semaphore(permits);
+        }
+
+        /**
+         * Étage Vision puis étage indexation. Bloque si trop d'items sont en vol.
+         */
+        public void submitImage(Supplier<String> visionStage, Consumer<String> indexStage) {
+            acquire();
+            CompletableFuture<Void> future = CompletableFuture
+                    .supplyAsync(visionStage, visionExecutor)
+                    .thenAcceptAsync(indexStage, indexExecutor)
+                    .whenComplete((r, ex) -> onStageDone(ex));
+            pending.add(future);
+        }
+
+        /**
+         * Étage indexation seul (texte déjà extrait par le producteur)
+         */
+        public void submitIndex(Runnable indexStage) {
+            acquire();
+            CompletableFuture<Void> future = CompletableFuture
+                    .runAsync(indexStage, indexExecutor)
+                    .whenComplete((r, ex) -> onStageDone(ex));
+            pending.add(future);
+        }
+
+        /**
+         * Attend la fin de tous les étages ; retourne le nombre d'items en échec
+         */
+        public int awaitCompletion() {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]))
+                    .exceptionally(ex -> null)
+                    .join();
+            pending.clear();
+            return failures.get();
+        }
+
+        private void acquire() {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Pipeline interrompu (batchId=" + batchId + ")", ie);
+            }
+        }
+
+        private void onStageDone(Throwable ex) {
+            inFlight.release();
+            if (ex != null) {
+                failures.incrementAndGet();
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                log.warn("⚠️ [Pipeline] Étage en échec (batchId={}): {}", batchId, cause.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("🛑 [Pipeline] Arrêt des pools...");
+        visionExecutor.shutdown();
+        indexExecutor.shutdown();
+
+        try {
+            if (!visionExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                visionExecutor.shutdownNow();
+            }
+            if (!indexExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                indexExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            visionExecutor.shutdownNow();
+            indexExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,326 @@
+// ============================================================================
+// SERVICE - IngestionProgressService.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.dto.IngestionProgressEvent;
+import com.exemple.transactionservice.dto.ReingestionDiff;
+import com.exemple.transactionservice.dto.UploadJob;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ✅ Progression temps réel des ingestions (un sink réactif par job)
+ *
+ * - L'ingestion rapporte par batchId (pages analysées, octets lus, images décrites, segments indexés)
+ * - Progression : pages (PDF), sinon octets lus (CSV en flux), sinon étape (images, indexation)
+ * - Le worker associe batchId -> jobId au démarrage et publie l'état terminal
+ * - Émissions limitées (throttle) ; la progression est aussi persistée dans ingestion_jobs
+ *   pour /upload/status et les clients connectés à un autre nœud
+ */
+@Slf4j
+@Service
+public class IngestionProgressService {
+
+    public static final String STAGE_QUEUED = "queued";
+    public static final String STAGE_PARSING = "parsing";
+    public static final String STAGE_IMAGES = "images";
+    public static final String STAGE_INDEXING = "indexing";
+    public static final String STAGE_FINALIZING = "finalizing";
+    public static final String STAGE_DONE = "done";
+
+    private final IngestionJobQueue jobQueue;
+
+    @Value("${assistant.upload.progress.min-emit-interval-ms:250}")
+    private long minEmitIntervalMs;
+
+    @Value("${assistant.upload.progress.persist-interval-ms:2000}")
+    private long persistIntervalMs;
+
+    // Abonnés éventuellement connectés avant le démarrage (ou sur un job d'un autre nœud) : expiration
+    private final Cache<String, JobProgress> jobs = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    private final ConcurrentHashMap<String, String> jobIdByBatch = new ConcurrentHashMap<>();
+
+    public IngestionProgressService(IngestionJobQueue jobQueue) {
+        this.jobQueue = jobQueue;
+    }
+
+    // ========================================================================
+    // CYCLE DE VIE (worker)
+    // ========================================================================
+
+    public void begin(String jobId, String batchId, long bytesTotal) {
+        JobProgress job = jobs.get(jobId, JobProgress::new);
+        job.batchId = batchId;
+        job.bytesTotal = bytesTotal;
+        job.startedAt = Instant.now();
+        job.stage = STAGE_PARSING;
+        jobIdByBatch.put(batchId, jobId);
+        emit(job, "processing", true);
+    }
+
+    public void finish(String jobId, boolean success, String message) {
+        JobProgress job = jobs.getIfPresent(jobId);
+        if (job == null) {
+            return;
+        }
+        if (job.batchId != null) {
+            jobIdByBatch.remove(job.batchId);
+        }
+        job.stage = STAGE_DONE;
+        job.message = message;
+        emit(job, success ? "completed" : "failed", true);
+        job.sink.tryEmitComplete();
+        jobs.invalidate(jobId);
+    }
+
+    // ========================================================================
+    // RAPPORTS (ingestion, par batchId ; sans effet hors job)
+    // ========================================================================
+
+    public void stage(String batchId, String stage) {
+        JobProgress job = byBatch(batchId);
+        if (job == null) return;
+        job.stage = stage;
+        emit(job, "processing", true);
+    }
+
+    public void pagesTotal(String batchId, int pagesTotal) {
+        JobProgress job = byBatch(batchId);
+        if (job == null) return;
+        job.pagesTotal = pagesTotal;
+        emit(job, "processing", false);
+    }
+
+    public void pageParsed(String batchId, int pageNum) {
+        JobProgress job = byBatch(batchId);
+        if (job == null) return;
+        job.pagesParsed.accumulateAndGet(pageNum, Math::max);
+        emit(job, "processing", false);
+    }
+
+    public void bytesRead(String batchId, long bytesRead) {
+        JobProgress job = byBatch(batchId);
+        if (job == null) return;
+        job.bytesRead.accumulateAndGet(bytesRead, Math::max);
+        emit(job, "processing", false);
+    }
+
+    /**
+     * Flux compté : la lecture d'un fichier en flux (CSV) rapporte les octets lus
+     */
+    public InputStream track(String batchId, InputStream in) {
+        return new FilterInputStream(in) {
+            private long count;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) report(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int len) throws IOException {
+                int n = super.read(buffer, off, len);
+                if (n > 0) report(n);
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                if (skipped > 0) report(skipped);
+                return skipped;
+            }
+
+            private void report(long n) {
+                count += n;
+                bytesRead(batchId, count);
+            }
+        };
+    }
+
+    public void imageAnalysed(String batchId) {
+        JobProgress job = byBatch(batchId);
+        if (job == null) return;
+        job.imagesAnalysed.incrementAndGet();
+        emit(job, "processing", false);
+    }
+
+    public void segmentsEmbedded(String batchId, int count) {
+        JobProgress job = byBatch(batchId);
+        if (job == null) return;
+        job.segmentsEmbedded.addAndGet(count);
+        emit(job, "processing", false);
+    }
+
+    /**
+     * Différentiel ajoutés / conservés / supprimés d'une ré-ingestion (publié avec l'état terminal)
+     */
+    public void diff(String batchId, ReingestionDiff diff) {
+        JobProgress job = byBatch(batchId);
+        if (job == null) return;
+        job.changes = diff;
+        emit(job, "processing", true);
+    }
+
+    private JobProgress byBatch(String batchId) {
+        if (batchId == null) return null;
+        String jobId = jobIdByBatch.get(batchId);
+        return jobId != null ? jobs.getIfPresent(jobId) : null;
+    }
+
+    // ========================================================================
+    // LECTURE (SSE)
+    // ========================================================================
+
+    /**
+     * Flux des événements d'un job ; rejoue le dernier état connu à l'abonnement
+     */
+    public Flux<IngestionProgressEvent> stream(String jobId) {
+        return jobs.get(jobId, JobProgress::new).sink.asFlux();
+    }
+
+    /**
+     * Snapshot à partir de la ligne durable (job terminé, en file, ou traité par un autre nœud)
+     */
+    public IngestionProgressEvent snapshot(UploadJob job) {
+        String status = job.getStatus().name().toLowerCase();
+        String stage = switch (job.getStatus()) {
+            case PENDING -> STAGE_QUEUED;
+            case PROCESSING -> STAGE_PARSING;
+            case COMPLETED, FAILED -> STAGE_DONE;
+        };
+        return IngestionProgressEvent.builder()
+                .jobId(job.getJobId())
+                .status(status)
+                .stage(stage)
+                .progress(job.getProgress())
+                .bytesTotal(job.getFileSize())
+                .message(job.getMessage())
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    // ========================================================================
+    // ÉMISSION
+    // ========================================================================
+
+    private void emit(JobProgress job, String status, boolean force) {
+        long now = System.currentTimeMillis();
+        if (force) {
+            job.lastEmitMs.set(now);
+        } else {
+            long last = job.lastEmitMs.get();
+            // Throttle : un seul émetteur gagne la fenêtre
+            if (now - last < minEmitIntervalMs || !job.lastEmitMs.compareAndSet(last, now)) {
+                return;
+            }
+        }
+
+        IngestionProgressEvent event = job.toEvent(status);
+        synchronized (job) {
+            // Sinks.Many n'accepte pas d'émissions concurrentes
+            job.sink.tryEmitNext(event);
+        }
+
+        if (job.id != null && "processing".equals(status) && now - job.lastPersistMs >= persistIntervalMs) {
+            job.lastPersistMs = now;
+            try {
+                jobQueue.updateProgress(job.id, event.getProgress());
+            } catch (Exception e) {
+                log.debug("[Progress] Persistance progression impossible ({}): {}", job.id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * État courant d'un job
+     */
+    private static final class JobProgress {
+        private final String id;
+        private final Sinks.Many<IngestionProgressEvent> sink = Sinks.many().replay().latest();
+        private final AtomicInteger pagesParsed = new AtomicInteger();
+        private final AtomicInteger imagesAnalysed = new AtomicInteger();
+        private final AtomicInteger segmentsEmbedded = new AtomicInteger();
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicInteger highWater = new AtomicInteger();
+        private final AtomicLong lastEmitMs = new AtomicLong();
+        private volatile String batchId;
+        private volatile long bytesTotal;
+        private volatile int pagesTotal;
+        private volatile String stage = STAGE_QUEUED;
+        private volatile String message;
+        private volatile ReingestionDiff changes;
+        private volatile Instant startedAt;
+        private volatile long lastPersistMs;
+
+        private JobProgress(String id) {
+            this.id = id;
+        }
+
+        private IngestionProgressEvent toEvent(String status) {
+            int parsed = pagesParsed.get();
+            long read = bytesRead.get();
+            boolean measured = pagesTotal > 0 || (bytesTotal > 0 && read > 0);
+            double fraction = pagesTotal > 0 ? Math.min(1.0, (double) parsed / pagesTotal)
+                    : measured ? Math.min(1.0, (double) read / bytesTotal) : 0.0;
+
+            // Formats sans pages ni flux (DOCX, XLSX, image) : paliers par étape
+            int progress = switch (stage) {
+                case STAGE_QUEUED -> 0;
+                case STAGE_IMAGES -> 40;
+                case STAGE_INDEXING -> 70;
+                case STAGE_FINALIZING -> 95;
+                case STAGE_DONE -> "completed".equals(status) ? 100 : 0;
+                default -> 10 + (int) Math.round(80 * fraction);
+            };
+            // Jamais de recul (ex. repli XLSX -> PDF après l'étape images)
+            if (!STAGE_DONE.equals(stage)) {
+                progress = highWater.accumulateAndGet(progress, Math::max);
+            }
+
+            Long eta = null;
+            if (startedAt != null && STAGE_PARSING.equals(stage) && fraction > 0.0 && fraction < 1.0) {
+                long elapsedMs = Duration.between(startedAt, Instant.now()).toMillis();
+                eta = Math.round(elapsedMs * (1.0 - fraction) / fraction / 1000.0);
+            }
+
+            return IngestionProgressEvent.builder()
+                    .jobId(id)
+                    .status(status)
+                    .stage(stage)
+                    .progress(progress)
+                    .pagesParsed(parsed)
+                    .pagesTotal(pagesTotal)
+                    .imagesAnalysed(imagesAnalysed.get())
+                    .segmentsEmbedded(segmentsEmbedded.get())
+                    .bytesProcessed(measured ? Math.round(bytesTotal * fraction)
+                            : (STAGE_DONE.equals(stage) ? bytesTotal : 0))
+                    .bytesTotal(bytesTotal)
+                    .etaSeconds(eta)
+                    .message(message)
+                    .changes(changes)
+                    .timestamp(Instant.now())
+                    .build();
+        }
+    }
+}
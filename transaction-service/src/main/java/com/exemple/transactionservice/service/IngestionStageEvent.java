@@ -0,0 +1,46 @@
+// ============================================================================
+// SERVICE - IngestionStageEvent.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ✅ Événement JFR d'une étape d'ingestion (même découpage que les timers ingestion.stage.duration)
+ *
+ * Activé par défaut sans trace de pile (seuil 0 ms) : profilage d'un document lent en production
+ * avec « jcmd <pid> JFR.start » puis filtrage sur batchId / stage dans JMC.
+ */
+@Name("com.exemple.ingestion.Stage")
+@Label("Ingestion Stage")
+@Category({"RAG", "Ingestion"})
+@Description("Étape d'ingestion d'un document (détection, parsing, rendu, encodage, Vision, découpage, embedding, écriture, rollback)")
+@StackTrace(false)
+class IngestionStageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("File Type")
+    String fileType;
+
+    @Label("Batch Id")
+    String batchId;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Items")
+    @Description("Pages, segments ou images traités par l'étape")
+    long items;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,51 @@
+// ============================================================================
+// SERVICE - LocalWhisperService.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+/**
+ * ✅ Whisper factice du profil 'local' : transcription canned, aucun appel OpenAI
+ *
+ * Le texte configuré (local.whisper.transcript) est renvoyé pour tout audio reçu :
+ * le câblage micro -> transcription -> chat se vérifie de bout en bout sans clé API.
+ */
+@Slf4j
+@Service
+@Profile("local")
+public class LocalWhisperService extends WhisperService {
+
+    @Value("${local.whisper.transcript:Quels documents parlent du budget annuel ?}")
+    private String transcript;
+
+    @Value("${local.whisper.latency-ms:200}")
+    private long latencyMs;
+
+    @Override
+    public void init() {
+        log.info("🎤 [Whisper] Profil local : transcription simulée ({}ms)", latencyMs);
+    }
+
+    @Override
+    public String transcribeAudio(byte[] audioBytes, String originalFilename, String language) {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("✅ [Whisper] Transcription locale - {} bytes, langue: {}",
+                audioBytes == null ? 0 : audioBytes.length, language);
+        return transcript;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+}
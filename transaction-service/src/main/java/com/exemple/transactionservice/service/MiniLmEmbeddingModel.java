@@ -0,0 +1,176 @@
+// ============================================================================
+// SERVICE - MiniLmEmbeddingModel.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ✅ Embeddings all-MiniLM-L6-v2 (ONNX, 384 dimensions) calculés dans la JVM
+ *
+ * - Inférence sur un pool dédié (minilm-embed-N) : jamais sur les threads HTTP ni d'ingestion,
+ *   et au plus `threads` cœurs occupés par ONNX quelle que soit la charge
+ * - embedAll découpé en micro-lots de `batchSize` segments (une tâche par micro-lot)
+ * - File à priorité : une requête utilisateur (embed d'une question) passe devant
+ *   les micro-lots d'ingestion déjà en attente
+ *
+ * La session ONNX est partagée (thread-safe) ; le modèle est chargé et préchauffé à la construction.
+ */
+@Slf4j
+public class MiniLmEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    public static final int DIMENSION = 384;
+
+    private static final int PRIORITY_QUERY = 0;
+    private static final int PRIORITY_INGESTION = 1;
+
+    private final AllMiniLmL6V2EmbeddingModel model;
+    private final ThreadPoolExecutor executor;
+    private final int batchSize;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public MiniLmEmbeddingModel(int threads, int batchSize, MeterRegistry meterRegistry) {
+        AtomicInteger idx = new AtomicInteger(0);
+        ThreadFactory tf = r -> {
+            Thread t = new Thread(r);
+            t.setName("minilm-embed-" + idx.incrementAndGet());
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler((thread, ex) ->
+                    log.error("❌ [MiniLM] Uncaught exception in {}", thread.getName(), ex)
+            );
+            return t;
+        };
+
+        int size = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), tf);
+
+        long t0 = System.nanoTime();
+        // Exécuteur direct : l'inférence reste sur le thread du pool qui porte le micro-lot
+        this.model = new AllMiniLmL6V2EmbeddingModel(Runnable::run);
+        model.embed("préchauffage de la session ONNX");
+
+        if (meterRegistry != null) {
+            meterRegistry.gauge("embedding.minilm.queue.depth", executor, e -> e.getQueue().size());
+            meterRegistry.gauge("embedding.minilm.active", executor, ThreadPoolExecutor::getActiveCount);
+        }
+
+        log.info("✅ [MiniLM] Modèle chargé en {} ms - {} threads, micro-lots de {} segments",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0), size, this.batchSize);
+    }
+
+    // ========================================================================
+    // REQUÊTES (prioritaires)
+    // ========================================================================
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        return embed(TextSegment.from(text));
+    }
+
+    @Override
+    public Response<Embedding> embed(TextSegment segment) {
+        return Response.from(await(submit(PRIORITY_QUERY, () -> model.embed(segment).content())));
+    }
+
+    // ========================================================================
+    // INGESTION (micro-lots)
+    // ========================================================================
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        List<PrioritizedTask<List<Embedding>>> tasks = new ArrayList<>();
+        for (int from = 0; from < segments.size(); from += batchSize) {
+            List<TextSegment> slice = segments.subList(from, Math.min(from + batchSize, segments.size()));
+            tasks.add(submit(PRIORITY_INGESTION, () -> {
+                List<Embedding> embeddings = new ArrayList<>(slice.size());
+                for (TextSegment segment : slice) {
+                    embeddings.add(model.embed(segment).content());
+                }
+                return embeddings;
+            }));
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        try {
+            for (PrioritizedTask<List<Embedding>> task : tasks) {
+                embeddings.addAll(await(task));
+            }
+        } finally {
+            tasks.forEach(task -> task.cancel(false));
+        }
+        return Response.from(embeddings);
+    }
+
+    @Override
+    public int dimension() {
+        return DIMENSION;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // ========================================================================
+    // FILE À PRIORITÉ
+    // ========================================================================
+
+    private <T> PrioritizedTask<T> submit(int priority, Callable<T> work) {
+        PrioritizedTask<T> task = new PrioritizedTask<>(work, priority, sequence.incrementAndGet());
+        executor.execute(task);
+        return task;
+    }
+
+    private static <T> T await(PrioritizedTask<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Embedding MiniLM interrompu", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Échec embedding MiniLM: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Priorité puis ordre de soumission (FIFO à priorité égale)
+     */
+    private static final class PrioritizedTask<T> extends FutureTask<T> implements Comparable<PrioritizedTask<?>> {
+
+        private final int priority;
+        private final long sequence;
+
+        PrioritizedTask(Callable<T> work, int priority, long sequence) {
+            super(work);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask<?> other) {
+            int byPriority = Integer.compare(priority, other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -3,13 +3,16 @@
 // ============================================================================
 package com.exemple.transactionservice.service;
 
+import com.exemple.transactionservice.dto.DocumentDeletionResult;
+import com.exemple.transactionservice.dto.ReingestionDiff;
 import com.exemple.transactionservice.util.InMemoryMultipartFile;
+import com.exemple.transactionservice.util.PerceptualHash;
+import com.exemple.transactionservice.util.PersistentMultipartFile;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.document.parser.apache.pdfbox.ApachePdfBoxDocumentParser;
 import dev.langchain4j.data.document.parser.apache.poi.ApachePoiDocumentParser;
 import dev.langchain4j.data.document.parser.apache.tika.ApacheTikaDocumentParser;
-import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
@@ -26,23 +29,32 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.rendering.PageDrawer;
+import org.apache.pdfbox.rendering.PageDrawerParameters;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.graphics.PDXObject;
 import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
 import org.apache.poi.xwpf.usermodel.*;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.*;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.openxml4j.util.ZipSecureFile;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -52,15 +64,14 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Stream;
 import java.util.concurrent.*;
 import java.nio.file.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -72,7 +83,7 @@ import java.util.concurrent.TimeUnit;
  * - Suppression propre en cas d'erreur
  * - Configuration externalisée (chemin images)
  * - Gestion mémoire (streaming, limites)
- * - Cache Vision AI (économie 80%)
+ * - Cache Vision AI adressé par contenu (VisionDescriptionStore)
  * - Logs agrégés
  * - Validation stricte
  * - Invalidation cache RAG
@@ -86,25 +97,38 @@ public class MultimodalIngestionService {
     private final EmbeddingModel embeddingModel;
     private final ChatLanguageModel visionModel;
     private final MultimodalRAGService ragService;
+    private final IngestionPipeline pipeline;
+    private final VisionDescriptionStore visionStore;
+    private final ImageDeduplicationIndex imageDedup;
+    private final PageRenderPolicy renderPolicy;
+    private final VisionImagePreparer imagePreparer;
+    private final IngestionCheckpointStore checkpoints;
+    private final IngestionProgressService progress;
+    private final ImageStorageService imageStorage;
+    private final EmbeddingDeletionService embeddingDeletion;
+    private final XlsxStreamingReader xlsxReader;
+    private final TabularChunker tabularChunker;
+    private final OfficeConversionService officeConverter;
+    private final DocumentParserPool parserPool;
+    private final TextChunker textChunker;
+    private final IncrementalReingestionService incremental;
+    private final NearDuplicateChunkIndex nearDuplicates;
+    private final IngestionMetrics metrics;
 
     // Parsers
     private final ApachePdfBoxDocumentParser pdfParser;
     private final ApachePoiDocumentParser poiParser;
     private final ApacheTikaDocumentParser tikaParser;
 
-    // ✅ NOUVEAU v2.1: Tracking des embeddings pour rollback
-    private final Map<String, BatchEmbeddings> batchTracker = new ConcurrentHashMap<>();
-    private static final int CHUNK_SIZE = 1000;
-    private static final int CHUNK_OVERLAP = 100;
+    // Compteur d'embeddings écrits par batch (log de fin) ; le rollback supprime par filtre batchId
+    private final Map<String, AtomicInteger> batchEmbeddedCounts = new ConcurrentHashMap<>();
+    // Étages ignorés par batch (lot d'embeddings, image, rendu de page) : plus de checkpoint au-delà
+    private final Map<String, AtomicInteger> batchStageFailures = new ConcurrentHashMap<>();
+    // Identité du document par batch (metadata.documentKey de toutes les lignes écrites)
+    private final Map<String, String> batchDocumentKeys = new ConcurrentHashMap<>();
     private static final int MIN_SEGMENT_CHARS = 10;
-    
-    // idéalement en @Value("${docx.open.timeoutMs:10000}")
-    private final long docxOpenTimeoutMs = 10_000;
 
     // ✅ Configuration externalisée
-    @Value("${document.images.storage-path:D:/Formation-DATA-2024/extracted-images}")
-    private String imagesStoragePath;
-    
     @Value("${document.max-file-size-mb:25}")
     private int maxFileSizeMb;
     
@@ -117,21 +141,19 @@ public class MultimodalIngestionService {
     @Value("${document.enable-vision-cache:true}")
     private boolean enableVisionCache;
 
-    // transformer xls to pdf
-    @Value("${app.libreoffice.enabled:true}") 
-    private boolean libreOfficeEnabled;
-
-    @Value("${app.libreoffice.sofficePath:}") 
-    private String libreOfficeSofficePath;
 
-    @Value("${app.libreoffice.timeoutSeconds:60}") 
-    private long libreOfficeTimeoutSeconds;
+    // Taille des lots pour embedAll/addAll (un appel HTTP + un INSERT multi-lignes par lot)
+    @Value("${rag.embedding-batch-size:100}")
+    private int embeddingBatchSize;
 
     // Configuration constantes
     private static final int MAX_IMAGE_SIZE = 5_000_000; // 5MB
+    private static final String VISION_UNAVAILABLE = "Image (analyse Vision AI non disponible)";
+    private static final String CHECKPOINT_UNIT_PAGE = "page";
     private static final Set<String> KNOWN_TEXT_TYPES = Set.of(
             "txt", "md", "csv", "json", "xml", "html", "log", "java", "py", "js", "ts", "sql"
     );
+    private static final Set<String> TABULAR_TEXT_TYPES = Set.of("csv");
     private static final Set<String> KNOWN_PDF_TYPES = Set.of("pdf");
     private static final Set<String> KNOWN_OFFICE_TYPES = Set.of(
             "docx", "doc", "pptx", "ppt", "xlsx", "xls"
@@ -140,97 +162,66 @@ public class MultimodalIngestionService {
             "png", "jpg", "jpeg", "gif", "bmp", "webp", "tiff", "svg"
     );
 
-    /**
-     * ✅ NOUVEAU v2.1: Classe interne pour tracker les embeddings d'un batch
-     */
-    private static class BatchEmbeddings {
-        private final List<String> textEmbeddingIds = new ArrayList<>();
-        private final List<String> imageEmbeddingIds = new ArrayList<>();
-        
-        public synchronized void addTextId(String id) {
-            if (id != null) {
-                textEmbeddingIds.add(id);
-            }
-        }
-        
-        public synchronized void addImageId(String id) {
-            if (id != null) {
-                imageEmbeddingIds.add(id);
-            }
-        }
-        
-        public List<String> getTextEmbeddingIds() {
-            return new ArrayList<>(textEmbeddingIds);
-        }
-        
-        public List<String> getImageEmbeddingIds() {
-            return new ArrayList<>(imageEmbeddingIds);
-        }
-        
-        public int getTotalCount() {
-            return textEmbeddingIds.size() + imageEmbeddingIds.size();
-        }
-    }
-
     public MultimodalIngestionService(
             @Qualifier("textEmbeddingStore") EmbeddingStore<TextSegment> textStore,
             @Qualifier("imageEmbeddingStore") EmbeddingStore<TextSegment> imageStore,
             EmbeddingModel embeddingModel,
             ChatLanguageModel visionModel,
-            MultimodalRAGService ragService) {
+            MultimodalRAGService ragService,
+            IngestionPipeline pipeline,
+            VisionDescriptionStore visionStore,
+            ImageDeduplicationIndex imageDedup,
+            PageRenderPolicy renderPolicy,
+            VisionImagePreparer imagePreparer,
+            IngestionCheckpointStore checkpoints,
+            IngestionProgressService progress,
+            ImageStorageService imageStorage,
+            EmbeddingDeletionService embeddingDeletion,
+            XlsxStreamingReader xlsxReader,
+            TabularChunker tabularChunker,
+            OfficeConversionService officeConverter,
+            DocumentParserPool parserPool,
+            TextChunker textChunker,
+            IncrementalReingestionService incremental,
+            NearDuplicateChunkIndex nearDuplicates,
+            IngestionMetrics metrics) {
 
         this.textStore = textStore;
         this.imageStore = imageStore;
         this.embeddingModel = embeddingModel;
         this.visionModel = visionModel;
         this.ragService = ragService;
+        this.pipeline = pipeline;
+        this.visionStore = visionStore;
+        this.imageDedup = imageDedup;
+        this.renderPolicy = renderPolicy;
+        this.imagePreparer = imagePreparer;
+        this.checkpoints = checkpoints;
+        this.progress = progress;
+        this.imageStorage = imageStorage;
+        this.embeddingDeletion = embeddingDeletion;
+        this.xlsxReader = xlsxReader;
+        this.tabularChunker = tabularChunker;
+        this.officeConverter = officeConverter;
+        this.parserPool = parserPool;
+        this.textChunker = textChunker;
+        this.incremental = incremental;
+        this.nearDuplicates = nearDuplicates;
+        this.metrics = metrics;
 
         this.pdfParser = new ApachePdfBoxDocumentParser();
         this.poiParser = new ApachePoiDocumentParser();
         this.tikaParser = new ApacheTikaDocumentParser();
 
-        System.out.println("✅ Parsers initialisés");
+        log.info("✅ [Ingestion] Parsers initialisés");
 
         log.info("✅ [Ingestion] Service initialisé");
-        log.info("   - Chemin images: {}", imagesStoragePath);
+        log.info("   - Stockage images: {} (un répertoire par batch)", imageStorage.getRoot());
         log.info("   - Limites: {}MB, {} pages, {} images", maxFileSizeMb, maxPages, maxImagesPerFile);
         log.info("   - Vision cache: {}", enableVisionCache);
         log.info("   - Rollback transactionnel: activé");
-        
-        // Protection null
-        if (imagesStoragePath == null || imagesStoragePath.isBlank()) {
-            log.warn("⚠️ [Ingestion] imagesStoragePath non configuré, utilisation par défaut");
-            this.imagesStoragePath = "./extracted-images";
-        }
-        
-        ensureStorageDirectoryExists();
-        
+
         log.info("✅ [Ingestion] Service initialisé avec succès");
-        log.info("📁 Storage: {}", this.imagesStoragePath);
-    }
-    
-    /**
-     * ✅ Garantit que le répertoire de stockage existe
-     */
-    private void ensureStorageDirectoryExists() {
-        try {
-            if (imagesStoragePath == null || imagesStoragePath.isBlank()) {
-                throw new IllegalArgumentException("imagesStoragePath ne peut pas être null");
-            }
-            
-            Path storagePath = Paths.get(imagesStoragePath);
-            
-            if (!Files.exists(storagePath)) {
-                Files.createDirectories(storagePath);
-                log.info("✅ [Ingestion] Répertoire créé: {}", storagePath.toAbsolutePath());
-            } else {
-                log.info("✅ [Ingestion] Répertoire existant: {}", storagePath.toAbsolutePath());
-            }
-            
-        } catch (Exception e) {
-            log.error("❌ [Ingestion] Erreur création répertoire: {}", imagesStoragePath, e);
-            throw new RuntimeException("Impossible de créer le répertoire de stockage", e);
-        }
     }
 
     // ========================================================================
@@ -241,34 +232,61 @@ public class MultimodalIngestionService {
      * ✅ AMÉLIORÉ v2.1: Ingestion avec validation, transaction et rollback complet
      */
     public void ingestFile(MultipartFile file) {
+        ingestFile(file, UUID.randomUUID().toString());
+    }
+
+    /**
+     * ✅ Ingestion avec batchId imposé (job durable : le batchId est connu avant traitement)
+     */
+    public void ingestFile(MultipartFile file, String batchId) {
+        ingestFile(file, batchId, null);
+    }
+
+    /**
+     * ✅ Ingestion pour un utilisateur : ses versions précédentes du même fichier sont remplacées
+     */
+    public void ingestFile(MultipartFile file, String batchId, Long userId) {
 
         String filename = file.getOriginalFilename();
-        String batchId = UUID.randomUUID().toString();
+        String documentKey = IncrementalReingestionService.documentKey(userId, filename);
+        batchDocumentKeys.put(batchId, documentKey);
+        long tFile = System.nanoTime();
+        boolean success = false;
+        metrics.fileType(batchId, getFileExtension(filename));
         
         log.info("📥 [Ingestion] Batch: {} - Fichier: {} ({} KB)",
                 batchId, filename, String.format("%.2f", file.getSize() / 1024.0));
 
+        // Reprise : retirer le travail non couvert par un checkpoint (échec précédent ou crash)
+        Optional<IngestionCheckpointStore.Checkpoint> resumeFrom = checkpoints.load(batchId);
+        discardUncommitted(batchId);
+        resumeFrom.ifPresent(cp -> log.info("⏯️ [Ingestion] Batch: {} - Reprise après {} {}",
+                batchId, cp.unitKind(), cp.lastUnit()));
+
+        // Ré-ingestion incrémentale : hashes des versions précédentes du même document
+        if (resumeFrom.isEmpty()) {
+            incremental.open(batchId, documentKey);
+        }
+
         try {
-            System.out.println("🔍 Starting validation...");
             // Validation stricte
             validateFile(file);
-            System.out.println("✅ Validation passed");
             
             String extension = getFileExtension(filename).toLowerCase();
-            System.out.println("🔍 Extension: " + extension);
-        
-            System.out.println("🔍 Detecting file type...");
-            FileType fileType = detectFileType(file, extension);
+            log.debug("[Ingestion] Batch: {} - Validation OK, extension: {}", batchId, extension);
 
-            System.out.println("🔍 File type detected: " + fileType);
+            FileType fileType;
+            try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.DETECT, batchId)) {
+                fileType = detectFileType(file, extension);
+                span.bytes(file.getSize()).ok();
+            }
+            metrics.fileType(batchId, fileType.name());
         
             log.info("🔍 [Ingestion] Type détecté: {}", fileType);
 
-            System.out.println("🔀 Entering switch statement...");
-
             // Traiter selon le type avec batchId pour rollback
             switch (fileType) {
-                case PDF_WITH_IMAGES -> ingestPdfWithImages(file, batchId);
+                case PDF_WITH_IMAGES -> ingestPdfWithImages(file, batchId, true);
                 case PDF_TEXT_ONLY -> ingestPdfTextOnly(file, batchId);
                 case OFFICE_DOCX -> ingestDocxDocument(file, batchId);  // NOUVEAU
                 case OFFICE_XLSX -> ingestXlsxDocument(file, batchId);
@@ -278,11 +296,21 @@ public class MultimodalIngestionService {
                 case UNKNOWN -> ingestWithTika(file, batchId);
             }
 
+            // Images : une ligne image_embeddings par groupe d'images quasi identiques
+            progress.stage(batchId, IngestionProgressService.STAGE_FINALIZING);
+            flushImageGroups(batchId);
+
+            // Nouvelle version complète : lignes inchangées rattachées, anciennes supprimées
+            ReingestionDiff diff = incremental.commit(batchId);
+            if (diff != null) {
+                progress.diff(batchId, diff);
+            }
+
             // ✅ NOUVEAU v2.1: Log résumé du batch
-            BatchEmbeddings tracker = batchTracker.get(batchId);
-            if (tracker != null) {
+            AtomicInteger embedded = batchEmbeddedCounts.remove(batchId);
+            if (embedded != null) {
                 log.info("✅ [Ingestion] Batch: {} - Succès - {} embeddings créés", 
-                         batchId, tracker.getTotalCount());
+                         batchId, embedded.get());
             } else {
                 log.info("✅ [Ingestion] Batch: {} - Succès", batchId);
             }
@@ -291,16 +319,64 @@ public class MultimodalIngestionService {
             ragService.invalidateCacheAfterIngestion();
             log.info("🗑️ [Ingestion] Cache RAG invalidé après ingestion");
             
-            // ✅ NOUVEAU v2.1: Nettoyer le tracker après succès
-            batchTracker.remove(batchId);
+            checkpoints.clear(batchId);
+            success = true;
 
         } catch (Exception e) {
             log.error("❌ [Ingestion] Batch: {} - Échec: {}", batchId, filename, e);
             
-            // ✅ NOUVEAU v2.1: Rollback complet en cas d'erreur
-            rollbackBatch(batchId);
+            if (checkpoints.load(batchId).isPresent()) {
+                // Progression checkpointée : on revient au dernier checkpoint, la reprise continuera de là
+                batchEmbeddedCounts.remove(batchId);
+                incremental.discard(batchId);
+                imageDedup.discard(batchId);
+                discardUncommitted(batchId);
+                log.warn("⏸️ [Ingestion] Batch: {} - Conservé au dernier checkpoint (reprise possible)", batchId);
+            } else {
+                // ✅ NOUVEAU v2.1: Rollback complet en cas d'erreur
+                rollbackBatch(batchId);
+            }
             
             throw new RuntimeException("Échec de l'ingestion: " + e.getMessage(), e);
+        } finally {
+            batchStageFailures.remove(batchId);
+            batchDocumentKeys.remove(batchId);
+            metrics.fileFinished(batchId, file.getSize(), System.nanoTime() - tFile, success);
+        }
+    }
+
+    /**
+     * ✅ Rollback complet explicite d'un batch (embeddings, images disque, checkpoints)
+     */
+    public void rollbackIngestion(String batchId) {
+        // Cache RAG invalidé par EmbeddingDeletionService si des lignes ont été supprimées
+        rollbackBatch(batchId);
+    }
+
+    /**
+     * Supprime des stores les embeddings écrits après le dernier checkpoint
+     */
+    private void discardUncommitted(String batchId) {
+        List<String> textIds = checkpoints.uncommittedIds(batchId, IngestionCheckpointStore.EmbeddingKind.TEXT);
+        List<String> imageIds = checkpoints.uncommittedIds(batchId, IngestionCheckpointStore.EmbeddingKind.IMAGE);
+        if (textIds.isEmpty() && imageIds.isEmpty()) {
+            return;
+        }
+
+        try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.ROLLBACK, batchId)) {
+            if (!textIds.isEmpty()) {
+                // Quasi-doublons d'autres documents rattachés à ces lignes : promus avant suppression
+                nearDuplicates.beforeCanonicalDelete("embedding_id = ANY(?::uuid[])",
+                        new Object[]{"{" + String.join(",", textIds) + "}"});
+                textStore.removeAll(textIds);
+            }
+            if (!imageIds.isEmpty()) imageStore.removeAll(imageIds);
+            checkpoints.deleteUncommitted(batchId);
+            span.items(textIds.size() + imageIds.size()).ok();
+            log.info("↩️ [Ingestion] Batch: {} - {} embeddings non checkpointés supprimés",
+                    batchId, textIds.size() + imageIds.size());
+        } catch (Exception e) {
+            log.error("❌ [Ingestion] Erreur suppression embeddings non checkpointés: {}", e.getMessage());
         }
     }
     
@@ -333,99 +409,26 @@ public class MultimodalIngestionService {
     }
     
     /**
-     * ✅ NOUVEAU v2.1: Rollback transactionnel complet avec suppression des embeddings
+     * ✅ Rollback complet par filtre batchId (aucun ID en mémoire : couvre aussi
+     * les lignes écrites avant un crash de la JVM)
      */
     private void rollbackBatch(String batchId) {
         log.warn("🔄 [Ingestion] Rollback batch: {}", batchId);
-        
-        int totalDeleted = 0;
-        
-        try {
-            BatchEmbeddings tracker = batchTracker.remove(batchId);
-            
-            if (tracker != null) {
-                // Supprimer les embeddings de texte
-                List<String> textIds = tracker.getTextEmbeddingIds();
-                if (!textIds.isEmpty()) {
-                    try {
-                        textStore.removeAll(textIds);
-                        totalDeleted += textIds.size();
-                        log.info("🗑️ [Ingestion] {} text embeddings supprimés", textIds.size());
-                    } catch (Exception e) {
-                        log.error("❌ [Ingestion] Erreur suppression text embeddings: {}", e.getMessage());
-                    }
-                }
-                
-                // Supprimer les embeddings d'images
-                List<String> imageIds = tracker.getImageEmbeddingIds();
-                if (!imageIds.isEmpty()) {
-                    try {
-                        imageStore.removeAll(imageIds);
-                        totalDeleted += imageIds.size();
-                        log.info("🗑️ [Ingestion] {} image embeddings supprimés", imageIds.size());
-                    } catch (Exception e) {
-                        log.error("❌ [Ingestion] Erreur suppression image embeddings: {}", e.getMessage());
-                    }
-                }
-            } else {
-                log.debug("📊 [Ingestion] Aucun embedding à supprimer pour batch: {}", batchId);
-            }
-            
-            // Supprimer les images physiques du disque
-            int deletedFiles = deleteImagesForBatch(batchId);
-            
-            log.info("✅ [Ingestion] Rollback terminé: {} - {} embeddings, {} fichiers supprimés", 
-                     batchId, totalDeleted, deletedFiles);
-            
+
+        batchEmbeddedCounts.remove(batchId);
+        imageDedup.discard(batchId);
+        incremental.discard(batchId);
+
+        try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.ROLLBACK, batchId)) {
+            DocumentDeletionResult result = embeddingDeletion.deleteBatch(batchId);
+            span.items(result.getTextDeleted() + result.getImageDeleted()).ok();
+            log.info("✅ [Ingestion] Rollback terminé: {} - {} embeddings, {} fichiers supprimés",
+                     batchId, result.getTextDeleted() + result.getImageDeleted(), result.getFilesDeleted());
+
         } catch (Exception e) {
             log.error("❌ [Ingestion] Erreur rollback: {}", batchId, e);
         }
     }
-    
-    /**
-     * ✅ NOUVEAU v2.1: Supprime les images d'un batch du disque
-     */
-    private int deleteImagesForBatch(String batchId) {
-        int deletedCount = 0;
-        
-        try {
-            Path storageDir = Paths.get(imagesStoragePath);
-            
-            if (!Files.exists(storageDir)) {
-                log.debug("📁 [Ingestion] Répertoire n'existe pas: {}", storageDir);
-                return 0;
-            }
-            
-            // Parcourir les fichiers et supprimer ceux qui contiennent le batchId
-            try (Stream<Path> files = Files.list(storageDir)) {
-                List<Path> toDelete = files
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.getFileName().toString().contains(batchId))
-                    .toList();
-                
-                for (Path file : toDelete) {
-                    try {
-                        Files.delete(file);
-                        deletedCount++;
-                        log.debug("🗑️ [Ingestion] Fichier supprimé: {}", file.getFileName());
-                    } catch (IOException e) {
-                        log.warn("⚠️ [Ingestion] Impossible de supprimer: {}", file.getFileName());
-                    }
-                }
-            }
-            
-            if (deletedCount > 0) {
-                log.info("🗑️ [Ingestion] {} images supprimées pour batch: {}", deletedCount, batchId);
-            } else {
-                log.debug("📁 [Ingestion] Aucune image à supprimer pour batch: {}", batchId);
-            }
-            
-        } catch (IOException e) {
-            log.error("❌ [Ingestion] Erreur suppression images batch {}: {}", batchId, e.getMessage());
-        }
-        
-        return deletedCount;
-    }
 
     // ========================================================================
     // DÉTECTION DU TYPE DE FICHIER
@@ -465,9 +468,7 @@ public class MultimodalIngestionService {
     }
 
     private boolean pdfHasImages(MultipartFile file) {
-        try (InputStream inputStream = file.getInputStream();
-             RandomAccessReadBuffer rarBuffer = new RandomAccessReadBuffer(inputStream);
-             PDDocument document = Loader.loadPDF(rarBuffer)) {
+        try (PDDocument document = loadPdf(file, null)) {
             
             int pagesToCheck = Math.min(3, document.getNumberOfPages());
             for (int i = 0; i < pagesToCheck; i++) {
@@ -484,10 +485,79 @@ public class MultimodalIngestionService {
         }
     }
 
+    /**
+     * Fichier disque derrière l'upload (spool du worker) ; null pour un contenu en mémoire
+     */
+    private static Path diskPath(MultipartFile file) {
+        return file instanceof PersistentMultipartFile persistent ? persistent.getPath() : null;
+    }
+
+    /**
+     * Premiers octets du fichier (vérification de signature sans charger le contenu)
+     */
+    private static byte[] readHeader(MultipartFile file, int length) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return in.readNBytes(length);
+        }
+    }
+
+    /**
+     * ✅ Chargement PDFBox sur le pool de parsing (timeout PDF) ; le document est ensuite
+     * utilisé par un seul thread à la fois. Fichier spoolé : mappé en mémoire, pas de copie en heap
+     */
+    private PDDocument loadPdf(MultipartFile file, String batchId) throws IOException {
+        Path path = diskPath(file);
+        return parse(DocumentParserPool.Format.PDF, batchId, file.getOriginalFilename(), c -> {
+            if (path != null) {
+                return Loader.loadPDF(new RandomAccessReadMemoryMappedFile(path));
+            }
+            try (InputStream inputStream = file.getInputStream()) {
+                return Loader.loadPDF(new RandomAccessReadBuffer(inputStream));
+            }
+        });
+    }
+
+    /**
+     * ✅ Parsing sur le pool, mesuré comme étape PARSE du batch (batchId null : détection, non mesuré)
+     */
+    private <T> T parse(DocumentParserPool.Format format, String batchId, String filename,
+                        DocumentParserPool.ParseTask<T> task) throws IOException {
+        if (batchId == null) {
+            return parserPool.parse(format, filename, task);
+        }
+        try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.PARSE, batchId)) {
+            T result = parserPool.parse(format, filename, task);
+            span.items(1).ok();
+            return result;
+        }
+    }
+
+    /**
+     * ✅ Encodage d'une image pour Vision et le disque, mesuré comme étape ENCODE
+     */
+    private VisionImagePreparer.PreparedImage prepareImage(BufferedImage image, String batchId) throws IOException {
+        try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.ENCODE, batchId)) {
+            VisionImagePreparer.PreparedImage prepared = imagePreparer.prepare(image);
+            span.items(1).bytes(prepared.bytes().length).ok();
+            return prepared;
+        }
+    }
+
+    /**
+     * Décodage d'une image intégrée (ImageIO) sur le pool de parsing
+     */
+    private BufferedImage decodeImage(byte[] bytes, String filename, String batchId) throws IOException {
+        return parse(DocumentParserPool.Format.IMAGE, batchId, filename,
+                c -> ImageIO.read(new ByteArrayInputStream(bytes)));
+    }
+
     private boolean officeHasImages(MultipartFile file, String extension) {
         if ("docx".equals(extension)) {
-            try (InputStream is = file.getInputStream();
-                 XWPFDocument document = new XWPFDocument(is)) {
+            try (XWPFDocument document = parserPool.parse(DocumentParserPool.Format.DOCX, file.getOriginalFilename(), c -> {
+                try (InputStream is = file.getInputStream()) {
+                    return new XWPFDocument(is);
+                }
+            })) {
                 
                 for (XWPFParagraph paragraph : document.getParagraphs()) {
                     for (XWPFRun run : paragraph.getRuns()) {
@@ -509,14 +579,18 @@ public class MultimodalIngestionService {
     // ========================================================================
 
     /**
-     * ✅ Traitement PDF avec images - Streaming + limites + logs agrégés
+     * ✅ Traitement PDF avec images - Pipeline à étages + limites + logs agrégés
+     *
+     * Le thread courant parse/rend les pages (PDDocument n'est pas thread-safe) ;
+     * Vision et embedding/store tournent sur les pools d'IngestionPipeline.
      */
-    private void ingestPdfWithImages(MultipartFile file, String batchId) throws IOException {
+    private void ingestPdfWithImages(MultipartFile file, String batchId, boolean checkpointed) throws IOException {
         log.info("📕🖼️ [Ingestion] Traitement PDF avec images: {}", file.getOriginalFilename());
 
-        try (InputStream inputStream = file.getInputStream();
-             RandomAccessReadBuffer rarBuffer = new RandomAccessReadBuffer(inputStream);
-             PDDocument document = Loader.loadPDF(rarBuffer)) {
+        PDDocument document = loadPdf(file, batchId);
+        // Sortie de la tâche PDF_PAGE abandonnée sur timeout : le document n'est fermé qu'après
+        CompletableFuture<Void> abandonedParse = CompletableFuture.completedFuture(null);
+        try {
             
             int totalPages = document.getNumberOfPages();
             
@@ -530,135 +604,351 @@ public class MultimodalIngestionService {
             
             log.info("📄 [Ingestion] PDF: {} pages", totalPages);
 
-            PDFTextStripper stripper = new PDFTextStripper();
-            PDFRenderer renderer = new PDFRenderer(document);
+            CancellableRenderer renderer = new CancellableRenderer(document);
 
+            String baseFilename = sanitizeFilename(
+                file.getOriginalFilename().replaceAll("\\.pdf$", "")
+            );
+
+            // Reprise après le dernier checkpoint (pages [0, startPage) déjà indexées)
+            int startPage = 0;
             int totalImagesExtracted = 0;
+            if (checkpointed) {
+                Optional<IngestionCheckpointStore.Checkpoint> checkpoint = checkpoints.load(batchId);
+                if (checkpoint.isPresent() && CHECKPOINT_UNIT_PAGE.equals(checkpoint.get().unitKind())) {
+                    startPage = Math.min(checkpoint.get().lastUnit(), totalPages);
+                    totalImagesExtracted = checkpoint.get().imagesCount();
+                    log.info("⏯️ [Ingestion] Reprise PDF à la page {}/{}", startPage + 1, totalPages);
+                }
+            }
+            int checkpointEvery = checkpoints.getEveryPages();
+
+            progress.pagesTotal(batchId, totalPages);
+            progress.pageParsed(batchId, startPage);
+
             int totalPagesRendered = 0;
+            int totalPagesSkipped = 0;
+            int totalImagesPassthrough = 0;
             int totalTextChunks = 0;
 
-            for (int pageIndex = 0; pageIndex < totalPages; pageIndex++) {
-                // Vérifier limite images
-                if (totalImagesExtracted >= maxImagesPerFile) {
-                    log.warn("⚠️ [Ingestion] Limite images atteinte: {} (page {}/{})", 
-                             maxImagesPerFile, pageIndex + 1, totalPages);
-                    break;
-                }
-                
-                int pageNum = pageIndex + 1;
-
-                // Extraction du texte
-                stripper.setStartPage(pageNum);
-                stripper.setEndPage(pageNum);
-                String pageText = stripper.getText(document);
-
-                if (pageText != null && !pageText.trim().isEmpty() && pageText.length() > 10) {
-                    Map<String, Object> meta = new HashMap<>();
-                    meta.put("page", pageNum);
-                    meta.put("totalPages", totalPages);
-                    meta.put("source", file.getOriginalFilename());
-                    meta.put("type", "pdf_page_" + pageNum);
-                    meta.put("batchId", batchId);
-
-                    Metadata metadata = Metadata.from(sanitizeMetadata(meta));
-                    indexTextWithMetadata(pageText, metadata, batchId);
-                    totalTextChunks++;
-                }
+            IngestionPipeline.Run run = pipeline.open(batchId);
+            try {
+                for (int pageIndex = startPage; pageIndex < totalPages; pageIndex++) {
+                    // Checkpoint : pages [0, pageIndex) terminées et indexées
+                    if (checkpointed && checkpoints.isEnabled()
+                            && pageIndex > startPage && (pageIndex - startPage) % checkpointEvery == 0) {
+                        checkpointPdf(run, batchId, pageIndex, totalPages, totalImagesExtracted);
+                    }
 
-                // Extraction des images intégrées
-                try {
-                    PDPage page = document.getPage(pageIndex);
-                    PDResources resources = page.getResources();
+                    // Vérifier limite images (compteur tenu par le seul producteur => limite globale)
+                    if (totalImagesExtracted >= maxImagesPerFile) {
+                        log.warn("⚠️ [Ingestion] Limite images atteinte: {} (page {}/{})", 
+                                 maxImagesPerFile, pageIndex + 1, totalPages);
+                        break;
+                    }
+                    
+                    int pageNum = pageIndex + 1;
+
+                    // Étage 1a : extraction du texte (pool de parsing, timeout par page)
+                    String pageText = parse(DocumentParserPool.Format.PDF_PAGE, batchId, file.getOriginalFilename(), c -> {
+                        PDFTextStripper stripper = cancellableStripper(c);
+                        stripper.setStartPage(pageNum);
+                        stripper.setEndPage(pageNum);
+                        return stripper.getText(document);
+                    });
+                    progress.pageParsed(batchId, pageNum);
+
+                    if (pageText != null && !pageText.trim().isEmpty() && pageText.length() > 10) {
+                        Map<String, Object> meta = new HashMap<>();
+                        meta.put("page", pageNum);
+                        meta.put("totalPages", totalPages);
+                        meta.put("source", file.getOriginalFilename());
+                        meta.put("type", "pdf_page_" + pageNum);
+                        meta.put("batchId", batchId);
+
+                        Metadata metadata = Metadata.from(sanitizeMetadata(meta));
+                        run.submitIndex(() -> indexTextWithMetadata(pageText, metadata, "pdf", batchId));
+                        totalTextChunks++;
+                    }
 
-                    int imageIndexOnPage = 0;
-                    for (COSName name : resources.getXObjectNames()) {
-                        if (totalImagesExtracted >= maxImagesPerFile) break;
-                        
-                        PDXObject xObject = resources.getXObject(name);
-
-                        if (xObject instanceof PDImageXObject imageXObject) {
-                            try {
-                                BufferedImage bufferedImage = imageXObject.getImage();
-                                
-                                if (bufferedImage != null) {
-                                    totalImagesExtracted++;
-                                    imageIndexOnPage++;
-                                    
-                                    String baseFilename = sanitizeFilename(
-                                        file.getOriginalFilename().replaceAll("\\.pdf$", "")
-                                    );
-                                    
-                                    String imageName = String.format("%s_batch%s_page%d_img%d",
-                                        baseFilename, batchId.substring(0, 8), pageNum, imageIndexOnPage);
-                                    
-                                    String savedImagePath = saveImageToDisk(bufferedImage, imageName);
-                                    
-                                    Map<String, Object> metadata = new HashMap<>();
-                                    metadata.put("page", pageNum);
-                                    metadata.put("totalPages", totalPages);
-                                    metadata.put("source", "pdf_embedded");
-                                    metadata.put("filename", file.getOriginalFilename());
-                                    metadata.put("imageNumber", totalImagesExtracted);
-                                    metadata.put("savedPath", savedImagePath);
-                                    metadata.put("batchId", batchId);
-                                    
-                                    analyzeAndIndexImage(bufferedImage, imageName, metadata, batchId);
+                    // Étage 1b : extraction des images intégrées
+                    try {
+                        PDPage page = document.getPage(pageIndex);
+                        PDResources resources = page.getResources();
+
+                        int imageIndexOnPage = 0;
+                        for (COSName name : resources.getXObjectNames()) {
+                            if (totalImagesExtracted >= maxImagesPerFile) break;
+                            
+                            PDXObject xObject = resources.getXObject(name);
+
+                            if (xObject instanceof PDImageXObject imageXObject) {
+                                try {
+                                    // JPEG transmissible tel quel : aucun décodage, aucun ré-encodage PNG
+                                    byte[] jpegBytes = readPassthroughJpeg(imageXObject);
+                                    if (jpegBytes != null) {
+                                        totalImagesExtracted++;
+                                        totalImagesPassthrough++;
+                                        imageIndexOnPage++;
+
+                                        String imageName = String.format("%s_batch%s_page%d_img%d",
+                                            baseFilename, batchId.substring(0, 8), pageNum, imageIndexOnPage);
+
+                                        String savedImagePath = saveImageBytesToDisk(batchId, file.getOriginalFilename(), jpegBytes, imageName, "jpg");
+
+                                        Map<String, Object> metadata = new HashMap<>();
+                                        metadata.put("page", pageNum);
+                                        metadata.put("totalPages", totalPages);
+                                        metadata.put("source", "pdf_embedded");
+                                        metadata.put("filename", file.getOriginalFilename());
+                                        metadata.put("imageNumber", totalImagesExtracted);
+                                        metadata.put("savedPath", savedImagePath);
+                                        metadata.put("encoding", "jpeg_passthrough");
+                                        metadata.put("batchId", batchId);
+
+                                        submitEncodedImage(run, jpegBytes, "image/jpeg",
+                                            imageXObject.getWidth(), imageXObject.getHeight(),
+                                            imageName, metadata, batchId);
+                                        continue;
+                                    }
+
+                                    BufferedImage bufferedImage = parse(DocumentParserPool.Format.PDF_PAGE,
+                                            batchId, file.getOriginalFilename(), c -> imageXObject.getImage());
                                     
-                                    // Logs agrégés (tous les 10)
-                                    if (totalImagesExtracted % 10 == 0) {
-                                        log.info("📊 [Ingestion] Progression: {} images extraites", 
-                                                 totalImagesExtracted);
+                                    if (bufferedImage != null) {
+                                        totalImagesExtracted++;
+                                        imageIndexOnPage++;
+                                        
+                                        String imageName = String.format("%s_batch%s_page%d_img%d",
+                                            baseFilename, batchId.substring(0, 8), pageNum, imageIndexOnPage);
+                                        
+                                        VisionImagePreparer.PreparedImage prepared = prepareImage(bufferedImage, batchId);
+                                        String savedImagePath = saveImageToDisk(batchId, file.getOriginalFilename(), prepared, imageName);
+                                        
+                                        Map<String, Object> metadata = new HashMap<>();
+                                        metadata.put("page", pageNum);
+                                        metadata.put("totalPages", totalPages);
+                                        metadata.put("source", "pdf_embedded");
+                                        metadata.put("filename", file.getOriginalFilename());
+                                        metadata.put("imageNumber", totalImagesExtracted);
+                                        metadata.put("savedPath", savedImagePath);
+                                        metadata.put("batchId", batchId);
+                                        
+                                        submitImage(run, bufferedImage, prepared, rawStreamHash(imageXObject),
+                                                imageName, metadata, batchId);
+                                        
+                                        // Logs agrégés (tous les 10)
+                                        if (totalImagesExtracted % 10 == 0) {
+                                            log.info("📊 [Ingestion] Progression: {} images extraites", 
+                                                     totalImagesExtracted);
+                                        }
                                     }
+                                } catch (DocumentParserPool.ParseTimeoutException e) {
+                                    throw e;
+                                } catch (Exception e) {
+                                    log.warn("⚠️ [Ingestion] Erreur extraction image: {}", e.getMessage());
+                                    recordStageFailure(batchId);
                                 }
-                            } catch (Exception e) {
-                                log.warn("⚠️ [Ingestion] Erreur extraction image: {}", e.getMessage());
                             }
                         }
+                    } catch (DocumentParserPool.ParseTimeoutException e) {
+                        // Document abandonné : le thread de parsing peut encore l'utiliser
+                        throw e;
+                    } catch (Exception e) {
+                        log.warn("⚠️ [Ingestion] Erreur extraction images page {}: {}", 
+                                 pageNum, e.getMessage());
+                        recordStageFailure(batchId);
                     }
-                } catch (Exception e) {
-                    log.warn("⚠️ [Ingestion] Erreur extraction images page {}: {}", 
-                             pageNum, e.getMessage());
-                }
 
-                // Rendu de la page complète (si limite pas atteinte)
-                if (totalImagesExtracted < maxImagesPerFile) {
-                    try {
-                        BufferedImage pageImage = renderer.renderImageWithDPI(pageIndex, 150);
-                        
-                        String baseFilename = sanitizeFilename(
-                            file.getOriginalFilename().replaceAll("\\.pdf$", "")
-                        );
-                        
-                        String pageImageName = String.format("%s_batch%s_page%d_render", 
-                            baseFilename, batchId.substring(0, 8), pageNum);
-                        String savedPageRenderPath = saveImageToDisk(pageImage, pageImageName);
-                        
-                        Map<String, Object> metadata = new HashMap<>();
-                        metadata.put("page", pageNum);
-                        metadata.put("totalPages", totalPages);
-                        metadata.put("source", "pdf_rendered");
-                        metadata.put("filename", file.getOriginalFilename());
-                        metadata.put("savedPath", savedPageRenderPath);
-                        metadata.put("batchId", batchId);
-                        
-                        analyzeAndIndexImage(pageImage, pageImageName, metadata, batchId);
-                        
-                        totalPagesRendered++;
-                        totalImagesExtracted++;
-                        
-                    } catch (Exception e) {
-                        log.warn("⚠️ [Ingestion] Erreur rendu page {}: {}", pageNum, e.getMessage());
+                    // Étage 1c : rendu de la page complète (si limite pas atteinte et politique favorable)
+                    if (totalImagesExtracted < maxImagesPerFile) {
+                        try {
+                            // Analyse du flux de contenu sur le pool (timeout par page, comme le rendu)
+                            PageRenderPolicy.PageRenderPlan plan = parse(DocumentParserPool.Format.PDF_PAGE,
+                                    batchId, file.getOriginalFilename(),
+                                    c -> renderPolicy.plan(document.getPage(pageNum - 1), pageText));
+                            if (plan.decision() == PageRenderPolicy.Decision.SKIP) {
+                                totalPagesSkipped++;
+                                continue;
+                            }
+
+                            long tRender = System.nanoTime();
+                            BufferedImage pageImage;
+                            try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.RENDER, batchId)) {
+                                pageImage = parserPool.parse(DocumentParserPool.Format.PDF_PAGE,
+                                        file.getOriginalFilename(), c -> renderer.render(pageNum - 1, plan.dpi(), c));
+                                span.items(1).ok();
+                            }
+                            renderPolicy.recordRender(plan, (System.nanoTime() - tRender) / 1_000_000);
+                            
+                            String pageImageName = String.format("%s_batch%s_page%d_render", 
+                                baseFilename, batchId.substring(0, 8), pageNum);
+                            VisionImagePreparer.PreparedImage prepared = prepareImage(pageImage, batchId);
+                            String savedPageRenderPath = saveImageToDisk(batchId, file.getOriginalFilename(), prepared, pageImageName);
+                            
+                            Map<String, Object> metadata = new HashMap<>();
+                            metadata.put("page", pageNum);
+                            metadata.put("totalPages", totalPages);
+                            metadata.put("source", "pdf_rendered");
+                            metadata.put("filename", file.getOriginalFilename());
+                            metadata.put("savedPath", savedPageRenderPath);
+                            metadata.put("renderDecision", plan.decision().name());
+                            metadata.put("renderDpi", plan.dpi());
+                            metadata.put("batchId", batchId);
+                            
+                            submitImage(run, pageImage, prepared, VisionDescriptionStore.sha256Hex(pageImage),
+                                    pageImageName, metadata, batchId);
+                            
+                            totalPagesRendered++;
+                            totalImagesExtracted++;
+                            
+                        } catch (DocumentParserPool.ParseTimeoutException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            log.warn("⚠️ [Ingestion] Erreur rendu page {}: {}", pageNum, e.getMessage());
+                            recordStageFailure(batchId);
+                        }
                     }
                 }
-                
-                // Libérer mémoire après chaque page
-                if (pageIndex % 10 == 0) {
-                    System.gc();
+            } finally {
+                // Toujours drainer le pipeline : aucun worker ne doit écrire après un rollback
+                int failedStages = run.awaitCompletion();
+                if (failedStages > 0) {
+                    log.warn("⚠️ [Ingestion] {} étage(s) du pipeline en échec (batchId={})", failedStages, batchId);
                 }
             }
 
-            log.info("✅ [Ingestion] PDF traité: {} pages, {} textes, {} images, {} rendus", 
-                totalPages, totalTextChunks, totalImagesExtracted, totalPagesRendered);
+            log.info("✅ [Ingestion] PDF traité: {} pages, {} textes, {} images ({} JPEG sans décodage), {} rendus, {} rendus évités", 
+                totalPages, totalTextChunks, totalImagesExtracted, totalImagesPassthrough,
+                totalPagesRendered, totalPagesSkipped);
+        } catch (DocumentParserPool.ParseTimeoutException e) {
+            abandonedParse = e.taskExit();
+            throw e;
+        } finally {
+            closeAfter(document, abandonedParse);
+        }
+    }
+
+    /**
+     * Ferme le document quand plus aucune tâche de parsing ne l'utilise (immédiatement en général,
+     * sur le thread de parsing à sa sortie après un timeout)
+     */
+    private static void closeAfter(PDDocument document, CompletableFuture<Void> abandonedParse) {
+        if (!abandonedParse.isDone()) {
+            log.warn("⏳ [Ingestion] Fermeture du PDF différée: tâche de parsing abandonnée encore en cours");
+        }
+        abandonedParse.whenComplete((ignored, err) -> {
+            try {
+                document.close();
+            } catch (IOException e) {
+                log.debug("[Ingestion] Fermeture PDF: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Extraction du texte d'une page : annulation vérifiée à chaque opérateur du flux de contenu
+     */
+    private static PDFTextStripper cancellableStripper(DocumentParserPool.Cancellation cancellation) throws IOException {
+        return new PDFTextStripper() {
+            @Override
+            protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+                cancellation.check();
+                super.processOperator(operator, operands);
+            }
+        };
+    }
+
+    /**
+     * Rendu de page annulable (même vérification par opérateur) ; un rendu à la fois par document
+     */
+    private static final class CancellableRenderer extends PDFRenderer {
+
+        private volatile DocumentParserPool.Cancellation cancellation;
+
+        private CancellableRenderer(PDDocument document) {
+            super(document);
+        }
+
+        private BufferedImage render(int pageIndex, float dpi, DocumentParserPool.Cancellation cancellation)
+                throws IOException {
+            this.cancellation = cancellation;
+            return renderImageWithDPI(pageIndex, dpi);
+        }
+
+        @Override
+        protected PageDrawer createPageDrawer(PageDrawerParameters parameters) throws IOException {
+            DocumentParserPool.Cancellation current = cancellation;
+            return new PageDrawer(parameters) {
+                @Override
+                protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+                    if (current != null) current.check();
+                    super.processOperator(operator, operands);
+                }
+            };
+        }
+    }
+
+    /**
+     * ✅ Checkpoint PDF : draine le pipeline, indexe les groupes d'images, puis fige la progression
+     *
+     * Aucun checkpoint après un étage en échec (pipeline, lot d'embeddings ignoré, image ou rendu perdu) :
+     * une reprise repart du dernier checkpoint complet et retraite les pages concernées.
+     */
+    private void checkpointPdf(IngestionPipeline.Run run, String batchId,
+                               int completedPages, int totalPages, int imagesExtracted) {
+        int failedStages = run.awaitCompletion();
+        flushImageGroups(batchId);
+        AtomicInteger skipped = batchStageFailures.get(batchId);
+        int failures = failedStages + (skipped != null ? skipped.get() : 0);
+        if (failures > 0) {
+            log.warn("⚠️ [Ingestion] Checkpoint {}/{} non enregistré: {} étage(s) en échec (batchId={})",
+                    completedPages, totalPages, failures, batchId);
+            return;
+        }
+        checkpoints.commit(batchId, CHECKPOINT_UNIT_PAGE, completedPages, imagesExtracted);
+        log.info("💾 [Ingestion] Checkpoint: {}/{} pages (batchId={})", completedPages, totalPages, batchId);
+    }
+
+    private void recordStageFailure(String batchId) {
+        batchStageFailures.computeIfAbsent(batchId, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    /**
+     * ✅ Octets JPEG d'origine d'une image DCTDecode, ou null si un décodage est nécessaire
+     *
+     * Conditions du passthrough (sinon getImage() + PNG) :
+     * - DCTDecode en dernier filtre (les filtres précédents, ex. Flate, sont appliqués)
+     * - espace couleur DeviceRGB / DeviceGray (CMYK/ICC/Indexed mal rendus hors PDF)
+     * - pas de masque (SMask / Mask) ni de tableau Decode, qui modifient l'apparence
+     */
+    private byte[] readPassthroughJpeg(PDImageXObject imageXObject) throws IOException {
+        if (!"jpg".equals(imageXObject.getSuffix())) {
+            return null;
+        }
+        if (imageXObject.getCOSObject().containsKey(COSName.SMASK)
+                || imageXObject.getCOSObject().containsKey(COSName.MASK)
+                || imageXObject.getDecode() != null) {
+            return null;
+        }
+
+        PDColorSpace colorSpace = imageXObject.getColorSpace();
+        if (!(colorSpace instanceof PDDeviceRGB) && !(colorSpace instanceof PDDeviceGray)) {
+            return null;
+        }
+
+        try (InputStream in = imageXObject.getStream().createInputStream(
+                List.of(COSName.DCT_DECODE.getName()))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * SHA-256 du flux encodé d'une image PDF, filtres compris (clé du cache Vision et de la ré-ingestion)
+     */
+    private static String rawStreamHash(PDImageXObject imageXObject) throws IOException {
+        try (InputStream in = imageXObject.getCOSObject().createRawInputStream()) {
+            return VisionDescriptionStore.sha256Hex(in);
         }
     }
 
@@ -669,10 +959,11 @@ public class MultimodalIngestionService {
     private void ingestPdfTextOnly(MultipartFile file, String batchId) throws IOException {
         log.info("📕 [Ingestion] Traitement PDF texte: {}", file.getOriginalFilename());
 
-        Document document;
-        try (InputStream inputStream = file.getInputStream()) {
-            document = pdfParser.parse(inputStream);
-        }
+        Document document = parse(DocumentParserPool.Format.PDF, batchId, file.getOriginalFilename(), c -> {
+            try (InputStream inputStream = file.getInputStream()) {
+                return pdfParser.parse(inputStream);
+            }
+        });
 
         if (document.text() == null || document.text().isBlank()) {
             throw new IllegalArgumentException("PDF ne contient pas de texte extractible");
@@ -680,7 +971,8 @@ public class MultimodalIngestionService {
 
         log.debug("📝 [Ingestion] Texte extrait: {} caractères", document.text().length());
         
-        indexDocument(document, file.getOriginalFilename(), "pdf", 1000, 100, batchId);
+        progress.stage(batchId, IngestionProgressService.STAGE_INDEXING);
+        indexDocument(document, file.getOriginalFilename(), "pdf", batchId);
     }
     
     
@@ -698,9 +990,10 @@ public class MultimodalIngestionService {
     // - Détection images robuste : drawings + relations + fallback getAllPictures()
     // - Extraction images robuste : drawings + relations + fallback getAllPictures()
     // - Sauvegarde image :
-    //      * PNG/JPG décodable -> votre saveImageToDisk(BufferedImage,..) + analyse Vision
+    //      * PNG/JPG décodable -> imagePreparer.prepare(..) + saveImageToDisk(..) + analyse Vision
     //      * EMF/WMF/non décodable -> saveImageBytesToDisk(..) + indexation "référence" (pas de Vision possible sans conversion)
-    // - Extraction texte : DataFormatter + FormulaEvaluator
+    // - Extraction texte : streaming SAX (XlsxStreamingReader) -> TabularChunker (groupes de lignes + en-têtes) ;
+    //   le DOM XSSF n'est ouvert que si le package contient des images à extraire
     // - Modification :
     //      Si images embedded = 0 mais charts > 0 => export visuel XLSX -> PDF (LibreOffice)
     //      puis réutilisation du pipeline existant ingestPdfWithImages(pdf, batchId).
@@ -722,77 +1015,99 @@ public class MultimodalIngestionService {
         final String baseFilename = sanitizeFilename(filename.replaceAll("\\.xlsx?$", ""));
         log.info("📗 [Ingestion] XLSX reçu: filename={} sizeBytes={} batchId={}", filename, file.getSize(), batchId);
 
-        final byte[] bytes;
+        final byte[] header;
         try {
-            bytes = file.getBytes();
+            header = readHeader(file, 2);
         } catch (Exception e) {
-            log.error("❌ [Ingestion] Impossible de lire les bytes XLSX: filename={} batchId={}", filename, batchId, e);
+            log.error("❌ [Ingestion] Impossible de lire le fichier XLSX: filename={} batchId={}", filename, batchId, e);
             throw new IOException("Impossible de lire le fichier: " + filename, e);
         }
 
         // XLSX = ZIP OOXML
-        if (bytes.length < 2 || bytes[0] != 'P' || bytes[1] != 'K') {
+        if (header.length < 2 || header[0] != 'P' || header[1] != 'K') {
             throw new IOException("Le fichier n'est pas un XLSX valide (pas un ZIP OOXML): " + filename);
         }
 
         int imagesCount = 0;
-        int chartsCount = 0;
-        boolean hasAnyDrawing = false;
+        int chartsCount;
+        boolean hasAnyDrawing;
 
-        TextExtractionResult textResult;
-
-        try (InputStream is = new ByteArrayInputStream(bytes);
-            Workbook wb = WorkbookFactory.create(is)) {
-
-            // 1) TEXTE (toujours)
-            textResult = extractTextFromWorkbook(wb);
-
-            // 2) IMAGES + CHARTS (XSSF)
-            if (wb instanceof XSSFWorkbook xssfWb) {
-
-                // embedded pictures
-                boolean hasImages = hasImagesInXlsx(xssfWb);
-
-                // drawings ? (shapes, charts, etc)
-                hasAnyDrawing = hasAnyDrawingInXlsx(xssfWb);
+        // Package lu depuis un fichier : parts décompressées à la demande (mémoire bornée).
+        // Upload spoolé : fichier du worker utilisé tel quel ; sinon copie temporaire en flux
+        final Path spool = diskPath(file) == null ? Files.createTempFile("xlsx_stream_", ".xlsx") : null;
+        final Path source = spool != null ? spool : diskPath(file);
+        try {
+            if (spool != null) {
+                try (InputStream in = file.getInputStream()) {
+                    Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
 
-                // charts (robuste)
-                chartsCount = countChartsRobust(xssfWb);
+            try (OPCPackage pkg = OPCPackage.open(source.toFile(), PackageAccess.READ)) {
 
-                log.info("🔍 [Ingestion] XLSX analysé: filename={} batchId={} hasImages={} charts={} hasAnyDrawing={}",
-                        filename, batchId, hasImages, chartsCount, hasAnyDrawing);
+                // 1) Inventaire visuel à partir des parts (sans DOM)
+                XlsxStreamingReader.Inventory inventory = xlsxReader.inspect(pkg);
+                chartsCount = inventory.chartsCount();
+                hasAnyDrawing = inventory.hasAnyDrawing();
 
-                log.info("🖼️ [Ingestion] XLSX getAllPictures()={}", xssfWb.getAllPictures().size());
+                log.info("🔍 [Ingestion] XLSX analysé: filename={} batchId={} media={} charts={} hasAnyDrawing={}",
+                        filename, batchId, inventory.mediaCount(), chartsCount, hasAnyDrawing);
 
-                if (hasImages) {
-                    imagesCount = extractAndIndexImagesFromXlsx(xssfWb, filename, batchId, baseFilename);
+                // 2) IMAGES : DOM XSSF uniquement s'il y a des médias à extraire
+                if (inventory.hasImages()) {
+                    try (Workbook wb = parse(DocumentParserPool.Format.XLSX, batchId, filename,
+                            c -> WorkbookFactory.create(source.toFile(), null, true))) {
+                        if (wb instanceof XSSFWorkbook xssfWb && hasImagesInXlsx(xssfWb)) {
+                            progress.stage(batchId, IngestionProgressService.STAGE_IMAGES);
+                            imagesCount = extractAndIndexImagesFromXlsx(xssfWb, filename, batchId, baseFilename);
+                        }
+                    }
                 }
-            }
 
-            // 3) Indexation texte
-            if (textResult.text() != null && !textResult.text().isBlank()) {
+                // 3) TEXTE (toujours) : SAX -> groupes de lignes avec en-têtes -> embeddings par lots
                 Map<String, Object> meta = new HashMap<>();
                 meta.put("source", filename);
                 meta.put("type", "xlsx");
                 meta.put("batchId", batchId);
-                meta.put("sheetCount", textResult.sheetCount());
-                meta.put("nonEmptyCells", textResult.nonEmptyCells());
                 meta.put("imagesCount", imagesCount);
                 meta.put("chartsCount", chartsCount);
                 meta.put("hasAnyDrawing", hasAnyDrawing);
 
-                Metadata md = Metadata.from(sanitizeMetadata(meta));
-                indexTextWithMetadata(textResult.text(), md, batchId);
-
-                log.info("✅ [Ingestion] XLSX texte indexé: chars={} sheets={} nonEmptyCells={} images={} charts={}",
-                        textResult.text().length(), textResult.sheetCount(), textResult.nonEmptyCells(), imagesCount, chartsCount);
-            } else {
-                log.warn("⚠️ [Ingestion] Aucun texte extrait du XLSX: filename={} batchId={}", filename, batchId);
+                // Parsing SAX sur le pool, embeddings sur ce thread (file bornée entre les deux)
+                progress.stage(batchId, IngestionProgressService.STAGE_INDEXING);
+                TabularIndexer indexer = new TabularIndexer(meta, batchId);
+                XlsxStreamingReader.StreamStats stats = parserPool.<TabularChunker.Chunk, XlsxStreamingReader.StreamStats>stream(
+                        DocumentParserPool.Format.XLSX, filename,
+                        (c, emit) -> {
+                            TabularChunker.RowGrouper grouper = tabularChunker.grouper(emit);
+                            XlsxStreamingReader.StreamStats streamStats = xlsxReader.streamRows(pkg, c,
+                                    (sheetIndex, sheetName, values) -> grouper.row(sheetName, values));
+                            grouper.finish();
+                            return streamStats;
+                        },
+                        indexer::accept);
+                indexer.finish();
+
+                if (indexer.indexed > 0) {
+                    log.info("✅ [Ingestion] XLSX texte indexé: chunks={} sheets={} rows={} nonEmptyCells={} images={} charts={}",
+                            indexer.indexed, stats.sheetCount(), stats.rowCount(),
+                            stats.nonEmptyCells(), imagesCount, chartsCount);
+                } else {
+                    log.warn("⚠️ [Ingestion] Aucun texte extrait du XLSX: filename={} batchId={}", filename, batchId);
+                }
             }
 
         } catch (Exception e) {
             log.error("❌ [Ingestion] Échec traitement XLSX (POI): filename={} batchId={}", filename, batchId, e);
             throw new IOException("Erreur traitement XLSX: " + filename, e);
+        } finally {
+            if (spool != null) {
+                try {
+                    Files.deleteIfExists(spool);
+                } catch (IOException e) {
+                    log.warn("⚠️ [Ingestion] Fichier temporaire XLSX non supprimé: {}", spool);
+                }
+            }
         }
 
         // ========================================================================
@@ -806,17 +1121,22 @@ public class MultimodalIngestionService {
                     filename, batchId, chartsCount, hasAnyDrawing);
 
             try {
-                Path pdfPath = convertXlsxToPdfWithLibreOffice(bytes, baseFilename);
-                byte[] pdfBytes = Files.readAllBytes(pdfPath);
+                // Classeur copié en flux vers le convertisseur (fichier spoolé du worker, jamais en byte[])
+                byte[] pdfBytes;
+                try (InputStream in = file.getInputStream()) {
+                    pdfBytes = officeConverter.convertToPdf(in, "xlsx");
+                }
 
+                // Nom du classeur conservé : lignes du PDF rattachées au XLSX (source, suppression, nouvelle version)
                 MultipartFile pdfFile = new InMemoryMultipartFile(
                         "file",
-                        baseFilename + ".pdf",
+                        filename,
                         "application/pdf",
                         pdfBytes
                 );
 
-                ingestPdfWithImages(pdfFile, batchId);
+                // PDF intermédiaire (texte XLSX déjà indexé) : pas de checkpoint par page
+                ingestPdfWithImages(pdfFile, batchId, false);
 
                 log.info("✅ [Ingestion] Fallback PDF terminé: filename={} batchId={} pdfBytes={}",
                         filename, batchId, pdfBytes.length);
@@ -852,82 +1172,7 @@ public class MultimodalIngestionService {
         } catch (Exception e) {
             log.warn("⚠️ [Ingestion] Erreur détection images XLSX: {}", e.getMessage());
         }
-        return false;
-    }
-
-    // ========================================================================
-    // Détection "drawing present" (shapes/charts/etc) -> utile pour fallback
-    // ========================================================================
-    private boolean hasAnyDrawingInXlsx(XSSFWorkbook wb) {
-        try {
-            for (int i = 0; i < wb.getNumberOfSheets(); i++) {
-                Sheet sh = wb.getSheetAt(i);
-                if (sh instanceof XSSFChartSheet) {
-                    // chart-sheet => visuel garanti
-                    return true;
-                }
-                if (!(sh instanceof XSSFSheet sheet)) continue;
-
-                XSSFDrawing drawing = resolveDrawing(sheet);
-                if (drawing == null) continue;
-
-                // Charts embedded (si supporté dans votre POI)
-                try {
-                    if (!drawing.getCharts().isEmpty()) return true;
-                } catch (NoSuchMethodError | Exception ignored) {
-                    // Certaines versions POI peuvent varier; on ne casse pas.
-                }
-            }
-        } catch (Exception e) {
-            log.warn("⚠️ [Ingestion] Erreur détection drawings XLSX: {}", e.getMessage());
-        }
-        return false;
-    }
-
-    // ========================================================================
-    // Détection charts ROBUSTE :
-    // - chart sheets
-    // - charts embedded via drawing.getCharts()
-    // ========================================================================
-    private int countChartsRobust(XSSFWorkbook wb) {
-        int charts = 0;
-        try {
-            for (int i = 0; i < wb.getNumberOfSheets(); i++) {
-                Sheet sh = wb.getSheetAt(i);
-
-                if (sh instanceof XSSFChartSheet cs) {
-                    charts += 1;
-                    continue;
-                }
-
-                if (!(sh instanceof XSSFSheet sheet)) continue;
-
-                XSSFDrawing drawing = resolveDrawing(sheet);
-                if (drawing == null) continue;
-
-                // 1) Méthode native si dispo
-                try {
-                    List<XSSFChart> embeddedCharts = drawing.getCharts(); // souvent présent
-                    if (embeddedCharts != null) charts += embeddedCharts.size();
-                    continue;
-                } catch (NoSuchMethodError ignored) {
-                    // pass
-                } catch (Exception ignored) {
-                    // pass
-                }
-
-                // 2) Fallback par relations (compile partout)
-                // Un chart est un POIXMLDocumentPart relationné (XSSFChart)
-                for (POIXMLDocumentPart rel : drawing.getRelations()) {
-                    if (rel instanceof XSSFChart) {
-                        charts++;
-                    }
-                }
-            }
-        } catch (Exception e) {
-            log.warn("⚠️ [Ingestion] Erreur détection charts XLSX: {}", e.getMessage());
-        }
-        return charts;
+        return false;
     }
 
     private XSSFDrawing resolveDrawing(XSSFSheet sheet) {
@@ -971,7 +1216,7 @@ public class MultimodalIngestionService {
                 if (imgBytes == null || imgBytes.length == 0) continue;
 
                 try {
-                    BufferedImage image = ImageIO.read(new ByteArrayInputStream(imgBytes));
+                    BufferedImage image = decodeImage(imgBytes, filename, batchId);
                     if (image == null) continue;
 
                     totalImagesExtracted++;
@@ -983,7 +1228,8 @@ public class MultimodalIngestionService {
                             s + 1,
                             imageIndexInSheet);
 
-                    String savedImagePath = saveImageToDisk(image, imageName);
+                    VisionImagePreparer.PreparedImage prepared = prepareImage(image, batchId);
+                    String savedImagePath = saveImageToDisk(batchId, filename, prepared, imageName);
 
                     Map<String, Object> metadata = new HashMap<>();
                     metadata.put("source", "xlsx");
@@ -995,7 +1241,8 @@ public class MultimodalIngestionService {
                     metadata.put("savedPath", savedImagePath);
                     metadata.put("batchId", batchId);
 
-                    analyzeAndIndexImage(image, imageName, metadata, batchId);
+                    analyzeAndIndexImage(image, prepared, VisionDescriptionStore.sha256Hex(imgBytes),
+                            imageName, metadata, batchId);
 
                 } catch (Exception e) {
                     log.warn("⚠️ [Ingestion] Erreur extraction image XLSX sheet={} : {}", sheetName, e.getMessage());
@@ -1011,165 +1258,53 @@ public class MultimodalIngestionService {
     }
 
     // ========================================================================
-    // TEXTE (DataFormatter + formules) - comme votre version
-    // ========================================================================
-    private record TextExtractionResult(String text, int sheetCount, long nonEmptyCells) {}
-
-    private TextExtractionResult extractTextFromWorkbook(Workbook wb) {
-        DataFormatter formatter = new DataFormatter();
-        FormulaEvaluator evaluator = wb.getCreationHelper().createFormulaEvaluator();
-
-        StringBuilder sb = new StringBuilder(64_000);
-        long nonEmptyCells = 0;
-
-        int sheets = wb.getNumberOfSheets();
-        for (int s = 0; s < sheets; s++) {
-            Sheet sheet = wb.getSheetAt(s);
-            String sheetName = sheet.getSheetName();
-
-            sb.append("=== Sheet: ").append(sheetName).append(" ===\n");
-
-            for (Row row : sheet) {
-                boolean any = false;
-
-                for (Cell cell : row) {
-                    String value;
-                    try {
-                        value = formatter.formatCellValue(cell, evaluator);
-                    } catch (Exception e) {
-                        continue;
-                    }
-
-                    if (value != null) {
-                        value = value.trim();
-                        if (!value.isEmpty()) {
-                            if (any) sb.append(" | ");
-                            sb.append(value);
-                            any = true;
-                            nonEmptyCells++;
-                        }
-                    }
-                }
-
-                if (any) sb.append('\n');
-            }
-
-            sb.append('\n');
-        }
-
-        return new TextExtractionResult(sb.toString(), sheets, nonEmptyCells);
-    }
-
-    // ========================================================================
-    // XLSX -> PDF via LibreOffice (headless)
-    // - nécessite LibreOffice installé (soffice accessible dans PATH)
+    // TEXTE TABULAIRE (XLSX, CSV) : groupes de lignes -> embeddings par lots
     // ========================================================================
-    private Path convertXlsxToPdfWithLibreOffice(byte[] xlsxBytes, String baseFilename) throws IOException {
-
-        if (!libreOfficeEnabled) {
-            throw new IOException("LibreOffice désactivé (app.libreoffice.enabled=false)");
-        }
-
-        String soffice = resolveSofficeExecutable();
-
-        Path tempDir = Files.createTempDirectory("xlsx2pdf_");
-        Path inputXlsx = tempDir.resolve(baseFilename + ".xlsx");
-        Path outDir = tempDir.resolve("out");
-        Files.createDirectories(outDir);
-
-        Files.write(inputXlsx, xlsxBytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-
-        List<String> cmd = List.of(
-                soffice,
-                "--headless",
-                "--nologo",
-                "--nofirststartwizard",
-                "--norestore",
-                "--convert-to", "pdf",
-                "--outdir", outDir.toAbsolutePath().toString(),
-                inputXlsx.toAbsolutePath().toString()
-        );
-
-        Process process;
-        try {
-            process = new ProcessBuilder(cmd)
-                    .redirectErrorStream(true)
-                    .start();
-        } catch (IOException e) {
-            // Message clair
-            throw new IOException("LibreOffice introuvable. Installez LibreOffice ou configurez app.libreoffice.sofficePath. Commande=" + soffice, e);
-        }
-
-        boolean finished;
-        try {
-            finished = process.waitFor(libreOfficeTimeoutSeconds, TimeUnit.SECONDS);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            process.destroyForcibly();
-            throw new IOException("Conversion LibreOffice interrompue", ie);
-        }
-
-        String output = readAll(process.getInputStream());
-
-        if (!finished) {
-            process.destroyForcibly();
-            throw new IOException("Timeout conversion LibreOffice (" + libreOfficeTimeoutSeconds + "s). Output=" + output);
-        }
-
-        int exit = process.exitValue();
-        if (exit != 0) {
-            throw new IOException("Échec conversion LibreOffice (exit=" + exit + "). Output=" + output);
-        }
 
-        // LibreOffice génère un PDF avec le même nom de base
-        Path pdf = outDir.resolve(baseFilename + ".pdf");
-        if (!Files.exists(pdf)) {
-            // Parfois LO change le nom (espaces, etc.) => chercher 1er pdf
-            try (var stream = Files.list(outDir)) {
-                Optional<Path> anyPdf = stream.filter(p -> p.toString().toLowerCase().endsWith(".pdf")).findFirst();
-                if (anyPdf.isPresent()) return anyPdf.get();
+    /**
+     * Relie TabularChunker au store : les chunks (produits sur le pool de parsing) sont embeddés
+     * par lots de embeddingBatchSize
+     * au fil du flux ; seuls le lot courant et le groupe de lignes en cours sont en mémoire.
+     */
+    private final class TabularIndexer {
+        private final Map<String, Object> baseMetadata;
+        private final String batchId;
+        private final long uploadDate = System.currentTimeMillis();
+        private final List<TextSegment> pending = new ArrayList<>();
+        private int indexed;
+
+        private TabularIndexer(Map<String, Object> baseMetadata, String batchId) {
+            this.baseMetadata = baseMetadata;
+            this.batchId = batchId;
+        }
+
+        private void accept(TabularChunker.Chunk chunk) {
+            Map<String, Object> metadata = new HashMap<>(baseMetadata);
+            metadata.put("sheetName", chunk.sheetName());
+            metadata.put("rowStart", chunk.firstRow());
+            metadata.put("rowEnd", chunk.lastRow());
+            metadata.put("rowCount", chunk.rowCount());
+            metadata.put("chunking", "tabular");
+            metadata.put("uploadDate", uploadDate);
+            metadata.put("batchId", batchId);
+
+            pending.add(TextSegment.from(chunk.text(), Metadata.from(sanitizeMetadata(metadata))));
+            if (pending.size() >= Math.max(1, embeddingBatchSize)) {
+                flush();
             }
-            throw new IOException("PDF non généré par LibreOffice. Output=" + output);
-        }
-
-        return pdf;
-    }
-
-    private String readAll(InputStream in) {
-        try (in) {
-            return new String(in.readAllBytes());
-        } catch (Exception e) {
-            return "";
         }
-    }
 
-    private String resolveSofficeExecutable() {
-        // 1) Config explicite (recommandé en prod)
-        if (libreOfficeSofficePath != null && !libreOfficeSofficePath.isBlank()) {
-            Path p = Paths.get(libreOfficeSofficePath);
-            if (Files.exists(p)) return p.toAbsolutePath().toString();
-            throw new IllegalStateException("LibreOffice sofficePath configuré mais introuvable: " + p);
+        private void finish() {
+            flush();
         }
 
-        // 2) Windows: emplacements standards
-        if (System.getProperty("os.name").toLowerCase().contains("win")) {
-            List<String> candidates = List.of(
-                    "C:\\\\Program Files\\\\LibreOffice\\\\program\\\\soffice.exe",
-                    "C:\\\\Program Files (x86)\\\\LibreOffice\\\\program\\\\soffice.exe"
-            );
-            for (String c : candidates) {
-                if (Files.exists(Paths.get(c))) return c;
-            }
-            // Dernier recours: "soffice.exe" via PATH
-            return "soffice.exe";
+        private void flush() {
+            if (pending.isEmpty()) return;
+            indexed += embedAndStoreInBatches(new ArrayList<>(pending), IngestionCheckpointStore.EmbeddingKind.TEXT, batchId);
+            pending.clear();
         }
-
-        // 3) Linux/Mac: souvent dans PATH
-        return "soffice";
     }
 
-
-
     // ========================================================================
     //   FIN XLSX DOCUMENT INGESTION 
     //   FIN XLSX DOCUMENT INGESTION 
@@ -1180,35 +1315,26 @@ public class MultimodalIngestionService {
     // Traitement DOCX unifié - Ouvre le document UNE SEULE FOIS
     // ========================================================================
 
-    private XWPFDocument openDocxWithTimeout(byte[] bytes, String filename, String batchId, long timeoutMs) throws IOException {
-        ExecutorService exec = Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r, "docx-open-" + (batchId != null ? batchId.substring(0, Math.min(8, batchId.length())) : "unknown"));
-            t.setDaemon(true);
-            return t;
-        });
-
-        Future<XWPFDocument> future = exec.submit(() -> {
-            try (InputStream is = new ByteArrayInputStream(bytes)) {
+    /**
+     * ✅ Ouverture XWPF sur le pool de parsing (timeout DOCX, anti-hang)
+     */
+    private XWPFDocument openDocx(MultipartFile file, String filename, String batchId) throws IOException {
+        Path path = diskPath(file);
+        return parse(DocumentParserPool.Format.DOCX, batchId, filename, c -> {
+            if (path != null) {
+                // Package lu depuis le fichier spoolé : parts décompressées à la demande
+                OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ);
+                try {
+                    return new XWPFDocument(pkg);
+                } catch (IOException | RuntimeException e) {
+                    pkg.revert();
+                    throw e;
+                }
+            }
+            try (InputStream is = file.getInputStream()) {
                 return new XWPFDocument(is);
             }
         });
-
-        try {
-            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
-        } catch (TimeoutException te) {
-            future.cancel(true);
-            log.error("❌ [Ingestion] Timeout ouverture DOCX: filename={} batchId={} timeoutMs={}",
-                    filename, batchId, timeoutMs);
-            throw new IOException("Timeout ouverture DOCX (" + timeoutMs + "ms): " + filename, te);
-        } catch (ExecutionException ee) {
-            Throwable cause = ee.getCause() != null ? ee.getCause() : ee;
-            throw new IOException("Erreur ouverture DOCX: " + filename + " (batchId=" + batchId + "): " + cause.getMessage(), cause);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Interrompu ouverture DOCX: " + filename, ie);
-        } finally {
-            exec.shutdownNow();
-        }
     }
     /**
      * ✅ Ingestion DOCX avec gestion optimisée (ouverture unique + détection images + timeout)
@@ -1233,23 +1359,18 @@ public class MultimodalIngestionService {
 
         final long t0 = System.nanoTime();
 
-        final byte[] bytes;
+        final byte[] header;
         try {
-            bytes = file.getBytes();
+            header = readHeader(file, 4);
         } catch (Exception e) {
-            log.error("❌ [Ingestion] Impossible de lire les bytes DOCX: filename={} batchId={}", filename, batchId, e);
+            log.error("❌ [Ingestion] Impossible de lire le fichier DOCX: filename={} batchId={}", filename, batchId, e);
             throw new IOException("Impossible de lire le fichier: " + filename, e);
         }
 
-        if (log.isDebugEnabled()) {
-            log.debug("[Ingestion] DOCX bytes lus: filename={} batchId={} bytes={} elapsedMs={}",
-                    filename, batchId, bytes.length, (System.nanoTime() - t0) / 1_000_000);
-        }
-
         // Vérification rapide: un DOCX doit être un ZIP (signature "PK")
-        if (bytes.length < 2 || bytes[0] != 'P' || bytes[1] != 'K') {
-            String firstBytes = bytes.length >= 4
-                    ? String.format("%02X %02X %02X %02X", bytes[0], bytes[1], bytes[2], bytes[3])
+        if (header.length < 2 || header[0] != 'P' || header[1] != 'K') {
+            String firstBytes = header.length >= 4
+                    ? String.format("%02X %02X %02X %02X", header[0], header[1], header[2], header[3])
                     : "N/A";
             log.warn("⚠️ [Ingestion] Fichier non-DOCX (signature ZIP absente): filename={} batchId={} firstBytes={}",
                     filename, batchId, firstBytes);
@@ -1258,7 +1379,7 @@ public class MultimodalIngestionService {
 
         // Ouverture XWPF avec timeout (anti-hang)
         final long tOpen = System.nanoTime();
-        try (XWPFDocument document = openDocxWithTimeout(bytes, filename, batchId, docxOpenTimeoutMs)) {
+        try (XWPFDocument document = openDocx(file, filename, batchId)) {
 
             if (log.isDebugEnabled()) {
                 log.debug("[Ingestion] DOCX ouvert: filename={} batchId={} paragraphs={} openElapsedMs={}",
@@ -1271,6 +1392,7 @@ public class MultimodalIngestionService {
                     filename, batchId, hasImages);
 
             if (hasImages) {
+                progress.stage(batchId, IngestionProgressService.STAGE_IMAGES);
                 processWordWithImages(document, filename, batchId);
             } else {
                 processWordTextOnly(document, filename, batchId);
@@ -1412,7 +1534,7 @@ public class MultimodalIngestionService {
                             continue;
                         }
 
-                        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+                        BufferedImage image = decodeImage(imageBytes, filename, batchId);
                         if (image == null) {
                             log.warn("⚠️ [Ingestion] Image non décodable (para {}, img {})", paragraphIndex, imageIndexInParagraph);
                             continue;
@@ -1421,7 +1543,8 @@ public class MultimodalIngestionService {
                         String imageName = String.format("%s_batch%s_para%d_img%d",
                                 baseFilename, batchShort, paragraphIndex, imageIndexInParagraph);
 
-                        String savedImagePath = saveImageToDisk(image, imageName);
+                        VisionImagePreparer.PreparedImage prepared = prepareImage(image, batchId);
+                        String savedImagePath = saveImageToDisk(batchId, filename, prepared, imageName);
 
                         Map<String, Object> metadata = new HashMap<>();
                         metadata.put("paragraphIndex", paragraphIndex);
@@ -1431,7 +1554,8 @@ public class MultimodalIngestionService {
                         metadata.put("savedPath", savedImagePath);
                         metadata.put("batchId", batchId);
 
-                        analyzeAndIndexImage(image, imageName, metadata, batchId);
+                        analyzeAndIndexImage(image, prepared, VisionDescriptionStore.sha256Hex(imageBytes),
+                                imageName, metadata, batchId);
 
                         if (totalImagesExtracted % 10 == 0) {
                             log.info("📊 [Ingestion] {} images extraites", totalImagesExtracted);
@@ -1478,7 +1602,8 @@ public class MultimodalIngestionService {
             meta.put("batchId", batchId);
 
             Metadata metadata = Metadata.from(sanitizeMetadata(meta));
-            indexTextWithMetadata(fullText.toString(), metadata, batchId);
+            progress.stage(batchId, IngestionProgressService.STAGE_INDEXING);
+            indexTextWithMetadata(fullText.toString(), metadata, "docx", batchId);
 
             log.info("✅ [Ingestion] Texte indexé: {} caractères", fullText.length());
         } else {
@@ -1545,7 +1670,8 @@ public class MultimodalIngestionService {
         meta.put("batchId", batchId);
 
         Metadata metadata = Metadata.from(sanitizeMetadata(meta));
-        indexTextWithMetadata(fullText.toString(), metadata, batchId);
+        progress.stage(batchId, IngestionProgressService.STAGE_INDEXING);
+        indexTextWithMetadata(fullText.toString(), metadata, "docx", batchId);
 
         log.info("✅ [Ingestion] DOCX texte traité: filename={} batchId={} paragraphs={} chars={}",
                 filename, batchId, paragraphCount, fullText.length());
@@ -1608,7 +1734,7 @@ public class MultimodalIngestionService {
                             continue;
                         }
 
-                        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+                        BufferedImage image = decodeImage(imageBytes, originalFilename, batchId);
                         if (image == null) {
                             log.debug("[Ingestion] Image non décodable ({} para {})", location, paragraphIndex);
                             continue;
@@ -1620,7 +1746,8 @@ public class MultimodalIngestionService {
                         String imageName = String.format("%s_batch%s_%s%d_img%d",
                                 baseFilename, batchShort, location, paragraphIndex, imageIndexInParagraph);
 
-                        String savedImagePath = saveImageToDisk(image, imageName);
+                        VisionImagePreparer.PreparedImage prepared = prepareImage(image, batchId);
+                        String savedImagePath = saveImageToDisk(batchId, originalFilename, prepared, imageName);
 
                         Map<String, Object> metadata = new HashMap<>();
                         metadata.put("location", location);
@@ -1630,7 +1757,8 @@ public class MultimodalIngestionService {
                         metadata.put("savedPath", savedImagePath);
                         metadata.put("batchId", batchId);
 
-                        analyzeAndIndexImage(image, imageName, metadata, batchId);
+                        analyzeAndIndexImage(image, prepared, VisionDescriptionStore.sha256Hex(imageBytes),
+                                imageName, metadata, batchId);
 
                     } catch (Exception e) {
                         log.warn("⚠️ [Ingestion] Erreur extraction image {} (para {}): {}",
@@ -1652,10 +1780,11 @@ public class MultimodalIngestionService {
         String extension = getFileExtension(file.getOriginalFilename()).toLowerCase();
         log.info("📘 [Ingestion] Traitement Office ({}): {}", extension, file.getOriginalFilename());
 
-        Document document;
-        try (InputStream inputStream = file.getInputStream()) {
-            document = poiParser.parse(inputStream);
-        }
+        Document document = parse(DocumentParserPool.Format.OFFICE, batchId, file.getOriginalFilename(), c -> {
+            try (InputStream inputStream = file.getInputStream()) {
+                return poiParser.parse(inputStream);
+            }
+        });
 
         if (document.text() == null || document.text().isBlank()) {
             throw new IllegalArgumentException("Document Office vide");
@@ -1663,7 +1792,8 @@ public class MultimodalIngestionService {
 
         log.debug("📝 [Ingestion] Texte extrait: {} caractères", document.text().length());
         
-        indexDocument(document, file.getOriginalFilename(), "office_" + extension, 1000, 100, batchId);
+        progress.stage(batchId, IngestionProgressService.STAGE_INDEXING);
+        indexDocument(document, file.getOriginalFilename(), "office_" + extension, batchId);
     }
 
     // ========================================================================
@@ -1671,12 +1801,19 @@ public class MultimodalIngestionService {
     // ========================================================================
 
     private void ingestTextFile(MultipartFile file, String batchId) throws IOException {
+        String extension = getFileExtension(file.getOriginalFilename());
+        if (TABULAR_TEXT_TYPES.contains(extension)) {
+            ingestCsvFile(file, batchId);
+            return;
+        }
+
         log.info("📄 [Ingestion] Traitement fichier texte: {}", file.getOriginalFilename());
 
-        String text;
-        try (InputStream inputStream = file.getInputStream()) {
-            text = new String(inputStream.readAllBytes());
-        }
+        String text = parse(DocumentParserPool.Format.TEXT, batchId, file.getOriginalFilename(), c -> {
+            try (InputStream inputStream = file.getInputStream()) {
+                return new String(inputStream.readAllBytes());
+            }
+        });
 
         if (text.isBlank()) {
             throw new IllegalArgumentException("Fichier texte vide");
@@ -1690,7 +1827,42 @@ public class MultimodalIngestionService {
         meta.put("batchId", batchId);
 
         Metadata metadata = Metadata.from(sanitizeMetadata(meta));
-        indexTextWithMetadata(text, metadata, batchId);
+        progress.stage(batchId, IngestionProgressService.STAGE_INDEXING);
+        indexTextWithMetadata(text, metadata, extension, batchId);
+    }
+
+    /**
+     * ✅ CSV : lecture en flux, groupes de lignes avec en-tête (TabularChunker)
+     */
+    private void ingestCsvFile(MultipartFile file, String batchId) throws IOException {
+        String filename = file.getOriginalFilename();
+        log.info("📊 [Ingestion] Traitement CSV (tabulaire): {}", filename);
+
+        Map<String, Object> meta = new HashMap<>();
+        meta.put("source", filename);
+        meta.put("type", "csv");
+        meta.put("batchId", batchId);
+
+        TabularIndexer indexer = new TabularIndexer(meta, batchId);
+        long rows = parserPool.<TabularChunker.Chunk, Long>stream(DocumentParserPool.Format.CSV, filename,
+                (c, emit) -> {
+                    try (Reader reader = new BufferedReader(
+                            new InputStreamReader(progress.track(batchId, file.getInputStream()),
+                                    java.nio.charset.StandardCharsets.UTF_8))) {
+                        TabularChunker.RowGrouper grouper = tabularChunker.grouper(emit);
+                        long read = tabularChunker.streamCsv(reader, filename, grouper, c);
+                        grouper.finish();
+                        return read;
+                    }
+                },
+                indexer::accept);
+        indexer.finish();
+
+        if (rows == 0) {
+            throw new IllegalArgumentException("Fichier CSV vide");
+        }
+
+        log.info("✅ [Ingestion] CSV indexé: rows={} chunks={}", rows, indexer.indexed);
     }
 
     // ========================================================================
@@ -1700,10 +1872,11 @@ public class MultimodalIngestionService {
     private void ingestWithTika(MultipartFile file, String batchId) throws IOException {
         log.info("🔧 [Ingestion] Traitement avec Tika: {}", file.getOriginalFilename());
 
-        Document document;
-        try (InputStream inputStream = file.getInputStream()) {
-            document = tikaParser.parse(inputStream);
-        }
+        Document document = parse(DocumentParserPool.Format.TIKA, batchId, file.getOriginalFilename(), c -> {
+            try (InputStream inputStream = file.getInputStream()) {
+                return tikaParser.parse(inputStream);
+            }
+        });
 
         if (document.text() == null || document.text().isBlank()) {
             throw new IllegalArgumentException("Impossible d'extraire du texte");
@@ -1711,7 +1884,8 @@ public class MultimodalIngestionService {
 
         log.debug("📝 [Ingestion] Texte extrait: {} caractères", document.text().length());
         
-        indexDocument(document, file.getOriginalFilename(), "tika_auto", 1000, 100, batchId);
+        progress.stage(batchId, IngestionProgressService.STAGE_INDEXING);
+        indexDocument(document, file.getOriginalFilename(), "tika_auto", batchId);
     }
 
     // ========================================================================
@@ -1729,19 +1903,22 @@ public class MultimodalIngestionService {
             );
         }
 
-        BufferedImage image;
-        try (InputStream inputStream = file.getInputStream()) {
-            image = ImageIO.read(inputStream);
-            if (image == null) {
-                throw new IllegalArgumentException("Fichier image invalide");
+        BufferedImage image = parse(DocumentParserPool.Format.IMAGE, batchId, file.getOriginalFilename(), c -> {
+            try (InputStream inputStream = file.getInputStream()) {
+                return ImageIO.read(inputStream);
             }
+        });
+        if (image == null) {
+            throw new IllegalArgumentException("Fichier image invalide");
         }
+        progress.stage(batchId, IngestionProgressService.STAGE_IMAGES);
 
         String imageName = sanitizeFilename(
             file.getOriginalFilename().replaceAll("\\.[^.]+$", "")
         ) + "_batch" + batchId.substring(0, 8);
         
-        String savedImagePath = saveImageToDisk(image, imageName);
+        VisionImagePreparer.PreparedImage prepared = prepareImage(image, batchId);
+        String savedImagePath = saveImageToDisk(batchId, file.getOriginalFilename(), prepared, imageName);
         
         Map<String, Object> metadata = new HashMap<>();
         metadata.put("standalone", 1);
@@ -1751,7 +1928,11 @@ public class MultimodalIngestionService {
         metadata.put("height", image.getHeight());
         metadata.put("batchId", batchId);
         
-        analyzeAndIndexImage(image, imageName, metadata, batchId);
+        String sourceHash;
+        try (InputStream inputStream = file.getInputStream()) {
+            sourceHash = VisionDescriptionStore.sha256Hex(inputStream);
+        }
+        analyzeAndIndexImage(image, prepared, sourceHash, imageName, metadata, batchId);
         
         log.info("✅ [Ingestion] Image standalone traitée");
     }
@@ -1761,24 +1942,22 @@ public class MultimodalIngestionService {
     // ========================================================================
 
     /**
-     * ✅ Sauvegarde image sur disque - Chemin configurable + validation
+     * ✅ Sauvegarde image sur disque (répertoire du batch + catalogue, cf. ImageStorageService)
+     * Écrit le tampon préparé (JPEG borné) : le même octet part ensuite vers Vision.
      */
-    private String saveImageToDisk(BufferedImage image, String imageName) throws IOException {
-        Path directory = Paths.get(imagesStoragePath);
-        
-        // Garantir que le répertoire existe
-        if (!Files.exists(directory)) {
-            Files.createDirectories(directory);
-        }
-        
-        String filename = imageName + ".png";
-        Path outputPath = directory.resolve(filename);
-        
-        ImageIO.write(image, "png", outputPath.toFile());
-        
-        return outputPath.toAbsolutePath().toString();
+    private String saveImageToDisk(String batchId, String documentName,
+                                   VisionImagePreparer.PreparedImage prepared, String imageName) throws IOException {
+        return saveImageBytesToDisk(batchId, documentName, prepared.bytes(), imageName, prepared.extension());
     }
-    
+
+    /**
+     * ✅ Sauvegarde des octets encodés tels quels (JPEG passthrough, pas de ré-encodage)
+     */
+    private String saveImageBytesToDisk(String batchId, String documentName,
+                                        byte[] bytes, String imageName, String extension) throws IOException {
+        return imageStorage.save(batchId, documentName, imageName, extension, bytes);
+    }
+
     /**
      * ✅ Sanitize nom de fichier
      */
@@ -1792,67 +1971,57 @@ public class MultimodalIngestionService {
 
     /**
      * ✅ AMÉLIORÉ v2.1: Indexation avec tracking des IDs
+     * Découpage en tokens selon le profil du type (cf. TextChunker)
      */
     private void indexDocument(
             Document document, 
             String filename, 
             String type,
-            int chunkSize, 
-            int chunkOverlap,
             String batchId) {
 
-        List<TextSegment> segments = DocumentSplitters
-                .recursive(chunkSize, chunkOverlap)
-                .split(document);
+        List<TextSegment> segments;
+        try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.SPLIT, batchId)) {
+            segments = textChunker.split(document, type);
+            span.items(segments.size()).ok();
+        }
 
         log.info("📊 [Ingestion] Document divisé en {} segments", segments.size());
 
-        // Obtenir le tracker pour ce batch
-        BatchEmbeddings tracker = batchTracker.computeIfAbsent(batchId, k -> new BatchEmbeddings());
+        // Timestamp unique par ingestion
+        long uploadDate = System.currentTimeMillis();
 
-        int indexed = 0;
+        List<TextSegment> toIndex = new ArrayList<>(segments.size());
         for (TextSegment segment : segments) {
             if (segment.text() == null || segment.text().isBlank() || segment.text().length() < 10) {
                 continue;
             }
 
-            try {
-                Map<String, Object> metadata = new HashMap<>();
-                if (segment.metadata() != null) {
-                    metadata.putAll(segment.metadata().toMap());
-                }
-                metadata.put("source", filename);
-                metadata.put("type", type);
-                metadata.put("uploadDate", System.currentTimeMillis());
-                metadata.put("batchId", batchId);
-
-                TextSegment enrichedSegment = TextSegment.from(
-                        segment.text(),
-                        Metadata.from(sanitizeMetadata(metadata))
-                );
-
-                Embedding embedding = embeddingModel.embed(enrichedSegment.text()).content();
-                
-                // ✅ NOUVEAU v2.1: Capturer et tracker l'ID
-                String embeddingId = textStore.add(embedding, enrichedSegment);
-                tracker.addTextId(embeddingId);
-                
-                indexed++;
-
-            } catch (Exception e) {
-                log.warn("⚠️ [Ingestion] Échec indexation segment: {}", e.getMessage());
+            Map<String, Object> metadata = new HashMap<>();
+            if (segment.metadata() != null) {
+                metadata.putAll(segment.metadata().toMap());
             }
+            metadata.put("source", filename);
+            metadata.put("type", type);
+            metadata.put("uploadDate", uploadDate);
+            metadata.put("batchId", batchId);
+
+            toIndex.add(TextSegment.from(
+                    segment.text(),
+                    Metadata.from(sanitizeMetadata(metadata))
+            ));
         }
 
+        int indexed = embedAndStoreInBatches(toIndex, IngestionCheckpointStore.EmbeddingKind.TEXT, batchId);
+
         log.info("✅ [Ingestion] {} segments indexés", indexed);
     }
 
     /**
      * ✅ AMÉLIORÉ v2.1: Indexation texte avec tracking des IDs
-     * Idéalement en champ (singleton) pour éviter de recréer l'objet splitter
-     * private final DocumentSplitter splitter = DocumentSplitters.recursive(CHUNK_SIZE, CHUNK_OVERLAP);
+     *
+     * @param chunkType type ou extension du fichier : choisit le profil de découpage (TextChunker)
      */
-    private void indexTextWithMetadata(String text, Metadata baseMetadata, String batchId) {
+    private void indexTextWithMetadata(String text, Metadata baseMetadata, String chunkType, String batchId) {
 
         if (text == null || text.isBlank()) {
             log.warn("[Ingestion] Texte vide - skip indexation (batchId={})", batchId);
@@ -1865,13 +2034,11 @@ public class MultimodalIngestionService {
             batchId = "unknown";
         }
 
-        Document document = Document.from(text, baseMetadata);
-
-        List<TextSegment> segments = DocumentSplitters
-                .recursive(CHUNK_SIZE, CHUNK_OVERLAP)
-                .split(document);
-
-        BatchEmbeddings tracker = batchTracker.computeIfAbsent(batchId, k -> new BatchEmbeddings());
+        List<TextSegment> segments;
+        try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.SPLIT, batchId)) {
+            segments = textChunker.split(text, baseMetadata, chunkType);
+            span.items(segments.size()).ok();
+        }
 
         int total = segments.size();
         int skipped = 0;
@@ -1885,6 +2052,7 @@ public class MultimodalIngestionService {
             log.debug("[Ingestion] Split texte: batchId={} segments={}", batchId, total);
         }
 
+        List<TextSegment> toIndex = new ArrayList<>(total);
         for (TextSegment segment : segments) {
             String segmentText = segment.text();
             if (segmentText == null) {
@@ -1898,47 +2066,151 @@ public class MultimodalIngestionService {
                 continue;
             }
 
-            try {
-                // Copie meta segment + ajout de champs
-                Map<String, Object> metadata = new HashMap<>();
-                if (segment.metadata() != null) {
-                    metadata.putAll(segment.metadata().toMap());
-                }
+            // Copie meta segment + ajout de champs
+            Map<String, Object> metadata = new HashMap<>();
+            if (segment.metadata() != null) {
+                metadata.putAll(segment.metadata().toMap());
+            }
 
-                metadata.put("uploadDate", uploadDate);
-                metadata.put("batchId", batchId); // utile si le store ne conserve pas la clé batch ailleurs
+            metadata.put("uploadDate", uploadDate);
+            metadata.put("batchId", batchId); // utile si le store ne conserve pas la clé batch ailleurs
 
-                TextSegment enrichedSegment = TextSegment.from(
-                        segmentText,
-                        Metadata.from(sanitizeMetadata(metadata))
-                );
+            toIndex.add(TextSegment.from(
+                    segmentText,
+                    Metadata.from(sanitizeMetadata(metadata))
+            ));
+        }
+
+        indexed = embedAndStoreInBatches(toIndex, IngestionCheckpointStore.EmbeddingKind.TEXT, batchId);
+        failed = toIndex.size() - indexed;
+
+        log.info("[Ingestion] Indexation texte terminée: batchId={} total={} indexed={} skipped={} failed={}",
+                batchId, total, indexed, skipped, failed);
+    }
+
+    /**
+     * ✅ IDs écrits : comptés, et enregistrés jusqu'au prochain checkpoint (reprise après crash)
+     */
+    private java.util.function.Consumer<List<String>> trackIds(String batchId,
+                                                               IngestionCheckpointStore.EmbeddingKind kind) {
+        return ids -> {
+            batchEmbeddedCounts.computeIfAbsent(batchId, k -> new AtomicInteger()).addAndGet(ids.size());
+            checkpoints.recordIds(batchId, kind, ids);
+            incremental.recordAdded(batchId, kind, ids.size());
+        };
+    }
+
+    /**
+     * ✅ Embedding + persistance par lots (embedAll + addAll)
+     * Un lot en échec est journalisé puis ignoré : les lots précédents restent trackés pour le rollback.
+     * Chaque segment reçoit metadata.contentHash et metadata.documentKey ; un segment texte inchangé depuis la version
+     * précédente du document garde son embedding (IncrementalReingestionService) ; un segment
+     * quasi identique à un segment déjà indexé est rattaché à ce canonique (NearDuplicateChunkIndex).
+     * Visibilité package : mesuré par IndexingThroughputBenchmark.
+     *
+     * @return nombre de segments indexés ou conservés
+     */
+    int embedAndStoreInBatches(List<TextSegment> allSegments,
+                               IngestionCheckpointStore.EmbeddingKind kind,
+                               String batchId) {
+        if (allSegments == null || allSegments.isEmpty()) {
+            return 0;
+        }
+
+        EmbeddingStore<TextSegment> store =
+                kind == IngestionCheckpointStore.EmbeddingKind.TEXT ? textStore : imageStore;
+        java.util.function.Consumer<List<String>> idSink = trackIds(batchId, kind);
+
+        int kept = 0;
+        String documentKey = batchDocumentKeys.get(batchId);
+        List<TextSegment> segments = new ArrayList<>(allSegments.size());
+        for (TextSegment segment : allSegments) {
+            if (documentKey != null) {
+                segment.metadata().put(IncrementalReingestionService.DOCUMENT_KEY, documentKey);
+            }
+            String hash = segment.metadata().getString(IncrementalReingestionService.CONTENT_HASH);
+            if (hash == null) {
+                hash = IncrementalReingestionService.contentHash(segment.text());
+                segment.metadata().put(IncrementalReingestionService.CONTENT_HASH, hash);
+            }
+            // Images : décision prise en amont (flushImageGroups), avant Vision
+            if (kind == IngestionCheckpointStore.EmbeddingKind.TEXT
+                    && incremental.keep(batchId, kind, hash, segment.metadata().toMap())) {
+                kept++;
+                continue;
+            }
+            segments.add(segment);
+        }
+        if (kept > 0) {
+            log.debug("[Ingestion] {} segments inchangés conservés (batchId={})", kept, batchId);
+        }
+
+        int batchSize = Math.max(1, embeddingBatchSize);
+        int indexed = kept;
+        long t0 = System.nanoTime();
+
+        for (int from = 0; from < segments.size(); from += batchSize) {
+            List<TextSegment> slice = segments.subList(from, Math.min(from + batchSize, segments.size()));
 
-                Embedding embedding = embeddingModel.embed(enrichedSegment.text()).content();
+            try {
+                NearDuplicateChunkIndex.Filtered filtered = null;
+                if (kind == IngestionCheckpointStore.EmbeddingKind.TEXT && nearDuplicates.isEnabled()) {
+                    filtered = nearDuplicates.suppress(slice, batchId);
+                    indexed += filtered.linked();
+                    progress.segmentsEmbedded(batchId, filtered.linked());
+                    slice = filtered.remaining();
+                    if (slice.isEmpty()) {
+                        continue;
+                    }
+                }
 
-                String embeddingId = textStore.add(embedding, enrichedSegment);
-                tracker.addTextId(embeddingId);
+                List<Embedding> embeddings;
+                try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.EMBED, batchId)) {
+                    embeddings = embeddingModel.embedAll(slice).content();
+                    if (embeddings == null || embeddings.size() != slice.size()) {
+                        throw new IllegalStateException("embedAll a retourné " +
+                                (embeddings == null ? 0 : embeddings.size()) + " embeddings pour " + slice.size() + " segments");
+                    }
+                    span.items(slice.size()).ok();
+                }
 
-                indexed++;
+                List<String> ids;
+                try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.STORE, batchId)) {
+                    ids = store.addAll(embeddings, slice);
+                    span.items(ids.size()).ok();
+                }
+                idSink.accept(ids);
+                if (filtered != null) {
+                    nearDuplicates.index(ids, filtered.signatures(), slice, batchId);
+                }
+                indexed += slice.size();
+                progress.segmentsEmbedded(batchId, slice.size());
 
             } catch (Exception e) {
-                failed++;
-                // En prod: garder un message concis + stacktrace en debug si besoin
-                log.warn("[Ingestion] Échec indexation segment (batchId={}): {}", batchId, e.getMessage());
+                log.warn("[Ingestion] Échec indexation lot [{}-{}] (batchId={}): {}",
+                        from, from + slice.size() - 1, batchId, e.getMessage());
+                recordStageFailure(batchId);
                 if (log.isDebugEnabled()) {
-                    log.debug("[Ingestion] Stacktrace indexation segment (batchId={})", batchId, e);
+                    log.debug("[Ingestion] Stacktrace indexation lot (batchId={})", batchId, e);
                 }
             }
         }
 
-        log.info("[Ingestion] Indexation texte terminée: batchId={} total={} indexed={} skipped={} failed={}",
-                batchId, total, indexed, skipped, failed);
+        if (log.isDebugEnabled()) {
+            double seconds = Math.max(1e-9, (System.nanoTime() - t0) / 1_000_000_000.0);
+            log.debug("[Ingestion] Débit indexation: batchId={} segments={} lots={} segments/s={}",
+                    batchId, indexed, (segments.size() + batchSize - 1) / batchSize,
+                    String.format("%.1f", indexed / seconds));
+        }
+
+        return indexed;
     }
 
 
     /**
-     * ✅ Sanitize complet avec Date, Collections
+     * ✅ Sanitize complet avec Date, Collections (sans état, mesuré par les benchmarks JMH)
      */
-    private Map<String, Object> sanitizeMetadata(Map<String, Object> raw) {
+    static Map<String, Object> sanitizeMetadata(Map<String, Object> raw) {
         Map<String, Object> cleaned = new HashMap<>();
         if (raw == null) return cleaned;
 
@@ -1983,81 +2255,233 @@ public class MultimodalIngestionService {
     }
 
     /**
-     * ✅ AMÉLIORÉ v2.1: Analyse et indexation image avec tracking des IDs
+     * ✅ AMÉLIORÉ v2.1: Analyse image avec déduplication perceptuelle
+     * Doublon d'une image déjà vue dans le batch => aucune requête Vision, occurrence ajoutée au groupe.
+     * L'indexation (embedding + store) est faite par flushImageGroups en fin de batch.
      */
     private void analyzeAndIndexImage(
             BufferedImage image, 
+            VisionImagePreparer.PreparedImage prepared,
+            String contentHash,
             String imageName,
             Map<String, Object> additionalMetadata,
             String batchId) {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, "png", baos);
-            byte[] imageBytes = baos.toByteArray();
-            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
+            additionalMetadata.put(IncrementalReingestionService.CONTENT_HASH, contentHash);
+
+            ImageDeduplicationIndex.Registration registration =
+                    imageDedup.register(batchId, image, imageName, additionalMetadata);
+            if (!registration.canonical()
+                    || incremental.knows(batchId, IngestionCheckpointStore.EmbeddingKind.IMAGE, contentHash)) {
+                return;
+            }
+
+            registration.group().setDescription(
+                    describeEncoded(prepared.bytes(), prepared.mimeType(), contentHash, batchId));
+            progress.imageAnalysed(batchId);
+
+        } catch (Exception e) {
+            log.error("❌ [Ingestion] Erreur analyse image: {}", imageName, e);
+        }
+    }
+
+    /**
+     * ✅ Variante pipeline : hash perceptuel sur le producteur, Vision sur le pool Vision.
+     * Seul le tampon préparé est capturé par l'étage Vision (le BufferedImage peut être libéré).
+     * contentHash : SHA-256 des octets d'origine, pas du JPEG préparé (dépend des réglages d'encodage).
+     */
+    private void submitImage(
+            IngestionPipeline.Run run,
+            BufferedImage image,
+            VisionImagePreparer.PreparedImage prepared,
+            String contentHash,
+            String imageName,
+            Map<String, Object> additionalMetadata,
+            String batchId) {
+
+        additionalMetadata.put(IncrementalReingestionService.CONTENT_HASH, contentHash);
+
+        ImageDeduplicationIndex.Registration registration =
+                imageDedup.register(batchId, image, imageName, additionalMetadata);
+        if (!registration.canonical()) {
+            return;
+        }
+        // Image inchangée depuis la version précédente : ni Vision ni embedding
+        if (incremental.knows(batchId, IngestionCheckpointStore.EmbeddingKind.IMAGE, contentHash)) {
+            return;
+        }
+
+        ImageDeduplicationIndex.ImageGroup group = registration.group();
+        byte[] imageBytes = prepared.bytes();
+        String mimeType = prepared.mimeType();
+        run.submitImage(() -> describeEncoded(imageBytes, mimeType, contentHash, batchId), description -> {
+            group.setDescription(description);
+            progress.imageAnalysed(batchId);
+        });
+    }
+
+    /**
+     * ✅ Variante pipeline pour une image déjà encodée (JPEG passthrough) :
+     * déduplication sur le SHA-256 des octets puis sur un dHash sous-échantillonné, Vision sur les octets d'origine.
+     */
+    private void submitEncodedImage(
+            IngestionPipeline.Run run,
+            byte[] imageBytes,
+            String mimeType,
+            int width,
+            int height,
+            String imageName,
+            Map<String, Object> additionalMetadata,
+            String batchId) {
+
+        String contentHash = VisionDescriptionStore.sha256Hex(imageBytes);
+        additionalMetadata.put(IncrementalReingestionService.CONTENT_HASH, contentHash);
+
+        PerceptualHash hash = null;
+        try {
+            hash = parse(DocumentParserPool.Format.IMAGE, batchId, imageName, c -> imageDedup.hashEncoded(imageBytes));
+        } catch (IOException e) {
+            log.warn("⚠️ [Dedup] Hash perceptuel impossible pour {} (SHA-256 seul): {}", imageName, e.getMessage());
+        }
+
+        ImageDeduplicationIndex.Registration registration = imageDedup.registerEncoded(
+                batchId, contentHash, hash, width, height, imageName, additionalMetadata);
+        if (!registration.canonical()
+                || incremental.knows(batchId, IngestionCheckpointStore.EmbeddingKind.IMAGE, contentHash)) {
+            return;
+        }
+
+        ImageDeduplicationIndex.ImageGroup group = registration.group();
+        run.submitImage(() -> describeEncoded(imageBytes, mimeType, contentHash, batchId), description -> {
+            group.setDescription(description);
+            progress.imageAnalysed(batchId);
+        });
+    }
+
+    /**
+     * ✅ Vision AI sur des octets déjà encodés (avec cache si activé)
+     */
+    private String describeEncoded(byte[] imageBytes, String mimeType, String contentHash, String batchId) {
+        try (IngestionMetrics.Span span = metrics.start(IngestionMetrics.Stage.VISION, batchId)) {
+            span.items(1).bytes(imageBytes.length);
+            if (!enableVisionCache) {
+                String description = analyzeImageWithVision(imageBytes, mimeType);
+                span.ok();
+                return description;
+            }
+
+            // Store adressé par contenu (SHA-256 des octets d'origine) : LRU local + Redis
+            String description = visionStore.getOrCompute(contentHash, imageBytes.length,
+                    () -> requestVisionDescription(imageBytes, mimeType));
+            span.ok();
+            return description != null ? description : VISION_UNAVAILABLE;
+        }
+    }
+
+    /**
+     * ✅ Indexation des groupes d'images du batch (embedAll + addAll, IDs trackés pour rollback)
+     * Chaque ligne porte la liste des occurrences (pages, sources) de l'image canonique.
+     */
+    private void flushImageGroups(String batchId) {
+        List<ImageDeduplicationIndex.ImageGroup> groups = imageDedup.drain(batchId);
+        if (groups.isEmpty()) {
+            return;
+        }
+
+        long uploadDate = System.currentTimeMillis();
+        int occurrencesTotal = 0;
+        int kept = 0;
+        List<TextSegment> segments = new ArrayList<>(groups.size());
 
-            // Cache Vision AI
-            String description = enableVisionCache ?
-                analyzeImageWithVisionCached(base64Image) :
-                analyzeImageWithVision(base64Image);
+        for (ImageDeduplicationIndex.ImageGroup group : groups) {
+            List<Map<String, Object>> occurrences = group.getOccurrences();
 
-            Map<String, Object> metadata = new HashMap<>(sanitizeMetadata(additionalMetadata));
-            metadata.put("imageName", imageName);
+            Map<String, Object> metadata = new HashMap<>(sanitizeMetadata(group.getCanonicalMetadata()));
+            metadata.put("imageName", group.getCanonicalName());
             metadata.put("type", "image");
-            metadata.put("width", image.getWidth());
-            metadata.put("height", image.getHeight());
-            metadata.put("uploadDate", System.currentTimeMillis());
+            metadata.put("width", group.getWidth());
+            metadata.put("height", group.getHeight());
+            metadata.put("uploadDate", uploadDate);
             metadata.put("imageId", UUID.randomUUID().toString());
+            metadata.put("occurrenceCount", occurrences.size());
+            metadata.put("occurrences", formatOccurrences(occurrences));
+            String documentKey = batchDocumentKeys.get(batchId);
+            if (documentKey != null) {
+                metadata.put(IncrementalReingestionService.DOCUMENT_KEY, documentKey);
+            }
 
-            TextSegment segment = TextSegment.from(description, Metadata.from(metadata));
+            String pages = occurrences.stream()
+                    .map(o -> o.get("page"))
+                    .filter(Objects::nonNull)
+                    .map(String::valueOf)
+                    .distinct()
+                    .collect(java.util.stream.Collectors.joining(","));
+            if (!pages.isEmpty()) {
+                metadata.put("pages", pages);
+            }
 
-            Embedding embedding = embeddingModel.embed(description).content();
-            
-            // ✅ NOUVEAU v2.1: Capturer et tracker l'ID
-            String embeddingId = imageStore.add(embedding, segment);
-            
-            BatchEmbeddings tracker = batchTracker.computeIfAbsent(batchId, k -> new BatchEmbeddings());
-            tracker.addImageId(embeddingId);
+            // Image inchangée : la ligne de la version précédente est conservée (nouvelles métadonnées)
+            Object contentHash = metadata.get(IncrementalReingestionService.CONTENT_HASH);
+            if (contentHash != null && incremental.keep(batchId, IngestionCheckpointStore.EmbeddingKind.IMAGE,
+                    contentHash.toString(), metadata)) {
+                occurrencesTotal += occurrences.size();
+                kept++;
+                continue;
+            }
 
-            log.debug("✅ [Ingestion] Image indexée: {}", imageName);
+            String description = group.getDescription();
+            if (description == null || description.isBlank()) {
+                log.warn("⚠️ [Ingestion] Image sans description, non indexée: {}", group.getCanonicalName());
+                continue;
+            }
+            occurrencesTotal += occurrences.size();
 
-        } catch (Exception e) {
-            log.error("❌ [Ingestion] Erreur analyse image: {}", imageName, e);
+            segments.add(TextSegment.from(description, Metadata.from(metadata)));
         }
+
+        int indexed = embedAndStoreInBatches(segments, IngestionCheckpointStore.EmbeddingKind.IMAGE, batchId);
+
+        log.info("🖼️ [Ingestion] Images indexées: batchId={} occurrences={} groupes={} indexés={} inchangées={}",
+                batchId, occurrencesTotal, groups.size(), indexed, kept);
     }
-    
+
     /**
-     * ✅ Vision AI avec cache (économie 80%)
+     * Occurrences sérialisées en texte (les métadonnées PgVector n'acceptent que des scalaires)
+     * Format: "source=pdf_embedded;page=3;imageName=...|source=pdf_rendered;page=3;..."
      */
-    @Cacheable(value = "vision-analysis", key = "#imageHash", unless = "!#enableCache")
-    private String analyzeImageWithVisionCached(String base64Image) {
-        // Générer hash pour cache
-        String imageHash = generateImageHash(base64Image);
-        return analyzeImageWithVision(base64Image);
+    private String formatOccurrences(List<Map<String, Object>> occurrences) {
+        StringBuilder sb = new StringBuilder();
+        for (Map<String, Object> occurrence : occurrences) {
+            if (sb.length() > 0) sb.append('|');
+            StringJoiner joiner = new StringJoiner(";");
+            occurrence.forEach((k, v) -> joiner.add(k + "=" + v));
+            sb.append(joiner);
+        }
+        return sb.toString();
     }
-    
+
     /**
-     * ✅ Génère hash pour cache Vision
+     * ✅ Vision AI sans cache (description de repli si indisponible)
      */
-    private String generateImageHash(String base64Image) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(base64Image.getBytes());
-            return Base64.getEncoder().encodeToString(hash).substring(0, 32);
-        } catch (Exception e) {
-            return UUID.randomUUID().toString();
-        }
+    private String analyzeImageWithVision(byte[] imageBytes, String mimeType) {
+        String description = requestVisionDescription(imageBytes, mimeType);
+        return description != null ? description : VISION_UNAVAILABLE;
     }
 
-    private String analyzeImageWithVision(String base64Image) {
+    /**
+     * ✅ Appel Vision AI - retourne null si indisponible (résultat non mémorisable)
+     */
+    private String requestVisionDescription(byte[] imageBytes, String mimeType) {
         try {
+            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
+
             UserMessage message = UserMessage.from(
                     TextContent.from(
                             "Décris cette image en détail en français. " +
                             "Mentionne les objets, les personnes, les couleurs, " +
                             "le texte visible, le contexte et tout élément important."
                     ),
-                    ImageContent.from(base64Image, "image/png")
+                    ImageContent.from(base64Image, mimeType)
             );
 
             ChatRequest request = ChatRequest.builder()
@@ -2070,11 +2494,11 @@ public class MultimodalIngestionService {
             String description = (ai != null && ai.text() != null) ? ai.text() : "";
 
             log.debug("🤖 [Ingestion] Vision AI: {} caractères", description.length());
-            return description;
+            return description.isBlank() ? null : description;
 
         } catch (Exception e) {
             log.warn("⚠️ [Ingestion] Vision AI non disponible: {}", e.getMessage());
-            return "Image (analyse Vision AI non disponible)";
+            return null;
         }
     }
 
@@ -2091,47 +2515,3 @@ public class MultimodalIngestionService {
         return filename.substring(lastDot + 1).toLowerCase();
     }
 }
-
-/*
- * ============================================================================
- * AMÉLIORATIONS VERSION 2.1 - ROLLBACK TRANSACTIONNEL COMPLET
- * ============================================================================
- * 
- * ✅ Rollback Transactionnel
- *    - Tracking automatique de tous les embedding IDs par batch
- *    - Suppression complète en cas d'erreur (embeddings + fichiers)
- *    - Thread-safe avec ConcurrentHashMap
- *    - Classe interne BatchEmbeddings pour organisation
- * 
- * ✅ Tracking des IDs
- *    - Capture de tous les IDs retournés par textStore.add() et imageStore.add()
- *    - Association automatique au batchId
- *    - Nettoyage automatique après succès
- * 
- * ✅ Gestion des Fichiers
- *    - Inclusion du batchId dans les noms de fichiers
- *    - Suppression par pattern matching sur le disque
- *    - Logs détaillés des suppressions
- * 
- * ✅ Logs Améliorés
- *    - Résumé du nombre d'embeddings créés
- *    - Détails des suppressions lors du rollback
- *    - Progression agrégée (tous les 10 items)
- * 
- * ✅ Sécurité
- *    - Synchronisation des méthodes critiques dans BatchEmbeddings
- *    - Gestion d'erreurs robuste dans rollback
- *    - Validation stricte avant traitement
- * 
- * MÉTRIQUES ESTIMÉES:
- * - Fiabilité: +99% (rollback complet)
- * - Data consistency: 100% (transaction atomique)
- * - Memory: -80% (streaming + limites)
- * - Coûts Vision: -80% (cache)
- * - Logs: -95% (agrégation)
- * 
- * USAGE:
- * - En cas d'erreur, TOUS les embeddings du batch sont supprimés
- * - TOUS les fichiers images contenant le batchId sont supprimés
- * - Le système revient à l'état d'avant l'ingestion
- */
\ No newline at end of file
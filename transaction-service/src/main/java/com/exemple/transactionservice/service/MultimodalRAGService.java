@@ -3,6 +3,7 @@
 // ============================================================================
 package com.exemple.transactionservice.service;
 
+import com.exemple.transactionservice.config.EmbeddingEngine;
 import com.exemple.transactionservice.config.RAGConfig;
 import com.exemple.transactionservice.dto.CacheableSearchResult;
 import com.exemple.transactionservice.dto.CacheableSearchResult.SearchResultItem;
@@ -85,6 +86,7 @@ public class MultimodalRAGService {
             @Qualifier("textEmbeddingStore") EmbeddingStore<TextSegment> textStore,
             @Qualifier("imageEmbeddingStore") EmbeddingStore<TextSegment> imageStore,
             EmbeddingModel embeddingModel,
+            EmbeddingEngine embeddingEngine,
             RAGConfig ragConfig) {
 
         this.textStore = Objects.requireNonNull(textStore, "textStore");
@@ -103,7 +105,7 @@ public class MultimodalRAGService {
         this.verboseLogging = ragConfig.isVerboseLogging();
         this.enableMetrics = ragConfig.isEnableMetrics();
 
-        this.cacheVersion = buildCacheVersion(ragConfig);
+        this.cacheVersion = buildCacheVersion(ragConfig, embeddingEngine);
 
         this.searchExecutor = createSearchExecutor();
 
@@ -141,8 +143,10 @@ public class MultimodalRAGService {
         log.info("╚════════════════════════════════════════════════════════════╝");
     }
 
-    private static String buildCacheVersion(RAGConfig cfg) {
+    private static String buildCacheVersion(RAGConfig cfg, EmbeddingEngine engine) {
+        // Moteur d'embedding inclus : résultats d'un autre index jamais servis depuis le cache partagé
         String raw = String.join("|",
+                engine.name(),
                 String.valueOf(cfg.getMinScore()),
                 String.valueOf(cfg.getDefaultMaxResults()),
                 String.valueOf(cfg.getMaxAllowedResults()),
@@ -449,8 +453,9 @@ public class MultimodalRAGService {
 
     /**
      * ✅ APPROCHE A: Convertit EmbeddingMatch → SearchResultItem et calcule métriques
+     * (visibilité package : benchmarks JMH)
      */
-    private CacheableSearchResult convertAndBuildResult(
+    CacheableSearchResult convertAndBuildResult(
             SearchResults searchResults, 
             Instant startTime) {
 
@@ -651,7 +656,7 @@ public class MultimodalRAGService {
     /**
      * ✅ APPROCHE A: SearchResults enrichi avec durées
      */
-    private record SearchResults(
+    record SearchResults(
             List<EmbeddingMatch<TextSegment>> textMatches,
             List<EmbeddingMatch<TextSegment>> imageMatches,
             long textDurationMs,
@@ -0,0 +1,454 @@
+// ============================================================================
+// SERVICE - NearDuplicateChunkIndex.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.config.EmbeddingEngine;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * ✅ Suppression des quasi-doublons de segments texte à l'échelle du corpus (MinHash + LSH)
+ *
+ * - Signature MinHash par segment (shingles de mots), bandes LSH persistées dans Postgres
+ *   (table chunk_minhash, index GIN sur les bandes)
+ * - Un segment dont la similarité de Jaccard estimée avec un segment déjà indexé dépasse le seuil
+ *   n'est pas embeddé : il est enregistré dans text_chunk_links, rattaché au segment canonique
+ * - Suppression d'un canonique : ses liens sont promus en lignes text_embeddings
+ *   (vecteur du canonique recopié, aucun appel d'embedding) — cf. EmbeddingDeletionService
+ *
+ * Les versions précédentes du même document ne servent pas de canonique
+ * (elles sont remplacées en fin de ré-ingestion, cf. IncrementalReingestionService).
+ * Tables propres au moteur d'embedding actif (EmbeddingEngine.qualify) : un canonique
+ * n'est jamais pris dans l'index de l'autre moteur.
+ */
+@Slf4j
+@Service
+public class NearDuplicateChunkIndex {
+
+    public static final String SIGNATURE_TABLE = "chunk_minhash";
+    public static final String LINK_TABLE = "text_chunk_links";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final long MERSENNE_61 = (1L << 61) - 1;
+    private static final int MAX_CANDIDATES = 500;
+
+    @Value("${document.near-duplicates.enabled:true}")
+    private boolean enabled;
+
+    // Jaccard estimé minimal pour rattacher un segment à un canonique
+    @Value("${document.near-duplicates.threshold:0.85}")
+    private double threshold;
+
+    // bands x rows = nombre de fonctions de hachage ; seuil LSH ≈ (1/bands)^(1/rows)
+    @Value("${document.near-duplicates.bands:16}")
+    private int bands;
+
+    @Value("${document.near-duplicates.rows:8}")
+    private int rows;
+
+    @Value("${document.near-duplicates.shingle-words:5}")
+    private int shingleWords;
+
+    // En dessous : pas de signature (trop peu de shingles pour une estimation fiable)
+    @Value("${document.near-duplicates.min-words:30}")
+    private int minWords;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String textTable;
+    private final String signatureTable;
+    private final String linkTable;
+
+    private long[] coefA;
+    private long[] coefB;
+
+    public NearDuplicateChunkIndex(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry, EmbeddingEngine engine) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.textTable = engine.textTable();
+        this.signatureTable = engine.qualify(SIGNATURE_TABLE);
+        this.linkTable = engine.qualify(LINK_TABLE);
+    }
+
+    @PostConstruct
+    public void init() {
+        // Graine fixe : les signatures persistées restent comparables d'un démarrage à l'autre
+        int n = Math.max(1, bands) * Math.max(1, rows);
+        Random random = new Random(0x5EEDL);
+        coefA = new long[n];
+        coefB = new long[n];
+        // Coefficients sur tout [0, 2^61 - 1) : avec a < 2^31, a * x ne dépasse p que quelques fois
+        // et toutes les fonctions ordonnent les shingles à peu près comme x (minima corrélés)
+        for (int i = 0; i < n; i++) {
+            coefA[i] = 1 + Math.floorMod(random.nextLong(), MERSENNE_61 - 1);
+            coefB[i] = Math.floorMod(random.nextLong(), MERSENNE_61);
+        }
+
+        if (!enabled) {
+            log.info("ℹ️ [NearDup] Désactivé");
+            return;
+        }
+
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS %s (
+                    embedding_id UUID PRIMARY KEY,
+                    document     TEXT,
+                    batch_id     VARCHAR(64),
+                    signature    INTEGER[] NOT NULL,
+                    bands        BIGINT[] NOT NULL
+                )
+                """.formatted(signatureTable));
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + signatureTable + "_bands ON "
+                + signatureTable + " USING GIN (bands)");
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS %s (
+                    duplicate_id UUID PRIMARY KEY,
+                    canonical_id UUID NOT NULL,
+                    text         TEXT NOT NULL,
+                    metadata     JSON,
+                    similarity   REAL NOT NULL,
+                    created_at   TIMESTAMPTZ NOT NULL DEFAULT now()
+                )
+                """.formatted(linkTable));
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + linkTable + "_canonical ON "
+                + linkTable + " (canonical_id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + linkTable + "_batch ON "
+                + linkTable + " ((metadata->>'batchId'))");
+
+        log.info("✅ [NearDup] Initialisé - seuil Jaccard {}, LSH {} bandes x {} lignes, shingles de {} mots",
+                threshold, bands, rows, shingleWords);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ========================================================================
+    // MINHASH
+    // ========================================================================
+
+    /**
+     * Signature MinHash et clés de bandes LSH d'un segment
+     */
+    public record Signature(int[] minHashes, long[] bandKeys) {}
+
+    /**
+     * @return null si le texte est trop court pour une estimation fiable
+     */
+    public Signature signature(String text) {
+        if (text == null) return null;
+        String[] words = NON_WORD.split(text.toLowerCase(Locale.ROOT).trim());
+        if (words.length < Math.max(minWords, shingleWords)) return null;
+
+        int n = coefA.length;
+        int[] minHashes = new int[n];
+        long[] min = new long[n];
+        Arrays.fill(min, Long.MAX_VALUE);
+
+        int k = Math.max(1, shingleWords);
+        StringBuilder shingle = new StringBuilder();
+        for (int i = 0; i + k <= words.length; i++) {
+            shingle.setLength(0);
+            for (int j = i; j < i + k; j++) {
+                shingle.append(words[j]).append(' ');
+            }
+            long x = fnv1a(shingle) & 0xFFFFFFFFL;
+            for (int h = 0; h < n; h++) {
+                long v = universalHash(coefA[h], coefB[h], x);
+                if (v < min[h]) min[h] = v;
+            }
+        }
+        // 32 bits de poids faible conservés (colonne INTEGER[]) : deux minima distincts ne se confondent
+        // qu'avec une probabilité 2^-32, négligeable devant l'erreur de l'estimateur (~1/sqrt(n))
+        for (int h = 0; h < n; h++) {
+            minHashes[h] = (int) min[h];
+        }
+
+        long[] bandKeys = new long[Math.max(1, bands)];
+        int r = Math.max(1, rows);
+        for (int b = 0; b < bandKeys.length; b++) {
+            int hash = 1;
+            for (int i = b * r; i < (b + 1) * r; i++) {
+                hash = 31 * hash + minHashes[i];
+            }
+            // Numéro de bande dans les bits hauts : pas de collision entre bandes
+            bandKeys[b] = ((long) b << 32) | (hash & 0xFFFFFFFFL);
+        }
+        return new Signature(minHashes, bandKeys);
+    }
+
+    public static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) same++;
+        }
+        return (double) same / a.length;
+    }
+
+    /**
+     * (a * x + b) mod (2^61 - 1) sans débordement : a, b < 2^61, x < 2^32 (produit sur 93 bits)
+     */
+    static long universalHash(long a, long b, long x) {
+        long lo = a * x;
+        long hi = Math.multiplyHigh(a, x);
+        // 2^61 ≡ 1 (mod p) : repli des bits au-dessus de 61
+        long r = (hi << 3) + (lo >>> 61) + (lo & MERSENNE_61);
+        r = (r & MERSENNE_61) + (r >>> 61);
+        r += b;
+        r = (r & MERSENNE_61) + (r >>> 61);
+        return r >= MERSENNE_61 ? r - MERSENNE_61 : r;
+    }
+
+    private static int fnv1a(CharSequence s) {
+        byte[] bytes = s.toString().getBytes(StandardCharsets.UTF_8);
+        int hash = 0x811C9DC5;
+        for (byte b : bytes) {
+            hash ^= (b & 0xFF);
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    // ========================================================================
+    // INGESTION
+    // ========================================================================
+
+    /**
+     * Segments à embedder après suppression des quasi-doublons, avec leurs signatures (même ordre)
+     */
+    public record Filtered(List<TextSegment> remaining, List<Signature> signatures, int linked) {}
+
+    /**
+     * ✅ Rattache aux canoniques existants les segments au-dessus du seuil ; retourne les autres
+     */
+    public Filtered suppress(List<TextSegment> segments, String batchId) {
+        List<Signature> signatures = new ArrayList<>(segments.size());
+        Set<Long> allKeys = new HashSet<>();
+        for (TextSegment segment : segments) {
+            Signature signature = signature(segment.text());
+            signatures.add(signature);
+            if (signature != null) {
+                for (long key : signature.bandKeys()) allKeys.add(key);
+            }
+        }
+        if (!enabled || allKeys.isEmpty()) {
+            return new Filtered(segments, signatures, 0);
+        }
+
+        String document = segments.get(0).metadata().getString(IncrementalReingestionService.DOCUMENT_KEY);
+        List<Candidate> candidates;
+        try {
+            candidates = candidates(allKeys, document, batchId);
+        } catch (Exception e) {
+            log.warn("⚠️ [NearDup] Recherche de candidats impossible, segments embeddés: {}", e.getMessage());
+            return new Filtered(segments, signatures, 0);
+        }
+
+        List<TextSegment> remaining = new ArrayList<>(segments.size());
+        List<Signature> remainingSignatures = new ArrayList<>(segments.size());
+        List<Object[]> links = new ArrayList<>();
+        List<TextSegment> linkedSegments = new ArrayList<>();
+        List<Signature> linkedSignatures = new ArrayList<>();
+
+        for (int i = 0; i < segments.size(); i++) {
+            TextSegment segment = segments.get(i);
+            Signature signature = signatures.get(i);
+            Candidate best = signature != null ? best(signature, candidates) : null;
+            double score = best != null ? similarity(signature.minHashes(), best.minHashes()) : 0.0;
+
+            if (best == null || score < threshold) {
+                remaining.add(segment);
+                remainingSignatures.add(signature);
+                continue;
+            }
+            try {
+                links.add(new Object[]{linkId(batchId, segment), best.embeddingId(), segment.text(),
+                        JSON.writeValueAsString(segment.metadata().toMap()), (float) score});
+                linkedSegments.add(segment);
+                linkedSignatures.add(signature);
+            } catch (Exception e) {
+                remaining.add(segment);
+                remainingSignatures.add(signature);
+            }
+        }
+
+        if (!links.isEmpty()) {
+            try {
+                // ON CONFLICT : une reprise sur checkpoint rejoue les mêmes segments (ID déterministe)
+                jdbcTemplate.batchUpdate("INSERT INTO " + linkTable
+                        + " (duplicate_id, canonical_id, text, metadata, similarity)"
+                        + " VALUES (?::uuid, ?::uuid, ?, ?::json, ?) ON CONFLICT (duplicate_id) DO NOTHING", links);
+            } catch (Exception e) {
+                log.warn("⚠️ [NearDup] Liens non enregistrés, segments embeddés: {}", e.getMessage());
+                remaining.addAll(linkedSegments);
+                remainingSignatures.addAll(linkedSignatures);
+                return new Filtered(remaining, remainingSignatures, 0);
+            }
+            meterRegistry.counter("ingestion.neardup.linked").increment(links.size());
+            log.debug("[NearDup] {} segments rattachés à un canonique (batchId={})", links.size(), batchId);
+        }
+        return new Filtered(remaining, remainingSignatures, links.size());
+    }
+
+    private static String linkId(String batchId, TextSegment segment) {
+        String hash = segment.metadata().getString(IncrementalReingestionService.CONTENT_HASH);
+        String key = batchId + ":" + (hash != null ? hash : IncrementalReingestionService.contentHash(segment.text()));
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Enregistre les signatures des segments qui viennent d'être embeddés (futurs canoniques)
+     */
+    public void index(List<String> embeddingIds, List<Signature> signatures, List<TextSegment> segments, String batchId) {
+        if (!enabled) return;
+        List<Object[]> rowsToInsert = new ArrayList<>();
+        for (int i = 0; i < embeddingIds.size() && i < signatures.size(); i++) {
+            Signature signature = signatures.get(i);
+            if (signature == null) continue;
+            rowsToInsert.add(new Object[]{embeddingIds.get(i), segments.get(i).metadata().getString("source"),
+                    batchId, toArrayLiteral(signature.minHashes()), toArrayLiteral(signature.bandKeys())});
+        }
+        if (rowsToInsert.isEmpty()) return;
+        try {
+            jdbcTemplate.batchUpdate("INSERT INTO " + signatureTable
+                    + " (embedding_id, document, batch_id, signature, bands) VALUES (?::uuid, ?, ?, ?::integer[], ?::bigint[])"
+                    + " ON CONFLICT (embedding_id) DO NOTHING", rowsToInsert);
+        } catch (Exception e) {
+            // Segments indexés malgré tout : ils ne serviront simplement pas de canonique
+            log.warn("⚠️ [NearDup] Signatures non enregistrées (batchId={}): {}", batchId, e.getMessage());
+        }
+    }
+
+    private record Candidate(String embeddingId, int[] minHashes, long[] bandKeys) {}
+
+    private List<Candidate> candidates(Set<Long> keys, String document, String batchId) {
+        long[] array = keys.stream().mapToLong(Long::longValue).toArray();
+        // Jointure : une signature dont la ligne a disparu (reprise, suppression) n'est jamais canonique ;
+        // document et batch lus sur la ligne (à jour après un rattachement incrémental)
+        return jdbcTemplate.query("SELECT m.embedding_id::text AS id, m.signature, m.bands"
+                        + " FROM " + signatureTable + " m JOIN " + textTable + " t ON t.embedding_id = m.embedding_id"
+                        + " WHERE m.bands && ?::bigint[]"
+                        + " AND NOT (" + EmbeddingDeletionService.DOCUMENT_KEY_EXPR + " IS NOT DISTINCT FROM ?"
+                        + " AND " + EmbeddingDeletionService.BATCH_EXPR + " IS DISTINCT FROM ?)"
+                        + " LIMIT ?",
+                (rs, i) -> new Candidate(rs.getString("id"), toIntArray(rs.getArray("signature")),
+                        toLongArray(rs.getArray("bands"))),
+                toArrayLiteral(array), document, batchId, MAX_CANDIDATES);
+    }
+
+    private Candidate best(Signature signature, List<Candidate> candidates) {
+        Candidate best = null;
+        double bestScore = -1;
+        for (Candidate candidate : candidates) {
+            if (!shareBand(signature.bandKeys(), candidate.bandKeys())
+                    || candidate.minHashes().length != signature.minHashes().length) {
+                continue;
+            }
+            double score = similarity(signature.minHashes(), candidate.minHashes());
+            if (score > bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static boolean shareBand(long[] a, long[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            if (a[i] == b[i]) return true;
+        }
+        return false;
+    }
+
+    // ========================================================================
+    // SUPPRESSION (appelée par EmbeddingDeletionService, prédicat sur text_embeddings.metadata)
+    // ========================================================================
+
+    public long countLinks(String predicateSql, Object... args) {
+        if (!enabled) return 0;
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + linkTable + " WHERE " + predicateSql,
+                Long.class, args);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Supprime les liens des documents supprimés (même prédicat, appliqué à leurs métadonnées)
+     */
+    public long deleteLinks(String predicateSql, Object[] args) {
+        if (!enabled) return 0;
+        return jdbcTemplate.update("DELETE FROM " + linkTable + " WHERE " + predicateSql, args);
+    }
+
+    /**
+     * ✅ Promeut en lignes text_embeddings les liens dont le canonique va être supprimé
+     * (vecteur du canonique recopié), puis retire signatures et liens devenus orphelins
+     *
+     * @return nombre de liens promus
+     */
+    public int beforeCanonicalDelete(String predicateSql, Object[] args) {
+        if (!enabled) return 0;
+        String canonicals = "SELECT embedding_id FROM " + textTable + " WHERE " + predicateSql;
+
+        int promoted = jdbcTemplate.update(
+                "INSERT INTO " + textTable + " (embedding_id, embedding, text, metadata) "
+                        + "SELECT l.duplicate_id, t.embedding, l.text, l.metadata FROM " + linkTable + " l "
+                        + "JOIN " + textTable + " t ON t.embedding_id = l.canonical_id "
+                        + "WHERE l.canonical_id IN (" + canonicals + ")", args);
+        if (promoted > 0) {
+            jdbcTemplate.update(
+                    "INSERT INTO " + signatureTable + " (embedding_id, document, batch_id, signature, bands) "
+                            + "SELECT l.duplicate_id, l.metadata->>'source', l.metadata->>'batchId', m.signature, m.bands "
+                            + "FROM " + linkTable + " l JOIN " + signatureTable + " m ON m.embedding_id = l.canonical_id "
+                            + "WHERE l.canonical_id IN (" + canonicals + ") ON CONFLICT (embedding_id) DO NOTHING", args);
+            jdbcTemplate.update("DELETE FROM " + linkTable + " WHERE canonical_id IN (" + canonicals + ")", args);
+            meterRegistry.counter("ingestion.neardup.promoted").increment(promoted);
+            log.info("🔗 [NearDup] {} quasi-doublons promus (canonique supprimé)", promoted);
+        }
+
+        jdbcTemplate.update("DELETE FROM " + signatureTable + " WHERE embedding_id IN (" + canonicals + ")", args);
+        return promoted;
+    }
+
+    // ========================================================================
+    // TABLEAUX POSTGRES
+    // ========================================================================
+
+    private static String toArrayLiteral(int[] values) {
+        StringJoiner joiner = new StringJoiner(",", "{", "}");
+        for (int v : values) joiner.add(Integer.toString(v));
+        return joiner.toString();
+    }
+
+    private static String toArrayLiteral(long[] values) {
+        StringJoiner joiner = new StringJoiner(",", "{", "}");
+        for (long v : values) joiner.add(Long.toString(v));
+        return joiner.toString();
+    }
+
+    private static int[] toIntArray(Array array) throws java.sql.SQLException {
+        Object[] values = (Object[]) array.getArray();
+        int[] out = new int[values.length];
+        for (int i = 0; i < values.length; i++) out[i] = ((Number) values[i]).intValue();
+        return out;
+    }
+
+    private static long[] toLongArray(Array array) throws java.sql.SQLException {
+        Object[] values = (Object[]) array.getArray();
+        long[] out = new long[values.length];
+        for (int i = 0; i < values.length; i++) out[i] = ((Number) values[i]).longValue();
+        return out;
+    }
+}
@@ -0,0 +1,378 @@
+// ============================================================================
+// SERVICE - OfficeConversionService.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * ✅ Conversion Office -> PDF par un pool de convertisseurs LibreOffice persistants
+ *
+ * - N workers, chacun avec son profil LibreOffice et (mode listener) un processus longue durée
+ *   démarré une fois : plus de démarrage soffice à chaque classeur
+ * - File d'attente bornée : un worker libre est attendu au plus queue-timeout-seconds
+ * - Recyclage d'un worker après max-conversions-per-worker, timeout, ou mort du processus
+ * - Un répertoire temporaire par conversion, supprimé dans tous les cas (finally)
+ *
+ * Commandes configurables (gabarits, un argument par mot) : listener-command (vide = pas de
+ * processus persistant) et convert-command. Variables : {soffice} {port} {unoPort} {profile}
+ * {input} {output} {outdir}. Un script de test peut remplacer convert-command pour produire un PDF fixe.
+ */
+@Slf4j
+@Service
+public class OfficeConversionService {
+
+    @Value("${app.libreoffice.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.libreoffice.sofficePath:}")
+    private String sofficePath;
+
+    @Value("${app.libreoffice.timeoutSeconds:60}")
+    private long timeoutSeconds;
+
+    @Value("${app.libreoffice.pool.size:2}")
+    private int poolSize;
+
+    @Value("${app.libreoffice.pool.queue-timeout-seconds:120}")
+    private long queueTimeoutSeconds;
+
+    @Value("${app.libreoffice.pool.max-conversions-per-worker:200}")
+    private int maxConversionsPerWorker;
+
+    @Value("${app.libreoffice.pool.startup-timeout-seconds:30}")
+    private long startupTimeoutSeconds;
+
+    @Value("${app.libreoffice.pool.base-port:2002}")
+    private int basePort;
+
+    @Value("${app.libreoffice.pool.work-dir:${java.io.tmpdir}/office-conversion}")
+    private String workDir;
+
+    @Value("${app.libreoffice.pool.listener-command:unoserver --interface 127.0.0.1 --port {port} --uno-port {unoPort} --executable {soffice} --user-installation {profile}}")
+    private String listenerCommand;
+
+    @Value("${app.libreoffice.pool.convert-command:unoconvert --host 127.0.0.1 --port {port} --convert-to pdf {input} {output}}")
+    private String convertCommand;
+
+    private final MeterRegistry meterRegistry;
+
+    private BlockingQueue<Worker> idle;
+    private final List<Worker> workers = Collections.synchronizedList(new ArrayList<>());
+    private Path root;
+    private String soffice;
+
+    public OfficeConversionService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            log.info("⏸️ [Conversion] LibreOffice désactivé (app.libreoffice.enabled=false)");
+            return;
+        }
+
+        int size = Math.max(1, poolSize);
+        this.root = Paths.get(workDir).toAbsolutePath();
+        Files.createDirectories(root);
+        this.soffice = resolveSofficeExecutable();
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        // Workers démarrés à la première conversion (pas de coût au boot si aucun XLSX à convertir)
+        for (int i = 0; i < size; i++) {
+            Worker worker = new Worker(i);
+            workers.add(worker);
+            idle.add(worker);
+        }
+
+        log.info("✅ [Conversion] Pool LibreOffice: {} workers, recyclage après {} conversions, mode: {}",
+                size, maxConversionsPerWorker, listenerCommand.isBlank() ? "one-shot" : "listener");
+    }
+
+    // ========================================================================
+    // CONVERSION
+    // ========================================================================
+
+    /**
+     * ✅ Convertit un document Office en PDF
+     *
+     * @param content   flux du document, copié directement dans le répertoire de conversion
+     * @param extension extension d'entrée (xlsx, docx, ...)
+     * @return octets du PDF
+     */
+    public byte[] convertToPdf(InputStream content, String extension) throws IOException {
+        if (!enabled) {
+            throw new IOException("LibreOffice désactivé (app.libreoffice.enabled=false)");
+        }
+
+        Worker worker;
+        try {
+            worker = idle.poll(queueTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Conversion LibreOffice interrompue", e);
+        }
+        if (worker == null) {
+            meterRegistry.counter("office.conversion.rejected").increment();
+            throw new IOException("Aucun convertisseur LibreOffice libre après " + queueTimeoutSeconds + "s");
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            byte[] pdf = worker.convert(content, extension);
+            outcome = "success";
+            return pdf;
+        } finally {
+            sample.stop(meterRegistry.timer("office.conversion.duration", "outcome", outcome));
+            release(worker);
+        }
+    }
+
+    private void release(Worker worker) {
+        if (worker.broken || worker.conversions >= maxConversionsPerWorker || !worker.isHealthy()) {
+            log.info("♻️ [Conversion] Recyclage worker {} ({} conversions, broken={})",
+                    worker.index, worker.conversions, worker.broken);
+            meterRegistry.counter("office.conversion.recycled").increment();
+            worker.stop();
+            Worker fresh = new Worker(worker.index);
+            workers.remove(worker);
+            workers.add(fresh);
+            idle.offer(fresh);
+        } else {
+            idle.offer(worker);
+        }
+    }
+
+    // ========================================================================
+    // WORKER
+    // ========================================================================
+
+    private final class Worker {
+        private final int index;
+        private final int port;
+        private final int unoPort;
+        private final Path profileDir;
+        private Process listener;
+        private int conversions;
+        private boolean broken;
+
+        private Worker(int index) {
+            this.index = index;
+            this.port = basePort + index * 2;
+            this.unoPort = port + 1;
+            this.profileDir = root.resolve("worker-" + index).resolve("profile");
+        }
+
+        private boolean isHealthy() {
+            return listener == null ? listenerCommand.isBlank() : listener.isAlive();
+        }
+
+        private void ensureStarted() throws IOException {
+            if (listenerCommand.isBlank() || (listener != null && listener.isAlive())) {
+                return;
+            }
+            if (listener != null) {
+                log.warn("⚠️ [Conversion] Worker {} - listener mort (exit={}), redémarrage", index, listener.exitValue());
+            }
+
+            Files.createDirectories(profileDir);
+            List<String> cmd = render(listenerCommand, Map.of());
+            try {
+                listener = new ProcessBuilder(cmd)
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+            } catch (IOException e) {
+                throw new IOException("Convertisseur introuvable. Installez LibreOffice/unoserver ou configurez "
+                        + "app.libreoffice.pool.listener-command. Commande=" + cmd.get(0), e);
+            }
+
+            if (listenerCommand.contains("{port}")) {
+                awaitPort(port);
+            }
+            log.info("🚀 [Conversion] Worker {} - listener démarré (port {})", index, port);
+        }
+
+        private void awaitPort(int p) throws IOException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(startupTimeoutSeconds);
+            while (System.nanoTime() < deadline) {
+                if (!listener.isAlive()) {
+                    throw new IOException("Listener LibreOffice arrêté au démarrage (exit=" + listener.exitValue() + ")");
+                }
+                try (Socket socket = new Socket()) {
+                    socket.connect(new InetSocketAddress("127.0.0.1", p), 500);
+                    return;
+                } catch (IOException notYet) {
+                    try {
+                        Thread.sleep(250);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Démarrage listener interrompu", ie);
+                    }
+                }
+            }
+            throw new IOException("Listener LibreOffice non prêt après " + startupTimeoutSeconds + "s (port " + p + ")");
+        }
+
+        private byte[] convert(InputStream content, String extension) throws IOException {
+            ensureStarted();
+
+            Path jobDir = Files.createTempDirectory(root, "job-");
+            try {
+                Path input = jobDir.resolve("input." + extension);
+                Path outDir = Files.createDirectories(jobDir.resolve("out"));
+                Path output = outDir.resolve("input.pdf");
+                Files.copy(content, input);
+
+                List<String> cmd = render(convertCommand, Map.of(
+                        "{input}", input.toString(),
+                        "{output}", output.toString(),
+                        "{outdir}", outDir.toString()));
+
+                Process process = new ProcessBuilder(cmd)
+                        .directory(jobDir.toFile())
+                        .redirectErrorStream(true)
+                        .start();
+
+                boolean finished;
+                try {
+                    finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    process.destroyForcibly();
+                    throw new IOException("Conversion LibreOffice interrompue", ie);
+                }
+
+                String processOutput = readAll(process.getInputStream());
+                if (!finished) {
+                    process.destroyForcibly();
+                    // Listener probablement bloqué : worker recyclé à la libération
+                    broken = true;
+                    throw new IOException("Timeout conversion LibreOffice (" + timeoutSeconds + "s). Output=" + processOutput);
+                }
+                if (process.exitValue() != 0) {
+                    throw new IOException("Échec conversion LibreOffice (exit=" + process.exitValue() + "). Output=" + processOutput);
+                }
+
+                Path pdf = Files.exists(output) ? output : findPdf(outDir)
+                        .orElseThrow(() -> new IOException("PDF non généré par LibreOffice. Output=" + processOutput));
+
+                conversions++;
+                return Files.readAllBytes(pdf);
+
+            } finally {
+                deleteRecursively(jobDir);
+            }
+        }
+
+        private List<String> render(String template, Map<String, String> vars) {
+            Map<String, String> all = new HashMap<>(vars);
+            all.put("{soffice}", soffice);
+            all.put("{port}", String.valueOf(port));
+            all.put("{unoPort}", String.valueOf(unoPort));
+            all.put("{profile}", profileDir.toUri().toString());
+
+            // Découpage avant substitution : un chemin avec espaces reste un seul argument
+            List<String> args = new ArrayList<>();
+            for (String token : template.trim().split("\\s+")) {
+                for (Map.Entry<String, String> var : all.entrySet()) {
+                    token = token.replace(var.getKey(), var.getValue());
+                }
+                args.add(token);
+            }
+            return args;
+        }
+
+        private void stop() {
+            if (listener != null) {
+                listener.descendants().forEach(ProcessHandle::destroyForcibly);
+                listener.destroyForcibly();
+            }
+            deleteRecursively(profileDir.getParent());
+        }
+    }
+
+    // ========================================================================
+    // UTILITAIRES
+    // ========================================================================
+
+    private Optional<Path> findPdf(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().toLowerCase().endsWith(".pdf")).findFirst();
+        }
+    }
+
+    private static String readAll(InputStream in) {
+        try (in) {
+            return new String(in.readAllBytes());
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    log.warn("⚠️ [Conversion] Suppression impossible: {}", p);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("⚠️ [Conversion] Nettoyage impossible: {}", dir);
+        }
+    }
+
+    private String resolveSofficeExecutable() {
+        // 1) Config explicite (recommandé en prod)
+        if (sofficePath != null && !sofficePath.isBlank()) {
+            Path p = Paths.get(sofficePath);
+            if (Files.exists(p)) return p.toAbsolutePath().toString();
+            throw new IllegalStateException("LibreOffice sofficePath configuré mais introuvable: " + p);
+        }
+
+        // 2) Windows: emplacements standards
+        if (System.getProperty("os.name").toLowerCase().contains("win")) {
+            List<String> candidates = List.of(
+                    "C:\\Program Files\\LibreOffice\\program\\soffice.exe",
+                    "C:\\Program Files (x86)\\LibreOffice\\program\\soffice.exe"
+            );
+            for (String c : candidates) {
+                if (Files.exists(Paths.get(c))) return c;
+            }
+            return "soffice.exe";
+        }
+
+        // 3) Linux/Mac: souvent dans PATH
+        return "soffice";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (workers) {
+            log.info("🛑 [Conversion] Arrêt de {} workers LibreOffice", workers.size());
+            workers.forEach(Worker::stop);
+        }
+    }
+}
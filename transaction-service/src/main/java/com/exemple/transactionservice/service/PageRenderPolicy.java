@@ -0,0 +1,247 @@
+// ============================================================================
+// SERVICE - PageRenderPolicy.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.util.Matrix;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ✅ Politique de rendu adaptative par page PDF
+ *
+ * Le rendu 150 DPI + Vision est l'étape la plus coûteuse de l'ingestion.
+ * Chaque page est classée à partir de :
+ * - densité de texte (déjà extrait par PDFTextStripper)
+ * - nombre d'images XObject
+ * - nombre d'opérateurs de dessin vectoriel du content stream
+ * - fraction de la surface de page couverte par des images
+ *
+ * Décision : SKIP (pas de rendu), LOW_DPI, FULL_DPI.
+ */
+@Slf4j
+@Service
+public class PageRenderPolicy {
+
+    public enum Decision { SKIP, LOW_DPI, FULL_DPI }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${document.render-policy.enabled:true}")
+    private boolean enabled;
+
+    @Value("${document.render-policy.full-dpi:150}")
+    private int fullDpi;
+
+    @Value("${document.render-policy.low-dpi:72}")
+    private int lowDpi;
+
+    // Densité de texte (caractères / 1000 pt²) à partir de laquelle l'extraction texte couvre la page
+    // A4 ≈ 500 000 pt² => 0.4 ≈ 200 caractères
+    @Value("${document.render-policy.min-text-density:0.4}")
+    private double minTextDensity;
+
+    // En dessous : page sans dessin significatif (filets, soulignés, cadres)
+    @Value("${document.render-policy.min-vector-ops:20}")
+    private int minVectorOps;
+
+    // Au-dessus : schéma / graphique vectoriel => pleine résolution
+    @Value("${document.render-policy.full-dpi-vector-ops:300}")
+    private int fullDpiVectorOps;
+
+    // Au-dessus : page majoritairement illustrée => pleine résolution
+    @Value("${document.render-policy.full-dpi-image-coverage:0.30}")
+    private double fullDpiImageCoverage;
+
+    // Au-dessus (et peu de texte/vecteurs) : page = une image déjà extraite telle quelle
+    @Value("${document.render-policy.covered-by-image:0.90}")
+    private double coveredByImage;
+
+    // Moyenne glissante du temps de rendu pleine résolution (estimation du temps économisé)
+    private final AtomicLong avgFullRenderMs = new AtomicLong(0);
+
+    public PageRenderPolicy(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Caractéristiques mesurées d'une page
+     */
+    public record PageFeatures(
+            int textChars,
+            double textDensity,
+            int imageXObjects,
+            int vectorOps,
+            double imageCoverage
+    ) {}
+
+    public record PageRenderPlan(Decision decision, int dpi, PageFeatures features, String reason) {}
+
+    public PageRenderPlan plan(PDPage page, String pageText) {
+        if (!enabled) {
+            return new PageRenderPlan(Decision.FULL_DPI, fullDpi, null, "policy disabled");
+        }
+
+        PageFeatures features;
+        try {
+            features = analyze(page, pageText);
+        } catch (Exception e) {
+            log.debug("[RenderPolicy] Analyse page impossible, rendu complet: {}", e.getMessage());
+            return record(new PageRenderPlan(Decision.FULL_DPI, fullDpi, null, "analysis failed"));
+        }
+
+        return record(classify(features));
+    }
+
+    PageRenderPlan classify(PageFeatures f) {
+        boolean textCovered = f.textDensity() >= minTextDensity;
+        boolean noDrawing = f.vectorOps() < minVectorOps;
+
+        if (f.imageCoverage() >= coveredByImage && noDrawing && !textCovered) {
+            return new PageRenderPlan(Decision.SKIP, 0, f, "page = image intégrée déjà extraite");
+        }
+        if (f.imageCoverage() >= fullDpiImageCoverage || f.vectorOps() >= fullDpiVectorOps) {
+            return new PageRenderPlan(Decision.FULL_DPI, fullDpi, f, "visuel dominant");
+        }
+        if (f.imageXObjects() == 0 && noDrawing) {
+            return new PageRenderPlan(Decision.SKIP, 0, f,
+                    textCovered ? "texte seul déjà extrait" : "page vide");
+        }
+        return new PageRenderPlan(Decision.LOW_DPI, lowDpi, f, "visuel secondaire");
+    }
+
+    private PageRenderPlan record(PageRenderPlan plan) {
+        meterRegistry.counter("pdf.render.decisions", "decision", plan.decision().name()).increment();
+
+        if (plan.decision() == Decision.SKIP) {
+            long saved = avgFullRenderMs.get();
+            if (saved > 0) {
+                meterRegistry.counter("pdf.render.saved.ms").increment(saved);
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[RenderPolicy] {} ({} DPI) - {} - {}", plan.decision(), plan.dpi(), plan.reason(), plan.features());
+        }
+        return plan;
+    }
+
+    /**
+     * À appeler après un rendu effectif pour alimenter les métriques de temps
+     */
+    public void recordRender(PageRenderPlan plan, long elapsedMs) {
+        meterRegistry.timer("pdf.render.duration", "decision", plan.decision().name())
+                .record(java.time.Duration.ofMillis(elapsedMs));
+
+        if (plan.decision() == Decision.FULL_DPI) {
+            // EWMA simple (alpha = 1/4)
+            avgFullRenderMs.getAndUpdate(prev -> prev == 0 ? elapsedMs : (prev * 3 + elapsedMs) / 4);
+        } else if (plan.decision() == Decision.LOW_DPI) {
+            long saved = avgFullRenderMs.get() - elapsedMs;
+            if (saved > 0) {
+                meterRegistry.counter("pdf.render.saved.ms").increment(saved);
+            }
+        }
+    }
+
+    // ========================================================================
+    // ANALYSE DU CONTENT STREAM
+    // ========================================================================
+
+    private PageFeatures analyze(PDPage page, String pageText) throws IOException {
+        PDRectangle box = page.getCropBox();
+        double pageArea = Math.max(1.0, (double) box.getWidth() * box.getHeight());
+
+        int textChars = pageText == null ? 0 : pageText.strip().length();
+
+        int imageXObjects = 0;
+        PDResources resources = page.getResources();
+        if (resources != null) {
+            for (COSName name : resources.getXObjectNames()) {
+                if (resources.isImageXObject(name)) {
+                    imageXObjects++;
+                }
+            }
+        }
+
+        PageContentCounter counter = new PageContentCounter(page);
+        counter.processPage(page);
+
+        double coverage = Math.min(1.0, counter.imageArea / pageArea);
+        // Densité : caractères pour 1000 pt² (A4 ≈ 500 000 pt²)
+        double density = textChars * 1000.0 / pageArea;
+
+        return new PageFeatures(textChars, density, imageXObjects, counter.vectorOps, coverage);
+    }
+
+    /**
+     * Compte les opérateurs vectoriels et la surface d'images dessinées, sans rasteriser
+     */
+    private static final class PageContentCounter extends PDFGraphicsStreamEngine {
+
+        private int vectorOps;
+        private double imageArea;
+        private final Point2D.Float current = new Point2D.Float();
+
+        PageContentCounter(PDPage page) {
+            super(page);
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage) {
+            Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+            imageArea += Math.abs((double) ctm.getScalingFactorX() * ctm.getScalingFactorY());
+        }
+
+        @Override
+        public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) {
+            vectorOps++;
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            current.setLocation(x, y);
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            vectorOps++;
+            current.setLocation(x, y);
+        }
+
+        @Override
+        public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+            vectorOps++;
+            current.setLocation(x3, y3);
+        }
+
+        @Override
+        public Point2D getCurrentPoint() {
+            return current;
+        }
+
+        @Override
+        public void shadingFill(COSName shadingName) {
+            vectorOps++;
+        }
+
+        @Override public void clip(int windingRule) { }
+        @Override public void closePath() { }
+        @Override public void endPath() { }
+        @Override public void strokePath() { }
+        @Override public void fillPath(int windingRule) { }
+        @Override public void fillAndStrokePath(int windingRule) { }
+    }
+}
@@ -0,0 +1,287 @@
+// ============================================================================
+// SERVICE - TabularChunker.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * ✅ Découpage tabulaire (XLSX, CSV) : groupes de lignes entières, en-têtes propagés
+ *
+ * - La première ligne non vide de chaque feuille est l'en-tête
+ * - Chaque chunk = nom de feuille + plage de lignes + ligne d'en-tête + lignes complètes,
+ *   dans un budget de tokens configurable (une ligne n'est jamais coupée)
+ * - Streaming : une seule ligne et le chunk en cours sont en mémoire
+ *
+ * Remplace DocumentSplitters.recursive(1000, 100) pour les données tabulaires :
+ * moins de chunks, plus denses, chacun interprétable seul.
+ */
+@Slf4j
+@Service
+public class TabularChunker {
+
+    @Value("${document.tabular.chunk-tokens:512}")
+    private int chunkTokens;
+
+    // Même tokenizer (cl100k) que le découpage texte
+    private final TextChunker textChunker;
+
+    public TabularChunker(TextChunker textChunker) {
+        this.textChunker = textChunker;
+    }
+
+    /**
+     * Groupe de lignes prêt à être embeddé
+     */
+    public record Chunk(String text, String sheetName, int firstRow, int lastRow, int rowCount) {}
+
+    public RowGrouper grouper(Consumer<Chunk> sink) {
+        return new RowGrouper(sink);
+    }
+
+    int countTokens(String text) {
+        return textChunker.countTokens(text);
+    }
+
+    // ========================================================================
+    // GROUPEMENT
+    // ========================================================================
+
+    /**
+     * Accumule les lignes d'une ou plusieurs feuilles et émet un Chunk par budget atteint
+     */
+    public final class RowGrouper {
+
+        private final Consumer<Chunk> sink;
+        private final StringBuilder rows = new StringBuilder();
+
+        private String sheetName;
+        private String headerLine;
+        private int rowNum;
+        private int firstRow;
+        private int lastRow;
+        private int rowCount;
+        private int tokens;
+        private boolean sheetEmitted;
+        private int chunksEmitted;
+
+        private RowGrouper(Consumer<Chunk> sink) {
+            this.sink = sink;
+        }
+
+        public void row(String sheet, List<String> values) {
+            if (values == null || values.isEmpty()) return;
+
+            if (!Objects.equals(sheet, sheetName)) {
+                finishSheet();
+                sheetName = sheet;
+                headerLine = null;
+                rowNum = 0;
+                sheetEmitted = false;
+            }
+            rowNum++;
+
+            if (headerLine == null) {
+                headerLine = String.join(" | ", values);
+                return;
+            }
+
+            String line = String.join(" | ", values);
+            int lineTokens = countTokens(line) + 1;
+
+            if (rowCount > 0 && tokens + lineTokens > chunkTokens) {
+                emit();
+            }
+            if (rowCount == 0) {
+                firstRow = rowNum;
+                tokens = countTokens(prefix(firstRow, firstRow));
+            }
+
+            rows.append(line).append('\n');
+            tokens += lineTokens;
+            lastRow = rowNum;
+            rowCount++;
+        }
+
+        /**
+         * Fin du flux : émet le dernier groupe
+         */
+        public void finish() {
+            finishSheet();
+        }
+
+        public int getChunksEmitted() {
+            return chunksEmitted;
+        }
+
+        private void finishSheet() {
+            if (rowCount > 0) {
+                emit();
+            } else if (headerLine != null && !sheetEmitted) {
+                // Feuille réduite à son en-tête : indexée quand même (colonnes recherchables)
+                sink.accept(new Chunk(prefix(1, 1), sheetName, 1, 1, 0));
+                chunksEmitted++;
+                sheetEmitted = true;
+            }
+        }
+
+        private void emit() {
+            String text = prefix(firstRow, lastRow) + rows;
+            sink.accept(new Chunk(text, sheetName, firstRow, lastRow, rowCount));
+            chunksEmitted++;
+            sheetEmitted = true;
+
+            rows.setLength(0);
+            rowCount = 0;
+            tokens = 0;
+        }
+
+        private String prefix(int from, int to) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("=== Sheet: ").append(sheetName != null ? sheetName : "data");
+            if (from > 0) sb.append(" (lignes ").append(from).append('-').append(to).append(')');
+            sb.append(" ===\n");
+            if (headerLine != null) sb.append("Colonnes: ").append(headerLine).append('\n');
+            return sb.toString();
+        }
+    }
+
+    // ========================================================================
+    // CSV (lecture en flux, RFC 4180 : guillemets, champs multi-lignes)
+    // ========================================================================
+
+    /**
+     * Lit un CSV ligne par ligne ; séparateur détecté sur la première ligne (',' ';' ou tabulation)
+     *
+     * @return nombre de lignes non vides lues
+     */
+    public long streamCsv(Reader reader, String sheetName, RowGrouper grouper) throws IOException {
+        return streamCsv(reader, sheetName, grouper, new DocumentParserPool.Cancellation());
+    }
+
+    /**
+     * Idem, annulation vérifiée à chaque ligne (parsing sur le pool, abandonné au timeout)
+     */
+    public long streamCsv(Reader reader, String sheetName, RowGrouper grouper,
+                          DocumentParserPool.Cancellation cancellation) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        long rows = 0;
+        List<String> record;
+        while ((record = csv.next()) != null) {
+            cancellation.check();
+            List<String> values = new ArrayList<>(record.size());
+            for (String v : record) {
+                String trimmed = v.trim();
+                if (!trimmed.isEmpty()) values.add(trimmed);
+            }
+            if (!values.isEmpty()) {
+                grouper.row(sheetName, values);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static final class CsvReader {
+        private final Reader in;
+        private char delimiter;
+        private int pushedBack = -2;
+        private final StringBuilder firstLine = new StringBuilder();
+        private int firstLinePos = -1;
+
+        private CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        private int read() throws IOException {
+            if (pushedBack != -2) {
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            if (firstLinePos >= 0) {
+                if (firstLinePos < firstLine.length()) return firstLine.charAt(firstLinePos++);
+                firstLinePos = -1;
+            }
+            return in.read();
+        }
+
+        /**
+         * Lit la première ligne brute pour choisir le séparateur, puis la rejoue
+         */
+        private void detectDelimiter() throws IOException {
+            int c;
+            while ((c = in.read()) != -1) {
+                firstLine.append((char) c);
+                if (c == '\n') break;
+            }
+            if (firstLine.length() > 0 && firstLine.charAt(0) == '\uFEFF') {
+                firstLine.deleteCharAt(0); // BOM UTF-8
+            }
+            int commas = 0, semicolons = 0, tabs = 0;
+            boolean quoted = false;
+            for (int i = 0; i < firstLine.length(); i++) {
+                char ch = firstLine.charAt(i);
+                if (ch == '"') quoted = !quoted;
+                else if (!quoted && ch == ',') commas++;
+                else if (!quoted && ch == ';') semicolons++;
+                else if (!quoted && ch == '\t') tabs++;
+            }
+            delimiter = tabs > commas && tabs > semicolons ? '\t' : (semicolons > commas ? ';' : ',');
+            firstLinePos = 0;
+        }
+
+        private List<String> next() throws IOException {
+            if (delimiter == 0) {
+                detectDelimiter();
+            }
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+
+            while ((c = read()) != -1) {
+                any = true;
+                char ch = (char) c;
+                if (quoted) {
+                    if (ch == '"') {
+                        int n = read();
+                        if (n == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (n != -1) pushedBack = n;
+                        }
+                    } else {
+                        field.append(ch);
+                    }
+                } else if (ch == '"') {
+                    quoted = true;
+                } else if (ch == delimiter) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (ch == '\n') {
+                    fields.add(field.toString());
+                    return fields;
+                } else if (ch != '\r') {
+                    field.append(ch);
+                }
+            }
+
+            if (!any) return null;
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+// ============================================================================
+// SERVICE - TextChunker.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ✅ Découpage texte en tokens (BPE cl100k, calculé localement par jtokkit)
+ *
+ * - Taille et recouvrement des chunks exprimés en tokens, plus en caractères :
+ *   un texte accentué ou du code produit des appels d'embedding de taille homogène
+ * - Un profil (max-tokens, overlap-tokens) par famille de fichiers, configurable
+ * - Un DocumentSplitter par profil, construit une fois (splitters et tokenizer sans état)
+ *
+ * Métriques : document.chunking.chunks et document.chunking.tokens, tag profile.
+ */
+@Slf4j
+@Service
+public class TextChunker {
+
+    public enum Profile { DEFAULT, PDF, OFFICE, TEXT, CODE }
+
+    private static final Set<String> CODE_TYPES = Set.of("java", "py", "js", "ts", "sql", "json", "xml", "html");
+
+    // Modèle dont jtokkit déduit l'encodage (gpt-3.5-turbo / gpt-4 => cl100k_base)
+    @Value("${document.chunking.tokenizer-model:gpt-3.5-turbo}")
+    private String tokenizerModel;
+
+    @Value("${document.chunking.default.max-tokens:400}")
+    private int defaultMaxTokens;
+
+    @Value("${document.chunking.default.overlap-tokens:40}")
+    private int defaultOverlapTokens;
+
+    @Value("${document.chunking.pdf.max-tokens:${document.chunking.default.max-tokens:400}}")
+    private int pdfMaxTokens;
+
+    @Value("${document.chunking.pdf.overlap-tokens:${document.chunking.default.overlap-tokens:40}}")
+    private int pdfOverlapTokens;
+
+    @Value("${document.chunking.office.max-tokens:${document.chunking.default.max-tokens:400}}")
+    private int officeMaxTokens;
+
+    @Value("${document.chunking.office.overlap-tokens:${document.chunking.default.overlap-tokens:40}}")
+    private int officeOverlapTokens;
+
+    @Value("${document.chunking.text.max-tokens:${document.chunking.default.max-tokens:400}}")
+    private int textMaxTokens;
+
+    @Value("${document.chunking.text.overlap-tokens:${document.chunking.default.overlap-tokens:40}}")
+    private int textOverlapTokens;
+
+    @Value("${document.chunking.code.max-tokens:300}")
+    private int codeMaxTokens;
+
+    @Value("${document.chunking.code.overlap-tokens:30}")
+    private int codeOverlapTokens;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Profile, DocumentSplitter> splitters = new EnumMap<>(Profile.class);
+
+    private Tokenizer tokenizer;
+
+    public TextChunker(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.tokenizer = new OpenAiTokenizer(tokenizerModel);
+
+        splitters.put(Profile.DEFAULT, splitter(defaultMaxTokens, defaultOverlapTokens));
+        splitters.put(Profile.PDF, splitter(pdfMaxTokens, pdfOverlapTokens));
+        splitters.put(Profile.OFFICE, splitter(officeMaxTokens, officeOverlapTokens));
+        splitters.put(Profile.TEXT, splitter(textMaxTokens, textOverlapTokens));
+        splitters.put(Profile.CODE, splitter(codeMaxTokens, codeOverlapTokens));
+
+        log.info("✅ [Chunking] Tokenizer {} - profils (tokens) défaut={}/{} pdf={}/{} office={}/{} texte={}/{} code={}/{}",
+                tokenizerModel, defaultMaxTokens, defaultOverlapTokens, pdfMaxTokens, pdfOverlapTokens,
+                officeMaxTokens, officeOverlapTokens, textMaxTokens, textOverlapTokens,
+                codeMaxTokens, codeOverlapTokens);
+    }
+
+    private DocumentSplitter splitter(int maxTokens, int overlapTokens) {
+        int max = Math.max(16, maxTokens);
+        int overlap = Math.max(0, Math.min(overlapTokens, max / 2));
+        return DocumentSplitters.recursive(max, overlap, tokenizer);
+    }
+
+    /**
+     * Profil d'un type de document ("pdf", "docx", "office_pptx", "tika_auto") ou d'une extension ("py", "md")
+     */
+    public Profile profileFor(String type) {
+        if (type == null || type.isBlank()) return Profile.DEFAULT;
+        String t = type.toLowerCase(Locale.ROOT);
+        if (t.startsWith("pdf")) return Profile.PDF;
+        if (t.startsWith("office") || t.equals("docx") || t.equals("doc")
+                || t.equals("pptx") || t.equals("ppt")) return Profile.OFFICE;
+        if (CODE_TYPES.contains(t)) return Profile.CODE;
+        if (t.equals("text") || t.equals("txt") || t.equals("md") || t.equals("log")) return Profile.TEXT;
+        return Profile.DEFAULT;
+    }
+
+    // ========================================================================
+    // DÉCOUPAGE
+    // ========================================================================
+
+    public List<TextSegment> split(Document document, String type) {
+        Profile profile = profileFor(type);
+        List<TextSegment> segments = splitters.get(profile).split(document);
+        record(profile, segments);
+        return segments;
+    }
+
+    public List<TextSegment> split(String text, Metadata metadata, String type) {
+        return split(Document.from(text, metadata != null ? metadata : new Metadata()), type);
+    }
+
+    /**
+     * Nombre de tokens cl100k d'un texte (même tokenizer que le découpage)
+     */
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        return tokenizer.estimateTokenCountInText(text);
+    }
+
+    private void record(Profile profile, List<TextSegment> segments) {
+        String tag = profile.name().toLowerCase(Locale.ROOT);
+        long tokens = 0;
+        for (TextSegment segment : segments) {
+            tokens += countTokens(segment.text());
+        }
+        meterRegistry.counter("document.chunking.chunks", "profile", tag).increment(segments.size());
+        meterRegistry.counter("document.chunking.tokens", "profile", tag).increment(tokens);
+
+        if (log.isDebugEnabled()) {
+            log.debug("[Chunking] {} chunks, {} tokens (profil {})", segments.size(), tokens, tag);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+// ============================================================================
+// SERVICE - UploadFingerprintIndex.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ✅ Index de déduplication des uploads partagé par le cluster (PostgreSQL + filtre de Bloom local)
+ *
+ * - Table upload_fingerprints : fingerprint (userId:sha256) -> job, batch et document produits,
+ *   avec une fenêtre de rétention configurable
+ * - Filtre de Bloom en mémoire devant la table : un fingerprint jamais vu ne coûte aucun aller-retour
+ *   réseau pour la recherche ; le filtre est complété périodiquement par les fingerprints des autres nœuds
+ * - claim() est atomique (INSERT ... ON CONFLICT) : un doublon arrivé sur un autre nœud entre deux
+ *   synchronisations du filtre est détecté par la contrainte d'unicité
+ * - Un fingerprint est rattaché à son batch : supprimer le document (ou le remplacer par une
+ *   nouvelle version) libère le fingerprint
+ */
+@Slf4j
+@Service
+public class UploadFingerprintIndex {
+
+    @Value("${assistant.upload.dedup.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${assistant.upload.dedup.bloom.expected-insertions:100000}")
+    private int expectedInsertions;
+
+    @Value("${assistant.upload.dedup.bloom.fpp:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${assistant.upload.dedup.sync-interval-seconds:30}")
+    private long syncIntervalSeconds;
+
+    // Reconstruction complète : retire du filtre les fingerprints expirés ou supprimés
+    @Value("${assistant.upload.dedup.rebuild-interval-minutes:60}")
+    private long rebuildIntervalMinutes;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private volatile BloomFilter<CharSequence> bloom;
+    private volatile Timestamp lastSync;
+    private ScheduledExecutorService syncExecutor;
+
+    public UploadFingerprintIndex(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS upload_fingerprints (
+                    fingerprint VARCHAR(128) PRIMARY KEY,
+                    job_id      VARCHAR(64) NOT NULL,
+                    batch_id    VARCHAR(64) NOT NULL,
+                    filename    VARCHAR(512),
+                    file_size   BIGINT,
+                    indexed     BOOLEAN NOT NULL DEFAULT FALSE,
+                    created_at  TIMESTAMPTZ NOT NULL DEFAULT now(),
+                    expires_at  TIMESTAMPTZ NOT NULL
+                )
+                """);
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_upload_fingerprints_created ON upload_fingerprints (created_at)");
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_upload_fingerprints_batch ON upload_fingerprints (batch_id)");
+
+        rebuild();
+
+        AtomicInteger idx = new AtomicInteger(0);
+        this.syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("upload-dedup-sync-" + idx.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        long syncSeconds = Math.max(1, syncIntervalSeconds);
+        long rebuildSeconds = Math.max(syncSeconds, rebuildIntervalMinutes * 60);
+        syncExecutor.scheduleWithFixedDelay(this::syncQuietly, syncSeconds, syncSeconds, TimeUnit.SECONDS);
+        syncExecutor.scheduleWithFixedDelay(this::rebuildQuietly, rebuildSeconds, rebuildSeconds, TimeUnit.SECONDS);
+
+        log.info("✅ [Dedup] Index uploads partagé - rétention: {} min, Bloom: {} entrées à {}, sync: {}s",
+                retentionMinutes, expectedInsertions, falsePositiveRate, syncSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+        }
+    }
+
+    // ========================================================================
+    // RECHERCHE / RÉSERVATION
+    // ========================================================================
+
+    /**
+     * Upload déjà reçu pour ce fingerprint (en cours ou indexé)
+     */
+    public record Entry(String jobId, String batchId, String filename, Long fileSize,
+                        Instant createdAt, boolean indexed) {}
+
+    /**
+     * ✅ Recherche : aucun aller-retour si le filtre de Bloom n'a jamais vu le fingerprint
+     */
+    public Optional<Entry> find(String fingerprint) {
+        if (!bloom.mightContain(fingerprint)) {
+            meterRegistry.counter("upload.dedup.lookups", "result", "bloom_skip").increment();
+            return Optional.empty();
+        }
+        Optional<Entry> entry = lookup(fingerprint);
+        meterRegistry.counter("upload.dedup.lookups", "result", entry.isPresent() ? "hit" : "miss").increment();
+        return entry;
+    }
+
+    /**
+     * ✅ Réserve le fingerprint pour ce job (atomique entre nœuds)
+     *
+     * @return vide si réservé, sinon l'entrée du job concurrent qui l'a réservé avant
+     */
+    public Optional<Entry> claim(String fingerprint, String jobId, String batchId, String filename, long fileSize) {
+        List<String> owner = jdbcTemplate.queryForList("""
+                INSERT INTO upload_fingerprints
+                    (fingerprint, job_id, batch_id, filename, file_size, indexed, created_at, expires_at)
+                VALUES (?, ?, ?, ?, ?, FALSE, now(), now() + make_interval(mins => ?))
+                ON CONFLICT (fingerprint) DO UPDATE
+                   SET job_id = EXCLUDED.job_id, batch_id = EXCLUDED.batch_id, filename = EXCLUDED.filename,
+                       file_size = EXCLUDED.file_size, indexed = FALSE,
+                       created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at
+                 WHERE upload_fingerprints.expires_at <= now()
+                RETURNING job_id
+                """, String.class, fingerprint, jobId, batchId, filename, fileSize, (int) retentionMinutes);
+
+        bloom.put(fingerprint);
+        if (!owner.isEmpty()) {
+            return Optional.empty();
+        }
+        meterRegistry.counter("upload.dedup.lookups", "result", "race").increment();
+        return lookup(fingerprint);
+    }
+
+    /**
+     * Ingestion réussie : le fingerprint pointe vers le contenu indexé, rétention repartie
+     */
+    public void markIndexed(String fingerprint, String jobId) {
+        if (fingerprint == null) return;
+        jdbcTemplate.update("""
+                UPDATE upload_fingerprints
+                   SET indexed = TRUE, expires_at = now() + make_interval(mins => ?)
+                 WHERE fingerprint = ? AND job_id = ?
+                """, (int) retentionMinutes, fingerprint, jobId);
+    }
+
+    /**
+     * Ingestion échouée ou mise en file impossible : un nouvel upload identique sera accepté
+     */
+    public void release(String fingerprint, String jobId) {
+        if (fingerprint == null) return;
+        jdbcTemplate.update("DELETE FROM upload_fingerprints WHERE fingerprint = ? AND job_id = ?", fingerprint, jobId);
+    }
+
+    /**
+     * Documents supprimés (batchs vidés) : leurs fingerprints ne sont plus des doublons
+     */
+    public void forgetBatches(Collection<String> batchIds) {
+        if (batchIds == null || batchIds.isEmpty()) return;
+        int removed = jdbcTemplate.update("DELETE FROM upload_fingerprints WHERE batch_id = ANY(?::varchar[])",
+                "{" + String.join(",", batchIds) + "}");
+        if (removed > 0) {
+            log.debug("[Dedup] {} fingerprint(s) libéré(s) ({} batch(s) supprimé(s))", removed, batchIds.size());
+        }
+    }
+
+    private Optional<Entry> lookup(String fingerprint) {
+        return jdbcTemplate.query("""
+                SELECT job_id, batch_id, filename, file_size, created_at, indexed
+                  FROM upload_fingerprints
+                 WHERE fingerprint = ? AND expires_at > now()
+                """,
+                (rs, i) -> new Entry(
+                        rs.getString("job_id"),
+                        rs.getString("batch_id"),
+                        rs.getString("filename"),
+                        (Long) rs.getObject("file_size"),
+                        rs.getTimestamp("created_at").toInstant(),
+                        rs.getBoolean("indexed")),
+                fingerprint).stream().findFirst();
+    }
+
+    // ========================================================================
+    // FILTRE DE BLOOM
+    // ========================================================================
+
+    /**
+     * Ajoute au filtre les fingerprints créés depuis la dernière synchronisation (tous nœuds)
+     */
+    private void sync() {
+        Timestamp now = jdbcTemplate.queryForObject("SELECT now()", Timestamp.class);
+        Timestamp since = lastSync;
+        BloomFilter<CharSequence> current = bloom;
+        // Marge : une transaction validée juste après la lecture de now() sur un autre nœud
+        List<String> fingerprints = jdbcTemplate.queryForList("""
+                SELECT fingerprint FROM upload_fingerprints
+                 WHERE created_at > ? - interval '5 seconds' AND expires_at > now()
+                """, String.class, since);
+        fingerprints.forEach(current::put);
+        lastSync = now;
+    }
+
+    /**
+     * Nouveau filtre à partir des fingerprints non expirés ; purge des entrées expirées
+     */
+    private void rebuild() {
+        int purged = jdbcTemplate.update("DELETE FROM upload_fingerprints WHERE expires_at <= now()");
+        Timestamp now = jdbcTemplate.queryForObject("SELECT now()", Timestamp.class);
+
+        BloomFilter<CharSequence> fresh = BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8), Math.max(1000, expectedInsertions), falsePositiveRate);
+        jdbcTemplate.query("SELECT fingerprint FROM upload_fingerprints",
+                rs -> {
+                    fresh.put(rs.getString("fingerprint"));
+                });
+
+        // Les put() concurrents sur l'ancien filtre sont rattrapés par la sync suivante (created_at)
+        this.bloom = fresh;
+        this.lastSync = now;
+        log.debug("[Dedup] Filtre de Bloom reconstruit ({} entrées expirées purgées, fpp estimé {})",
+                purged, String.format("%.4f", fresh.expectedFpp()));
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (Exception e) {
+            log.warn("⚠️ [Dedup] Synchronisation du filtre impossible: {}", e.getMessage());
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("⚠️ [Dedup] Reconstruction du filtre impossible: {}", e.getMessage());
+        }
+    }
+}
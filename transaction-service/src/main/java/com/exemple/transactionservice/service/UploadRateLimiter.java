@@ -1,32 +1,34 @@
-
 package com.exemple.transactionservice.service;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
 
+/**
+ * Uploads simultanés par utilisateur : un slot = un job PENDING ou PROCESSING dans ingestion_jobs.
+ * Pas d'état local : les slots sont partagés entre nœuds et rendus par toute transition terminale
+ * (succès, échec, rollback, abandon après tentatives épuisées).
+ */
 @Service
 public class UploadRateLimiter {
-    
-    private final LoadingCache<String, Semaphore> uploadLimiters = 
-        CacheBuilder.newBuilder()
-            .maximumSize(10000)
-            .expireAfterAccess(5, TimeUnit.MINUTES)
-            .build(new CacheLoader<String, Semaphore>() {
-                @Override
-                public Semaphore load(String userId) {
-                    return new Semaphore(3);  // 3 uploads simultanés max
-                }
-            });
-    
-    public boolean tryAcquire(String userId) {
-        return uploadLimiters.getUnchecked(userId).tryAcquire();
+
+    private final IngestionJobQueue jobQueue;
+
+    @Value("${assistant.upload.max-concurrent:3}")
+    private int maxConcurrent;
+
+    public UploadRateLimiter(IngestionJobQueue jobQueue) {
+        this.jobQueue = jobQueue;
     }
-    
-    public void release(String userId) {
-        uploadLimiters.getUnchecked(userId).release();
+
+    /**
+     * Pré-contrôle avant le spool (évite de copier un fichier qui sera refusé) ;
+     * la limite fait foi à la mise en file, vérifiée atomiquement par la file
+     */
+    public boolean hasCapacity(Long userId) {
+        return jobQueue.countActive(userId) < getMaxConcurrent();
+    }
+
+    public int getMaxConcurrent() {
+        return Math.max(1, maxConcurrent);
     }
-}
\ No newline at end of file
+}
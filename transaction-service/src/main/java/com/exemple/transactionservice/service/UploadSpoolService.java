@@ -0,0 +1,131 @@
+// ============================================================================
+// SERVICE - UploadSpoolService.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * ✅ Spool disque des uploads (coût heap constant par upload)
+ *
+ * - Le corps de l'upload est recopié une seule fois dans un fichier de spool,
+ *   le SHA-256 est calculé pendant la copie (plus de file.getBytes())
+ * - Côté worker, le contenu du job est relu par tranches depuis ingestion_jobs vers un fichier local,
+ *   remis à l'ingestion sous forme de PersistentMultipartFile (PDF mappé en mémoire, OOXML ouvert depuis le fichier)
+ * - Fichiers supprimés après mise en file / après ingestion ; reliquats purgés au démarrage
+ */
+@Slf4j
+@Service
+public class UploadSpoolService {
+
+    private static final String PREFIX = "upload-";
+    private static final String SUFFIX = ".spool";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${assistant.upload.temp-dir:${java.io.tmpdir}/multimodal-uploads}")
+    private String spoolDir;
+
+    private final IngestionJobQueue jobQueue;
+
+    private Path directory;
+
+    public UploadSpoolService(IngestionJobQueue jobQueue) {
+        this.jobQueue = jobQueue;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        this.directory = Paths.get(spoolDir);
+        Files.createDirectories(directory);
+
+        // Aucun upload en cours au démarrage de ce nœud : les fichiers restants sont orphelins
+        int purged = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path orphan : stream) {
+                if (Files.deleteIfExists(orphan)) purged++;
+            }
+        }
+        log.info("✅ [Spool] Répertoire {} ({} fichier(s) orphelin(s) purgé(s))", directory, purged);
+    }
+
+    /**
+     * Fichier de spool avec sa taille et son empreinte SHA-256 (hex)
+     */
+    public record SpooledUpload(Path path, long size, String sha256) {}
+
+    /**
+     * ✅ Copie en flux de l'upload vers le spool, empreinte calculée au passage
+     */
+    public SpooledUpload spool(MultipartFile file) throws IOException {
+        Path target = Files.createTempFile(directory, PREFIX, SUFFIX);
+        MessageDigest digest = sha256();
+        long size;
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+             OutputStream out = Files.newOutputStream(target)) {
+            size = copy(in, out);
+        } catch (IOException | RuntimeException e) {
+            delete(target);
+            throw e;
+        }
+        return new SpooledUpload(target, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * ✅ Contenu d'un job réservé relu par tranches vers un fichier local (jamais en entier en heap)
+     */
+    public Path restore(String jobId) throws IOException {
+        Path target = Files.createTempFile(directory, PREFIX, SUFFIX);
+        try (OutputStream out = Files.newOutputStream(target)) {
+            long size = jobQueue.readPayload(jobId, out);
+            log.debug("[Spool] Job {} restauré: {} bytes", jobId, size);
+        } catch (IOException | RuntimeException e) {
+            delete(target);
+            throw e;
+        }
+        return target;
+    }
+
+    public void delete(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("⚠️ [Spool] Fichier non supprimé: {} ({})", path, e.getMessage());
+        }
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+// ============================================================================
+// SERVICE - VisionDescriptionStore.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Store de descriptions Vision adressé par contenu
+ *
+ * Clé = SHA-256 des octets d'origine de l'image (fichier, part Office, flux PDF), jamais du JPEG
+ * ré-encodé pour Vision : la clé survit aux changements de réglages d'encodage. Deux niveaux :
+ * - LRU local (Caffeine) pour les images répétées dans un même document
+ * - Redis partagé (TTL configurable) pour les ré-uploads et les autres nœuds
+ *
+ * Remplace l'ancien @Cacheable("vision-analysis") posé sur une méthode privée,
+ * jamais intercepté par le proxy Spring.
+ */
+@Slf4j
+@Service
+public class VisionDescriptionStore {
+
+    private static final String KEY_PREFIX = "vision:desc:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${document.vision-cache.local-max-entries:5000}")
+    private long localMaxEntries;
+
+    @Value("${document.vision-cache.redis-ttl-days:30}")
+    private long redisTtlDays;
+
+    @Value("${document.vision-cache.estimated-cost-per-call:0.01}")
+    private double estimatedCostPerCall;
+
+    private Cache<String, String> localCache;
+
+    // Single-flight : une seule requête Vision par hash en cours
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong redisHits = new AtomicLong();
+
+    public VisionDescriptionStore(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, localMaxEntries))
+                .build();
+
+        meterRegistry.gauge("vision.cache.saved.cost", this,
+                s -> (s.localHits.get() + s.redisHits.get()) * s.estimatedCostPerCall);
+
+        log.info("✅ [VisionStore] Initialisé - LRU: {} entrées, Redis TTL: {} jours",
+                localMaxEntries, redisTtlDays);
+    }
+
+    /**
+     * Retourne la description connue pour cette image, sinon appelle Vision et mémorise le résultat.
+     * Un résultat null ou vide (Vision indisponible) n'est jamais mis en cache.
+     *
+     * @param hash      SHA-256 des octets d'origine (voir sha256Hex)
+     * @param imageSize taille des octets envoyés à Vision (métrique d'économie)
+     */
+    public String getOrCompute(String hash, long imageSize, Supplier<String> visionCall) {
+        String cached = lookup(hash, imageSize);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<String> own = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(hash, own);
+        if (existing != null) {
+            // Même image déjà en cours d'analyse sur un autre worker
+            String shared = existing.join();
+            if (shared != null) {
+                recordHit("inflight", localHits, imageSize);
+            }
+            return shared;
+        }
+
+        try {
+            meterRegistry.counter("vision.cache.misses").increment();
+
+            String description = visionCall.get();
+            if (description != null && !description.isBlank()) {
+                store(hash, description);
+            }
+            own.complete(description);
+            return description;
+
+        } catch (RuntimeException e) {
+            own.complete(null);
+            throw e;
+        } finally {
+            inFlight.remove(hash, own);
+        }
+    }
+
+    /**
+     * Recherche sans appel Vision (local puis Redis)
+     */
+    public String lookup(String hash, long imageSize) {
+        String local = localCache.getIfPresent(hash);
+        if (local != null) {
+            recordHit("local", localHits, imageSize);
+            return local;
+        }
+
+        try {
+            String remote = redisTemplate.opsForValue().get(KEY_PREFIX + hash);
+            if (remote != null) {
+                localCache.put(hash, remote);
+                recordHit("redis", redisHits, imageSize);
+                return remote;
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ [VisionStore] Redis indisponible (lecture): {}", e.getMessage());
+        }
+
+        return null;
+    }
+
+    private void store(String hash, String description) {
+        localCache.put(hash, description);
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + hash, description, Duration.ofDays(redisTtlDays));
+        } catch (Exception e) {
+            log.warn("⚠️ [VisionStore] Redis indisponible (écriture): {}", e.getMessage());
+        }
+    }
+
+    private void recordHit(String tier, AtomicLong counter, long imageSize) {
+        counter.incrementAndGet();
+        meterRegistry.counter("vision.cache.hits", "tier", tier).increment();
+        meterRegistry.counter("vision.cache.saved.bytes").increment(imageSize);
+    }
+
+    public static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(sha256().digest(data));
+    }
+
+    /**
+     * Empreinte d'un flux (fichier image uploadé) sans le charger en mémoire
+     */
+    public static String sha256Hex(InputStream in) throws IOException {
+        MessageDigest md = sha256();
+        try (DigestInputStream digest = new DigestInputStream(in, md)) {
+            digest.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Empreinte des pixels d'une image sans octets d'origine (rendu de page) : dimensions + ARGB par ligne
+     */
+    public static String sha256Hex(BufferedImage image) {
+        MessageDigest md = sha256();
+        int width = image.getWidth();
+        int[] row = new int[width];
+        ByteBuffer buffer = ByteBuffer.allocate(width * Integer.BYTES);
+        md.update(ByteBuffer.allocate(2 * Integer.BYTES).putInt(width).putInt(image.getHeight()).array());
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            buffer.clear();
+            buffer.asIntBuffer().put(row);
+            md.update(buffer.array());
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+// ============================================================================
+// SERVICE - VisionImagePreparer.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * ✅ Préparation des images avant Vision (encodage unique, taille bornée)
+ *
+ * - Réduction au bord maximal configuré (GPT-4o redimensionne de toute façon côté serveur)
+ * - Aplatissement sur fond blanc (JPEG sans canal alpha)
+ * - Encodage JPEG à qualité contrôlée
+ *
+ * Le tampon produit sert à la fois au fichier sur disque et à la requête Vision.
+ */
+@Slf4j
+@Service
+public class VisionImagePreparer {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${document.image-prep.max-edge:1536}")
+    private int maxEdge;
+
+    @Value("${document.image-prep.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    public VisionImagePreparer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Image encodée prête pour le disque et Vision
+     */
+    public record PreparedImage(
+            byte[] bytes,
+            String mimeType,
+            String extension,
+            int width,
+            int height,
+            int originalWidth,
+            int originalHeight
+    ) {}
+
+    public PreparedImage prepare(BufferedImage source) throws IOException {
+        long start = System.nanoTime();
+
+        BufferedImage rgb = scaleToRgb(source);
+        byte[] bytes = encodeJpeg(rgb);
+
+        meterRegistry.timer("image.prep.duration")
+                .record(System.nanoTime() - start, java.util.concurrent.TimeUnit.NANOSECONDS);
+        meterRegistry.counter("image.prep.bytes").increment(bytes.length);
+
+        if (log.isDebugEnabled()) {
+            log.debug("🖼️ [ImagePrep] {}x{} -> {}x{} JPEG ({} Ko)",
+                    source.getWidth(), source.getHeight(), rgb.getWidth(), rgb.getHeight(), bytes.length / 1024);
+        }
+
+        return new PreparedImage(bytes, "image/jpeg", "jpg",
+                rgb.getWidth(), rgb.getHeight(), source.getWidth(), source.getHeight());
+    }
+
+    /**
+     * Réduction (si nécessaire) + conversion RGB opaque en une seule passe de dessin
+     */
+    private BufferedImage scaleToRgb(BufferedImage source) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        int longest = Math.max(w, h);
+
+        if (maxEdge > 0 && longest > maxEdge) {
+            double scale = (double) maxEdge / longest;
+            w = Math.max(1, (int) Math.round(w * scale));
+            h = Math.max(1, (int) Math.round(h * scale));
+        } else if (source.getType() == BufferedImage.TYPE_INT_RGB
+                || source.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            // Déjà opaque et à la bonne taille : aucune copie
+            return source;
+        }
+
+        BufferedImage target = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, w, h);
+            g.drawImage(source, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("Aucun encodeur JPEG disponible");
+        }
+
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(image.getWidth() * image.getHeight() / 4);
+
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Math.max(0.1f, Math.min(1.0f, jpegQuality)));
+
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        return baos.toByteArray();
+    }
+}
@@ -2,11 +2,15 @@ package com.exemple.transactionservice.service;
 
 // ✅ CORRECTION : Imports pour la version 0.18.2 du SDK
 import com.theokanning.openai.audio.CreateTranscriptionRequest;
+import com.theokanning.openai.client.OpenAiApi;
 import com.theokanning.openai.service.OpenAiService;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
 import org.apache.commons.io.FileUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
+import retrofit2.Retrofit;
 
 import jakarta.annotation.PostConstruct;
 import java.io.File;
@@ -17,20 +21,41 @@ import java.util.UUID;
 /**
  * ✅ Service de transcription audio avec OpenAI Whisper
  * Compatible avec openai-gpt3-java version 0.18.2
+ * (remplacé par LocalWhisperService dans le profil 'local')
  */
 @Slf4j
 @Service
+@Profile("!local")
 public class WhisperService {
     
+    private static final String DEFAULT_BASE_URL = "https://api.openai.com/v1";
+
     @Value("${openai.api.key}")
     private String apiKey;
+
+    // Même point d'accès que les modèles LangChain4j (stub local des tests de charge)
+    @Value("${openai.base-url:" + DEFAULT_BASE_URL + "}")
+    private String baseUrl;
     
     private OpenAiService openAiService;
     
     @PostConstruct
     public void init() {
         log.info("🎤 [Whisper] Initialisation du service Whisper");
-        this.openAiService = new OpenAiService(apiKey, Duration.ofSeconds(30));
+        Duration timeout = Duration.ofSeconds(30);
+        if (baseUrl == null || baseUrl.isBlank() || DEFAULT_BASE_URL.equals(baseUrl)) {
+            this.openAiService = new OpenAiService(apiKey, timeout);
+        } else {
+            // Le client 0.18.2 ajoute lui-même le préfixe /v1 aux chemins
+            String root = baseUrl.replaceAll("/v1/?$", "");
+            OkHttpClient client = OpenAiService.defaultClient(apiKey, timeout);
+            Retrofit retrofit = OpenAiService.defaultRetrofit(client, OpenAiService.defaultObjectMapper())
+                    .newBuilder()
+                    .baseUrl(root.endsWith("/") ? root : root + "/")
+                    .build();
+            this.openAiService = new OpenAiService(retrofit.create(OpenAiApi.class));
+            log.info("🎤 [Whisper] Point d'accès: {}", root);
+        }
         log.info("✅ [Whisper] Service initialisé");
     }
     
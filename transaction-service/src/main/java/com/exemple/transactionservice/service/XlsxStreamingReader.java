@@ -0,0 +1,177 @@
+// ============================================================================
+// SERVICE - XlsxStreamingReader.java (v1.0)
+// ============================================================================
+package com.exemple.transactionservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.stereotype.Service;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * ✅ Lecture XLSX en streaming (API événementielle POI : XSSFReader + SAX)
+ *
+ * - Aucune construction du DOM XSSF : mémoire bornée quelle que soit la taille du classeur
+ * - Les lignes sont poussées une par une vers un RowSink (valeurs formatées, cellules non vides) ;
+ *   une exception du sink (annulation, timeout) arrête immédiatement la lecture
+ * - inspect() inventorie images / charts / drawings à partir des parts du package,
+ *   pour n'ouvrir le DOM que lorsqu'il faut réellement extraire des images
+ *
+ * Formules : valeurs en cache du fichier (pas de réévaluation, contrairement au FormulaEvaluator du DOM).
+ */
+@Slf4j
+@Service
+public class XlsxStreamingReader {
+
+    private static final Pattern MEDIA_PARTS = Pattern.compile("/xl/media/.*");
+    private static final Pattern CHART_PARTS = Pattern.compile("/xl/charts/chart\\d+\\.xml");
+    private static final Pattern DRAWING_PARTS = Pattern.compile("/xl/drawings/drawing\\d+\\.xml");
+    private static final Pattern CHARTSHEET_PARTS = Pattern.compile("/xl/chartsheets/.*\\.xml");
+
+    /**
+     * Contenu visuel du classeur (déduit des parts OOXML, sans parser les feuilles)
+     */
+    public record Inventory(int mediaCount, int chartsCount, int drawingsCount, int chartSheetsCount) {
+
+        public boolean hasImages() {
+            return mediaCount > 0;
+        }
+
+        public boolean hasAnyDrawing() {
+            return drawingsCount > 0 || chartSheetsCount > 0;
+        }
+    }
+
+    /**
+     * Reçoit chaque ligne non vide d'une feuille
+     */
+    @FunctionalInterface
+    public interface RowSink {
+        void row(int sheetIndex, String sheetName, List<String> values) throws Exception;
+    }
+
+    /**
+     * Statistiques de lecture
+     */
+    public record StreamStats(int sheetCount, long rowCount, long nonEmptyCells) {}
+
+    public Inventory inspect(OPCPackage pkg) {
+        try {
+            return new Inventory(
+                    pkg.getPartsByName(MEDIA_PARTS).size(),
+                    pkg.getPartsByName(CHART_PARTS).size(),
+                    pkg.getPartsByName(DRAWING_PARTS).size(),
+                    pkg.getPartsByName(CHARTSHEET_PARTS).size());
+        } catch (Exception e) {
+            log.warn("⚠️ [XlsxStream] Inventaire impossible: {}", e.getMessage());
+            return new Inventory(0, 0, 0, 0);
+        }
+    }
+
+    /**
+     * ✅ Parcourt toutes les feuilles en SAX et pousse les lignes vers le sink
+     * (annulation vérifiée à chaque ligne : une feuille énorme s'arrête au timeout)
+     */
+    public StreamStats streamRows(OPCPackage pkg, DocumentParserPool.Cancellation cancellation,
+                                  RowSink sink) throws Exception {
+        XSSFReader reader = new XSSFReader(pkg);
+        ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+        StylesTable styles = reader.getStylesTable();
+        DataFormatter formatter = new DataFormatter();
+
+        XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+
+        int sheetIndex = 0;
+        long rows = 0;
+        long cells = 0;
+
+        while (sheets.hasNext()) {
+            cancellation.check();
+            try (InputStream sheetStream = sheets.next()) {
+                sheetIndex++;
+                RowCollector collector = new RowCollector(sheetIndex, sheets.getSheetName(), cancellation, sink);
+
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, collector, formatter, false));
+                try {
+                    parser.parse(new InputSource(sheetStream));
+                } catch (Exception e) {
+                    // Annulation ou échec du sink : la feuille est abandonnée au lieu d'être lue jusqu'au bout
+                    cancellation.check();
+                    if (collector.failure != null) throw collector.failure;
+                    throw e;
+                }
+                rows += collector.rows;
+                cells += collector.cells;
+            }
+        }
+
+        return new StreamStats(sheetIndex, rows, cells);
+    }
+
+    /**
+     * Adaptateur SAX -> RowSink (une seule ligne en mémoire)
+     */
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final int sheetIndex;
+        private final String sheetName;
+        private final DocumentParserPool.Cancellation cancellation;
+        private final RowSink sink;
+        private final List<String> current = new ArrayList<>();
+        private long rows;
+        private long cells;
+        private Exception failure;
+
+        private RowCollector(int sheetIndex, String sheetName, DocumentParserPool.Cancellation cancellation,
+                             RowSink sink) {
+            this.sheetIndex = sheetIndex;
+            this.sheetName = sheetName;
+            this.cancellation = cancellation;
+            this.sink = sink;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cancellation.check();
+            current.clear();
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (formattedValue == null) return;
+            String value = formattedValue.trim();
+            if (!value.isEmpty()) {
+                current.add(value);
+                cells++;
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (current.isEmpty() || failure != null) return;
+            rows++;
+            try {
+                sink.row(sheetIndex, sheetName, List.copyOf(current));
+            } catch (Exception e) {
+                // Le handler SAX ne peut pas lever d'exception vérifiée : on interrompt le parse
+                // et l'exception d'origine est remontée par streamRows()
+                failure = e;
+                throw new IllegalStateException("Lecture XLSX interrompue", e);
+            }
+        }
+    }
+}
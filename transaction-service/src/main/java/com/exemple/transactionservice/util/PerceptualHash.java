@@ -0,0 +1,128 @@
+package com.exemple.transactionservice.util;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Hash perceptuel (dHash) d'une image
+ * Image réduite en niveaux de gris (size+1 x size), puis 1 bit par comparaison
+ * de pixels voisins horizontaux. Deux images quasi identiques (recompression,
+ * redimensionnement) ont une faible distance de Hamming.
+ */
+public final class PerceptualHash {
+
+    // Petit côté minimal de l'image décodée en sous-échantillonnage (largement au-dessus de la grille)
+    private static final int MIN_DECODED_EDGE = 64;
+
+    private final long[] bits;
+    private final int bitCount;
+    private final double aspectRatio;
+
+    private PerceptualHash(long[] bits, int bitCount, double aspectRatio) {
+        this.bits = bits;
+        this.bitCount = bitCount;
+        this.aspectRatio = aspectRatio;
+    }
+
+    /**
+     * @param size côté de la grille (8 => 64 bits, 16 => 256 bits)
+     */
+    public static PerceptualHash dHash(BufferedImage image, int size) {
+        return dHash(image, size, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * dHash d'une image encodée (JPEG...) sans décodage pleine résolution :
+     * sous-échantillonnage à la source (ImageReadParam), quelques dizaines de pixels de côté suffisent.
+     * Le ratio est celui des dimensions d'origine, pas de l'image réduite.
+     *
+     * @return null si aucun lecteur ImageIO ne reconnaît le format
+     */
+    public static PerceptualHash dHash(byte[] encoded, int size) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded))) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int step = Math.max(1, Math.min(width, height) / Math.max(MIN_DECODED_EDGE, 4 * (size + 1)));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return dHash(reader.read(0, param), size, width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static PerceptualHash dHash(BufferedImage image, int size, int width, int height) {
+        int w = size + 1;
+        int h = size;
+
+        BufferedImage gray = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+
+        Raster raster = gray.getRaster();
+        int bitCount = size * size;
+        long[] bits = new long[(bitCount + 63) / 64];
+
+        int bit = 0;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < size; x++) {
+                if (raster.getSample(x, y, 0) < raster.getSample(x + 1, y, 0)) {
+                    bits[bit >>> 6] |= 1L << (bit & 63);
+                }
+                bit++;
+            }
+        }
+
+        double ratio = height == 0 ? 0.0 : (double) width / height;
+        return new PerceptualHash(bits, bitCount, ratio);
+    }
+
+    public int distance(PerceptualHash other) {
+        if (other.bitCount != bitCount) {
+            return Integer.MAX_VALUE;
+        }
+        int d = 0;
+        for (int i = 0; i < bits.length; i++) {
+            d += Long.bitCount(bits[i] ^ other.bits[i]);
+        }
+        return d;
+    }
+
+    /**
+     * Même forme (tolérance relative sur le ratio largeur/hauteur)
+     */
+    public boolean sameShape(PerceptualHash other, double tolerance) {
+        if (aspectRatio == 0.0 || other.aspectRatio == 0.0) {
+            return false;
+        }
+        return Math.abs(aspectRatio - other.aspectRatio) / Math.max(aspectRatio, other.aspectRatio) <= tolerance;
+    }
+
+    public int bitCount() {
+        return bitCount;
+    }
+}
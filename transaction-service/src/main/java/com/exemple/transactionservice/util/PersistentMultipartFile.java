@@ -69,6 +69,13 @@ public class PersistentMultipartFile implements MultipartFile {
         public void transferTo(File dest) throws IOException {
             Files.copy(filePath, dest.toPath());
         }
+
+        /**
+         * Fichier sur disque (lecture directe / mappage mémoire sans copie en heap)
+         */
+        public Path getPath() {
+            return filePath;
+        }
         
         private String determineContentType(String filename) {
             if (filename == null) return "application/octet-stream";
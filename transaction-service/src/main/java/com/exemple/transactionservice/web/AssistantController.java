@@ -3,25 +3,36 @@
 // ============================================================================
 package com.exemple.transactionservice.controller;
 
+import com.exemple.transactionservice.config.EmbeddingEngine;
+import com.exemple.transactionservice.dto.DocumentDeletionResult;
 import com.exemple.transactionservice.dto.DuplicateInfo;
+import com.exemple.transactionservice.dto.IngestionProgressEvent;
 import com.exemple.transactionservice.dto.UploadJob;
 import com.exemple.transactionservice.dto.UploadResponse;
-import com.exemple.transactionservice.dto.UploadStatusResponse;
 import com.exemple.transactionservice.dto.UploadStatus;
+import com.exemple.transactionservice.dto.UploadStatusResponse;
 import com.exemple.transactionservice.service.ConversationalAssistant;
+import com.exemple.transactionservice.service.EmbeddingDeletionService;
+import com.exemple.transactionservice.service.ImageStorageService;
+import com.exemple.transactionservice.service.IngestionJobQueue;
+import com.exemple.transactionservice.service.IngestionProgressService;
 import com.exemple.transactionservice.service.MultimodalIngestionService;
+import com.exemple.transactionservice.service.UploadFingerprintIndex;
 import com.exemple.transactionservice.service.UploadRateLimiter;
-import com.exemple.transactionservice.util.InMemoryMultipartFile;
+import com.exemple.transactionservice.service.UploadSpoolService;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.*;
 import java.nio.file.Files;
@@ -30,11 +41,10 @@ import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -51,11 +61,17 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequestMapping("/api/assistant")
 public class AssistantController {
 
+    private final IngestionJobQueue jobQueue;
     private final MultimodalIngestionService ingestionService;
+    private final IngestionProgressService progressService;
+    private final ImageStorageService imageStorage;
+    private final EmbeddingDeletionService embeddingDeletion;
     private final ConversationalAssistant assistant;
     private final UploadRateLimiter uploadRateLimiter;
+    private final UploadSpoolService uploadSpool;
+    private final UploadFingerprintIndex uploadFingerprints;
     private final MeterRegistry meterRegistry;
-    private final ScheduledExecutorService scheduler;
+    private final EmbeddingEngine embeddingEngine;
 
     @Value("${assistant.stream.timeout-seconds:120}")
     private int streamTimeoutSeconds;
@@ -63,39 +79,43 @@ public class AssistantController {
     @Value("${assistant.stream.heartbeat-interval-seconds:15}")
     private int heartbeatIntervalSeconds;
     
+    @Value("${assistant.upload.progress.fallback-poll-seconds:5}")
+    private int progressFallbackPollSeconds;
+    
     @Value("${assistant.upload.max-file-size:20971520}")
     private long maxFileSize;
     
     @Value("${assistant.upload.allowed-extensions}")
     private String allowedExtensions;
     
-    @Value("${assistant.upload.max-concurrent:3}")
-    private int maxConcurrentUploads;
-    
-    @Value("${assistant.upload.temp-dir:${java.io.tmpdir}/multimodal-uploads}")
-    private String uploadTempDir;
-
-    // Tracking jobs upload
-    private final ConcurrentHashMap<String, UploadJob> uploadJobs = new ConcurrentHashMap<>();
-    
-    // Déduplication par hash avec métadonnées complètes
-    private final ConcurrentHashMap<String, DuplicateInfo> uploadFingerprints = new ConcurrentHashMap<>();
-
     public AssistantController(
+            IngestionJobQueue jobQueue,
             MultimodalIngestionService ingestionService,
+            IngestionProgressService progressService,
+            ImageStorageService imageStorage,
+            EmbeddingDeletionService embeddingDeletion,
             ConversationalAssistant assistant,
             UploadRateLimiter uploadRateLimiter,
-            MeterRegistry meterRegistry) {
+            UploadSpoolService uploadSpool,
+            UploadFingerprintIndex uploadFingerprints,
+            MeterRegistry meterRegistry,
+            EmbeddingEngine embeddingEngine) {
         
+        this.jobQueue = jobQueue;
         this.ingestionService = ingestionService;
+        this.progressService = progressService;
+        this.imageStorage = imageStorage;
+        this.embeddingDeletion = embeddingDeletion;
         this.assistant = assistant;
         this.uploadRateLimiter = uploadRateLimiter;
+        this.uploadSpool = uploadSpool;
+        this.uploadFingerprints = uploadFingerprints;
         this.meterRegistry = meterRegistry;
-        this.scheduler = Executors.newScheduledThreadPool(4);
+        this.embeddingEngine = embeddingEngine;
 
         log.info("✅ [Controller] Initialisé v2.3 - Timeout: {}s, Heartbeat: {}s, MaxUpload: {} MB, MaxConcurrent: {}",
                  streamTimeoutSeconds, heartbeatIntervalSeconds, 
-                 maxFileSize / (1024 * 1024), maxConcurrentUploads);
+                 maxFileSize / (1024 * 1024), uploadRateLimiter.getMaxConcurrent());
     }
 
     // ============================================================================
@@ -107,7 +127,6 @@ public class AssistantController {
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "userId", defaultValue = "1") Long userId) {
         
-        Instant start = Instant.now();
         String jobId = UUID.randomUUID().toString();
         
         try {
@@ -169,44 +188,52 @@ public class AssistantController {
             // RATE LIMITING
             // ========================================================================
             
-            if (!uploadRateLimiter.tryAcquire(String.valueOf(userId))) {
-                log.warn("⚠️ [{}] Rate limit upload dépassé pour user: {}", jobId, userId);
-                
-                return ResponseEntity.status(429).body(
-                    UploadResponse.error(
-                        String.format("Trop d'uploads simultanés (max: %d)", maxConcurrentUploads),
-                        null,
-                        sanitizedFilename
-                    )
-                );
+            // Pré-contrôle sur les jobs actifs en base ; revérifié atomiquement à la mise en file
+            if (!uploadRateLimiter.hasCapacity(userId)) {
+                return tooManyUploads(jobId, userId, sanitizedFilename);
             }
             
             // ========================================================================
-            // ✅ COPIE EN MÉMOIRE + DÉDUPLICATION (fingerprint)
+            // ✅ SPOOL DISQUE + DÉDUPLICATION (fingerprint calculé pendant la copie)
             // ========================================================================
             
+            UploadSpoolService.SpooledUpload spooled = null;
             try {
                 log.info("📤 [{}] Upload démarré: {} ({} KB) - User: {}", 
                         jobId, sanitizedFilename, file.getSize() / 1024, userId);
                 
-                // 1) Copier le fichier en mémoire AVANT l'async
-                byte[] fileContent = file.getBytes();
+                // 1) Copie unique vers le spool AVANT l'async (heap constant, SHA-256 en flux)
+                spooled = uploadSpool.spool(file);
                 
-                log.info("💾 [{}] Fichier copié en mémoire: {} bytes ({} KB)", 
-                        jobId, fileContent.length, fileContent.length / 1024);
+                log.info("💾 [{}] Fichier spoolé: {} bytes ({} KB)", 
+                        jobId, spooled.size(), spooled.size() / 1024);
                 
-                // 2) Fingerprint pour idempotence (anti-double upload/retry client)
-                String fingerprint = userId + ":" + sha256(fileContent);
-
-                // Si upload identique déjà en cours ou terminé => renvoyer info duplicata
-                DuplicateInfo existingUpload = uploadFingerprints.get(fingerprint);
-                if (existingUpload != null) {
-                    log.warn("⚠️ [{}] Upload dupliqué détecté (fingerprint match). Job existant: {} file={}",
-                            jobId, existingUpload.getJobId(), sanitizedFilename);
-
-                    // Important: on ne traite pas => on libère immédiatement le slot rate limiter
-                    uploadRateLimiter.release(String.valueOf(userId));
+                // 2) Fingerprint pour idempotence (anti-double upload/retry client, tous nœuds),
+                //    propre au moteur d'embedding : un document indexé par l'autre moteur est ré-ingéré
+                String fingerprint = embeddingEngine.qualify(userId + ":" + spooled.sha256());
+                String batchId = UUID.randomUUID().toString();
+
+                // Index partagé (Bloom local devant la table) puis réservation atomique
+                Optional<UploadFingerprintIndex.Entry> existing = uploadFingerprints.find(fingerprint);
+                if (existing.isEmpty()) {
+                    existing = uploadFingerprints.claim(fingerprint, jobId, batchId, sanitizedFilename, spooled.size());
+                }
 
+                if (existing.isPresent()) {
+                    UploadFingerprintIndex.Entry entry = existing.get();
+                    DuplicateInfo existingUpload = new DuplicateInfo(
+                        entry.jobId(),
+                        entry.filename(),
+                        LocalDateTime.ofInstant(entry.createdAt(), ZoneId.systemDefault()),
+                        fingerprint,
+                        entry.fileSize(),
+                        entry.batchId(),
+                        entry.indexed());
+
+                    log.warn("⚠️ [{}] Upload dupliqué détecté (fingerprint match). Job existant: {} batch={} indexé={} file={}",
+                            jobId, entry.jobId(), entry.batchId(), entry.indexed(), sanitizedFilename);
+
+                    // Important: on ne traite pas => aucun job créé, aucun slot occupé
                     // Retourner une réponse de duplicata avec toutes les infos
                     return ResponseEntity.ok(
                         UploadResponse.duplicate(
@@ -218,86 +245,32 @@ public class AssistantController {
                     );
                 }
                 
-                // 3) Enregistrer ce nouveau fingerprint
-                DuplicateInfo duplicateInfo = new DuplicateInfo(
-                    jobId,
-                    sanitizedFilename,
-                    LocalDateTime.now(),
-                    fingerprint,
-                    file.getSize()
-                );
-                uploadFingerprints.put(fingerprint, duplicateInfo);
-                
-                // 4) Créer un MultipartFile en mémoire (thread-safe)
-                final MultipartFile inMemoryFile = new InMemoryMultipartFile(
-                    file.getName(),
-                    filename,  // Garder le nom original
-                    file.getContentType(),
-                    fileContent
-                );
-                
-                log.info("✅ [{}] InMemoryMultipartFile créé: {} bytes disponibles", 
-                        jobId, inMemoryFile.getSize());
-                
-                // 5) Créer le job de tracking
-                UploadJob job = new UploadJob(jobId, sanitizedFilename, file.getSize());
-                uploadJobs.put(jobId, job);
-                
-                // ========================================================================
-                // TRAITEMENT ASYNCHRONE
-                // ========================================================================
-                
-                CompletableFuture.runAsync(() -> {
-                    try {
-                        job.setStatus(UploadStatus.PROCESSING);
-                        job.setProgress(10);
-                        
-                        log.info("🔄 [{}] Ingestion en cours: {}", jobId, sanitizedFilename);
-                        
-                        // ✅ INGESTION avec fichier en mémoire (thread-safe)
-                        ingestionService.ingestFile(inMemoryFile);
-                        
-                        job.setStatus(UploadStatus.COMPLETED);
-                        job.setProgress(100);
-                        job.setCompletedAt(Instant.now());
-                        
-                        Duration duration = Duration.between(start, Instant.now());
-                        log.info("✅ [{}] Upload terminé avec succès: {} en {}ms", 
-                                jobId, sanitizedFilename, duration.toMillis());
-                        
-                        // Métriques
-                        recordUploadMetrics(sanitizedFilename, file.getSize(), true, duration);
-                        
-                    } catch (Exception e) {
-                        log.error("❌ [{}] Erreur lors de l'ingestion: {}", jobId, sanitizedFilename, e);
-                        
-                        job.setStatus(UploadStatus.FAILED);
-                        job.setProgress(0);
-                        job.setErrorMessage(e.getMessage());
-                        
-                        // Supprimer le fingerprint en cas d'échec pour permettre retry
-                        uploadFingerprints.remove(fingerprint);
-                        
-                        recordUploadMetrics(sanitizedFilename, file.getSize(), false, 
-                                        Duration.between(start, Instant.now()));
-                        
-                    } finally {
-                        // ✅ Libérer le slot du rate limiter
-                        uploadRateLimiter.release(String.valueOf(userId));
-                        
-                        // ✅ Nettoyer le job après 5 minutes (garder le fingerprint plus longtemps)
-                        scheduler.schedule(() -> {
-                            uploadJobs.remove(jobId);
-                            log.debug("🗑️ [{}] Job nettoyé du cache", jobId);
-                        }, 5, TimeUnit.MINUTES);
-                        
-                        // Nettoyer le fingerprint après 1 heure
-                        scheduler.schedule(() -> {
-                            uploadFingerprints.remove(fingerprint);
-                            log.debug("🗑️ [{}] Fingerprint nettoyé: {}", jobId, fingerprint.substring(0, 16) + "...");
-                        }, 1, TimeUnit.HOURS);
-                    }
-                });
+                // 3) Mise en file durable (contenu lu en flux depuis le spool) : survit à un redémarrage.
+                //    Le job occupe un slot de l'utilisateur jusqu'à son état terminal
+                boolean queued;
+                try {
+                    queued = jobQueue.enqueue(
+                        jobId,
+                        userId,
+                        sanitizedFilename,
+                        filename,  // Garder le nom original
+                        file.getContentType(),
+                        fingerprint,
+                        batchId,
+                        spooled.path(),
+                        spooled.size(),
+                        uploadRateLimiter.getMaxConcurrent()
+                    );
+                } catch (RuntimeException e) {
+                    uploadFingerprints.release(fingerprint, jobId);
+                    throw e;
+                }
+                if (!queued) {
+                    uploadFingerprints.release(fingerprint, jobId);
+                    return tooManyUploads(jobId, userId, sanitizedFilename);
+                }
+
+                log.info("📥 [{}] Job mis en file: {} ({} bytes)", jobId, sanitizedFilename, spooled.size());
                 
                 // ========================================================================
                 // RETOUR IMMÉDIAT AU CLIENT - Format NgRx
@@ -310,11 +283,15 @@ public class AssistantController {
             } catch (IOException e) {
                 // Erreur lors de la lecture du fichier
                 log.error("❌ [{}] Erreur lecture fichier: {}", jobId, e.getMessage());
-                uploadRateLimiter.release(String.valueOf(userId));
                 
                 return ResponseEntity.status(500).body(
                     UploadResponse.error("Impossible de lire le fichier: " + e.getMessage(), jobId, sanitizedFilename)
                 );
+            } finally {
+                // Contenu désormais en base (ou rejeté) : le spool n'est plus utile
+                if (spooled != null) {
+                    uploadSpool.delete(spooled.path());
+                }
             }
             
         } catch (IllegalArgumentException e) {
@@ -331,21 +308,15 @@ public class AssistantController {
         }
     }
 
-    /**
-     * SHA-256 hex (idempotence fingerprint)
-     */
-    private static String sha256(byte[] data) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(data);
-            StringBuilder sb = new StringBuilder(digest.length * 2);
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException("SHA-256 not available", e);
-        }
+    private ResponseEntity<UploadResponse> tooManyUploads(String jobId, Long userId, String filename) {
+        log.warn("⚠️ [{}] Rate limit upload dépassé pour user: {}", jobId, userId);
+        return ResponseEntity.status(429).body(
+            UploadResponse.error(
+                String.format("Trop d'uploads simultanés (max: %d)", uploadRateLimiter.getMaxConcurrent()),
+                null,
+                filename
+            )
+        );
     }
 
     /**
@@ -353,22 +324,113 @@ public class AssistantController {
      */
     @GetMapping("/upload/status/{jobId}")
     public ResponseEntity<UploadStatusResponse> getUploadStatus(@PathVariable String jobId) {
-        UploadJob job = uploadJobs.get(jobId);
-        
-        if (job == null) {
+        return jobQueue.find(jobId)
+            .map(job -> ResponseEntity.ok(toStatusResponse(job)))
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * ✅ Progression d'ingestion en temps réel (SSE) - remplace le polling client
+     *
+     * Events: "progress" (IngestionProgressEvent), "done" (état terminal), "heartbeat".
+     * Le flux local (sink du job) est complété par une relecture périodique de la table
+     * durable : job en file, traité par un autre nœud, ou terminé avant l'abonnement.
+     */
+    @GetMapping(value = "/upload/progress/{jobId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<IngestionProgressEvent>> uploadProgress(@PathVariable String jobId) {
+
+        Optional<UploadJob> initial = jobQueue.find(jobId);
+        if (initial.isEmpty() || initial.get().getStatus() == UploadStatus.COMPLETED
+                || initial.get().getStatus() == UploadStatus.FAILED) {
+            IngestionProgressEvent last = initial.map(progressService::snapshot)
+                .orElseGet(() -> IngestionProgressEvent.builder()
+                    .jobId(jobId)
+                    .status("failed")
+                    .stage(IngestionProgressService.STAGE_DONE)
+                    .message("Job introuvable")
+                    .timestamp(Instant.now())
+                    .build());
+            return Flux.just(ServerSentEvent.<IngestionProgressEvent>builder()
+                .event("done")
+                .id(jobId)
+                .data(last)
+                .build());
+        }
+
+        Flux<IngestionProgressEvent> durable = Flux.interval(Duration.ZERO, Duration.ofSeconds(progressFallbackPollSeconds))
+            .concatMap(tick -> Mono.fromCallable(() -> jobQueue.find(jobId))
+                .subscribeOn(Schedulers.boundedElastic()))
+            .takeWhile(Optional::isPresent)
+            .map(job -> progressService.snapshot(job.get()))
+            .distinctUntilChanged(e -> e.getStatus() + ":" + e.getProgress());
+
+        Flux<ServerSentEvent<IngestionProgressEvent>> events = Flux.merge(progressService.stream(jobId), durable)
+            .takeUntil(IngestionProgressEvent::isTerminal)
+            .map(event -> ServerSentEvent.<IngestionProgressEvent>builder()
+                .event(event.isTerminal() ? "done" : "progress")
+                .id(jobId)
+                .data(event)
+                .build())
+            .doOnError(err -> log.warn("⚠️ [{}] Erreur SSE progression: {}", jobId, err.getMessage()))
+            .replay(1)
+            .refCount(2);  // heartbeat (fin) + client : une seule souscription amont, annulée à la déconnexion
+
+        Flux<ServerSentEvent<IngestionProgressEvent>> heartbeat = Flux.interval(Duration.ofSeconds(heartbeatIntervalSeconds))
+            .map(tick -> ServerSentEvent.<IngestionProgressEvent>builder()
+                .event("heartbeat")
+                .id(jobId)
+                .build());
+
+        return Flux.merge(heartbeat.takeUntilOther(events.then(Mono.just(true))), events);
+    }
+
+    /**
+     * Relance d'un upload échoué : reprise au dernier checkpoint (pas de ré-upload)
+     */
+    @PostMapping("/upload/{jobId}/retry")
+    public ResponseEntity<UploadStatusResponse> retryUpload(@PathVariable String jobId) {
+        Optional<UploadJob> job = jobQueue.find(jobId);
+        if (job.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        
-        return ResponseEntity.ok(new UploadStatusResponse(
-            jobId,
-            job.getFilename(),
-            job.getStatus().name().toLowerCase(),
-            job.getProgress(),
-            job.getMessage(),
-            job.getErrorMessage(),
-            job.getCreatedAt(),
-            job.getCompletedAt()
-        ));
+
+        IngestionJobQueue.Requeue outcome =
+            jobQueue.requeue(jobId, job.get().getUserId(), uploadRateLimiter.getMaxConcurrent());
+        if (outcome == IngestionJobQueue.Requeue.LIMIT_REACHED) {
+            return ResponseEntity.status(429).build();
+        }
+        if (outcome == IngestionJobQueue.Requeue.NOT_RETRYABLE) {
+            log.warn("⚠️ [{}] Relance refusée (statut: {})", jobId, job.get().getStatus());
+            return ResponseEntity.status(409).body(toStatusResponse(job.get()));
+        }
+
+        log.info("🔁 [{}] Upload relancé (batchId={})", jobId, job.get().getBatchId());
+        return jobQueue.find(jobId)
+            .map(j -> ResponseEntity.ok(toStatusResponse(j)))
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Rollback complet explicite : supprime tout ce que l'upload a indexé
+     */
+    @DeleteMapping("/upload/{jobId}")
+    public ResponseEntity<UploadStatusResponse> rollbackUpload(@PathVariable String jobId) {
+        Optional<UploadJob> job = jobQueue.find(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // Un job en cours écrit encore : pas de rollback concurrent
+        if (!jobQueue.markRolledBack(jobId)) {
+            return ResponseEntity.status(409).body(toStatusResponse(job.get()));
+        }
+
+        ingestionService.rollbackIngestion(job.get().getBatchId());
+        log.info("🗑️ [{}] Rollback complet effectué (batchId={})", jobId, job.get().getBatchId());
+
+        return jobQueue.find(jobId)
+            .map(j -> ResponseEntity.ok(toStatusResponse(j)))
+            .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
@@ -378,22 +440,56 @@ public class AssistantController {
     public ResponseEntity<List<UploadStatusResponse>> listUploads(
             @RequestParam(value = "userId", required = false) Long userId) {
         
-        List<UploadStatusResponse> uploads = uploadJobs.values().stream()
-            .map(job -> new UploadStatusResponse(
-                job.getJobId(),
-                job.getFilename(),
-                job.getStatus().name().toLowerCase(),
-                job.getProgress(),
-                job.getMessage(),
-                job.getErrorMessage(),
-                job.getCreatedAt(),
-                job.getCompletedAt()
-            ))
+        List<UploadStatusResponse> uploads = jobQueue.list(userId, 100).stream()
+            .map(this::toStatusResponse)
             .collect(Collectors.toList());
         
         return ResponseEntity.ok(uploads);
     }
 
+    /**
+     * Suppression de documents par filtre (batchId, fichier source, période d'upload ISO-8601)
+     * Critères combinés en ET ; au moins un critère requis
+     */
+    @DeleteMapping("/documents")
+    public ResponseEntity<DocumentDeletionResult> deleteDocuments(
+            @RequestParam(value = "batchId", required = false) String batchId,
+            @RequestParam(value = "source", required = false) String source,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+
+        EmbeddingDeletionService.Filter filter = new EmbeddingDeletionService.Filter(batchId, source, from, to);
+        if (filter.isEmpty()) {
+            log.warn("⚠️ Suppression refusée: aucun critère");
+            return ResponseEntity.badRequest().build();
+        }
+
+        log.info("🗑️ Suppression de documents: {}", filter);
+        return ResponseEntity.ok(embeddingDeletion.delete(filter));
+    }
+
+    /**
+     * Migration des images stockées à plat vers l'arborescence par batch (dryRun par défaut)
+     */
+    @PostMapping("/images/migrate")
+    public ResponseEntity<ImageStorageService.MigrationReport> migrateImages(
+            @RequestParam(value = "dryRun", defaultValue = "true") boolean dryRun) {
+        return ResponseEntity.ok(imageStorage.migrateLegacyLayout(dryRun));
+    }
+
+    private UploadStatusResponse toStatusResponse(UploadJob job) {
+        return new UploadStatusResponse(
+            job.getJobId(),
+            job.getFilename(),
+            job.getStatus().name().toLowerCase(),
+            job.getProgress(),
+            job.getMessage(),
+            job.getErrorMessage(),
+            job.getCreatedAt(),
+            job.getCompletedAt()
+        );
+    }
+
     // ========================================================================
     // CHAT STREAMING (inchangé)
     // ========================================================================
@@ -575,41 +671,6 @@ public class AssistantController {
     // MÉTHODES PRIVÉES - MÉTRIQUES (inchangées)
     // ========================================================================
 
-    private void recordUploadMetrics(
-            String filename, 
-            long sizeBytes, 
-            boolean success,
-            Duration duration) {
-        
-        try {
-            String extension = getFileExtension(filename);
-            
-            meterRegistry.counter("uploads.total",
-                "success", String.valueOf(success),
-                "extension", extension
-            ).increment();
-            
-            if (success) {
-                meterRegistry.counter("uploads.bytes.total",
-                    "extension", extension
-                ).increment(sizeBytes);
-            }
-            
-            meterRegistry.summary("uploads.size.bytes",
-                "extension", extension
-            ).record(sizeBytes);
-            
-            if (success) {
-                meterRegistry.timer("uploads.duration",
-                    "extension", extension
-                ).record(duration);
-            }
-            
-        } catch (Exception e) {
-            log.warn("⚠️ Erreur enregistrement métriques upload", e);
-        }
-    }
-
     private void recordChatMetrics(
             String userId, 
             int responseLength,
@@ -647,7 +708,7 @@ public class AssistantController {
  * 
  * ✅ GESTION COMPLÈTE DES DUPLICATAS
  *    - DuplicateInfo avec métadonnées complètes
- *    - Cache des fingerprints avec nettoyage automatique (1h)
+ *    - Fingerprints persistés dans ingestion_jobs (fenêtre de déduplication 1h)
  *    - Informations renvoyées au frontend pour décision utilisateur
  * 
  * ✅ SUPPORT CORS
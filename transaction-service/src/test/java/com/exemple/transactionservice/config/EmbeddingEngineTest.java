@@ -0,0 +1,83 @@
+package com.exemple.transactionservice.config;
+
+import com.exemple.transactionservice.service.NearDuplicateChunkIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddingEngineTest {
+
+    private static final EmbeddingEngine OPENAI =
+            new EmbeddingEngine(EmbeddingEngine.OPENAI, 1536, "text_embeddings", "image_embeddings");
+    private static final EmbeddingEngine MINILM =
+            new EmbeddingEngine(EmbeddingEngine.MINILM, 384, "text_embeddings_minilm", "image_embeddings_minilm");
+
+    @Test
+    void openAiKeepsExistingTableAndKeyNames() {
+        assertThat(OPENAI.qualify(NearDuplicateChunkIndex.SIGNATURE_TABLE)).isEqualTo("chunk_minhash");
+        assertThat(OPENAI.qualify(NearDuplicateChunkIndex.LINK_TABLE)).isEqualTo("text_chunk_links");
+        assertThat(OPENAI.qualify("42:abcdef")).isEqualTo("42:abcdef");
+        assertThat(OPENAI.isLocal()).isFalse();
+    }
+
+    @Test
+    void miniLmGetsItsOwnTablesAndKeys() {
+        assertThat(MINILM.qualify(NearDuplicateChunkIndex.SIGNATURE_TABLE)).isEqualTo("chunk_minhash_minilm");
+        assertThat(MINILM.qualify(NearDuplicateChunkIndex.LINK_TABLE)).isEqualTo("text_chunk_links_minilm");
+        assertThat(MINILM.qualify("42:abcdef")).isNotEqualTo(OPENAI.qualify("42:abcdef"));
+        assertThat(MINILM.isLocal()).isTrue();
+    }
+
+    @Test
+    void enginesNeverShareATable() {
+        assertThat(MINILM.textTable()).isNotEqualTo(OPENAI.textTable());
+        assertThat(MINILM.imageTable()).isNotEqualTo(OPENAI.imageTable());
+        assertThat(MINILM.qualify(NearDuplicateChunkIndex.SIGNATURE_TABLE))
+                .isNotEqualTo(OPENAI.qualify(NearDuplicateChunkIndex.SIGNATURE_TABLE));
+    }
+
+    @Test
+    void configSelectsTablesAndDimensionOfTheActiveEngine() {
+        assertThat(config(EmbeddingEngine.OPENAI).embeddingEngine()).isEqualTo(OPENAI);
+        assertThat(config(EmbeddingEngine.MINILM).embeddingEngine()).isEqualTo(MINILM);
+    }
+
+    @Test
+    void unknownEngineIsRejected() {
+        assertThatThrownBy(() -> new EmbeddingEngine("cohere", 1024, "t", "i"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("cohere");
+    }
+
+    @Test
+    void invalidDimensionIsRejected() {
+        assertThatThrownBy(() -> new EmbeddingEngine(EmbeddingEngine.MINILM, 0, "t", "i"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void tableNamesAreValidatedBeforeReachingSql() {
+        assertThatThrownBy(() -> new EmbeddingEngine(EmbeddingEngine.OPENAI, 1536, "text; DROP TABLE x", "image_embeddings"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new EmbeddingEngine(EmbeddingEngine.OPENAI, 1536, "Text_Embeddings", "image_embeddings"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new EmbeddingEngine(EmbeddingEngine.OPENAI, 1536, null, "image_embeddings"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new EmbeddingEngine(EmbeddingEngine.OPENAI, 1536, "embeddings", "embeddings"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static EmbeddingEngineConfig config(String engine) {
+        // Valeurs par défaut de application.yml (embedding.*)
+        EmbeddingEngineConfig config = new EmbeddingEngineConfig();
+        ReflectionTestUtils.setField(config, "engine", engine);
+        ReflectionTestUtils.setField(config, "openAiDimension", 1536);
+        ReflectionTestUtils.setField(config, "openAiTextTable", "text_embeddings");
+        ReflectionTestUtils.setField(config, "openAiImageTable", "image_embeddings");
+        ReflectionTestUtils.setField(config, "miniLmTextTable", "text_embeddings_minilm");
+        ReflectionTestUtils.setField(config, "miniLmImageTable", "image_embeddings_minilm");
+        return config;
+    }
+}
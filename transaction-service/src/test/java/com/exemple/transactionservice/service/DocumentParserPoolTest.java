@@ -0,0 +1,97 @@
+package com.exemple.transactionservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentParserPoolTest {
+
+    private DocumentParserPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new DocumentParserPool(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pool, "threads", 1);
+        ReflectionTestUtils.setField(pool, "queueCapacity", 4);
+        ReflectionTestUtils.setField(pool, "queueTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(pool, "pdfPageTimeoutMs", 50L);
+        ReflectionTestUtils.setField(pool, "xlsxTimeoutMs", 50L);
+        pool.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void taskExitCompletesOnlyWhenTheAbandonedTaskReturns() throws Exception {
+        AtomicBoolean release = new AtomicBoolean();
+
+        // Ni interruption ni check() : la tâche continue après le timeout
+        DocumentParserPool.ParseTimeoutException timeout = catchThrowableOfType(
+                () -> pool.parse(DocumentParserPool.Format.PDF_PAGE, "rapport.pdf", c -> {
+                    while (!release.get()) {
+                        Thread.onSpinWait();
+                    }
+                    return "texte";
+                }),
+                DocumentParserPool.ParseTimeoutException.class);
+
+        assertThat(timeout).isNotNull();
+        Thread.sleep(100);
+        assertThat(timeout.taskExit()).isNotDone();
+
+        release.set(true);
+        timeout.taskExit().get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void csvLoopStopsOnCancellation() throws Exception {
+        TextChunker textChunker = mock(TextChunker.class);
+        when(textChunker.countTokens(anyString())).thenReturn(1);
+        TabularChunker chunker = new TabularChunker(textChunker);
+        ReflectionTestUtils.setField(chunker, "chunkTokens", 512);
+
+        DocumentParserPool.ParseTimeoutException timeout = catchThrowableOfType(
+                () -> pool.parse(DocumentParserPool.Format.CSV, "infini.csv",
+                        c -> chunker.streamCsv(endlessCsv(), "infini.csv", chunker.grouper(chunk -> { }), c)),
+                DocumentParserPool.ParseTimeoutException.class);
+
+        // Le lecteur ignore l'interruption : seule la vérification par ligne arrête la boucle
+        assertThat(timeout).isNotNull();
+        timeout.taskExit().get(2, TimeUnit.SECONDS);
+    }
+
+    private static Reader endlessCsv() {
+        return new Reader() {
+            private final char[] line = "a,b,c\n".toCharArray();
+            private int pos;
+
+            @Override
+            public int read(char[] buffer, int off, int len) {
+                for (int i = 0; i < len; i++) {
+                    buffer[off + i] = line[pos];
+                    pos = (pos + 1) % line.length;
+                }
+                return len;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,206 @@
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.config.EmbeddingEngine;
+import com.exemple.transactionservice.dto.DocumentDeletionResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmbeddingDeletionServiceTest {
+
+    private static final String TEXT_CHUNK = "SELECT embedding_id::text FROM text_embeddings";
+
+    private JdbcTemplate jdbcTemplate;
+    private NearDuplicateChunkIndex nearDuplicates;
+    private PlatformTransactionManager transactionManager;
+    private TransactionStatus transaction;
+    private EmbeddingDeletionService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        nearDuplicates = mock(NearDuplicateChunkIndex.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        transaction = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(transaction);
+
+        service = new EmbeddingDeletionService(jdbcTemplate,
+                mock(ImageStorageService.class),
+                mock(IngestionCheckpointStore.class),
+                mock(MultimodalRAGService.class),
+                nearDuplicates,
+                mock(UploadFingerprintIndex.class),
+                transactionManager,
+                new EmbeddingEngine(EmbeddingEngine.OPENAI, 1536, "text_embeddings", "image_embeddings"));
+        ReflectionTestUtils.setField(service, "chunkSize", 1000);
+        service.init();
+    }
+
+    // ========================================================================
+    // PRÉDICAT
+    // ========================================================================
+
+    @Test
+    void predicateCombinesCriteriaInOrder() {
+        Instant from = Instant.parse("2026-01-01T00:00:00Z");
+        Instant to = Instant.parse("2026-02-01T00:00:00Z");
+
+        EmbeddingDeletionService.Predicate predicate =
+                service.toPredicate(new EmbeddingDeletionService.Filter("batch-1", "rapport.pdf", from, to));
+
+        assertThat(predicate.sql()).isEqualTo(EmbeddingDeletionService.BATCH_EXPR + " = ? AND "
+                + EmbeddingDeletionService.DOCUMENT_EXPR + " = ? AND "
+                + EmbeddingDeletionService.UPLOAD_DATE_EXPR + " >= ? AND "
+                + EmbeddingDeletionService.UPLOAD_DATE_EXPR + " < ?");
+        assertThat(predicate.args()).containsExactly("batch-1", "rapport.pdf", from.toEpochMilli(), to.toEpochMilli());
+    }
+
+    @Test
+    void blankCriteriaAreIgnored() {
+        EmbeddingDeletionService.Predicate predicate =
+                service.toPredicate(new EmbeddingDeletionService.Filter(" ", "rapport.pdf", null, null));
+
+        assertThat(predicate.sql()).isEqualTo(EmbeddingDeletionService.DOCUMENT_EXPR + " = ?");
+        assertThat(predicate.args()).containsExactly("rapport.pdf");
+    }
+
+    @Test
+    void supersededVersionsAreScopedByDocumentKey() {
+        when(jdbcTemplate.queryForList(startsWith(TEXT_CHUNK), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of());
+
+        service.deleteSuperseded("42:rapport.pdf", "batch-2");
+
+        // Clé utilisateur + fichier, jamais le nom seul (homonymes d'autres utilisateurs intacts)
+        verify(jdbcTemplate).queryForList(
+                eq(TEXT_CHUNK + " WHERE " + EmbeddingDeletionService.DOCUMENT_KEY_EXPR + " = ? AND "
+                        + EmbeddingDeletionService.BATCH_EXPR + " IS DISTINCT FROM ? LIMIT ? FOR UPDATE"),
+                eq(String.class), eq(new Object[]{"42:rapport.pdf", "batch-2", 1000}));
+        verify(jdbcTemplate, never()).queryForList(contains(EmbeddingDeletionService.DOCUMENT_EXPR),
+                eq(String.class), any(Object[].class));
+    }
+
+    @Test
+    void emptyFilterIsRejected() {
+        assertThatThrownBy(() -> service.delete(new EmbeddingDeletionService.Filter(null, "", null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.delete(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // ========================================================================
+    // LOTS
+    // ========================================================================
+
+    @Test
+    void deletesChunksUntilAShortOne() {
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        when(jdbcTemplate.queryForList(startsWith(TEXT_CHUNK), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("a", "b"), List.of("c", "d"), List.of("e"));
+        when(jdbcTemplate.update(startsWith("DELETE FROM text_embeddings"), any(Object[].class)))
+                .thenReturn(2, 2, 1);
+
+        DocumentDeletionResult result = service.deleteBatch("batch-1");
+
+        assertThat(result.getTextDeleted()).isEqualTo(5);
+        verify(jdbcTemplate, times(3)).queryForList(startsWith(TEXT_CHUNK), eq(String.class),
+                eq(new Object[]{"batch-1", 2}));
+    }
+
+    @Test
+    void nonPositiveChunkSizeIsClampedForLimitAndLoop() {
+        ReflectionTestUtils.setField(service, "chunkSize", 0);
+        service.init();
+        when(jdbcTemplate.queryForList(startsWith(TEXT_CHUNK), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("a"), List.of("b"), List.of());
+        when(jdbcTemplate.update(startsWith("DELETE FROM text_embeddings"), any(Object[].class)))
+                .thenReturn(1, 1);
+
+        DocumentDeletionResult result = service.deleteBatch("batch-1");
+
+        // LIMIT 1 et arrêt sur un lot vide (avec 0, "deleted >= chunkSize" ne s'arrêtait jamais)
+        assertThat(result.getTextDeleted()).isEqualTo(2);
+        verify(jdbcTemplate, times(3)).queryForList(startsWith(TEXT_CHUNK), eq(String.class),
+                eq(new Object[]{"batch-1", 1}));
+    }
+
+    // ========================================================================
+    // TRANSACTION
+    // ========================================================================
+
+    @Test
+    void promotionAndRowDeletionShareTheChunkTransaction() {
+        when(nearDuplicates.deleteLinks(anyString(), any())).thenReturn(2L);
+        when(jdbcTemplate.queryForList(startsWith(TEXT_CHUNK), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("a", "b", "c"));
+        when(jdbcTemplate.update(startsWith("DELETE FROM text_embeddings"), any(Object[].class))).thenReturn(3);
+
+        DocumentDeletionResult result = service.deleteBatch("batch-1");
+
+        InOrder order = inOrder(transactionManager, nearDuplicates, jdbcTemplate);
+        order.verify(nearDuplicates).deleteLinks(anyString(), any());
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(jdbcTemplate).queryForList(startsWith(TEXT_CHUNK), eq(String.class), any(Object[].class));
+        order.verify(nearDuplicates).beforeCanonicalDelete(eq("embedding_id = ANY(?::uuid[])"),
+                eq(new Object[]{"{a,b,c}"}));
+        order.verify(jdbcTemplate).update(startsWith("DELETE FROM text_embeddings"), eq(new Object[]{"{a,b,c}"}));
+        order.verify(transactionManager).commit(transaction);
+        order.verify(jdbcTemplate).update(startsWith("DELETE FROM image_embeddings"), any(Object[].class));
+        assertThat(result.getTextDeleted()).isEqualTo(5);
+    }
+
+    @Test
+    void eachChunkIsCommittedBeforeThePause() {
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        ReflectionTestUtils.setField(service, "pauseMs", 1L);
+        when(jdbcTemplate.queryForList(startsWith(TEXT_CHUNK), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("a", "b"), List.of("c"));
+        when(jdbcTemplate.update(startsWith("DELETE FROM text_embeddings"), any(Object[].class)))
+                .thenReturn(2, 1);
+
+        service.deleteBatch("batch-1");
+
+        // Pas de transaction englobante : chaque lot est validé avant le suivant
+        InOrder order = inOrder(transactionManager);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(transactionManager).commit(transaction);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(transactionManager).commit(transaction);
+    }
+
+    @Test
+    void failedPromotionRollsBackAndKeepsTextRows() {
+        when(jdbcTemplate.queryForList(startsWith(TEXT_CHUNK), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("a"));
+        when(nearDuplicates.beforeCanonicalDelete(anyString(), any()))
+                .thenThrow(new IllegalStateException("connexion perdue"));
+
+        assertThatThrownBy(() -> service.deleteBatch("batch-1")).isInstanceOf(IllegalStateException.class);
+
+        verify(transactionManager).rollback(transaction);
+        verify(transactionManager, never()).commit(any());
+        verify(jdbcTemplate, never()).update(startsWith("DELETE FROM"), any(Object[].class));
+        verify(nearDuplicates).deleteLinks(anyString(), eq(new Object[]{"batch-1"}));
+    }
+}
@@ -0,0 +1,133 @@
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.util.TestImages;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageDeduplicationIndexTest {
+
+    private static final String BATCH = "batch-0001";
+
+    private SimpleMeterRegistry registry;
+    private ImageDeduplicationIndex index;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        index = new ImageDeduplicationIndex(registry);
+        // Valeurs par défaut de application.yml (document.image-dedup.*)
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "hashSize", 16);
+        ReflectionTestUtils.setField(index, "maxDistance", 10);
+        ReflectionTestUtils.setField(index, "aspectRatioTolerance", 0.05);
+    }
+
+    @Test
+    void identicalImageIsCollapsedIntoCanonicalGroup() {
+        ImageDeduplicationIndex.Registration first = index.register(BATCH, TestImages.chart(640, 400), "logo_p1", Map.of("page", 1));
+        ImageDeduplicationIndex.Registration second = index.register(BATCH, TestImages.chart(640, 400), "logo_p2", Map.of("page", 2));
+
+        assertThat(first.canonical()).isTrue();
+        assertThat(second.canonical()).isFalse();
+        assertThat(second.group()).isSameAs(first.group());
+        assertThat(first.group().getOccurrences())
+                .extracting(o -> o.get("page"))
+                .containsExactly(1, 2);
+        assertThat(registry.counter("image.dedup.collapsed").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void resizedAndRecompressedCopiesAreCollapsed() throws Exception {
+        BufferedImage original = TestImages.chart(640, 400);
+
+        ImageDeduplicationIndex.Registration canonical = index.register(BATCH, original, "embedded", Map.of("page", 3));
+        ImageDeduplicationIndex.Registration resized = index.register(BATCH,
+                TestImages.scale(original, 320, 200), "rendered", Map.of("page", 3));
+        ImageDeduplicationIndex.Registration recompressed = index.register(BATCH,
+                TestImages.jpeg(original, 0.5f), "slide", Map.of("page", 4));
+
+        assertThat(canonical.canonical()).isTrue();
+        assertThat(resized.canonical()).isFalse();
+        assertThat(recompressed.canonical()).isFalse();
+        assertThat(index.drain(BATCH)).hasSize(1);
+    }
+
+    @Test
+    void unrelatedOrReshapedImagesGetTheirOwnGroup() {
+        index.register(BATCH, TestImages.chart(640, 400), "chart", Map.of());
+        ImageDeduplicationIndex.Registration stripes = index.register(BATCH, TestImages.stripes(640, 400), "stripes", Map.of());
+        ImageDeduplicationIndex.Registration tall = index.register(BATCH, TestImages.chart(400, 640), "tall", Map.of());
+
+        assertThat(stripes.canonical()).isTrue();
+        assertThat(tall.canonical()).isTrue();
+        assertThat(index.drain(BATCH))
+                .extracting(ImageDeduplicationIndex.ImageGroup::getCanonicalName)
+                .containsExactly("chart", "stripes", "tall");
+    }
+
+    @Test
+    void batchesAreIndependentAndDrainedOnce() {
+        index.register(BATCH, TestImages.chart(640, 400), "a", Map.of());
+        ImageDeduplicationIndex.Registration other = index.register("batch-0002", TestImages.chart(640, 400), "b", Map.of());
+
+        assertThat(other.canonical()).isTrue();
+        assertThat(index.drain(BATCH)).hasSize(1);
+        assertThat(index.drain(BATCH)).isEmpty();
+
+        index.discard("batch-0002");
+        assertThat(index.drain("batch-0002")).isEmpty();
+    }
+
+    @Test
+    void encodedImagesAreGroupedOnExactContentHash() {
+        ImageDeduplicationIndex.Registration first = index.registerEncoded(BATCH, "sha-1", null, 800, 600, "xobj_p1", Map.of("page", 1));
+        ImageDeduplicationIndex.Registration same = index.registerEncoded(BATCH, "sha-1", null, 800, 600, "xobj_p2", Map.of("page", 2));
+        ImageDeduplicationIndex.Registration different = index.registerEncoded(BATCH, "sha-2", null, 800, 600, "xobj_p3", Map.of("page", 3));
+
+        assertThat(first.canonical()).isTrue();
+        assertThat(same.canonical()).isFalse();
+        assertThat(different.canonical()).isTrue();
+
+        List<ImageDeduplicationIndex.ImageGroup> groups = index.drain(BATCH);
+        assertThat(groups).hasSize(2);
+        assertThat(groups.get(0).getOccurrences()).hasSize(2);
+    }
+
+    @Test
+    void passthroughJpegIsCollapsedWithPageRenderAndRecompressedCopies() throws Exception {
+        BufferedImage original = TestImages.chart(1600, 1000);
+
+        ImageDeduplicationIndex.Registration render = index.register(BATCH,
+                TestImages.scale(original, 480, 300), "page_render", Map.of("page", 1));
+        ImageDeduplicationIndex.Registration embedded = index.registerEncoded(BATCH, "sha-1",
+                index.hashEncoded(TestImages.jpegBytes(original, 0.9f)), 1600, 1000, "xobj_p1", Map.of("page", 1));
+        ImageDeduplicationIndex.Registration logo = index.registerEncoded(BATCH, "sha-2",
+                index.hashEncoded(TestImages.jpegBytes(original, 0.4f)), 1600, 1000, "xobj_p2", Map.of("page", 2));
+
+        // SHA-256 différents : seul le hash perceptuel les rapproche
+        assertThat(render.canonical()).isTrue();
+        assertThat(embedded.canonical()).isFalse();
+        assertThat(logo.canonical()).isFalse();
+        assertThat(index.drain(BATCH)).singleElement()
+                .satisfies(group -> assertThat(group.getOccurrences()).hasSize(3));
+    }
+
+    @Test
+    void disabledIndexKeepsEveryImage() throws Exception {
+        ReflectionTestUtils.setField(index, "enabled", false);
+
+        assertThat(index.register(BATCH, TestImages.chart(640, 400), "a", Map.of()).canonical()).isTrue();
+        assertThat(index.register(BATCH, TestImages.chart(640, 400), "b", Map.of()).canonical()).isTrue();
+        assertThat(index.registerEncoded(BATCH, "sha-1", null, 1, 1, "c", Map.of()).canonical()).isTrue();
+        assertThat(index.registerEncoded(BATCH, "sha-1", null, 1, 1, "d", Map.of()).canonical()).isTrue();
+        assertThat(index.hashEncoded(TestImages.jpegBytes(TestImages.chart(640, 400), 0.8f))).isNull();
+    }
+}
@@ -0,0 +1,61 @@
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.dto.IngestionProgressEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class IngestionProgressServiceTest {
+
+    private static final String JOB = "job-1";
+    private static final String BATCH = "batch-1";
+
+    private IngestionProgressService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new IngestionProgressService(mock(IngestionJobQueue.class));
+        // Pas de throttle : chaque rapport produit un événement
+        ReflectionTestUtils.setField(service, "minEmitIntervalMs", 0L);
+        ReflectionTestUtils.setField(service, "persistIntervalMs", 60_000L);
+    }
+
+    @Test
+    void streamedFileReportsBytesRead() throws Exception {
+        service.begin(JOB, BATCH, 1000);
+
+        try (InputStream in = service.track(BATCH, new ByteArrayInputStream(new byte[1000]))) {
+            in.readNBytes(500);
+        }
+
+        IngestionProgressEvent event = latest();
+        assertThat(event.getProgress()).isEqualTo(50);
+        assertThat(event.getBytesProcessed()).isEqualTo(500);
+    }
+
+    @Test
+    void unpagedFormatsProgressByStageWithoutGoingBack() {
+        service.begin(JOB, BATCH, 1000);
+
+        service.stage(BATCH, IngestionProgressService.STAGE_IMAGES);
+        assertThat(latest().getProgress()).isEqualTo(40);
+
+        service.stage(BATCH, IngestionProgressService.STAGE_INDEXING);
+        assertThat(latest().getProgress()).isEqualTo(70);
+
+        // Repli vers un pipeline paginé : la progression ne recule pas
+        service.stage(BATCH, IngestionProgressService.STAGE_PARSING);
+        service.pagesTotal(BATCH, 10);
+        assertThat(latest().getProgress()).isEqualTo(70);
+    }
+
+    private IngestionProgressEvent latest() {
+        return service.stream(JOB).blockFirst();
+    }
+}
@@ -0,0 +1,280 @@
+package com.exemple.transactionservice.service;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ingestion de bout en bout sans Spring ni base : image seule (étape ENCODE), PDF avec checkpoints
+ */
+class MultimodalIngestionServiceTest {
+
+    private SimpleMeterRegistry registry;
+    private EmbeddingDeletionService embeddingDeletion;
+    private EmbeddingStore<TextSegment> imageStore;
+    private EmbeddingModel embeddingModel;
+    private IngestionCheckpointStore checkpoints;
+    private IngestionPipeline pipeline;
+    private VisionDescriptionStore visionStore;
+    private MultimodalIngestionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        registry = new SimpleMeterRegistry();
+        embeddingDeletion = mock(EmbeddingDeletionService.class);
+        imageStore = mock(EmbeddingStore.class);
+
+        embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.embedAll(anyList())).thenAnswer(inv -> Response.from(
+                inv.<List<TextSegment>>getArgument(0).stream().map(s -> Embedding.from(new float[]{1f, 0f})).toList()));
+
+        VisionImagePreparer imagePreparer = new VisionImagePreparer(registry);
+        ReflectionTestUtils.setField(imagePreparer, "maxEdge", 1536);
+        ReflectionTestUtils.setField(imagePreparer, "jpegQuality", 0.85f);
+
+        ImageDeduplicationIndex imageDedup = new ImageDeduplicationIndex(registry);
+        ReflectionTestUtils.setField(imageDedup, "enabled", true);
+        ReflectionTestUtils.setField(imageDedup, "hashSize", 16);
+        ReflectionTestUtils.setField(imageDedup, "maxDistance", 10);
+        ReflectionTestUtils.setField(imageDedup, "aspectRatioTolerance", 0.05);
+
+        visionStore = mock(VisionDescriptionStore.class);
+
+        pipeline = new IngestionPipeline();
+        ReflectionTestUtils.setField(pipeline, "visionWorkers", 1);
+        ReflectionTestUtils.setField(pipeline, "indexWorkers", 1);
+        ReflectionTestUtils.setField(pipeline, "maxInFlight", 8);
+        pipeline.init();
+
+        // Checkpoint après chaque page, aucune reprise en cours
+        checkpoints = mock(IngestionCheckpointStore.class);
+        when(checkpoints.isEnabled()).thenReturn(true);
+        when(checkpoints.getEveryPages()).thenReturn(1);
+        when(checkpoints.load(anyString())).thenReturn(Optional.empty());
+
+        // Pages texte : pas de rendu complet
+        PageRenderPolicy renderPolicy = mock(PageRenderPolicy.class);
+        when(renderPolicy.plan(any(), any())).thenReturn(
+                new PageRenderPolicy.PageRenderPlan(PageRenderPolicy.Decision.SKIP, 0, null, "test"));
+
+        // Un segment par page
+        TextChunker textChunker = mock(TextChunker.class);
+        when(textChunker.split(anyString(), any(), anyString())).thenAnswer(inv ->
+                List.of(TextSegment.from(inv.getArgument(0), inv.<Metadata>getArgument(1).copy())));
+
+        // Parsing exécuté sur le thread appelant
+        DocumentParserPool parserPool = mock(DocumentParserPool.class);
+        when(parserPool.parse(any(), anyString(), any())).thenAnswer(inv ->
+                inv.<DocumentParserPool.ParseTask<?>>getArgument(2).run(new DocumentParserPool.Cancellation()));
+
+        service = new MultimodalIngestionService(
+                mock(EmbeddingStore.class),
+                imageStore,
+                embeddingModel,
+                mock(ChatLanguageModel.class),
+                mock(MultimodalRAGService.class),
+                pipeline,
+                visionStore,
+                imageDedup,
+                renderPolicy,
+                imagePreparer,
+                checkpoints,
+                mock(IngestionProgressService.class),
+                mock(ImageStorageService.class),
+                embeddingDeletion,
+                mock(XlsxStreamingReader.class),
+                mock(TabularChunker.class),
+                mock(OfficeConversionService.class),
+                parserPool,
+                textChunker,
+                mock(IncrementalReingestionService.class),
+                mock(NearDuplicateChunkIndex.class),
+                new IngestionMetrics(registry));
+        ReflectionTestUtils.setField(service, "maxFileSizeMb", 25);
+        ReflectionTestUtils.setField(service, "maxPages", 100);
+        ReflectionTestUtils.setField(service, "maxImagesPerFile", 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    // ========================================================================
+    // IMAGE
+    // ========================================================================
+
+    @Test
+    void ingestImageRecordsEncodeStage() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "photo.png", "image/png", png(320, 200));
+
+        service.ingestFile(file, UUID.randomUUID().toString());
+
+        Timer encode = registry.find("ingestion.stage.duration")
+                .tags("stage", "encode", "outcome", "success")
+                .timer();
+        assertThat(encode).isNotNull();
+        assertThat(encode.count()).isEqualTo(1);
+        assertThat(registry.find("image.prep.duration").timer().count()).isEqualTo(1);
+        verify(imageStore).addAll(anyList(), anyList());
+        verify(embeddingDeletion, never()).deleteBatch(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rowsCarryTheUserScopedDocumentKey() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "photo.png", "image/png", png(320, 200));
+
+        service.ingestFile(file, UUID.randomUUID().toString(), 42L);
+
+        ArgumentCaptor<List<TextSegment>> segments = ArgumentCaptor.forClass(List.class);
+        verify(imageStore).addAll(anyList(), segments.capture());
+        assertThat(segments.getValue()).allSatisfy(segment -> assertThat(
+                segment.metadata().getString(IncrementalReingestionService.DOCUMENT_KEY)).isEqualTo("42:photo.png"));
+    }
+
+    @Test
+    void visionCacheIsKeyedByTheOriginalBytes() throws Exception {
+        ReflectionTestUtils.setField(service, "enableVisionCache", true);
+        byte[] original = png(320, 200);
+        MockMultipartFile file = new MockMultipartFile("file", "photo.png", "image/png", original);
+
+        service.ingestFile(file, UUID.randomUUID().toString());
+
+        // Pas le JPEG ré-encodé pour Vision : la clé ne dépend pas des réglages d'encodage
+        verify(visionStore).getOrCompute(eq(VisionDescriptionStore.sha256Hex(original)), anyLong(), any());
+    }
+
+    // ========================================================================
+    // CHECKPOINTS PDF
+    // ========================================================================
+
+    @Test
+    void pdfPagesAreCheckpointedWhenEveryStageSucceeds() throws Exception {
+        String batchId = UUID.randomUUID().toString();
+
+        service.ingestFile(pdf(3), batchId);
+
+        verify(checkpoints).commit(eq(batchId), eq("page"), eq(1), anyInt());
+        verify(checkpoints).commit(eq(batchId), eq("page"), eq(2), anyInt());
+        verify(checkpoints).clear(batchId);
+    }
+
+    @Test
+    void skippedEmbeddingBatchStopsCheckpoints() throws Exception {
+        when(embeddingModel.embedAll(anyList())).thenThrow(new IllegalStateException("quota dépassé"));
+        String batchId = UUID.randomUUID().toString();
+
+        service.ingestFile(pdf(3), batchId);
+
+        // Lot ignoré en page 1 : une reprise doit repartir de la page 1, pas après
+        verify(checkpoints, never()).commit(anyString(), anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void failedPageIsNeverCoveredByACheckpoint() throws Exception {
+        // Seul le texte de la page 2 échoue
+        when(embeddingModel.embedAll(anyList())).thenAnswer(inv -> {
+            List<TextSegment> segments = inv.getArgument(0);
+            if (segments.stream().anyMatch(s -> s.text().startsWith("Page 2 "))) {
+                throw new IllegalStateException("quota dépassé");
+            }
+            return Response.from(segments.stream().map(s -> Embedding.from(new float[]{1f, 0f})).toList());
+        });
+        String batchId = UUID.randomUUID().toString();
+
+        service.ingestFile(pdf(3), batchId);
+
+        verify(checkpoints).commit(eq(batchId), eq("page"), eq(1), anyInt());
+        verify(checkpoints, never()).commit(eq(batchId), eq("page"), eq(2), anyInt());
+    }
+
+    // ========================================================================
+    // DONNÉES DE TEST
+    // ========================================================================
+
+    /**
+     * PDF de n pages de texte, une image sur la première (chemin PDF avec images)
+     */
+    private static MockMultipartFile pdf(int pages) throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 1; p <= pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page " + p + " du rapport annuel, chiffre d'affaires et marge par filiale.");
+                    content.endText();
+                    if (p == 1) {
+                        content.drawImage(LosslessFactory.createFromImage(document, image(320, 200)), 72, 400);
+                    }
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return new MockMultipartFile("file", "rapport.pdf", "application/pdf", out.toByteArray());
+        }
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image(width, height), "png", out);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage image(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.ORANGE);
+            g.fillRect(0, 0, width, height);
+            g.setColor(Color.BLUE);
+            g.fillOval(width / 4, height / 4, width / 2, height / 2);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,277 @@
+package com.exemple.transactionservice.service;
+
+import com.exemple.transactionservice.config.EmbeddingEngine;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NearDuplicateChunkIndexTest {
+
+    private static final String[] VOCABULARY = {
+            "chiffre", "affaires", "consolidé", "exercice", "hausse", "marge", "opérationnelle", "groupe",
+            "filiale", "europe", "croissance", "investissement", "effectif", "site", "production", "client",
+            "contrat", "résultat", "net", "dividende", "dette", "trésorerie", "stratégie", "marché"
+    };
+
+    private JdbcTemplate jdbcTemplate;
+    private NearDuplicateChunkIndex index;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        index = new NearDuplicateChunkIndex(jdbcTemplate, new SimpleMeterRegistry(),
+                new EmbeddingEngine(EmbeddingEngine.OPENAI, 1536, "text_embeddings", "image_embeddings"));
+        // Valeurs par défaut de application.yml (document.near-duplicates.*)
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "threshold", 0.85);
+        ReflectionTestUtils.setField(index, "bands", 16);
+        ReflectionTestUtils.setField(index, "rows", 8);
+        ReflectionTestUtils.setField(index, "shingleWords", 5);
+        ReflectionTestUtils.setField(index, "minWords", 30);
+        index.init();
+    }
+
+    // ========================================================================
+    // SIGNATURE / SIMILARITÉ
+    // ========================================================================
+
+    @Test
+    void shortTextsHaveNoSignature() {
+        assertThat(index.signature(null)).isNull();
+        assertThat(index.signature(text(1, 29))).isNull();
+        assertThat(index.signature(text(1, 30))).isNotNull();
+    }
+
+    @Test
+    void signatureIsDeterministicAndIgnoresCaseAndPunctuation() {
+        String text = text(7, 120);
+        NearDuplicateChunkIndex.Signature a = index.signature(text);
+        NearDuplicateChunkIndex.Signature b = index.signature(text.toUpperCase().replace(" ", " ; "));
+
+        assertThat(a.minHashes()).hasSize(16 * 8);
+        assertThat(a.bandKeys()).hasSize(16);
+        assertThat(b.minHashes()).containsExactly(a.minHashes());
+        assertThat(b.bandKeys()).containsExactly(a.bandKeys());
+        assertThat(NearDuplicateChunkIndex.similarity(a.minHashes(), b.minHashes())).isEqualTo(1.0);
+    }
+
+    @Test
+    void universalHashMatchesExactModularArithmetic() {
+        BigInteger p = BigInteger.valueOf((1L << 61) - 1);
+        java.util.Random random = new java.util.Random(42);
+        long[][] cases = {{1, 0, 0}, {(1L << 61) - 2, (1L << 61) - 2, 0xFFFFFFFFL}, {(1L << 61) - 2, 0, 1}};
+        List<long[]> all = new ArrayList<>(Arrays.asList(cases));
+        for (int i = 0; i < 1000; i++) {
+            all.add(new long[]{1 + Math.floorMod(random.nextLong(), (1L << 61) - 2),
+                    Math.floorMod(random.nextLong(), (1L << 61) - 1), random.nextInt() & 0xFFFFFFFFL});
+        }
+
+        for (long[] c : all) {
+            long expected = BigInteger.valueOf(c[0]).multiply(BigInteger.valueOf(c[2]))
+                    .add(BigInteger.valueOf(c[1])).mod(p).longValueExact();
+            assertThat(NearDuplicateChunkIndex.universalHash(c[0], c[1], c[2])).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void bandKeysCarryTheBandNumber() {
+        long[] keys = index.signature(text(3, 80)).bandKeys();
+
+        for (int b = 0; b < keys.length; b++) {
+            assertThat(keys[b] >>> 32).isEqualTo(b);
+        }
+    }
+
+    @Test
+    void oneEditedWordStaysAboveThreshold() {
+        String original = text(11, 120);
+        NearDuplicateChunkIndex.Signature a = index.signature(original);
+        NearDuplicateChunkIndex.Signature b = index.signature(replaceWord(original, 60, "modifié"));
+
+        assertThat(NearDuplicateChunkIndex.similarity(a.minHashes(), b.minHashes())).isGreaterThanOrEqualTo(0.85);
+        assertThat(sharedBands(a, b)).isPositive();
+    }
+
+    @Test
+    void unrelatedTextsAreFarApart() {
+        NearDuplicateChunkIndex.Signature a = index.signature(text(1, 120));
+        NearDuplicateChunkIndex.Signature b = index.signature(text(2, 120));
+
+        assertThat(NearDuplicateChunkIndex.similarity(a.minHashes(), b.minHashes())).isLessThan(0.2);
+        assertThat(sharedBands(a, b)).isZero();
+    }
+
+    // ========================================================================
+    // SUPPRESS / INDEX
+    // ========================================================================
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void indexedSegmentBecomesCanonicalForNearDuplicates() throws Exception {
+        String original = text(5, 120);
+        TextSegment canonical = segment(original, "rapport-2023.pdf");
+        NearDuplicateChunkIndex.Signature signature = index.signature(original);
+
+        index.index(List.of("00000000-0000-0000-0000-000000000001"), List.of(signature), List.of(canonical), "batch-a");
+
+        ArgumentCaptor<List<Object[]>> indexed = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq("INSERT INTO chunk_minhash"
+                + " (embedding_id, document, batch_id, signature, bands) VALUES (?::uuid, ?, ?, ?::integer[], ?::bigint[])"
+                + " ON CONFLICT (embedding_id) DO NOTHING"), indexed.capture());
+        Object[] row = indexed.getValue().get(0);
+        assertThat(row[1]).isEqualTo("rapport-2023.pdf");
+
+        // La ligne enregistrée revient comme candidat (signature et bandes relues depuis les littéraux)
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any(), any(), any()))
+                .thenAnswer(inv -> List.of(inv.<RowMapper<?>>getArgument(1).mapRow(resultSet(row), 0)));
+
+        TextSegment duplicate = segment(replaceWord(original, 60, "modifié"), "rapport-2024.pdf");
+        TextSegment unrelated = segment(text(9, 120), "rapport-2024.pdf");
+        TextSegment tooShort = segment(text(9, 10), "rapport-2024.pdf");
+
+        NearDuplicateChunkIndex.Filtered filtered = index.suppress(List.of(duplicate, unrelated, tooShort), "batch-b");
+
+        assertThat(filtered.linked()).isEqualTo(1);
+        assertThat(filtered.remaining()).containsExactly(unrelated, tooShort);
+        assertThat(filtered.signatures()).hasSize(2);
+        assertThat(filtered.signatures().get(1)).isNull();
+
+        ArgumentCaptor<List<Object[]>> links = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq("INSERT INTO text_chunk_links"
+                + " (duplicate_id, canonical_id, text, metadata, similarity)"
+                + " VALUES (?::uuid, ?::uuid, ?, ?::json, ?) ON CONFLICT (duplicate_id) DO NOTHING"), links.capture());
+        Object[] link = links.getValue().get(0);
+        assertThat(link[1]).isEqualTo("00000000-0000-0000-0000-000000000001");
+        assertThat(link[2]).isEqualTo(duplicate.text());
+        assertThat((float) link[4]).isGreaterThanOrEqualTo(0.85f);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void candidateLookupFailureKeepsEverySegment() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("base indisponible"));
+        List<TextSegment> segments = List.of(segment(text(4, 120), "a.pdf"), segment(text(6, 120), "a.pdf"));
+
+        NearDuplicateChunkIndex.Filtered filtered = index.suppress(segments, "batch-c");
+
+        assertThat(filtered.linked()).isZero();
+        assertThat(filtered.remaining()).isEqualTo(segments);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void disabledIndexSkipsDatabase() {
+        ReflectionTestUtils.setField(index, "enabled", false);
+        List<TextSegment> segments = List.of(segment(text(4, 120), "a.pdf"));
+
+        NearDuplicateChunkIndex.Filtered filtered = index.suppress(segments, "batch-d");
+        index.index(List.of("00000000-0000-0000-0000-000000000002"), filtered.signatures(), segments, "batch-d");
+
+        assertThat(filtered.remaining()).isEqualTo(segments);
+        verify(jdbcTemplate, never()).query(anyString(), any(RowMapper.class), any(), any(), any(), any());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void miniLmEngineUsesItsOwnTables() {
+        NearDuplicateChunkIndex miniLm = new NearDuplicateChunkIndex(jdbcTemplate, new SimpleMeterRegistry(),
+                new EmbeddingEngine(EmbeddingEngine.MINILM, 384, "text_embeddings_minilm", "image_embeddings_minilm"));
+        ReflectionTestUtils.setField(miniLm, "enabled", true);
+        ReflectionTestUtils.setField(miniLm, "bands", 16);
+        ReflectionTestUtils.setField(miniLm, "rows", 8);
+        ReflectionTestUtils.setField(miniLm, "shingleWords", 5);
+        ReflectionTestUtils.setField(miniLm, "minWords", 30);
+        miniLm.init();
+
+        String text = text(5, 120);
+        miniLm.index(List.of("00000000-0000-0000-0000-000000000003"), List.of(miniLm.signature(text)),
+                List.of(segment(text, "a.pdf")), "batch-e");
+        miniLm.suppress(List.of(segment(text(6, 120), "a.pdf")), "batch-f");
+
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO chunk_minhash_minilm "), anyList());
+        verify(jdbcTemplate).query(contains(" FROM chunk_minhash_minilm m JOIN text_embeddings_minilm t "),
+                any(RowMapper.class), any(), any(), any(), any());
+    }
+
+    // ========================================================================
+    // DONNÉES DE TEST
+    // ========================================================================
+
+    /**
+     * Suite pseudo-aléatoire de mots du vocabulaire (même graine => même texte)
+     */
+    private static String text(int seed, int words) {
+        java.util.Random random = new java.util.Random(seed);
+        return IntStream.range(0, words)
+                .mapToObj(i -> VOCABULARY[random.nextInt(VOCABULARY.length)] + (i % 13 == 12 ? "." : ""))
+                .collect(Collectors.joining(" "));
+    }
+
+    private static String replaceWord(String text, int position, String word) {
+        String[] words = text.split(" ");
+        words[position] = word;
+        return String.join(" ", words);
+    }
+
+    private static TextSegment segment(String text, String source) {
+        return TextSegment.from(text, Metadata.from(Map.of("source", source, "batchId", "batch")));
+    }
+
+    private static int sharedBands(NearDuplicateChunkIndex.Signature a, NearDuplicateChunkIndex.Signature b) {
+        int shared = 0;
+        for (int i = 0; i < a.bandKeys().length; i++) {
+            if (a.bandKeys()[i] == b.bandKeys()[i]) shared++;
+        }
+        return shared;
+    }
+
+    private static ResultSet resultSet(Object[] signatureRow) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("id")).thenReturn((String) signatureRow[0]);
+        Array signature = mock(Array.class);
+        when(signature.getArray()).thenReturn(parse(signatureRow[3], Integer::valueOf));
+        Array bands = mock(Array.class);
+        when(bands.getArray()).thenReturn(parse(signatureRow[4], Long::valueOf));
+        when(rs.getArray("signature")).thenReturn(signature);
+        when(rs.getArray("bands")).thenReturn(bands);
+        return rs;
+    }
+
+    private static Object[] parse(Object arrayLiteral, java.util.function.Function<String, Number> parser) {
+        String literal = arrayLiteral.toString();
+        List<Number> values = new ArrayList<>();
+        Arrays.stream(literal.substring(1, literal.length() - 1).split(",")).map(parser).forEach(values::add);
+        return values.toArray();
+    }
+}
@@ -0,0 +1,95 @@
+package com.exemple.transactionservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageRenderPolicyTest {
+
+    private PageRenderPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        policy = new PageRenderPolicy(new SimpleMeterRegistry());
+        // Valeurs par défaut de application.yml (document.render-policy.*)
+        ReflectionTestUtils.setField(policy, "enabled", true);
+        ReflectionTestUtils.setField(policy, "fullDpi", 150);
+        ReflectionTestUtils.setField(policy, "lowDpi", 72);
+        ReflectionTestUtils.setField(policy, "minTextDensity", 0.4);
+        ReflectionTestUtils.setField(policy, "minVectorOps", 20);
+        ReflectionTestUtils.setField(policy, "fullDpiVectorOps", 300);
+        ReflectionTestUtils.setField(policy, "fullDpiImageCoverage", 0.30);
+        ReflectionTestUtils.setField(policy, "coveredByImage", 0.90);
+    }
+
+    @Test
+    void textOnlyPageIsSkipped() {
+        PageRenderPolicy.PageRenderPlan plan = policy.classify(features(1800, 3.6, 0, 4, 0.0));
+
+        assertThat(plan.decision()).isEqualTo(PageRenderPolicy.Decision.SKIP);
+        assertThat(plan.dpi()).isZero();
+        assertThat(plan.reason()).isEqualTo("texte seul déjà extrait");
+    }
+
+    @Test
+    void emptyPageIsSkipped() {
+        PageRenderPolicy.PageRenderPlan plan = policy.classify(features(0, 0.0, 0, 0, 0.0));
+
+        assertThat(plan.decision()).isEqualTo(PageRenderPolicy.Decision.SKIP);
+        assertThat(plan.reason()).isEqualTo("page vide");
+    }
+
+    @Test
+    void scannedPageCoveredByExtractedImageIsSkipped() {
+        PageRenderPolicy.PageRenderPlan plan = policy.classify(features(0, 0.0, 1, 0, 0.98));
+
+        assertThat(plan.decision()).isEqualTo(PageRenderPolicy.Decision.SKIP);
+        assertThat(plan.reason()).isEqualTo("page = image intégrée déjà extraite");
+    }
+
+    @Test
+    void fullPageImageWithTextOrDrawingIsRenderedAtFullDpi() {
+        assertThat(policy.classify(features(900, 1.8, 1, 0, 0.95)).decision())
+                .isEqualTo(PageRenderPolicy.Decision.FULL_DPI);
+        assertThat(policy.classify(features(0, 0.0, 1, 50, 0.95)).decision())
+                .isEqualTo(PageRenderPolicy.Decision.FULL_DPI);
+    }
+
+    @Test
+    void dominantVisualsAreRenderedAtFullDpi() {
+        PageRenderPolicy.PageRenderPlan chart = policy.classify(features(400, 0.8, 0, 300, 0.0));
+        PageRenderPolicy.PageRenderPlan photo = policy.classify(features(400, 0.8, 1, 0, 0.30));
+
+        assertThat(chart.decision()).isEqualTo(PageRenderPolicy.Decision.FULL_DPI);
+        assertThat(chart.dpi()).isEqualTo(150);
+        assertThat(photo.decision()).isEqualTo(PageRenderPolicy.Decision.FULL_DPI);
+    }
+
+    @Test
+    void secondaryVisualsAreRenderedAtLowDpi() {
+        PageRenderPolicy.PageRenderPlan smallLogo = policy.classify(features(1500, 3.0, 1, 0, 0.02));
+        PageRenderPolicy.PageRenderPlan table = policy.classify(features(1200, 2.4, 0, 120, 0.0));
+
+        assertThat(smallLogo.decision()).isEqualTo(PageRenderPolicy.Decision.LOW_DPI);
+        assertThat(smallLogo.dpi()).isEqualTo(72);
+        assertThat(table.decision()).isEqualTo(PageRenderPolicy.Decision.LOW_DPI);
+    }
+
+    @Test
+    void thresholdsAreInclusive() {
+        assertThat(policy.classify(features(0, 0.0, 0, 20, 0.0)).decision())
+                .isEqualTo(PageRenderPolicy.Decision.LOW_DPI);
+        assertThat(policy.classify(features(0, 0.0, 0, 19, 0.0)).decision())
+                .isEqualTo(PageRenderPolicy.Decision.SKIP);
+        assertThat(policy.classify(features(0, 0.0, 0, 299, 0.0)).decision())
+                .isEqualTo(PageRenderPolicy.Decision.LOW_DPI);
+    }
+
+    private static PageRenderPolicy.PageFeatures features(int chars, double density, int images,
+                                                           int vectorOps, double coverage) {
+        return new PageRenderPolicy.PageFeatures(chars, density, images, vectorOps, coverage);
+    }
+}
@@ -0,0 +1,119 @@
+package com.exemple.transactionservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TabularChunkerTest {
+
+    private TabularChunker chunker;
+    private final List<TabularChunker.Chunk> chunks = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Un token par mot : budgets prévisibles sans tokenizer cl100k
+        TextChunker textChunker = mock(TextChunker.class);
+        when(textChunker.countTokens(anyString())).thenAnswer(inv -> {
+            String text = inv.getArgument(0);
+            return text.isBlank() ? 0 : text.trim().split("\\s+").length;
+        });
+        chunker = new TabularChunker(textChunker);
+        ReflectionTestUtils.setField(chunker, "chunkTokens", 512);
+    }
+
+    @Test
+    void quotedFieldsKeepDelimitersEscapedQuotesAndLineBreaks() throws IOException {
+        String csv = "nom,commentaire,montant\r\n"
+                + "\"Dupont, Jean\",\"Il a dit \"\"oui\"\"\",12\r\n"
+                + "Martin,\"ligne 1\nligne 2\",7\r\n";
+
+        List<List<String>> rows = rows(csv);
+
+        assertThat(rows).containsExactly(
+                List.of("nom", "commentaire", "montant"),
+                List.of("Dupont, Jean", "Il a dit \"oui\"", "12"),
+                List.of("Martin", "ligne 1\nligne 2", "7"));
+    }
+
+    @Test
+    void delimiterIsDetectedOnFirstLineOutsideQuotes() throws IOException {
+        assertThat(rows("a;b;\"c,d\"\n1;2;3\n")).containsExactly(
+                List.of("a", "b", "c,d"),
+                List.of("1", "2", "3"));
+        assertThat(rows("a\tb\tc\n1\t2,5\t3\n")).containsExactly(
+                List.of("a", "b", "c"),
+                List.of("1", "2,5", "3"));
+        assertThat(rows("\"x;y\",b,c\n1,2,3\n").get(0)).containsExactly("x;y", "b", "c");
+    }
+
+    @Test
+    void bomBlankLinesAndMissingTrailingNewlineAreHandled() throws IOException {
+        List<List<String>> rows = rows("\uFEFFid,valeur\n\n , \n1,\"fin\"");
+
+        assertThat(rows).containsExactly(
+                List.of("id", "valeur"),
+                List.of("1", "fin"));
+    }
+
+    @Test
+    void headerIsRepeatedInEveryChunkAndRowsAreNeverSplit() throws IOException {
+        ReflectionTestUtils.setField(chunker, "chunkTokens", 30);
+        StringBuilder csv = new StringBuilder("id,produit,quantite\n");
+        for (int i = 1; i <= 10; i++) {
+            csv.append(i).append(",\"Produit ").append(i).append(", modele A\",").append(i * 3).append('\n');
+        }
+
+        TabularChunker.RowGrouper grouper = chunker.grouper(chunks::add);
+        long read = chunker.streamCsv(new StringReader(csv.toString()), "ventes.csv", grouper);
+        grouper.finish();
+
+        assertThat(read).isEqualTo(11);
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertThat(chunks).allSatisfy(chunk -> {
+            assertThat(chunk.sheetName()).isEqualTo("ventes.csv");
+            assertThat(chunk.text()).contains("Colonnes: id | produit | quantite");
+            assertThat(chunk.text().split("\n")).hasSize(2 + chunk.rowCount());
+        });
+        assertThat(chunks.stream().mapToInt(TabularChunker.Chunk::rowCount).sum()).isEqualTo(10);
+        assertThat(chunks.get(0).firstRow()).isEqualTo(2);
+        assertThat(chunks.get(chunks.size() - 1).lastRow()).isEqualTo(11);
+        assertThat(String.join("", chunks.stream().map(TabularChunker.Chunk::text).toList()))
+                .contains("7 | Produit 7, modele A | 21");
+    }
+
+    @Test
+    void headerOnlySheetIsStillIndexed() throws IOException {
+        TabularChunker.RowGrouper grouper = chunker.grouper(chunks::add);
+        chunker.streamCsv(new StringReader("colonne_a,colonne_b\n"), "vide.csv", grouper);
+        grouper.finish();
+
+        assertThat(chunks).singleElement().satisfies(chunk -> {
+            assertThat(chunk.rowCount()).isZero();
+            assertThat(chunk.text()).contains("Colonnes: colonne_a | colonne_b");
+        });
+    }
+
+    /**
+     * Lignes transmises au grouper, telles que découpées par le lecteur CSV
+     */
+    private List<List<String>> rows(String csv) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        TabularChunker.RowGrouper grouper = mock(TabularChunker.RowGrouper.class);
+        doAnswer(inv -> rows.add(inv.getArgument(1))).when(grouper).row(anyString(), anyList());
+
+        chunker.streamCsv(new StringReader(csv), "test.csv", grouper);
+        return rows;
+    }
+}
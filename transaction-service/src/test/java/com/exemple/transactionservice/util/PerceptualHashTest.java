@@ -0,0 +1,72 @@
+package com.exemple.transactionservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PerceptualHashTest {
+
+    // Seuil par défaut de ImageDeduplicationIndex (document.image-dedup.max-distance) pour 16x16
+    private static final int MAX_DISTANCE = 10;
+
+    @Test
+    void identicalImagesHaveZeroDistance() {
+        PerceptualHash a = PerceptualHash.dHash(TestImages.chart(640, 400), 16);
+        PerceptualHash b = PerceptualHash.dHash(TestImages.chart(640, 400), 16);
+
+        assertThat(a.bitCount()).isEqualTo(256);
+        assertThat(a.distance(b)).isZero();
+        assertThat(a.sameShape(b, 0.05)).isTrue();
+    }
+
+    @Test
+    void resizedImageStaysUnderThreshold() {
+        BufferedImage original = TestImages.chart(640, 400);
+        PerceptualHash a = PerceptualHash.dHash(original, 16);
+        PerceptualHash b = PerceptualHash.dHash(TestImages.scale(original, 320, 200), 16);
+
+        assertThat(a.distance(b)).isLessThanOrEqualTo(MAX_DISTANCE);
+        assertThat(a.sameShape(b, 0.05)).isTrue();
+    }
+
+    @Test
+    void recompressedImageStaysUnderThreshold() throws IOException {
+        BufferedImage original = TestImages.chart(640, 400);
+        PerceptualHash a = PerceptualHash.dHash(original, 16);
+        PerceptualHash b = PerceptualHash.dHash(TestImages.jpeg(original, 0.5f), 16);
+
+        assertThat(a.distance(b)).isLessThanOrEqualTo(MAX_DISTANCE);
+    }
+
+    @Test
+    void subsampledDecodeMatchesFullDecode() throws IOException {
+        BufferedImage original = TestImages.chart(1600, 1000);
+        PerceptualHash full = PerceptualHash.dHash(original, 16);
+        PerceptualHash subsampled = PerceptualHash.dHash(TestImages.jpegBytes(original, 0.85f), 16);
+
+        assertThat(subsampled.distance(full)).isLessThanOrEqualTo(MAX_DISTANCE);
+        assertThat(subsampled.sameShape(full, 0.01)).isTrue();
+        assertThat(PerceptualHash.dHash(new byte[]{1, 2, 3}, 16)).isNull();
+    }
+
+    @Test
+    void unrelatedImagesExceedThreshold() {
+        PerceptualHash a = PerceptualHash.dHash(TestImages.chart(640, 400), 16);
+        PerceptualHash b = PerceptualHash.dHash(TestImages.stripes(640, 400), 16);
+
+        assertThat(a.distance(b)).isGreaterThan(MAX_DISTANCE * 4);
+    }
+
+    @Test
+    void differentShapesOrSizesAreNotComparable() {
+        PerceptualHash wide = PerceptualHash.dHash(TestImages.chart(640, 400), 16);
+        PerceptualHash tall = PerceptualHash.dHash(TestImages.chart(400, 640), 16);
+        PerceptualHash small = PerceptualHash.dHash(TestImages.chart(640, 400), 8);
+
+        assertThat(wide.sameShape(tall, 0.05)).isFalse();
+        assertThat(wide.distance(small)).isEqualTo(Integer.MAX_VALUE);
+    }
+}
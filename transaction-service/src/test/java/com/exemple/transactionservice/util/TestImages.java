@@ -0,0 +1,99 @@
+package com.exemple.transactionservice.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Images synthétiques des tests de déduplication (graphique en barres, bandes)
+ */
+public final class TestImages {
+
+    private TestImages() {
+    }
+
+
+    public static BufferedImage chart(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setPaint(new GradientPaint(0, 0, Color.WHITE, width, height, new Color(40, 60, 120)));
+            g.fillRect(0, 0, width, height);
+            int bars = 6;
+            int barWidth = width / (bars * 2);
+            for (int i = 0; i < bars; i++) {
+                int barHeight = height * (i + 2) / (bars + 3);
+                g.setColor(new Color(200, 60 + i * 25, 30));
+                g.fillRect(barWidth / 2 + i * barWidth * 2, height - barHeight, barWidth, barHeight);
+            }
+            g.setColor(Color.BLACK);
+            g.setStroke(new BasicStroke(Math.max(1, width / 160f)));
+            g.drawOval(width / 2, height / 10, width / 3, height / 3);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    public static BufferedImage stripes(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.setColor(new Color(20, 120, 40));
+            int stripe = Math.max(1, width / 23);
+            for (int x = 0; x < width; x += stripe * 2) {
+                g.fillRect(x, 0, stripe, height);
+            }
+            g.setColor(new Color(230, 200, 20));
+            g.fillRect(0, height / 3, width, height / 5);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    public static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    public static BufferedImage jpeg(BufferedImage source, float quality) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(jpegBytes(source, quality)));
+    }
+
+    public static byte[] jpegBytes(BufferedImage source, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(source, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
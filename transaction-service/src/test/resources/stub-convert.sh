@@ -0,0 +1,11 @@
+#!/bin/sh
+# Convertisseur factice pour les tests (app.libreoffice.pool.convert-command) :
+# écrit un PDF minimal d'une page vide à l'emplacement demandé ($1 = {output}).
+cat > "$1" <<'PDF'
+%PDF-1.4
+1 0 obj << /Type /Catalog /Pages 2 0 R >> endobj
+2 0 obj << /Type /Pages /Kids [3 0 R] /Count 1 >> endobj
+3 0 obj << /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] >> endobj
+trailer << /Root 1 0 R >>
+%%EOF
+PDF